@@ -0,0 +1,146 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.data.CalendarSummaryResponse;
+import com.google.sps.utility.FreeTimeUtility;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how FreeTimeUtility scales with the length of the horizon and the number of events in
+ * it. Calendars are synthetic: events of 15 minutes to 2 hours start at random times within the
+ * horizon, from a fixed seed so every run measures the same calendars.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FreeTimeUtilityBenchmark {
+
+  private static final Date START_DATE = Date.from(Instant.parse("2020-05-18T13:00:00Z"));
+  // The hours CalendarServlet splits each day by
+  private static final int PERSONAL_BEGIN_HOUR = 7;
+  private static final int WORK_BEGIN_HOUR = 10;
+  private static final int WORK_END_HOUR = 18;
+  private static final int PERSONAL_END_HOUR = 23;
+  private static final long SEED = 42;
+
+  /** A horizon of free time with no events yet. */
+  @State(Scope.Benchmark)
+  public static class Horizon {
+    @Param({"1", "7", "30", "90"})
+    public int horizonDays;
+  }
+
+  /** A horizon and the events to fill it with. */
+  @State(Scope.Benchmark)
+  public static class Calendar {
+    @Param({"1", "7", "30", "90"})
+    public int horizonDays;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int eventCount;
+
+    private List<Date[]> events;
+
+    @Setup
+    public void setUp() {
+      Random random = new Random(SEED);
+      long horizonMillis = Duration.ofDays(horizonDays).toMillis();
+      events = new ArrayList<>(eventCount);
+      for (int i = 0; i < eventCount; i++) {
+        long offsetMillis = (long) (random.nextDouble() * horizonMillis);
+        Instant start = START_DATE.toInstant().plusMillis(offsetMillis);
+        Instant end = start.plus(Duration.ofMinutes(15 + random.nextInt(106)));
+        events.add(new Date[] {Date.from(start), Date.from(end)});
+      }
+    }
+  }
+
+  /**
+   * A FreeTimeUtility which already holds every event of the calendar. Adding an event again scans
+   * and copies the same free intervals as adding a new one, so it is reused across invocations.
+   */
+  @State(Scope.Thread)
+  public static class FilledCalendar {
+    private FreeTimeUtility freeTimeUtility;
+    private Date[] extraEvent;
+
+    @Setup
+    public void setUp(Calendar calendar) {
+      freeTimeUtility = fill(calendar);
+      extraEvent = calendar.events.get(calendar.events.size() / 2);
+    }
+  }
+
+  private static FreeTimeUtility createFreeTimeUtility(int horizonDays) {
+    return new FreeTimeUtility(
+        START_DATE,
+        PERSONAL_BEGIN_HOUR,
+        WORK_BEGIN_HOUR,
+        WORK_END_HOUR,
+        PERSONAL_END_HOUR,
+        horizonDays);
+  }
+
+  private static FreeTimeUtility fill(Calendar calendar) {
+    FreeTimeUtility freeTimeUtility = createFreeTimeUtility(calendar.horizonDays);
+    for (Date[] event : calendar.events) {
+      freeTimeUtility.addEvent(event[0], event[1]);
+    }
+    return freeTimeUtility;
+  }
+
+  @Benchmark
+  public FreeTimeUtility construct(Horizon horizon) {
+    return createFreeTimeUtility(horizon.horizonDays);
+  }
+
+  /** Builds the free time of a whole calendar, as CalendarServlet does for each request. */
+  @Benchmark
+  public FreeTimeUtility addEvents(Calendar calendar) {
+    return fill(calendar);
+  }
+
+  @Benchmark
+  public FreeTimeUtility addEvent(FilledCalendar filledCalendar) {
+    Date[] event = filledCalendar.extraEvent;
+    filledCalendar.freeTimeUtility.addEvent(event[0], event[1]);
+    return filledCalendar.freeTimeUtility;
+  }
+
+  @Benchmark
+  public CalendarSummaryResponse getCalendarSummaryResponse(FilledCalendar filledCalendar) {
+    return filledCalendar.freeTimeUtility.getCalendarSummaryResponse();
+  }
+}
@@ -0,0 +1,106 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.maps.model.AddressType;
+import com.google.maps.model.GeocodingResult;
+import com.google.maps.model.PlaceType;
+import com.google.sps.utility.GeocodingResultUtility;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of resolving one waypoint with GeocodingResultUtility, against the linear scans
+ * over the PlaceType enum which the lookup tables replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeocodingResultUtilityBenchmark {
+
+  // A place type near the start of the enum, one near the end, and a street address with none
+  @Param({"bakery", "gas station", "Google Kitchener"})
+  public String waypoint;
+
+  private GeocodingResult result;
+  private List<GeocodingResult> results;
+
+  @Setup
+  public void setUp() {
+    result = new GeocodingResult();
+    result.types =
+        new AddressType[] {
+          AddressType.POINT_OF_INTEREST, AddressType.ESTABLISHMENT, AddressType.STREET_ADDRESS
+        };
+    results = Collections.nCopies(3, result);
+  }
+
+  @Benchmark
+  public Optional<PlaceType> convertToPlaceType() {
+    return GeocodingResultUtility.convertToPlaceType(waypoint);
+  }
+
+  @Benchmark
+  public Optional<PlaceType> convertToPlaceTypeLinearScan() {
+    return Arrays.asList(PlaceType.values()).stream()
+        .filter(placeType -> placeType.name().equalsIgnoreCase(waypoint.replace(" ", "_")))
+        .findFirst();
+  }
+
+  @Benchmark
+  public Optional<PlaceType> getPlaceType() throws Exception {
+    return GeocodingResultUtility.getPlaceType(result);
+  }
+
+  @Benchmark
+  public Optional<PlaceType> getPlaceTypeLinearScan() {
+    AddressType addressType = result.types[0];
+    return Arrays.asList(PlaceType.values()).stream()
+        .filter(placeType -> placeType.name().equals(addressType.name()))
+        .findFirst();
+  }
+
+  @Benchmark
+  public boolean hasStreetAddress() {
+    return GeocodingResultUtility.hasStreetAddress(results);
+  }
+
+  @Benchmark
+  public boolean hasStreetAddressAsList() {
+    for (GeocodingResult result : results) {
+      if (Arrays.asList(result.types).contains(AddressType.STREET_ADDRESS)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
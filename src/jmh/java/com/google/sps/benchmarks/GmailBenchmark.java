@@ -0,0 +1,210 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import com.google.common.collect.ImmutableList;
+import com.google.sps.model.ActionableMessage;
+import com.google.sps.model.ActionableMessageHelper;
+import com.google.sps.model.ActionableMessageHelperImpl;
+import com.google.sps.model.GmailResponseHelper;
+import com.google.sps.model.GmailResponseHelperImpl;
+import com.google.sps.servlets.GmailActionableEmailsServlet;
+import com.google.sps.utility.GmailUtility;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the Gmail statistics, header parsing and actionable email ranking over synthetic
+ * mailboxes generated from a fixed seed. FULL messages carry the trace, authentication and MIME
+ * headers of a delivered email, with From, To and Subject after the trace headers. Actionable
+ * emails carry only the METADATA headers requested for them. A few senders send most of the mail,
+ * and some messages are important, starred or from mailing lists.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GmailBenchmark {
+
+  private static final String USER_EMAIL = "user@example.com";
+  private static final int SENDERS = 500;
+  private static final Duration MAILBOX_AGE = Duration.ofDays(7);
+  private static final int M_HOURS = 24;
+  private static final long SEED = 42;
+
+  // Headers delivered emails carry besides From, To and Subject. They are the same for every
+  // message, as only their number and order matter to the lookups
+  private static final List<MessagePartHeader> TRACE_HEADERS =
+      ImmutableList.of(
+          header("Delivered-To", USER_EMAIL),
+          header("Received", "by 2002:a05:6a10:1234 with SMTP id abc;"),
+          header("X-Google-Smtp-Source", "ABdhPJx1234567890"),
+          header("X-Received", "by 2002:a17:90a:1234 with SMTP id def;"),
+          header("ARC-Seal", "i=1; a=rsa-sha256; t=1590000000; cv=none; d=google.com; s=arc"),
+          header("ARC-Message-Signature", "i=1; a=rsa-sha256; c=relaxed/relaxed; d=google.com"),
+          header("ARC-Authentication-Results", "i=1; mx.google.com; spf=pass"),
+          header("Return-Path", "<bounce@example.com>"),
+          header("Received", "from mail.example.com (mail.example.com. [192.0.2.1])"),
+          header("Received-SPF", "pass (google.com: domain of bounce@example.com)"),
+          header("Authentication-Results", "mx.google.com; dkim=pass; spf=pass; dmarc=pass"),
+          header("DKIM-Signature", "v=1; a=rsa-sha256; c=relaxed/relaxed; d=example.com"),
+          header("MIME-Version", "1.0"),
+          header("Date", "Mon, 18 May 2020 09:00:00 -0400"),
+          header("Message-ID", "<CAF1234567890@mail.example.com>"));
+  private static final List<MessagePartHeader> CONTENT_HEADERS =
+      ImmutableList.of(
+          header("Content-Type", "multipart/alternative; boundary=\"000000000000abcdef\""));
+  private static final MessagePartHeader LIST_ID_HEADER =
+      header("List-ID", "<announcements.example.com>");
+
+  // From 100 messages, as a user sees in a day, to the size of a large inbox
+  @Param({"100", "1000", "10000", "100000"})
+  public int messageCount;
+
+  private List<Message> fullMessages;
+  private List<Message> actionableMessages;
+  private List<String> fromHeaderValues;
+  private GmailResponseHelper gmailResponseHelper;
+  private ActionableMessageHelper actionableMessageHelper;
+
+  private static MessagePartHeader header(String name, String value) {
+    return new MessagePartHeader().setName(name).setValue(value);
+  }
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(SEED);
+    List<MessagePartHeader> fromHeaders = new ArrayList<>();
+    for (int sender = 0; sender < SENDERS; sender++) {
+      fromHeaders.add(header("From", "Sender " + sender + " <sender" + sender + "@example.com>"));
+    }
+    MessagePartHeader toUserHeader = header("To", USER_EMAIL);
+    MessagePartHeader toManyHeader = header("To", "team@example.com, " + USER_EMAIL);
+    long now = Instant.now().toEpochMilli();
+
+    fullMessages = new ArrayList<>(messageCount);
+    actionableMessages = new ArrayList<>(messageCount);
+    fromHeaderValues = new ArrayList<>(messageCount);
+    for (int i = 0; i < messageCount; i++) {
+      // Squaring skews the choice towards the first senders
+      double skew = random.nextDouble();
+      MessagePartHeader from = fromHeaders.get((int) (skew * skew * SENDERS));
+      MessagePartHeader to = random.nextInt(4) == 0 ? toManyHeader : toUserHeader;
+      MessagePartHeader subject = header("Subject", "Action required: item " + i);
+      boolean mailingList = random.nextInt(5) == 0;
+      List<String> labelIds = new ArrayList<>(ImmutableList.of("UNREAD", "INBOX"));
+      if (random.nextInt(4) == 0) {
+        labelIds.add("IMPORTANT");
+      }
+      if (random.nextInt(20) == 0) {
+        labelIds.add("STARRED");
+      }
+      long internalDate = now - (long) (random.nextDouble() * MAILBOX_AGE.toMillis());
+
+      List<MessagePartHeader> fullHeaders = new ArrayList<>(TRACE_HEADERS);
+      fullHeaders.add(from);
+      fullHeaders.add(to);
+      fullHeaders.add(subject);
+      if (mailingList) {
+        fullHeaders.add(LIST_ID_HEADER);
+      }
+      fullHeaders.addAll(CONTENT_HEADERS);
+      fullMessages.add(createMessage(i, internalDate, labelIds, fullHeaders));
+
+      List<MessagePartHeader> metadataHeaders =
+          new ArrayList<>(ImmutableList.of(subject, from, to));
+      if (mailingList) {
+        metadataHeaders.add(LIST_ID_HEADER);
+      }
+      actionableMessages.add(createMessage(i, internalDate, labelIds, metadataHeaders));
+      fromHeaderValues.add(from.getValue());
+    }
+    gmailResponseHelper = new GmailResponseHelperImpl();
+    actionableMessageHelper = new ActionableMessageHelperImpl();
+  }
+
+  private static Message createMessage(
+      int id, long internalDate, List<String> labelIds, List<MessagePartHeader> headers) {
+    return new Message()
+        .setId(Integer.toHexString(id))
+        .setInternalDate(internalDate)
+        .setLabelIds(labelIds)
+        .setPayload(new MessagePart().setHeaders(headers));
+  }
+
+  @Benchmark
+  public int countEmailsFromNDays() {
+    return gmailResponseHelper.countEmailsFromNDays(fullMessages);
+  }
+
+  @Benchmark
+  public int countEmailsFromMHours() {
+    return gmailResponseHelper.countEmailsFromMHours(fullMessages, M_HOURS);
+  }
+
+  @Benchmark
+  public int countImportantEmails() {
+    return gmailResponseHelper.countImportantEmails(fullMessages);
+  }
+
+  @Benchmark
+  public Optional<String> findMostFrequentSender() {
+    return gmailResponseHelper.findMostFrequentSender(fullMessages);
+  }
+
+  /** Looks up the From header of every message, which follows the trace headers. */
+  @Benchmark
+  public void extractHeader(Blackhole blackhole) {
+    for (Message message : fullMessages) {
+      blackhole.consume(GmailUtility.extractHeader(message, "From"));
+    }
+  }
+
+  @Benchmark
+  public void parseNameInFromHeader(Blackhole blackhole) {
+    for (String fromHeaderValue : fromHeaderValues) {
+      blackhole.consume(GmailUtility.parseNameInFromHeader(fromHeaderValue));
+    }
+  }
+
+  /** Maps every actionable email and sorts them by priority, as /gmail-actionable-emails does. */
+  @Benchmark
+  public List<ActionableMessage> createActionableMessages() {
+    return GmailActionableEmailsServlet.createActionableMessages(
+        actionableMessages, USER_EMAIL, actionableMessageHelper);
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import com.sun.management.ThreadMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Measures the bytes allocated on the heap by the whole JVM between start and stop, including by
+ * threads which ended in between, such as the fetch threads of DashboardServlet. The allocation is
+ * the growth of the heap plus every byte freed by the collections which ran in between. Collection
+ * notifications are delivered asynchronously, so the figure is approximate for short windows.
+ */
+final class AllocationMeter implements NotificationListener {
+  private static final ThreadMXBean THREAD_BEAN =
+      (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final AtomicLong freedBytes = new AtomicLong();
+  private final List<NotificationEmitter> emitters = new ArrayList<>();
+  private long startHeapBytes;
+
+  /**
+   * Get the bytes allocated so far by the current thread, to tell the allocation of the load
+   * generator apart from the server's
+   *
+   * @return bytes allocated by the current thread since it started
+   */
+  static long getCurrentThreadAllocatedBytes() {
+    return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /** Starts counting allocated bytes. */
+  void start() {
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector instanceof NotificationEmitter) {
+        NotificationEmitter emitter = (NotificationEmitter) collector;
+        emitter.addNotificationListener(this, null, null);
+        emitters.add(emitter);
+      }
+    }
+    startHeapBytes = getHeapBytes();
+  }
+
+  /**
+   * Stops counting allocated bytes
+   *
+   * @return bytes allocated since start
+   * @throws InterruptedException if interrupted while waiting for late notifications
+   */
+  long stop() throws InterruptedException {
+    long endHeapBytes = getHeapBytes();
+    // Let notifications of collections which ran just before the end be delivered
+    Thread.sleep(100);
+    for (NotificationEmitter emitter : emitters) {
+      try {
+        emitter.removeNotificationListener(this);
+      } catch (ListenerNotFoundException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    emitters.clear();
+    return endHeapBytes - startHeapBytes + freedBytes.get();
+  }
+
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+        notification.getType())) {
+      return;
+    }
+    GcInfo gcInfo =
+        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+            .getGcInfo();
+    Map<String, MemoryUsage> afterCollection = gcInfo.getMemoryUsageAfterGc();
+    long freed = 0;
+    for (Map.Entry<String, MemoryUsage> beforeCollection :
+        gcInfo.getMemoryUsageBeforeGc().entrySet()) {
+      MemoryUsage after = afterCollection.get(beforeCollection.getKey());
+      if (after != null) {
+        freed += beforeCollection.getValue().getUsed() - after.getUsed();
+      }
+    }
+    freedBytes.addAndGet(freed);
+  }
+
+  private static long getHeapBytes() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,278 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives dashboard traffic against the servlets served by LoadTestServer, and reports throughput,
+ * p50 and p99 latency of every endpoint, and the bytes the server allocates per request. Each
+ * simulated page view loads /dashboard, and some requests refresh a single panel instead. Users
+ * are picked at random, so their clients are created, pooled and reused as they are in production.
+ *
+ * <p>The traffic and the fakes are configured through system properties: loadTest.users,
+ * loadTest.concurrency (client threads), loadTest.serverThreads, loadTest.warmupSeconds,
+ * loadTest.durationSeconds, the data volume of every account with loadTest.messages,
+ * loadTest.calendars, loadTest.eventsPerCalendar, loadTest.taskLists and loadTest.tasksPerList,
+ * and the latency of the fakes with loadTest.gmailLatencyMillis, loadTest.calendarLatencyMillis,
+ * loadTest.tasksLatencyMillis and loadTest.verifierLatencyMillis.
+ */
+public final class DashboardLoadTest {
+  private static final int USERS = Integer.getInteger("loadTest.users", 50);
+  private static final int CONCURRENCY = Integer.getInteger("loadTest.concurrency", 16);
+  private static final int SERVER_THREADS = Integer.getInteger("loadTest.serverThreads", 64);
+  private static final Duration WARMUP =
+      Duration.ofSeconds(Long.getLong("loadTest.warmupSeconds", 10));
+  private static final Duration DURATION =
+      Duration.ofSeconds(Long.getLong("loadTest.durationSeconds", 30));
+
+  private static final String DASHBOARD_QUERY =
+      "nDays=7&mHours=3&summary="
+          + encode(LoadTestData.READ_EMAILS_SUMMARY)
+          + "&subjectLinePhrases="
+          + encode(LoadTestData.ACTIONABLE_PHRASE)
+          + "&unreadOnly=true&actionableNDays=7";
+  // Requests of the traffic mix, each listed as often as it is sent: most requests load the whole
+  // dashboard, and the rest refresh one of its panels
+  private static final List<Endpoint> TRAFFIC_MIX =
+      ImmutableList.of(
+          new Endpoint("/dashboard", DASHBOARD_QUERY),
+          new Endpoint("/dashboard", DASHBOARD_QUERY),
+          new Endpoint("/dashboard", DASHBOARD_QUERY),
+          new Endpoint("/dashboard", DASHBOARD_QUERY),
+          new Endpoint("/dashboard", DASHBOARD_QUERY),
+          new Endpoint("/dashboard", DASHBOARD_QUERY),
+          new Endpoint("/dashboard", DASHBOARD_QUERY),
+          new Endpoint("/gmail", "nDays=7&mHours=3"),
+          new Endpoint("/calendar", ""),
+          new Endpoint("/tasks", ""));
+
+  private DashboardLoadTest() {}
+
+  public static void main(String[] args) throws Exception {
+    LoadTestData data =
+        new LoadTestData(
+            Integer.getInteger("loadTest.messages", 200),
+            Integer.getInteger("loadTest.calendars", 3),
+            Integer.getInteger("loadTest.eventsPerCalendar", 20),
+            Integer.getInteger("loadTest.taskLists", 3),
+            Integer.getInteger("loadTest.tasksPerList", 30));
+    FakeGoogleApis apis =
+        new FakeGoogleApis(
+            data,
+            Duration.ofMillis(Long.getLong("loadTest.gmailLatencyMillis", 100)),
+            Duration.ofMillis(Long.getLong("loadTest.calendarLatencyMillis", 50)),
+            Duration.ofMillis(Long.getLong("loadTest.tasksLatencyMillis", 50)),
+            Duration.ofMillis(Long.getLong("loadTest.verifierLatencyMillis", 1)));
+    LoadTestServer server = new LoadTestServer(apis, SERVER_THREADS);
+    server.start();
+    ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+    try {
+      System.out.printf(
+          "Serving %d users from %s with %d client threads%n",
+          USERS, server.getBaseUrl(), CONCURRENCY);
+      runPhase(clients, server.getBaseUrl(), WARMUP);
+
+      AllocationMeter allocationMeter = new AllocationMeter();
+      allocationMeter.start();
+      List<ClientResult> results = runPhase(clients, server.getBaseUrl(), DURATION);
+      long allocatedBytes = allocationMeter.stop();
+      report(results, allocatedBytes);
+    } finally {
+      clients.shutdownNow();
+      server.stop();
+    }
+  }
+
+  /** Sends requests from every client thread until the phase is over. */
+  private static List<ClientResult> runPhase(
+      ExecutorService clients, String baseUrl, Duration duration) throws Exception {
+    long deadline = System.nanoTime() + duration.toNanos();
+    List<Future<ClientResult>> futures = new ArrayList<>();
+    for (int client = 0; client < CONCURRENCY; client++) {
+      futures.add(clients.submit(() -> runClient(baseUrl, deadline)));
+    }
+    List<ClientResult> results = new ArrayList<>();
+    for (Future<ClientResult> future : futures) {
+      results.add(future.get());
+    }
+    return results;
+  }
+
+  private static ClientResult runClient(String baseUrl, long deadline) {
+    ClientResult result = new ClientResult();
+    long startAllocatedBytes = AllocationMeter.getCurrentThreadAllocatedBytes();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (System.nanoTime() < deadline) {
+      Endpoint endpoint = TRAFFIC_MIX.get(random.nextInt(TRAFFIC_MIX.size()));
+      String userEmail = "user" + random.nextInt(USERS) + "@example.com";
+      long start = System.nanoTime();
+      boolean succeeded = send(baseUrl, endpoint, userEmail);
+      result.record(endpoint.path, System.nanoTime() - start, succeeded);
+    }
+    result.allocatedBytes = AllocationMeter.getCurrentThreadAllocatedBytes() - startAllocatedBytes;
+    return result;
+  }
+
+  /** Sends a request as the given user, reading the whole response as a browser would. */
+  private static boolean send(String baseUrl, Endpoint endpoint, String userEmail) {
+    try {
+      URL url = new URL(baseUrl + endpoint.getPathAndQuery());
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestProperty(
+          "Cookie",
+          String.format(
+              "idToken=%s; accessToken=%s",
+              FakeGoogleApis.getIdToken(userEmail), FakeGoogleApis.getAccessToken(userEmail)));
+      connection.setRequestProperty("Accept-Encoding", "gzip");
+      int status = connection.getResponseCode();
+      InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      if (body != null) {
+        try (InputStream input = body) {
+          ByteStreams.exhaust(input);
+        }
+      }
+      return status == HttpURLConnection.HTTP_OK;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static void report(List<ClientResult> results, long allocatedBytes) {
+    List<String> paths = new ArrayList<>();
+    for (Endpoint endpoint : TRAFFIC_MIX) {
+      if (!paths.contains(endpoint.path)) {
+        paths.add(endpoint.path);
+      }
+    }
+    double seconds = DURATION.toNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+    System.out.printf(
+        "%-12s %10s %8s %12s %10s %10s%n",
+        "endpoint", "requests", "errors", "requests/s", "p50 ms", "p99 ms");
+    List<Long> allLatencies = new ArrayList<>();
+    long allErrors = 0;
+    long clientAllocatedBytes = 0;
+    for (String path : paths) {
+      List<Long> latencies = new ArrayList<>();
+      long errors = 0;
+      for (ClientResult result : results) {
+        latencies.addAll(result.getLatencies(path));
+        errors += result.getErrors(path);
+      }
+      printRow(path, latencies, errors, seconds);
+      allLatencies.addAll(latencies);
+      allErrors += errors;
+    }
+    printRow("all", allLatencies, allErrors, seconds);
+    for (ClientResult result : results) {
+      clientAllocatedBytes += result.allocatedBytes;
+    }
+    // The load generator runs in the same JVM, so its own allocation is left out
+    long serverAllocatedBytes = Math.max(0, allocatedBytes - clientAllocatedBytes);
+    System.out.printf(
+        "Server allocation: %.1f KB per request%n",
+        allLatencies.isEmpty() ? 0 : serverAllocatedBytes / 1024.0 / allLatencies.size());
+  }
+
+  private static void printRow(String name, List<Long> latencies, long errors, double seconds) {
+    Collections.sort(latencies);
+    System.out.printf(
+        Locale.ROOT,
+        "%-12s %10d %8d %12.1f %10.1f %10.1f%n",
+        name,
+        latencies.size(),
+        errors,
+        latencies.size() / seconds,
+        toMillis(percentile(latencies, 0.5)),
+        toMillis(percentile(latencies, 0.99)));
+  }
+
+  /** Nearest-rank percentile of sorted latencies. */
+  private static long percentile(List<Long> sortedLatencies, double percentile) {
+    if (sortedLatencies.isEmpty()) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile * sortedLatencies.size());
+    return sortedLatencies.get(Math.max(0, rank - 1));
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** A request of the traffic mix. */
+  private static final class Endpoint {
+    private final String path;
+    private final String query;
+
+    Endpoint(String path, String query) {
+      this.path = path;
+      this.query = query;
+    }
+
+    String getPathAndQuery() {
+      return query.isEmpty() ? path : path + "?" + query;
+    }
+  }
+
+  /** Latencies and errors seen by one client thread, which only that thread updates. */
+  private static final class ClientResult {
+    private final Map<String, List<Long>> latencies = new HashMap<>();
+    private final Map<String, Long> errors = new HashMap<>();
+    private long allocatedBytes;
+
+    void record(String path, long latencyNanos, boolean succeeded) {
+      latencies.computeIfAbsent(path, key -> new ArrayList<>()).add(latencyNanos);
+      if (!succeeded) {
+        errors.merge(path, 1L, Long::sum);
+      }
+    }
+
+    List<Long> getLatencies(String path) {
+      return latencies.getOrDefault(path, Collections.emptyList());
+    }
+
+    long getErrors(String path) {
+      return errors.getOrDefault(path, 0L);
+    }
+  }
+}
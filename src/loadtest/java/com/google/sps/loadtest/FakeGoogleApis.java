@@ -0,0 +1,310 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.sps.model.AuthenticationVerifier;
+import com.google.sps.model.CalendarClient;
+import com.google.sps.model.CalendarClientFactory;
+import com.google.sps.model.GmailClient;
+import com.google.sps.model.GmailClientFactory;
+import com.google.sps.model.TasksClient;
+import com.google.sps.model.TasksClientFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * In-process fakes of Gmail, Calendar, Tasks and the ID token verifier, serving the accounts of
+ * LoadTestData. Every call sleeps for the configured latency of its API before answering, and
+ * emails fetched in a given format cost one more round trip for every batch of 100 messages, as
+ * they do with GmailClientImpl. The ID token and access token of a user are derived from their
+ * email address.
+ */
+public final class FakeGoogleApis
+    implements GmailClientFactory, CalendarClientFactory, TasksClientFactory {
+  // The Gmail API allows at most 100 calls in a batch request
+  private static final int GMAIL_BATCH_SIZE = 100;
+  private static final String ID_TOKEN_PREFIX = "id-token:";
+  private static final String ACCESS_TOKEN_PREFIX = "access-token:";
+
+  private final LoadTestData data;
+  private final Duration gmailLatency;
+  private final Duration calendarLatency;
+  private final Duration tasksLatency;
+  private final Duration verifierLatency;
+
+  /**
+   * Create fakes serving the given accounts
+   *
+   * @param data accounts of the load test users
+   * @param gmailLatency latency of every Gmail round trip
+   * @param calendarLatency latency of every Calendar call
+   * @param tasksLatency latency of every Tasks call
+   * @param verifierLatency latency of verifying an ID token
+   */
+  public FakeGoogleApis(
+      LoadTestData data,
+      Duration gmailLatency,
+      Duration calendarLatency,
+      Duration tasksLatency,
+      Duration verifierLatency) {
+    this.data = data;
+    this.gmailLatency = gmailLatency;
+    this.calendarLatency = calendarLatency;
+    this.tasksLatency = tasksLatency;
+    this.verifierLatency = verifierLatency;
+  }
+
+  /**
+   * Get the ID token the fake verifier accepts for a user
+   *
+   * @param userEmail email address of the user
+   * @return value of the idToken cookie
+   */
+  public static String getIdToken(String userEmail) {
+    return ID_TOKEN_PREFIX + userEmail;
+  }
+
+  /**
+   * Get the access token the fake clients serve a user's account for
+   *
+   * @param userEmail email address of the user
+   * @return value of the accessToken cookie
+   */
+  public static String getAccessToken(String userEmail) {
+    return ACCESS_TOKEN_PREFIX + userEmail;
+  }
+
+  /** @return verifier accepting the ID tokens of getIdToken */
+  public AuthenticationVerifier getAuthenticationVerifier() {
+    return idToken -> {
+      sleep(verifierLatency);
+      return idToken.startsWith(ID_TOKEN_PREFIX)
+          ? Optional.of(idToken.substring(ID_TOKEN_PREFIX.length()))
+          : Optional.empty();
+    };
+  }
+
+  @Override
+  public GmailClient getGmailClient(Credential credential) {
+    return new FakeGmailClient(getAccount(credential));
+  }
+
+  @Override
+  public CalendarClient getCalendarClient(Credential credential) {
+    return new FakeCalendarClient(getAccount(credential));
+  }
+
+  @Override
+  public TasksClient getTasksClient(Credential credential) {
+    return new FakeTasksClient(getAccount(credential));
+  }
+
+  private LoadTestData.Account getAccount(Credential credential) {
+    String accessToken = credential.getAccessToken();
+    if (accessToken == null || !accessToken.startsWith(ACCESS_TOKEN_PREFIX)) {
+      throw new IllegalArgumentException("Unknown access token: " + accessToken);
+    }
+    return data.getAccount(accessToken.substring(ACCESS_TOKEN_PREFIX.length()));
+  }
+
+  private static void sleep(Duration latency) throws IOException {
+    if (latency.isZero()) {
+      return;
+    }
+    try {
+      Thread.sleep(latency.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted during fake API call");
+    }
+  }
+
+  private static List<Message> fromLastNDays(List<Message> messages, int nDays) {
+    long minInternalDate = System.currentTimeMillis() - Duration.ofDays(nDays).toMillis();
+    return messages.stream()
+        .filter(message -> message.getInternalDate() >= minInternalDate)
+        .collect(Collectors.toList());
+  }
+
+  /** Fake Gmail client of one account. */
+  private final class FakeGmailClient implements GmailClient {
+    private final LoadTestData.Account account;
+
+    FakeGmailClient(LoadTestData.Account account) {
+      this.account = account;
+    }
+
+    /** Sleeps for the listing of the messages, then for their batches. */
+    private List<Message> fetchInBatches(List<Message> messages) throws IOException {
+      int batches = (messages.size() + GMAIL_BATCH_SIZE - 1) / GMAIL_BATCH_SIZE;
+      sleep(gmailLatency.multipliedBy(1 + batches));
+      return messages;
+    }
+
+    private Message getMessage(List<Message> messages, String messageId) throws IOException {
+      sleep(gmailLatency);
+      return messages.get(Integer.parseInt(messageId, 16));
+    }
+
+    @Override
+    public List<Message> listUserMessages(String query) throws IOException {
+      sleep(gmailLatency);
+      return account.getMetadataMessages().stream()
+          .map(message -> new Message().setId(message.getId()))
+          .collect(Collectors.toList());
+    }
+
+    @Override
+    public Message getUserMessage(String messageId, MessageFormat format) throws IOException {
+      return getMessage(
+          format == MessageFormat.FULL ? account.getFullMessages() : account.getMetadataMessages(),
+          messageId);
+    }
+
+    @Override
+    public Message getUserMessageWithMetadataHeaders(
+        String messageId, List<String> metadataHeaders) throws IOException {
+      return getMessage(account.getMetadataMessages(), messageId);
+    }
+
+    @Override
+    public BigInteger getHistoryId() throws IOException {
+      sleep(gmailLatency);
+      return account.getHistoryId();
+    }
+
+    @Override
+    public List<Message> getUnreadEmailsFromNDays(MessageFormat messageFormat, int nDays)
+        throws IOException {
+      List<Message> messages =
+          messageFormat == MessageFormat.FULL
+              ? account.getFullMessages()
+              : account.getMetadataMessages();
+      return fetchInBatches(fromLastNDays(messages, nDays));
+    }
+
+    @Override
+    public List<Message> getActionableEmails(
+        List<String> subjectLinePhrases,
+        boolean unreadOnly,
+        int nDays,
+        List<String> metadataHeaders)
+        throws IOException {
+      // Every account email is unread, and the subject is the first metadata header
+      List<Message> actionableMessages =
+          fromLastNDays(account.getMetadataMessages(), nDays).stream()
+              .filter(
+                  message -> {
+                    String subject = message.getPayload().getHeaders().get(0).getValue();
+                    return subjectLinePhrases.stream().anyMatch(subject::contains);
+                  })
+              .collect(Collectors.toList());
+      return fetchInBatches(actionableMessages);
+    }
+  }
+
+  /** Fake Calendar client of one account. */
+  private final class FakeCalendarClient implements CalendarClient {
+    private final LoadTestData.Account account;
+
+    FakeCalendarClient(LoadTestData.Account account) {
+      this.account = account;
+    }
+
+    @Override
+    public List<CalendarListEntry> getCalendarList() throws IOException {
+      sleep(calendarLatency);
+      return account.getCalendarList();
+    }
+
+    @Override
+    public List<Event> getCalendarEvents(CalendarListEntry calendarList) throws IOException {
+      sleep(calendarLatency);
+      return account.getEvents(calendarList.getId());
+    }
+
+    @Override
+    public List<Event> getUpcomingEvents(
+        CalendarListEntry calendarList, Date timeMin, Date timeMax) throws IOException {
+      sleep(calendarLatency);
+      return account.getEvents(calendarList.getId()).stream()
+          .filter(
+              event -> {
+                long start = event.getStart().getDateTime().getValue();
+                return start >= timeMin.getTime() && start < timeMax.getTime();
+              })
+          .collect(Collectors.toList());
+    }
+
+    @Override
+    public Date getCurrentTime() throws IOException {
+      sleep(calendarLatency);
+      return new Date();
+    }
+
+    @Override
+    public void createNewEvent(Date start, Date end, String summary, String calendarId)
+        throws IOException {
+      // Accounts are immutable, so created events are not served back
+      sleep(calendarLatency);
+    }
+  }
+
+  /** Fake Tasks client of one account. */
+  private final class FakeTasksClient implements TasksClient {
+    private final LoadTestData.Account account;
+
+    FakeTasksClient(LoadTestData.Account account) {
+      this.account = account;
+    }
+
+    @Override
+    public List<Task> listTasks(TaskList taskList) throws IOException {
+      sleep(tasksLatency);
+      return account.getTasks(taskList.getId());
+    }
+
+    @Override
+    public List<TaskList> listTaskLists() throws IOException {
+      sleep(tasksLatency);
+      return account.getTaskLists();
+    }
+
+    @Override
+    public TaskList postTaskList(String title) throws IOException {
+      // Accounts are immutable, so posted task lists and tasks are not served back
+      sleep(tasksLatency);
+      return new TaskList().setId("posted").setTitle(title);
+    }
+
+    @Override
+    public Task postTask(String parentTaskListId, Task task) throws IOException {
+      sleep(tasksLatency);
+      return task.clone().setId("posted");
+    }
+  }
+}
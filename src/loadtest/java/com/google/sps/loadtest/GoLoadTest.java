@@ -0,0 +1,152 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.common.collect.ImmutableList;
+import com.google.sps.model.DirectionsClientImpl;
+import com.google.sps.model.GeocodingClientImpl;
+import com.google.sps.model.PlacesClientImpl;
+import com.google.sps.model.TasksClient;
+import com.google.sps.model.TasksClientFactory;
+import com.google.sps.servlets.GoServlet;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.mockito.Mockito;
+
+/**
+ * Drives concurrent /go requests through GoServlet against MapsApiStandInServer, using the real
+ * Directions, Places and Geocoding clients, and reports throughput and p50 and p99 latency.
+ * Requests are spread across users, so Maps API quota is shared the way it is in production.
+ *
+ * <p>The load is configured through system properties: goLoadTest.requests,
+ * goLoadTest.concurrency (client threads) and goLoadTest.mapsLatencyMillis, the latency of every
+ * stand-in Maps API endpoint.
+ */
+public final class GoLoadTest {
+  private static final int REQUESTS = Integer.getInteger("goLoadTest.requests", 200);
+  private static final int CONCURRENCY = Integer.getInteger("goLoadTest.concurrency", 8);
+  private static final Duration MAPS_LATENCY =
+      Duration.ofMillis(Long.getLong("goLoadTest.mapsLatencyMillis", 5));
+
+  // The client library rejects API keys which do not look like Google API keys
+  private static final String API_KEY = "AIzaStandInApiKey";
+  private static final String ORIGIN = "Google Kitchener";
+  private static final String DESTINATION = "University of Waterloo";
+
+  private static final TaskList TASK_LIST = new TaskList().setId("taskListId");
+  private static final List<Task> TASKS =
+      ImmutableList.of(
+          new Task().setNotes("Buy groceries [Location: supermarket]"),
+          new Task().setNotes("Dinner [Location: restaurant]"),
+          new Task().setNotes("Pick up produce [Location: Kitchener Market]"));
+
+  private GoLoadTest() {}
+
+  public static void main(String[] args) throws Exception {
+    try (MapsApiStandInServer mapsServer =
+        MapsApiStandInServer.withCannedGeodata()
+            .setLatency(MapsApiStandInServer.DIRECTIONS_PATH, MAPS_LATENCY)
+            .setLatency(MapsApiStandInServer.PLACES_NEARBY_PATH, MAPS_LATENCY)
+            .setLatency(MapsApiStandInServer.GEOCODING_PATH, MAPS_LATENCY)) {
+      mapsServer.start();
+      GoServlet servlet = createServlet(mapsServer.getBaseUrl());
+
+      ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+      try {
+        List<Future<Long>> latencies = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+          String userEmail = String.format("user%d@example.com", i % CONCURRENCY);
+          latencies.add(executor.submit(() -> go(servlet, userEmail)));
+        }
+        List<Long> sortedLatencies = new ArrayList<>();
+        for (Future<Long> latency : latencies) {
+          sortedLatencies.add(latency.get());
+        }
+        long elapsed = System.nanoTime() - start;
+        Collections.sort(sortedLatencies);
+
+        System.out.printf(
+            Locale.ROOT,
+            "/go: %d requests, concurrency %d, %.1f requests/s, p50 %d ms, p99 %d ms%n",
+            REQUESTS,
+            CONCURRENCY,
+            REQUESTS / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)),
+            TimeUnit.NANOSECONDS.toMillis(percentile(sortedLatencies, 0.5)),
+            TimeUnit.NANOSECONDS.toMillis(percentile(sortedLatencies, 0.99)));
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private static GoServlet createServlet(String mapsBaseUrl) throws Exception {
+    TasksClient tasksClient = Mockito.mock(TasksClient.class);
+    TasksClientFactory tasksClientFactory = Mockito.mock(TasksClientFactory.class);
+    Mockito.when(tasksClientFactory.getTasksClient(Mockito.any())).thenReturn(tasksClient);
+    Mockito.when(tasksClient.listTaskLists()).thenReturn(ImmutableList.of(TASK_LIST));
+    Mockito.when(tasksClient.listTasks(TASK_LIST)).thenReturn(TASKS);
+
+    return new GoServlet(
+        new DirectionsClientImpl.Factory(mapsBaseUrl),
+        new PlacesClientImpl.Factory(mapsBaseUrl),
+        tasksClientFactory,
+        new GeocodingClientImpl.Factory(mapsBaseUrl),
+        API_KEY);
+  }
+
+  /**
+   * Sends one /go request as the given user
+   *
+   * @return latency of the request in nanoseconds
+   * @throws IllegalStateException if the servlet wrote no route
+   */
+  private static long go(GoServlet servlet, String userEmail) throws Exception {
+    StringWriter stringWriter = new StringWriter();
+    HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+    HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+    Mockito.when(request.getParameter("origin")).thenReturn(ORIGIN);
+    Mockito.when(request.getParameter("destination")).thenReturn(DESTINATION);
+    Mockito.when(response.getWriter()).thenReturn(new PrintWriter(stringWriter));
+
+    long start = System.nanoTime();
+    servlet.doGet(request, response, Mockito.mock(Credential.class), userEmail);
+    long latency = System.nanoTime() - start;
+    if (stringWriter.toString().isEmpty()) {
+      throw new IllegalStateException("No route was written for " + userEmail);
+    }
+    return latency;
+  }
+
+  /** Nearest-rank percentile of sorted latencies. */
+  private static long percentile(List<Long> sortedLatencies, double percentile) {
+    int rank = (int) Math.ceil(percentile * sortedLatencies.size());
+    return sortedLatencies.get(Math.max(0, rank - 1));
+  }
+}
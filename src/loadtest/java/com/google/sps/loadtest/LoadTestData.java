@@ -0,0 +1,282 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Synthetic Google accounts of the load test users, generated on first use from a seed derived
+ * from the user's email so every run serves the same data. Each account holds unread emails from
+ * the last week, some of them actionable, events over the next days across several calendars, some
+ * of them spent reading emails, and task lists with open, due and completed tasks.
+ */
+public final class LoadTestData {
+  /** Phrase in the subject line of actionable emails. */
+  public static final String ACTIONABLE_PHRASE = "Action required";
+  /** Summary of the events the Plan Mail panel schedules for reading emails. */
+  public static final String READ_EMAILS_SUMMARY = "Read emails";
+
+  private static final Duration MAILBOX_AGE = Duration.ofDays(7);
+  private static final Duration CALENDAR_SPAN = Duration.ofDays(5);
+  private static final int SENDERS = 50;
+  private static final int BODY_WORDS = 120;
+  private static final String[] WORDS = {
+    "meeting", "project", "review", "update", "schedule", "please", "thanks", "team", "report",
+    "deadline", "draft", "feedback", "launch", "budget", "notes"
+  };
+
+  private final int messages;
+  private final int calendars;
+  private final int eventsPerCalendar;
+  private final int taskLists;
+  private final int tasksPerList;
+  private final Instant now = Instant.now();
+  private final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
+
+  /**
+   * Create the data of every load test account
+   *
+   * @param messages unread emails of each account
+   * @param calendars calendars of each account
+   * @param eventsPerCalendar upcoming events in each calendar
+   * @param taskLists task lists of each account
+   * @param tasksPerList tasks in each task list
+   */
+  public LoadTestData(
+      int messages, int calendars, int eventsPerCalendar, int taskLists, int tasksPerList) {
+    this.messages = messages;
+    this.calendars = calendars;
+    this.eventsPerCalendar = eventsPerCalendar;
+    this.taskLists = taskLists;
+    this.tasksPerList = tasksPerList;
+  }
+
+  /**
+   * Get the account of a user, generating it on first use
+   *
+   * @param userEmail email address of the user
+   * @return the user's account
+   */
+  public Account getAccount(String userEmail) {
+    return accounts.computeIfAbsent(userEmail, this::createAccount);
+  }
+
+  private Account createAccount(String userEmail) {
+    Random random = new Random(userEmail.hashCode());
+    Account account = new Account();
+    account.historyId = BigInteger.valueOf(random.nextInt(Integer.MAX_VALUE));
+    createMessages(account, userEmail, random);
+    createEvents(account, random);
+    createTasks(account, random);
+    return account;
+  }
+
+  private void createMessages(Account account, String userEmail, Random random) {
+    ImmutableList.Builder<Message> fullMessages = ImmutableList.builder();
+    ImmutableList.Builder<Message> metadataMessages = ImmutableList.builder();
+    for (int i = 0; i < messages; i++) {
+      // Squaring skews the choice towards the first senders
+      double skew = random.nextDouble();
+      int sender = (int) (skew * skew * SENDERS);
+      MessagePartHeader from =
+          header("From", "Sender " + sender + " <sender" + sender + "@example.com>");
+      MessagePartHeader to = header("To", userEmail);
+      String subjectText = random.nextInt(5) == 0 ? ACTIONABLE_PHRASE + ": item " + i : "Re: " + i;
+      MessagePartHeader subject = header("Subject", subjectText);
+      List<String> labelIds = new ArrayList<>(ImmutableList.of("UNREAD", "INBOX"));
+      if (random.nextInt(4) == 0) {
+        labelIds.add("IMPORTANT");
+      }
+      long internalDate =
+          now.toEpochMilli() - (long) (random.nextDouble() * MAILBOX_AGE.toMillis());
+      String id = Integer.toHexString(i);
+
+      MessagePart textPart =
+          new MessagePart()
+              .setMimeType("text/plain")
+              .setBody(new MessagePartBody().setData(createBody(random)));
+      MessagePart htmlPart =
+          new MessagePart()
+              .setMimeType("text/html")
+              .setBody(new MessagePartBody().setData(createBody(random)));
+      MessagePart fullPayload =
+          new MessagePart()
+              .setMimeType("multipart/alternative")
+              .setHeaders(
+                  ImmutableList.of(
+                      header("Delivered-To", userEmail),
+                      header("Received", "by 2002:a05:6a10:1234 with SMTP id abc;"),
+                      header("MIME-Version", "1.0"),
+                      header("Date", Instant.ofEpochMilli(internalDate).toString()),
+                      from,
+                      to,
+                      subject))
+              .setParts(ImmutableList.of(textPart, htmlPart));
+      fullMessages.add(
+          new Message()
+              .setId(id)
+              .setInternalDate(internalDate)
+              .setLabelIds(labelIds)
+              .setPayload(fullPayload));
+      metadataMessages.add(
+          new Message()
+              .setId(id)
+              .setInternalDate(internalDate)
+              .setLabelIds(labelIds)
+              .setPayload(new MessagePart().setHeaders(ImmutableList.of(subject, from, to))));
+    }
+    account.fullMessages = fullMessages.build();
+    account.metadataMessages = metadataMessages.build();
+  }
+
+  private static String createBody(Random random) {
+    StringBuilder body = new StringBuilder();
+    for (int word = 0; word < BODY_WORDS; word++) {
+      body.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    return BaseEncoding.base64Url().encode(body.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void createEvents(Account account, Random random) {
+    ImmutableList.Builder<CalendarListEntry> calendarList = ImmutableList.builder();
+    ImmutableMap.Builder<String, List<Event>> eventsByCalendar = ImmutableMap.builder();
+    Instant startOfToday = now.truncatedTo(ChronoUnit.DAYS);
+    long spanMinutes = CALENDAR_SPAN.toMinutes();
+    for (int calendar = 0; calendar < calendars; calendar++) {
+      String calendarId = calendar == 0 ? "primary" : "calendar" + calendar;
+      calendarList.add(new CalendarListEntry().setId(calendarId).setSummary(calendarId));
+      ImmutableList.Builder<Event> events = ImmutableList.builder();
+      for (int i = 0; i < eventsPerCalendar; i++) {
+        // Events start on the quarter hour and last from 15 minutes to 2 hours
+        Instant start =
+            startOfToday.plus(Duration.ofMinutes(random.nextInt((int) spanMinutes / 15) * 15L));
+        Instant end = start.plus(Duration.ofMinutes(15L * (1 + random.nextInt(8))));
+        String summary = random.nextInt(10) == 0 ? READ_EMAILS_SUMMARY : "Meeting " + i;
+        events.add(
+            new Event()
+                .setId(calendarId + "-" + i)
+                .setSummary(summary)
+                .setStart(new EventDateTime().setDateTime(new DateTime(start.toEpochMilli())))
+                .setEnd(new EventDateTime().setDateTime(new DateTime(end.toEpochMilli()))));
+      }
+      eventsByCalendar.put(calendarId, events.build());
+    }
+    account.calendarList = calendarList.build();
+    account.eventsByCalendar = eventsByCalendar.build();
+  }
+
+  private void createTasks(Account account, Random random) {
+    ImmutableList.Builder<TaskList> allTaskLists = ImmutableList.builder();
+    ImmutableMap.Builder<String, List<Task>> tasksByList = ImmutableMap.builder();
+    LocalDate today = now.atZone(ZoneOffset.UTC).toLocalDate();
+    for (int list = 0; list < taskLists; list++) {
+      String taskListId = "taskList" + list;
+      allTaskLists.add(
+          new TaskList()
+              .setId(taskListId)
+              .setTitle("Task list " + list)
+              .setUpdated(now.toString()));
+      ImmutableList.Builder<Task> tasks = ImmutableList.builder();
+      for (int i = 0; i < tasksPerList; i++) {
+        Task task = new Task().setId(taskListId + "-" + i).setTitle("Task " + i);
+        // Due dates range from a few days overdue to next week
+        if (random.nextInt(3) != 0) {
+          LocalDate due = today.plusDays(random.nextInt(10) - 3);
+          task.setDue(due + "T00:00:00.000Z");
+        }
+        if (random.nextInt(4) == 0) {
+          task.setStatus("completed").setHidden(true);
+          task.setUpdated(now.minus(Duration.ofHours(random.nextInt(48))).toString());
+        } else {
+          task.setStatus("needsAction").setUpdated(now.toString());
+        }
+        tasks.add(task);
+      }
+      tasksByList.put(taskListId, tasks.build());
+    }
+    account.taskLists = allTaskLists.build();
+    account.tasksByList = tasksByList.build();
+  }
+
+  private static MessagePartHeader header(String name, String value) {
+    return new MessagePartHeader().setName(name).setValue(value);
+  }
+
+  /** Data of one user's Google account. Immutable once generated. */
+  public static final class Account {
+    private BigInteger historyId;
+    private List<Message> fullMessages;
+    private List<Message> metadataMessages;
+    private List<CalendarListEntry> calendarList;
+    private Map<String, List<Event>> eventsByCalendar;
+    private List<TaskList> taskLists;
+    private Map<String, List<Task>> tasksByList;
+
+    public BigInteger getHistoryId() {
+      return historyId;
+    }
+
+    /** @return every unread email, with the headers and body of the FULL format */
+    public List<Message> getFullMessages() {
+      return fullMessages;
+    }
+
+    /** @return every unread email, with only the Subject, From and To headers */
+    public List<Message> getMetadataMessages() {
+      return metadataMessages;
+    }
+
+    public List<CalendarListEntry> getCalendarList() {
+      return calendarList;
+    }
+
+    public List<Event> getEvents(String calendarId) {
+      return eventsByCalendar.getOrDefault(calendarId, ImmutableList.of());
+    }
+
+    public List<TaskList> getTaskLists() {
+      return taskLists;
+    }
+
+    public List<Task> getTasks(String taskListId) {
+      return tasksByList.getOrDefault(taskListId, ImmutableList.of());
+    }
+  }
+}
@@ -0,0 +1,125 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.common.base.Ticker;
+import com.google.sps.filters.CompressionFilter;
+import com.google.sps.model.ActionableMessageHelperImpl;
+import com.google.sps.model.ApiMetrics;
+import com.google.sps.model.AuthenticationVerifier;
+import com.google.sps.model.GmailResponseHelperImpl;
+import com.google.sps.model.InstrumentedCalendarClient;
+import com.google.sps.model.InstrumentedGmailClient;
+import com.google.sps.model.InstrumentedTasksClient;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.servlets.CalendarServlet;
+import com.google.sps.servlets.DashboardServlet;
+import com.google.sps.servlets.GmailServlet;
+import com.google.sps.servlets.TasksServlet;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.EnumSet;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Serves the dashboard servlets from an embedded Jetty on a free local port, wired to the fakes of
+ * FakeGoogleApis instead of Google's APIs. The fakes only replace the clients' calls: clients are
+ * instrumented and pooled by PooledGoogleClientFactory, and responses are compressed by
+ * CompressionFilter, as they are on App Engine.
+ */
+final class LoadTestServer {
+  private final Server server;
+  private final ServerConnector connector;
+
+  /**
+   * Create a server, which is not started yet
+   *
+   * @param apis fakes the servlets call instead of Google's APIs
+   * @param threads maximum number of threads serving requests
+   */
+  LoadTestServer(FakeGoogleApis apis, int threads) {
+    server = new Server(new QueuedThreadPool(threads));
+    connector = new ServerConnector(server);
+    connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+    connector.setPort(0);
+    server.addConnector(connector);
+
+    AuthenticationVerifier verifier = apis.getAuthenticationVerifier();
+    // Configured as the default PooledGoogleClientFactory, with the fakes in place of the clients
+    PooledGoogleClientFactory clients =
+        new PooledGoogleClientFactory(
+            new InstrumentedGmailClient.Factory(apis, ApiMetrics.getDefault()),
+            new InstrumentedCalendarClient.Factory(apis, ApiMetrics.getDefault()),
+            new InstrumentedTasksClient.Factory(apis, ApiMetrics.getDefault()),
+            Duration.ofHours(1),
+            1000,
+            Ticker.systemTicker());
+    ServletContextHandler context = new ServletContextHandler();
+    addServlet(
+        context,
+        "/dashboard",
+        new DashboardServlet(
+            verifier,
+            clients,
+            clients,
+            clients,
+            new GmailResponseHelperImpl(),
+            new ActionableMessageHelperImpl()));
+    addServlet(
+        context, "/gmail", new GmailServlet(verifier, clients, new GmailResponseHelperImpl()));
+    addServlet(context, "/calendar", new CalendarServlet(verifier, clients));
+    addServlet(context, "/tasks", new TasksServlet(verifier, clients));
+    server.setHandler(context);
+  }
+
+  private static void addServlet(ServletContextHandler context, String path, HttpServlet servlet) {
+    ServletHolder servletHolder = new ServletHolder(servlet);
+    servletHolder.setAsyncSupported(true);
+    context.addServlet(servletHolder, path);
+    FilterHolder filterHolder = new FilterHolder(new CompressionFilter());
+    filterHolder.setAsyncSupported(true);
+    context.addFilter(filterHolder, path, EnumSet.of(DispatcherType.REQUEST));
+  }
+
+  /**
+   * Starts serving requests
+   *
+   * @throws Exception if the server cannot start
+   */
+  void start() throws Exception {
+    server.start();
+  }
+
+  /**
+   * Stops serving requests
+   *
+   * @throws Exception if the server cannot stop
+   */
+  void stop() throws Exception {
+    server.stop();
+  }
+
+  /** @return the base URL of the started server, e.g. http://127.0.0.1:8080 */
+  String getBaseUrl() {
+    return String.format("http://%s:%d", connector.getHost(), connector.getLocalPort());
+  }
+}
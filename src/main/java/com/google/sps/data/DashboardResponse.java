@@ -0,0 +1,73 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.sps.model.ActionableMessage;
+import com.google.sps.model.GmailResponse;
+import com.google.sps.model.TasksResponse;
+import java.util.List;
+
+/** Class containing the information of every dashboard panel, to be converted to Json. */
+public final class DashboardResponse {
+
+  private final TasksResponse tasks;
+  private final GmailResponse gmail;
+  private final CalendarSummaryResponse calendar;
+  private final PlanMailResponse planMail;
+  private final List<ActionableMessage> actionableEmails;
+
+  /**
+   * Initialize the class with the response of each panel.
+   *
+   * @param tasks the response of the Tasks panel
+   * @param gmail the response of the Gmail panel
+   * @param calendar the response of the Calendar panel
+   * @param planMail the response of the Plan Mail panel
+   * @param actionableEmails the actionable emails of the Assign panel, or null if they were not
+   *     requested
+   */
+  public DashboardResponse(
+      TasksResponse tasks,
+      GmailResponse gmail,
+      CalendarSummaryResponse calendar,
+      PlanMailResponse planMail,
+      List<ActionableMessage> actionableEmails) {
+    this.tasks = tasks;
+    this.gmail = gmail;
+    this.calendar = calendar;
+    this.planMail = planMail;
+    this.actionableEmails = actionableEmails;
+  }
+
+  public TasksResponse getTasks() {
+    return tasks;
+  }
+
+  public GmailResponse getGmail() {
+    return gmail;
+  }
+
+  public CalendarSummaryResponse getCalendar() {
+    return calendar;
+  }
+
+  public PlanMailResponse getPlanMail() {
+    return planMail;
+  }
+
+  public List<ActionableMessage> getActionableEmails() {
+    return actionableEmails;
+  }
+}
@@ -0,0 +1,59 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.api.services.tasks.model.Task;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Class containing the tagged attributes found in the notes of a task, such as the location in
+ * [Location: Google Kitchener].
+ */
+public final class TaskAttributes {
+
+  private final Task task;
+  private final Map<String, String> attributes;
+
+  /**
+   * Initialize the class with all the parameters required.
+   *
+   * @param task The task the attributes were found in.
+   * @param attributes The value of each tag found in the notes of the task, keyed by its prefix.
+   */
+  public TaskAttributes(Task task, Map<String, String> attributes) {
+    this.task = task;
+    this.attributes = attributes;
+  }
+
+  public Task getTask() {
+    return task;
+  }
+
+  public Map<String, String> getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * Gets the value tagged with a prefix.
+   *
+   * @param prefix The prefix of the tag (e.g. Location if looking for [Location: ]).
+   * @return An optional containing the value of the first tag with the prefix, or an empty optional
+   *     if the notes of the task have no such tag.
+   */
+  public Optional<String> getAttribute(String prefix) {
+    return Optional.ofNullable(attributes.get(prefix));
+  }
+}
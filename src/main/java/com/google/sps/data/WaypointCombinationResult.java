@@ -0,0 +1,72 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+/** Class containing the outcome of searching waypoint combinations for the shortest route. */
+public final class WaypointCombinationResult {
+
+  private final List<String> optimalWaypoints;
+  private final OptionalLong travelTime;
+  private final long evaluatedCombinations;
+  private final long prunedCombinations;
+  private final boolean deadlineExceeded;
+
+  /**
+   * Initialize the class with all the parameters required.
+   *
+   * @param optimalWaypoints The waypoints of the route with the shortest travel time found.
+   * @param travelTime The travel time of that route in seconds, empty if no route was found.
+   * @param evaluatedCombinations Number of combinations sent to the Directions API.
+   * @param prunedCombinations Number of combinations discarded by their lower bound without
+   *     calling the Directions API.
+   * @param deadlineExceeded Whether the search stopped at its deadline before every combination
+   *     was scored.
+   */
+  public WaypointCombinationResult(
+      List<String> optimalWaypoints,
+      OptionalLong travelTime,
+      long evaluatedCombinations,
+      long prunedCombinations,
+      boolean deadlineExceeded) {
+    this.optimalWaypoints = optimalWaypoints;
+    this.travelTime = travelTime;
+    this.evaluatedCombinations = evaluatedCombinations;
+    this.prunedCombinations = prunedCombinations;
+    this.deadlineExceeded = deadlineExceeded;
+  }
+
+  public List<String> getOptimalWaypoints() {
+    return optimalWaypoints;
+  }
+
+  public OptionalLong getTravelTime() {
+    return travelTime;
+  }
+
+  public long getEvaluatedCombinations() {
+    return evaluatedCombinations;
+  }
+
+  public long getPrunedCombinations() {
+    return prunedCombinations;
+  }
+
+  public boolean isDeadlineExceeded() {
+    return deadlineExceeded;
+  }
+}
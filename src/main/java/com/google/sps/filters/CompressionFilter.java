@@ -0,0 +1,567 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.sps.utility.ETagUtility;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Compresses the responses of the JSON endpoints with gzip or deflate, as negotiated through the
+ * Accept-Encoding header. Responses are compressed as they are written. Responses smaller than the
+ * size threshold are sent uncompressed, unless the servlet flushes them early, since a flushing
+ * servlet streams a response which is expected to grow. Responses written with a WriteListener are
+ * sent uncompressed. The bytes saved by compression are recorded across every response.
+ */
+@WebFilter(
+    urlPatterns = {
+      "/calendar",
+      "/dashboard",
+      "/gmail",
+      "/gmail-actionable-emails",
+      "/go",
+      "/plan-mail",
+      "/taskLists",
+      "/tasks"
+    },
+    asyncSupported = true)
+public class CompressionFilter implements Filter {
+  private static final Logger logger = Logger.getLogger(CompressionFilter.class.getName());
+
+  static final String GZIP = "gzip";
+  static final String DEFLATE = "deflate";
+
+  // Below about one packet, compression saves little and costs a round of CPU work on each side
+  private static final int DEFAULT_MIN_COMPRESS_SIZE = 1024;
+
+  private static final AtomicLong compressedResponses = new AtomicLong();
+  private static final AtomicLong uncompressedBytes = new AtomicLong();
+  private static final AtomicLong compressedBytes = new AtomicLong();
+
+  private final int minCompressSize;
+
+  /** Create filter compressing responses of at least the default size threshold */
+  public CompressionFilter() {
+    this(DEFAULT_MIN_COMPRESS_SIZE);
+  }
+
+  /**
+   * Create filter with an explicit size threshold
+   *
+   * @param minCompressSize size in bytes from which responses are compressed
+   */
+  public CompressionFilter(int minCompressSize) {
+    this.minCompressSize = minCompressSize;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) {}
+
+  @Override
+  public void destroy() {}
+
+  /**
+   * Compresses the response if the client accepts gzip or deflate. Asynchronous responses are
+   * finished when their AsyncContext completes.
+   *
+   * @param request request from the client
+   * @param response response to be sent to the client
+   * @param chain the rest of the filter chain, ending with the servlet
+   * @throws IOException if a read/write issue arises while processing the request
+   * @throws ServletException if the request cannot be handled due to unexpected errors
+   */
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    if (!(request instanceof HttpServletRequest && response instanceof HttpServletResponse)) {
+      chain.doFilter(request, response);
+      return;
+    }
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    HttpServletResponse httpResponse = (HttpServletResponse) response;
+    // The response differs with Accept-Encoding whether or not this client accepts compression
+    httpResponse.addHeader("Vary", "Accept-Encoding");
+    Optional<String> encoding = negotiateEncoding(httpRequest.getHeader("Accept-Encoding"));
+    if (!encoding.isPresent() || "HEAD".equals(httpRequest.getMethod())) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    CompressingResponse compressingResponse =
+        new CompressingResponse(httpResponse, encoding.get(), minCompressSize);
+    CompletingRequest completingRequest = new CompletingRequest(httpRequest, compressingResponse);
+    chain.doFilter(completingRequest, compressingResponse);
+    if (!completingRequest.isAsyncStarted()) {
+      compressingResponse.finish();
+    }
+  }
+
+  /**
+   * Chooses the content coding of a response from the Accept-Encoding header of the request. gzip
+   * is preferred over deflate when both are accepted with the same quality.
+   *
+   * @param acceptEncoding value of the Accept-Encoding header, or null if absent
+   * @return An optional containing gzip or deflate, or an empty optional if the response should not
+   *     be compressed.
+   */
+  static Optional<String> negotiateEncoding(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return Optional.empty();
+    }
+    double gzipQuality = -1;
+    double deflateQuality = -1;
+    double wildcardQuality = -1;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.split(";");
+      String name = parameters[0].trim().toLowerCase();
+      double quality = 1;
+      for (int i = 1; i < parameters.length; i++) {
+        String parameter = parameters[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            quality = Double.parseDouble(parameter.substring(2));
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      if (name.equals(GZIP) || name.equals("x-gzip")) {
+        gzipQuality = Math.max(gzipQuality, quality);
+      } else if (name.equals(DEFLATE)) {
+        deflateQuality = Math.max(deflateQuality, quality);
+      } else if (name.equals("*")) {
+        wildcardQuality = quality;
+      }
+    }
+    // Codings which are not listed take the quality of the wildcard
+    gzipQuality = gzipQuality < 0 ? wildcardQuality : gzipQuality;
+    deflateQuality = deflateQuality < 0 ? wildcardQuality : deflateQuality;
+    if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+      return Optional.of(GZIP);
+    }
+    if (deflateQuality > 0) {
+      return Optional.of(DEFLATE);
+    }
+    return Optional.empty();
+  }
+
+  /** @return The number of responses which were sent compressed. */
+  public static long getCompressedResponses() {
+    return compressedResponses.get();
+  }
+
+  /** @return The total size in bytes of compressed responses before compression. */
+  public static long getUncompressedBytes() {
+    return uncompressedBytes.get();
+  }
+
+  /** @return The total size in bytes of compressed responses after compression. */
+  public static long getCompressedBytes() {
+    return compressedBytes.get();
+  }
+
+  /** @return The number of bytes compression kept off the network. */
+  public static long getBytesSaved() {
+    return uncompressedBytes.get() - compressedBytes.get();
+  }
+
+  /**
+   * Response whose body is compressed once it reaches the size threshold or is flushed. Smaller
+   * bodies are held back and sent uncompressed when the response is finished.
+   */
+  private static final class CompressingResponse extends HttpServletResponseWrapper {
+    private final HttpServletResponse response;
+    private final String encoding;
+    private final int minCompressSize;
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private CompressingOutputStream outputStream;
+    private PrintWriter writer;
+    // Body stream once compression is decided: the compressor, or the response stream itself
+    private OutputStream body;
+    private CountingOutputStream compressedBody;
+    // Response stream written without blocking, once the servlet registers a WriteListener
+    private ServletOutputStream nonBlockingStream;
+    private long bodyBytes;
+    private long contentLength = -1;
+    private boolean finishing;
+    private boolean finished;
+
+    CompressingResponse(HttpServletResponse response, String encoding, int minCompressSize) {
+      super(response);
+      this.response = response;
+      this.encoding = encoding;
+      this.minCompressSize = minCompressSize;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (writer != null) {
+        throw new IllegalStateException("getWriter() has already been called");
+      }
+      if (outputStream == null) {
+        outputStream = new CompressingOutputStream();
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        if (outputStream != null) {
+          throw new IllegalStateException("getOutputStream() has already been called");
+        }
+        outputStream = new CompressingOutputStream();
+        writer =
+            new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()), false);
+      }
+      return writer;
+    }
+
+    // The length of the body is only known once it is decided whether to compress it
+    @Override
+    public void setContentLength(int length) {
+      contentLength = length;
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+      contentLength = length;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      } else if (outputStream != null) {
+        outputStream.flush();
+      }
+      super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+      super.resetBuffer();
+      pendingBytes.reset();
+    }
+
+    @Override
+    public void reset() {
+      super.reset();
+      pendingBytes.reset();
+      contentLength = -1;
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+      if (finished) {
+        throw new IOException("Response is already finished");
+      }
+      if (body == null && pendingBytes.size() + length >= minCompressSize) {
+        startBody(true);
+      }
+      if (body == null) {
+        pendingBytes.write(bytes, offset, length);
+      } else {
+        body.write(bytes, offset, length);
+        bodyBytes += length;
+      }
+    }
+
+    private void flush() throws IOException {
+      if (finished) {
+        return;
+      }
+      if (body == null) {
+        if (finishing) {
+          // Flushing the writer while finishing does not make a small body worth compressing
+          return;
+        }
+        startBody(true);
+      }
+      body.flush();
+    }
+
+    /**
+     * Decides how the body is sent, and sends the bytes held back so far.
+     *
+     * @param compress whether the body should be compressed, if the response still allows it
+     */
+    private void startBody(boolean compress) throws IOException {
+      OutputStream responseStream = response.getOutputStream();
+      if (compress && !response.isCommitted() && !response.containsHeader("Content-Encoding")) {
+        response.setHeader("Content-Encoding", encoding);
+        String eTag = response.getHeader("ETag");
+        if (eTag != null) {
+          response.setHeader("ETag", ETagUtility.encodedETag(eTag, encoding));
+        }
+        compressedBody = new CountingOutputStream(responseStream);
+        body =
+            encoding.equals(GZIP)
+                ? new GZIPOutputStream(compressedBody, true)
+                : new DeflaterOutputStream(compressedBody, true);
+      } else {
+        if (contentLength >= 0) {
+          response.setContentLengthLong(contentLength);
+        }
+        body = responseStream;
+      }
+      bodyBytes = pendingBytes.size();
+      pendingBytes.writeTo(body);
+      pendingBytes.reset();
+    }
+
+    /**
+     * Sends the body uncompressed and without blocking. Compression would turn a single write of
+     * the servlet into any number of writes to the client, which a non-blocking write cannot allow.
+     *
+     * @param writeListener listener notified once the response stream can be written to
+     */
+    private void setWriteListener(WriteListener writeListener) {
+      if (compressedBody != null) {
+        throw new IllegalStateException("The body is already compressed with blocking writes");
+      }
+      try {
+        if (body == null) {
+          // The bytes held back so far are sent while writes still block
+          startBody(false);
+        }
+        nonBlockingStream = response.getOutputStream();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      nonBlockingStream.setWriteListener(writeListener);
+    }
+
+    private boolean isReady() {
+      return nonBlockingStream == null || nonBlockingStream.isReady();
+    }
+
+    /** Sends the rest of the body and records the bytes saved. Later writes fail. */
+    void finish() throws IOException {
+      if (finished) {
+        return;
+      }
+      finishing = true;
+      if (writer != null) {
+        writer.flush();
+      }
+      if (body == null) {
+        if (outputStream == null) {
+          // Nothing was written, e.g. the servlet sent an error
+          finished = true;
+          if (contentLength >= 0) {
+            response.setContentLengthLong(contentLength);
+          }
+          return;
+        }
+        response.setContentLengthLong(pendingBytes.size());
+        startBody(false);
+      }
+      finished = true;
+      if (compressedBody == null) {
+        body.flush();
+        return;
+      }
+      // Writes the compression trailer without closing the response stream
+      ((DeflaterOutputStream) body).finish();
+      body.flush();
+      compressedResponses.incrementAndGet();
+      uncompressedBytes.addAndGet(bodyBytes);
+      compressedBytes.addAndGet(compressedBody.getCount());
+      logger.fine(
+          String.format(
+              "Compressed %d bytes to %d bytes with %s",
+              bodyBytes, compressedBody.getCount(), encoding));
+    }
+
+    /** Output stream of the servlet, passing every write through the response. */
+    private final class CompressingOutputStream extends ServletOutputStream {
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException {
+        CompressingResponse.this.write(bytes, offset, length);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        CompressingResponse.this.flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        finish();
+      }
+
+      @Override
+      public boolean isReady() {
+        return CompressingResponse.this.isReady();
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        CompressingResponse.this.setWriteListener(writeListener);
+      }
+    }
+  }
+
+  /**
+   * Request whose AsyncContext finishes the compressed response before completing the request, so
+   * asynchronous servlets are compressed as well.
+   */
+  private static final class CompletingRequest extends HttpServletRequestWrapper {
+    private final CompressingResponse compressingResponse;
+    private CompletingAsyncContext asyncContext;
+
+    CompletingRequest(HttpServletRequest request, CompressingResponse compressingResponse) {
+      super(request);
+      this.compressingResponse = compressingResponse;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+      asyncContext = new CompletingAsyncContext(super.startAsync(), compressingResponse);
+      return asyncContext;
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+      asyncContext =
+          new CompletingAsyncContext(super.startAsync(request, response), compressingResponse);
+      return asyncContext;
+    }
+
+    // Returns the context of the last startAsync call rather than a new wrapper on every call
+    @Override
+    public AsyncContext getAsyncContext() {
+      AsyncContext startedContext = super.getAsyncContext();
+      if (asyncContext == null || asyncContext.asyncContext != startedContext) {
+        asyncContext = new CompletingAsyncContext(startedContext, compressingResponse);
+      }
+      return asyncContext;
+    }
+  }
+
+  /** AsyncContext finishing the compressed response when completed. */
+  private static final class CompletingAsyncContext implements AsyncContext {
+    private final AsyncContext asyncContext;
+    private final CompressingResponse compressingResponse;
+
+    CompletingAsyncContext(AsyncContext asyncContext, CompressingResponse compressingResponse) {
+      this.asyncContext = asyncContext;
+      this.compressingResponse = compressingResponse;
+    }
+
+    @Override
+    public void complete() {
+      try {
+        compressingResponse.finish();
+      } catch (IOException e) {
+        logger.warning("Could not finish compressed response: " + e.getMessage());
+      } finally {
+        asyncContext.complete();
+      }
+    }
+
+    @Override
+    public ServletRequest getRequest() {
+      return asyncContext.getRequest();
+    }
+
+    @Override
+    public ServletResponse getResponse() {
+      return asyncContext.getResponse();
+    }
+
+    @Override
+    public boolean hasOriginalRequestAndResponse() {
+      return asyncContext.hasOriginalRequestAndResponse();
+    }
+
+    @Override
+    public void dispatch() {
+      asyncContext.dispatch();
+    }
+
+    @Override
+    public void dispatch(String path) {
+      asyncContext.dispatch(path);
+    }
+
+    @Override
+    public void dispatch(ServletContext context, String path) {
+      asyncContext.dispatch(context, path);
+    }
+
+    @Override
+    public void start(Runnable run) {
+      asyncContext.start(run);
+    }
+
+    @Override
+    public void addListener(AsyncListener listener) {
+      asyncContext.addListener(listener);
+    }
+
+    @Override
+    public void addListener(
+        AsyncListener listener, ServletRequest servletRequest, ServletResponse servletResponse) {
+      asyncContext.addListener(listener, servletRequest, servletResponse);
+    }
+
+    @Override
+    public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException {
+      return asyncContext.createListener(clazz);
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+      asyncContext.setTimeout(timeout);
+    }
+
+    @Override
+    public long getTimeout() {
+      return asyncContext.getTimeout();
+    }
+  }
+}
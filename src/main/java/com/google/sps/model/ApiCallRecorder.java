@@ -0,0 +1,40 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+/** Records calls to upstream APIs, such as into process wide metrics or the timing of a request */
+public interface ApiCallRecorder {
+  /**
+   * Makes a call to an upstream API and records it.
+   *
+   * @param api name of the called API, e.g. "gmail"
+   * @param method name of the called client method
+   * @param call the call to make
+   * @return the result of the call
+   * @throws E if the call throws
+   */
+  <T, E extends Exception> T record(String api, String method, ApiCall<T, E> call) throws E;
+
+  /**
+   * A call to an upstream API
+   *
+   * @param <T> type of the call's result
+   * @param <E> type of the exception the call may throw
+   */
+  @FunctionalInterface
+  interface ApiCall<T, E extends Exception> {
+    T call() throws E;
+  }
+}
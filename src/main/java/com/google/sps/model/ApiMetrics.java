@@ -0,0 +1,286 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.common.base.Ticker;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the number of calls, errors and a latency histogram for every method of the upstream APIs
+ * this app calls, such as Gmail or the Directions API, and the number of requests clients retried.
+ * The instrumented clients record into the default instance, which the /metrics servlet exports in
+ * the Prometheus text format.
+ */
+public final class ApiMetrics implements ApiCallRecorder {
+  /** Upper bounds of the latency histogram buckets, in seconds */
+  private static final double[] LATENCY_BUCKETS_SECONDS = {
+    0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+  };
+
+  private static final ApiMetrics DEFAULT = new ApiMetrics(Ticker.systemTicker());
+
+  private final Ticker ticker;
+  private final ConcurrentMap<MethodKey, MethodMetrics> methods = new ConcurrentHashMap<>();
+  private final ConcurrentMap<MethodKey, LongAdder> retries = new ConcurrentHashMap<>();
+
+  /**
+   * Create metrics which time calls with the given time source
+   *
+   * @param ticker time source used to measure latency
+   */
+  public ApiMetrics(Ticker ticker) {
+    this.ticker = ticker;
+  }
+
+  /**
+   * Get the metrics every instrumented client records into by default
+   *
+   * @return ApiMetrics shared by the whole process
+   */
+  public static ApiMetrics getDefault() {
+    return DEFAULT;
+  }
+
+  /** Makes a call to an upstream API and records its latency, and whether it threw. */
+  @Override
+  public <T, E extends Exception> T record(String api, String method, ApiCall<T, E> call)
+      throws E {
+    CallTimer timer = startCall(api, method);
+    boolean failed = true;
+    try {
+      T result = call.call();
+      failed = false;
+      return result;
+    } finally {
+      timer.stop(failed);
+    }
+  }
+
+  /**
+   * Starts timing a call to an upstream API, for calls which cannot be wrapped in an ApiCall
+   * because they throw several checked exceptions.
+   *
+   * @param api name of the called API, e.g. "gmail"
+   * @param method name of the called client method
+   * @return timer which records the call once stopped
+   */
+  public CallTimer startCall(String api, String method) {
+    MethodMetrics metrics =
+        methods.computeIfAbsent(new MethodKey(api, method), key -> new MethodMetrics());
+    return new CallTimer(metrics, ticker.read());
+  }
+
+  /**
+   * Get the number of calls made to a method, whether they failed or not
+   *
+   * @param api name of the called API
+   * @param method name of the called client method
+   * @return number of recorded calls
+   */
+  public long getCallCount(String api, String method) {
+    MethodMetrics metrics = methods.get(new MethodKey(api, method));
+    return metrics == null ? 0 : metrics.calls.sum();
+  }
+
+  /**
+   * Get the number of calls made to a method which threw an exception
+   *
+   * @param api name of the called API
+   * @param method name of the called client method
+   * @return number of recorded failed calls
+   */
+  public long getErrorCount(String api, String method) {
+    MethodMetrics metrics = methods.get(new MethodKey(api, method));
+    return metrics == null ? 0 : metrics.errors.sum();
+  }
+
+  /**
+   * Records requests a client sent again after they failed, such as items of a batch request which
+   * were rate limited
+   *
+   * @param api name of the called API, e.g. "gmail"
+   * @param method name of the retried request
+   * @param count number of requests which were sent again
+   */
+  public void recordRetries(String api, String method, long count) {
+    retries.computeIfAbsent(new MethodKey(api, method), key -> new LongAdder()).add(count);
+  }
+
+  /**
+   * Get the number of requests to a method which were retried
+   *
+   * @param api name of the called API
+   * @param method name of the retried request
+   * @return number of recorded retries
+   */
+  public long getRetryCount(String api, String method) {
+    LongAdder count = retries.get(new MethodKey(api, method));
+    return count == null ? 0 : count.sum();
+  }
+
+  /**
+   * Writes the recorded metrics in the Prometheus text exposition format, ordered by API and
+   * method.
+   *
+   * @param writer writer to append the metrics to
+   */
+  public void writePrometheus(PrintWriter writer) {
+    SortedMap<MethodKey, MethodMetrics> sortedMethods = new TreeMap<>(methods);
+
+    writer.println("# HELP upstream_api_calls_total Calls made to upstream APIs.");
+    writer.println("# TYPE upstream_api_calls_total counter");
+    sortedMethods.forEach(
+        (key, metrics) ->
+            writer.printf("upstream_api_calls_total{%s} %d%n", key.labels(), metrics.calls.sum()));
+
+    writer.println("# HELP upstream_api_errors_total Calls to upstream APIs which failed.");
+    writer.println("# TYPE upstream_api_errors_total counter");
+    sortedMethods.forEach(
+        (key, metrics) ->
+            writer.printf(
+                "upstream_api_errors_total{%s} %d%n", key.labels(), metrics.errors.sum()));
+
+    writer.println("# HELP upstream_api_retries_total Retried requests to upstream APIs.");
+    writer.println("# TYPE upstream_api_retries_total counter");
+    new TreeMap<>(retries)
+        .forEach(
+            (key, count) ->
+                writer.printf("upstream_api_retries_total{%s} %d%n", key.labels(), count.sum()));
+
+    writer.println("# HELP upstream_api_latency_seconds Latency of calls to upstream APIs.");
+    writer.println("# TYPE upstream_api_latency_seconds histogram");
+    for (Map.Entry<MethodKey, MethodMetrics> entry : sortedMethods.entrySet()) {
+      String labels = entry.getKey().labels();
+      MethodMetrics metrics = entry.getValue();
+      // Bucket counts are exported cumulatively. They are read one at a time while calls are
+      // recorded, so the total is taken as the last bucket to keep the histogram consistent
+      long cumulativeCount = 0;
+      for (int bucket = 0; bucket < LATENCY_BUCKETS_SECONDS.length; bucket++) {
+        cumulativeCount += metrics.bucketCounts[bucket].sum();
+        writer.printf(
+            "upstream_api_latency_seconds_bucket{%s,le=\"%s\"} %d%n",
+            labels, formatDouble(LATENCY_BUCKETS_SECONDS[bucket]), cumulativeCount);
+      }
+      cumulativeCount += metrics.bucketCounts[LATENCY_BUCKETS_SECONDS.length].sum();
+      writer.printf(
+          "upstream_api_latency_seconds_bucket{%s,le=\"+Inf\"} %d%n", labels, cumulativeCount);
+      writer.printf(
+          "upstream_api_latency_seconds_sum{%s} %s%n",
+          labels, formatDouble(metrics.latencyNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1)));
+      writer.printf("upstream_api_latency_seconds_count{%s} %d%n", labels, cumulativeCount);
+    }
+  }
+
+  private static String formatDouble(double value) {
+    return String.format(Locale.ROOT, "%s", value);
+  }
+
+  /** Measures one call to an upstream API. */
+  public final class CallTimer {
+    private final MethodMetrics metrics;
+    private final long startNanos;
+
+    private CallTimer(MethodMetrics metrics, long startNanos) {
+      this.metrics = metrics;
+      this.startNanos = startNanos;
+    }
+
+    /**
+     * Records the call as finished now
+     *
+     * @param failed whether the call threw an exception
+     */
+    public void stop(boolean failed) {
+      metrics.record(ticker.read() - startNanos, failed);
+    }
+  }
+
+  /** Counters of the calls to one method of an API. */
+  private static final class MethodMetrics {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    // One bucket per upper bound, and a last bucket for calls slower than every bound
+    private final LongAdder[] bucketCounts = new LongAdder[LATENCY_BUCKETS_SECONDS.length + 1];
+
+    MethodMetrics() {
+      for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+        bucketCounts[bucket] = new LongAdder();
+      }
+    }
+
+    void record(long elapsedNanos, boolean failed) {
+      double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+      int bucket = 0;
+      while (bucket < LATENCY_BUCKETS_SECONDS.length
+          && elapsedSeconds > LATENCY_BUCKETS_SECONDS[bucket]) {
+        bucket++;
+      }
+      bucketCounts[bucket].increment();
+      latencyNanos.add(elapsedNanos);
+      calls.increment();
+      if (failed) {
+        errors.increment();
+      }
+    }
+  }
+
+  /** Identifies a method of an API, ordered by API then method. */
+  private static final class MethodKey implements Comparable<MethodKey> {
+    private final String api;
+    private final String method;
+
+    MethodKey(String api, String method) {
+      this.api = api;
+      this.method = method;
+    }
+
+    String labels() {
+      return String.format("api=\"%s\",method=\"%s\"", api, method);
+    }
+
+    @Override
+    public int compareTo(MethodKey other) {
+      int apiComparison = api.compareTo(other.api);
+      return apiComparison != 0 ? apiComparison : method.compareTo(other.method);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof MethodKey)) {
+        return false;
+      }
+      MethodKey key = (MethodKey) other;
+      return api.equals(key.api) && method.equals(key.method);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(api, method);
+    }
+  }
+}
@@ -21,24 +21,58 @@ import com.google.sps.exceptions.CredentialVerificationException;
 import com.google.sps.utility.ServletUtility;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** HttpServlet that enforces the verification of user tokens */
+/**
+ * HttpServlet that enforces the verification of user tokens. Requests are handled synchronously by
+ * overriding doGet / doPost, or asynchronously by overriding doGetAsync / doPostAsync to return a
+ * future. Asynchronous handlers release the container thread while they wait on upstream APIs, as
+ * long as the servlet is declared with asyncSupported = true. The stages of every request are timed
+ * by its RequestTiming and sent to the client in a Server-Timing header.
+ */
 public abstract class AuthenticatedHttpServlet extends HttpServlet {
+  private static final Logger logger = Logger.getLogger(AuthenticatedHttpServlet.class.getName());
+
   // Error message if user is not authenticated
   protected static final String ERROR_403 = "Authentication tokens not present / invalid";
 
   protected static final String ERROR_500 = "Oops! Something unexpected happened";
 
+  /** System property which, when true, logs the timing of every request as a JSON line. */
+  public static final String LOG_TIMING_PROPERTY = "serverTiming.log";
+
+  /**
+   * Longest time a suspended request waits for its handler before a 500 error is sent. Matches
+   * the App Engine request deadline, which bounds the deadlines of the handlers themselves, such as
+   * Gmail retries (30 seconds) and the /go waypoint search (20 seconds).
+   */
+  public static final Duration ASYNC_TIMEOUT = Duration.ofSeconds(60);
+
   private final AuthenticationVerifier authenticationVerifier;
 
-  /** Create AuthenticatedHttpServlet with default implementations of the AuthenticationVerifier */
+  /**
+   * Create AuthenticatedHttpServlet with default implementations of the AuthenticationVerifier,
+   * instrumented with ApiMetrics
+   */
   public AuthenticatedHttpServlet() {
-    authenticationVerifier = new AuthenticationVerifierImpl();
+    authenticationVerifier =
+        new InstrumentedAuthenticationVerifier(
+            new AuthenticationVerifierImpl(), ApiMetrics.getDefault());
   }
 
   /**
@@ -62,19 +96,7 @@ public abstract class AuthenticatedHttpServlet extends HttpServlet {
   @Override
   public final void doGet(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
-    try {
-      if (!hasCredentials(request)) {
-        response.sendError(403, ERROR_403);
-        return;
-      }
-      String userEmail = getUserEmail(request);
-      Credential googleCredential = getGoogleCredential(request);
-      doGet(request, response, googleCredential, userEmail);
-    } catch (CredentialVerificationException e) {
-      throw new ServletException(e.getMessage());
-    } catch (GeneralSecurityException e) {
-      throw new ServletException(ERROR_500);
-    }
+    handle(request, response, this::doGetAsync);
   }
 
   /**
@@ -90,21 +112,92 @@ public abstract class AuthenticatedHttpServlet extends HttpServlet {
   @Override
   public final void doPost(HttpServletRequest request, HttpServletResponse response)
       throws IOException, ServletException {
+    handle(request, response, this::doPostAsync);
+  }
+
+  /**
+   * Verifies user credentials and passes the request to the handler, timing each stage of the
+   * request. The timing is sent in the Server-Timing header of the response.
+   */
+  @SuppressWarnings("try")
+  private void handle(
+      HttpServletRequest request, HttpServletResponse response, AsyncHandler handler)
+      throws IOException, ServletException {
+    RequestTiming timing = RequestTiming.forRequest(request);
+    HttpServletResponse timedResponse = timing.wrap(response);
+    boolean finishesAsynchronously = false;
     try {
-      if (!hasCredentials(request)) {
-        response.sendError(403, ERROR_403);
-        return;
+      String idToken;
+      try (RequestTiming.Stage stage = timing.start(RequestTiming.COOKIES)) {
+        if (!hasCredentials(request)) {
+          timedResponse.sendError(403, ERROR_403);
+          return;
+        }
+        idToken = getIdToken(request);
       }
-      String userEmail = getUserEmail(request);
-      Credential googleCredential = getGoogleCredential(request);
-      doPost(request, response, googleCredential, userEmail);
+      String userEmail;
+      try (RequestTiming.Stage stage = timing.start(RequestTiming.VERIFY)) {
+        userEmail = getUserEmail(idToken);
+      }
+      Credential googleCredential;
+      try (RequestTiming.Stage stage = timing.start(RequestTiming.COOKIES)) {
+        googleCredential = getGoogleCredential(request);
+      }
+      timing.startHandler();
+      finishesAsynchronously =
+          awaitCompletion(
+              request,
+              response,
+              timedResponse,
+              timing,
+              handler.handle(request, timedResponse, googleCredential, userEmail));
     } catch (CredentialVerificationException e) {
       throw new ServletException(e.getMessage(), e);
     } catch (GeneralSecurityException e) {
       throw new ServletException(ERROR_500, e);
+    } finally {
+      if (!finishesAsynchronously) {
+        finishTiming(request, timedResponse, timing);
+      }
+    }
+  }
+
+  /** Ends the timing of a request, and logs it if enabled through the serverTiming.log property. */
+  private static void finishTiming(
+      HttpServletRequest request, HttpServletResponse timedResponse, RequestTiming timing) {
+    timing.finish(timedResponse);
+    if (Boolean.getBoolean(LOG_TIMING_PROPERTY)) {
+      logger.info(timing.toLogLine(request.getRequestURI(), timedResponse.getStatus()));
     }
   }
 
+  /**
+   * Handle GET request asynchronously. Override this method to return a future which completes once
+   * the response is written, instead of blocking the container thread. Exceptions completing the
+   * future are sent to the client as a 500 error. By default the request is handled synchronously
+   * by doGet. Public for testing purposes
+   *
+   * @param request HTTP request from client
+   * @param response Http response to be sent to client
+   * @param googleCredential valid, verified google credential object
+   * @param userEmail the email address of the user
+   * @return a future which completes once the response is written
+   */
+  public CompletionStage<Void> doGetAsync(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Credential googleCredential,
+      String userEmail) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      doGet(request, response, googleCredential, userEmail);
+      future.complete(null);
+    } catch (IOException | ServletException | RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
   /**
    * Handle GET request. Only override this method if the servlet needs access to the user's email
    * Public for testing purposes
@@ -140,6 +233,33 @@ public abstract class AuthenticatedHttpServlet extends HttpServlet {
     response.sendError(400, "GET is not supported");
   }
 
+  /**
+   * Handle POST request asynchronously. Override this method to return a future which completes
+   * once the response is written, instead of blocking the container thread. Exceptions completing
+   * the future are sent to the client as a 500 error. By default the request is handled
+   * synchronously by doPost. Public for testing purposes
+   *
+   * @param request HTTP request from client
+   * @param response Http response to be sent to client
+   * @param googleCredential valid, verified google credential object
+   * @param userEmail the email address of the user
+   * @return a future which completes once the response is written
+   */
+  public CompletionStage<Void> doPostAsync(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Credential googleCredential,
+      String userEmail) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      doPost(request, response, googleCredential, userEmail);
+      future.complete(null);
+    } catch (IOException | ServletException | RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
   /**
    * Handle POST request. Only override this method if the servlet needs access to the user's email
    * Public for testing purposes
@@ -176,26 +296,139 @@ public abstract class AuthenticatedHttpServlet extends HttpServlet {
   }
 
   /**
-   * Get the email of the authenticated user. If the passed idToken is invalid, this will throw an
-   * exception.
+   * Finishes a request once its handler completes. Handlers which already completed, and requests
+   * which cannot be suspended, are finished on the container thread so their exceptions propagate
+   * as they would from a synchronous handler. Otherwise the request is suspended and the container
+   * thread is released until the handler completes, or until ASYNC_TIMEOUT passes. A request which
+   * times out is sent a 500 error, and its handler completing later no longer touches it.
+   *
+   * @param request Http request sent from client
+   * @param response Http response to be sent back to the client
+   * @param timedResponse the response wrapped by the request's timing
+   * @param timing timing of the request, finished once a suspended request completes
+   * @param completion future which completes once the response is written
+   * @return true if the request was suspended and its timing is finished on completion
+   * @throws IOException if the handler failed to read or write the request
+   * @throws ServletException if the handler failed for any other reason
+   */
+  private boolean awaitCompletion(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      HttpServletResponse timedResponse,
+      RequestTiming timing,
+      CompletionStage<Void> completion)
+      throws IOException, ServletException {
+    CompletableFuture<Void> future = completion.toCompletableFuture();
+    if (!future.isDone() && request.isAsyncSupported()) {
+      AsyncContext asyncContext = request.startAsync(request, response);
+      asyncContext.setTimeout(ASYNC_TIMEOUT.toMillis());
+      // Set by whichever finishes the request first: the handler, a timeout or a container error
+      AtomicBoolean finished = new AtomicBoolean();
+      asyncContext.addListener(
+          new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+              if (finished.compareAndSet(false, true)) {
+                logger.warning("Asynchronous request timed out: " + request.getRequestURI());
+                sendAsyncError(timedResponse);
+                finishTiming(request, timedResponse, timing);
+                asyncContext.complete();
+              }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+              if (finished.compareAndSet(false, true)) {
+                logger.log(Level.WARNING, "Asynchronous request failed", event.getThrowable());
+                finishTiming(request, timedResponse, timing);
+              }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {}
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {}
+          });
+      future.whenComplete(
+          (result, error) -> {
+            if (!finished.compareAndSet(false, true)) {
+              return;
+            }
+            try {
+              if (error != null) {
+                logger.log(Level.SEVERE, "Asynchronous request failed", unwrap(error));
+                sendAsyncError(timedResponse);
+              }
+              finishTiming(request, timedResponse, timing);
+            } finally {
+              asyncContext.complete();
+            }
+          });
+      return true;
+    }
+    try {
+      future.join();
+      return false;
+    } catch (CompletionException | CancellationException e) {
+      Throwable cause = unwrap(e);
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof ServletException) {
+        throw (ServletException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ServletException(cause);
+    }
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null
+        ? error.getCause()
+        : error;
+  }
+
+  private static void sendAsyncError(HttpServletResponse response) {
+    if (response.isCommitted()) {
+      return;
+    }
+    try {
+      response.sendError(500, ERROR_500);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not send error to client", e);
+    }
+  }
+
+  /**
+   * Get the idToken from the cookies of the request
    *
    * @param request Http Request sent from client
-   * @return email of authenticated user
-   * @throws CredentialVerificationException if the idToken is invalid / not present
-   * @throws GeneralSecurityException if an issue occurs with Google's verification service
-   * @throws IOException if an issue occurs with Google's verification service
+   * @return the unverified idToken
+   * @throws CredentialVerificationException if the idToken is not present / cannot be parsed
    */
-  private String getUserEmail(HttpServletRequest request)
-      throws CredentialVerificationException, GeneralSecurityException, IOException {
-    Cookie idTokenCookie;
+  private String getIdToken(HttpServletRequest request) throws CredentialVerificationException {
     try {
-      idTokenCookie = ServletUtility.getCookie(request, "idToken");
+      return ServletUtility.getCookie(request, "idToken").getValue();
     } catch (CookieParseException e) {
       throw new CredentialVerificationException("idToken is not present / cannot be parsed!", e);
     }
+  }
 
-    String idToken = idTokenCookie.getValue();
-
+  /**
+   * Get the email of the authenticated user. If the passed idToken is invalid, this will throw an
+   * exception.
+   *
+   * @param idToken idToken from the cookies of the request
+   * @return email of authenticated user
+   * @throws CredentialVerificationException if the idToken is invalid
+   * @throws GeneralSecurityException if an issue occurs with Google's verification service
+   * @throws IOException if an issue occurs with Google's verification service
+   */
+  private String getUserEmail(String idToken)
+      throws CredentialVerificationException, GeneralSecurityException, IOException {
     return authenticationVerifier
         .getUserEmail(idToken)
         .orElseThrow(
@@ -242,4 +475,14 @@ public abstract class AuthenticatedHttpServlet extends HttpServlet {
     return ServletUtility.hasCookie(request, "idToken")
         && ServletUtility.hasCookie(request, "accessToken");
   }
+
+  /** Handles an authenticated request, such as doGetAsync or doPostAsync. */
+  @FunctionalInterface
+  private interface AsyncHandler {
+    CompletionStage<Void> handle(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        Credential googleCredential,
+        String userEmail);
+  }
 }
@@ -22,12 +22,12 @@ import java.util.Optional;
 /** Contract for verifying user with Google Sign in API */
 public interface AuthenticationVerifier {
   /**
-   * Retrieves hidden Client ID from Secret Manager
+   * Retrieves hidden Client ID from Secret Manager. Keys are only read on the first call
    *
    * @return String representing Client ID value defined in Secret Manager
    */
   static String getClientId() throws IOException {
-    return (new KeyProvider()).getKey("clientId");
+    return KeyProvider.getDefault().getKey("clientId");
   }
 
   /**
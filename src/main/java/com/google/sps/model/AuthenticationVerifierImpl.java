@@ -14,35 +14,83 @@
 
 package com.google.sps.model;
 
-import com.google.api.client.extensions.appengine.http.UrlFetchTransport;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.sps.utility.HttpTransportUtility;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.Collections;
+import java.util.Objects;
 import java.util.Optional;
 
-/** Verifies authentication information with Google */
+/**
+ * Verifies authentication information with Google. The token verifier, and the Google public keys
+ * it caches, are kept until the client ID changes.
+ */
 public class AuthenticationVerifierImpl implements AuthenticationVerifier {
+  private final HttpTransportProvider transportProvider;
+  private volatile ClientIdVerifier clientIdVerifier;
+
+  /** Create verifier which fetches Google's certificates through the default transport */
+  public AuthenticationVerifierImpl() {
+    this(HttpTransportUtility.getDefaultProvider());
+  }
+
+  /**
+   * Create verifier which fetches Google's certificates through the given transport
+   *
+   * @param transportProvider provides the transport to send requests through
+   */
+  public AuthenticationVerifierImpl(HttpTransportProvider transportProvider) {
+    this.transportProvider = transportProvider;
+  }
+
   @Override
   public Optional<String> getUserEmail(String idToken)
       throws GeneralSecurityException, IOException {
     // OAuth 2.0 Client ID
     String clientId = AuthenticationVerifier.getClientId();
-    // Build a verifier used to ensure the passed user ID is legitimate
-    HttpTransport transport = UrlFetchTransport.getDefaultInstance();
+    GoogleIdTokenVerifier verifier = getVerifier(clientId);
+
+    // If the userToken is not null, the identity is verified and vice versa
+    GoogleIdToken userToken = verifier.verify(idToken);
+
+    return Optional.ofNullable(userToken).map(t -> t.getPayload().getEmail());
+  }
+
+  /**
+   * Get a verifier used to ensure the passed user ID is legitimate, building a new one only if the
+   * client ID changed since the last call
+   *
+   * @param clientId OAuth 2.0 Client ID tokens must be issued for
+   * @return verifier accepting tokens issued for the client ID
+   */
+  private GoogleIdTokenVerifier getVerifier(String clientId) {
+    ClientIdVerifier current = clientIdVerifier;
+    if (current != null && Objects.equals(current.clientId, clientId)) {
+      return current.verifier;
+    }
+    HttpTransport transport = transportProvider.getTransport();
     JsonFactory factory = JacksonFactory.getDefaultInstance();
     GoogleIdTokenVerifier verifier =
         new GoogleIdTokenVerifier.Builder(transport, factory)
             .setAudience(Collections.singletonList(clientId))
             .build();
+    clientIdVerifier = new ClientIdVerifier(clientId, verifier);
+    return verifier;
+  }
 
-    // If the userToken is not null, the identity is verified and vice versa
-    GoogleIdToken userToken = verifier.verify(idToken);
+  /** A token verifier and the client ID it accepts tokens for. */
+  private static final class ClientIdVerifier {
+    private final String clientId;
+    private final GoogleIdTokenVerifier verifier;
 
-    return Optional.ofNullable(userToken).map(t -> t.getPayload().getEmail());
+    ClientIdVerifier(String clientId, GoogleIdTokenVerifier verifier) {
+      this.clientId = clientId;
+      this.verifier = verifier;
+    }
   }
 }
@@ -0,0 +1,156 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.maps.model.DirectionsResult;
+import com.google.sps.exceptions.DirectionsException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves Directions API results from a cache shared by every client from the same factory, and only
+ * calls the wrapped DirectionsClient on a miss. Requests are keyed by origin, destination and the
+ * sorted waypoints: waypoints are always optimized by the Directions API, so the order they are
+ * given in does not change the result.
+ */
+public class CachedDirectionsClient implements DirectionsClient {
+  private final DirectionsClient directionsClient;
+  private final Cache<DirectionsRequest, DirectionsResult> cache;
+
+  private CachedDirectionsClient(
+      DirectionsClient directionsClient, Cache<DirectionsRequest, DirectionsResult> cache) {
+    this.directionsClient = directionsClient;
+    this.cache = cache;
+  }
+
+  /** Factory to create CachedDirectionsClient instances which share one cache. */
+  public static class Factory implements DirectionsClientFactory {
+    // Long enough to cover repeat /go requests while traffic conditions are roughly unchanged
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+    private static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final DirectionsClientFactory directionsClientFactory;
+    private final Cache<DirectionsRequest, DirectionsResult> cache;
+
+    /**
+     * Create a factory with the default time to live and size.
+     *
+     * @param directionsClientFactory Factory of the clients which are called on a cache miss.
+     */
+    public Factory(DirectionsClientFactory directionsClientFactory) {
+      this(
+          directionsClientFactory,
+          DEFAULT_TIME_TO_LIVE,
+          DEFAULT_MAXIMUM_SIZE,
+          Ticker.systemTicker());
+    }
+
+    /**
+     * Create a factory with an explicit time to live, size and time source.
+     *
+     * @param directionsClientFactory Factory of the clients which are called on a cache miss.
+     * @param timeToLive How long a result is served from the cache after it is fetched.
+     * @param maximumSize Maximum number of results held in the cache.
+     * @param ticker Time source used to expire results.
+     */
+    public Factory(
+        DirectionsClientFactory directionsClientFactory,
+        Duration timeToLive,
+        long maximumSize,
+        Ticker ticker) {
+      this.directionsClientFactory = directionsClientFactory;
+      this.cache =
+          CacheBuilder.newBuilder()
+              .expireAfterWrite(timeToLive.toNanos(), TimeUnit.NANOSECONDS)
+              .maximumSize(maximumSize)
+              .ticker(ticker)
+              .build();
+    }
+
+    @Override
+    public DirectionsClient getDirectionsClient(String apiKey) {
+      return getCachingClient(directionsClientFactory.getDirectionsClient(apiKey));
+    }
+
+    /**
+     * Create a client which shares this factory's cache and calls the given client on a miss, for
+     * wrapping clients which are created per request, such as rate limited clients.
+     *
+     * @param directionsClient Client which is called on a cache miss.
+     * @return Client serving results from the shared cache.
+     */
+    public DirectionsClient getCachingClient(DirectionsClient directionsClient) {
+      return new CachedDirectionsClient(directionsClient, cache);
+    }
+  }
+
+  @Override
+  public DirectionsResult getDirections(String origin, String destination, List<String> waypoints)
+      throws DirectionsException {
+    DirectionsRequest request = new DirectionsRequest(origin, destination, waypoints);
+    try {
+      // Concurrent misses on the same request wait for a single call to the Directions API
+      return cache.get(
+          request, () -> directionsClient.getDirections(origin, destination, waypoints));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof DirectionsException) {
+        throw (DirectionsException) e.getCause();
+      }
+      throw new DirectionsException("Failed to get directions", e.getCause());
+    } catch (UncheckedExecutionException e) {
+      throw new DirectionsException("Failed to get directions", e.getCause());
+    }
+  }
+
+  /** Cache key identifying a Directions API request regardless of waypoint order. */
+  private static final class DirectionsRequest {
+    private final String origin;
+    private final String destination;
+    private final List<String> sortedWaypoints;
+
+    DirectionsRequest(String origin, String destination, List<String> waypoints) {
+      this.origin = origin;
+      this.destination = destination;
+      this.sortedWaypoints = ImmutableList.sortedCopyOf(waypoints);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof DirectionsRequest)) {
+        return false;
+      }
+      DirectionsRequest request = (DirectionsRequest) other;
+      return Objects.equals(origin, request.origin)
+          && Objects.equals(destination, request.destination)
+          && sortedWaypoints.equals(request.sortedWaypoints);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(origin, destination, sortedWaypoints);
+    }
+  }
+}
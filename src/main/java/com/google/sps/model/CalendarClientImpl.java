@@ -15,7 +15,6 @@
 package com.google.sps.model;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.appengine.http.UrlFetchTransport;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
@@ -24,6 +23,7 @@ import com.google.api.services.calendar.Calendar;
 import com.google.api.services.calendar.model.CalendarListEntry;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.EventDateTime;
+import com.google.sps.utility.HttpTransportUtility;
 import com.google.sps.utility.ServletUtility;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -35,8 +35,7 @@ public class CalendarClientImpl implements CalendarClient {
 
   private final Calendar calendarService;
 
-  private CalendarClientImpl(Credential credential) {
-    HttpTransport transport = UrlFetchTransport.getDefaultInstance();
+  private CalendarClientImpl(Credential credential, HttpTransport transport) {
     JsonFactory jsonFactory = JacksonFactory.getDefaultInstance();
     String applicationName = ServletUtility.APPLICATION_NAME;
 
@@ -99,6 +98,22 @@ public class CalendarClientImpl implements CalendarClient {
 
   /** Factory to create a CalendarClientImpl instance with given credential */
   public static class Factory implements CalendarClientFactory {
+    private final HttpTransportProvider transportProvider;
+
+    /** Create factory whose clients share the default Google API transport */
+    public Factory() {
+      this(HttpTransportUtility.getDefaultProvider());
+    }
+
+    /**
+     * Create factory whose clients send requests through the given transport
+     *
+     * @param transportProvider provides the transport shared by every created client
+     */
+    public Factory(HttpTransportProvider transportProvider) {
+      this.transportProvider = transportProvider;
+    }
+
     /**
      * Create a CalendarClientImpl instance
      *
@@ -107,7 +122,7 @@ public class CalendarClientImpl implements CalendarClient {
      */
     @Override
     public CalendarClient getCalendarClient(Credential credential) {
-      return new CalendarClientImpl(credential);
+      return new CalendarClientImpl(credential, transportProvider.getTransport());
     }
   }
 }
@@ -15,29 +15,48 @@
 package com.google.sps.model;
 
 import com.google.maps.DirectionsApi;
-import com.google.maps.DirectionsApiRequest;
 import com.google.maps.GeoApiContext;
 import com.google.maps.errors.ApiException;
 import com.google.maps.model.DirectionsResult;
 import com.google.sps.exceptions.DirectionsException;
+import com.google.sps.utility.GeoApiContextUtility;
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 
 /** Handles GET requests to the Google Directions API */
 public class DirectionsClientImpl implements DirectionsClient {
-  private DirectionsApiRequest directionsService;
+  // Shared context each route request is built from
+  private final GeoApiContext context;
 
-  private DirectionsClientImpl(DirectionsApiRequest service) {
-    directionsService = service;
+  private DirectionsClientImpl(GeoApiContext context) {
+    this.context = context;
   }
 
   /** Factory to create a DirectionsClientImpl instance with given API key */
   public static class Factory implements DirectionsClientFactory {
+    private final Optional<String> baseUrl;
+
+    /**
+     * Create a factory whose clients send requests to maps.googleapis.com, or to the server set in
+     * the maps.api.baseUrl system property.
+     */
+    public Factory() {
+      baseUrl = GeoApiContextUtility.getConfiguredBaseUrl();
+    }
+
+    /**
+     * Create a factory whose clients send requests to the given server, such as a local stand-in.
+     *
+     * @param baseUrl URL (e.g. http://localhost:8089) to send requests to.
+     */
+    public Factory(String baseUrl) {
+      this.baseUrl = Optional.of(baseUrl);
+    }
+
     @Override
     public DirectionsClient getDirectionsClient(String apiKey) {
-      GeoApiContext context = new GeoApiContext.Builder().apiKey(apiKey).build();
-      DirectionsApiRequest service = DirectionsApi.newRequest(context);
-      return new DirectionsClientImpl(service);
+      return new DirectionsClientImpl(GeoApiContextUtility.getContext(apiKey, baseUrl));
     }
   }
 
@@ -46,7 +65,7 @@ public class DirectionsClientImpl implements DirectionsClient {
       throws DirectionsException {
     try {
       DirectionsResult result =
-          directionsService
+          DirectionsApi.newRequest(context)
               .origin(origin)
               .destination(destination)
               .waypoints(waypoints.toArray(new String[0]))
@@ -16,36 +16,59 @@ package com.google.sps.model;
 
 import com.google.maps.GeoApiContext;
 import com.google.maps.GeocodingApi;
-import com.google.maps.GeocodingApiRequest;
 import com.google.maps.errors.ApiException;
 import com.google.maps.model.GeocodingResult;
 import com.google.sps.exceptions.GeocodingException;
+import com.google.sps.utility.GeoApiContextUtility;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 /** Handles GET requests to the Google Geocoding API */
 public class GeocodingClientImpl implements GeocodingClient {
-  private GeocodingApiRequest geocodingService;
+  // Shared context each geocoding request is built from
+  private final GeoApiContext context;
 
-  private GeocodingClientImpl(GeocodingApiRequest service) {
-    geocodingService = service;
+  private GeocodingClientImpl(GeoApiContext context) {
+    this.context = context;
   }
 
   /** Factory to create a GeocodingClientImpl instance with given API key */
   public static class Factory implements GeocodingClientFactory {
+    private final Optional<String> baseUrl;
+
+    /**
+     * Create a factory whose clients send requests to maps.googleapis.com, or to the server set in
+     * the maps.api.baseUrl system property.
+     */
+    public Factory() {
+      baseUrl = GeoApiContextUtility.getConfiguredBaseUrl();
+    }
+
+    /**
+     * Create a factory whose clients send requests to the given server, such as a local stand-in.
+     *
+     * @param baseUrl URL (e.g. http://localhost:8089) to send requests to.
+     */
+    public Factory(String baseUrl) {
+      this.baseUrl = Optional.of(baseUrl);
+    }
+
     @Override
     public GeocodingClient getGeocodingClient(String apiKey) {
-      GeoApiContext context = new GeoApiContext.Builder().apiKey(apiKey).build();
-      GeocodingApiRequest service = GeocodingApi.newRequest(context);
-      return new GeocodingClientImpl(service);
+      return new GeocodingClientImpl(GeoApiContextUtility.getContext(apiKey, baseUrl));
     }
   }
 
   @Override
   public List<GeocodingResult> getGeocodingResult(String address) throws GeocodingException {
     try {
-      GeocodingResult[] response = geocodingService.address(address).await();
+      GeocodingResult[] response = GeocodingApi.newRequest(context).address(address).await();
+      // The client library returns null rather than an empty array for ZERO_RESULTS
+      if (response == null) {
+        throw new GeocodingException("No geocoding results for address");
+      }
       return Arrays.asList(response);
     } catch (ApiException | InterruptedException | IOException e) {
       throw new GeocodingException("Failed to geocode address", e);
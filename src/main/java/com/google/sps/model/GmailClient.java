@@ -16,6 +16,7 @@ package com.google.sps.model;
 
 import com.google.api.services.gmail.model.Message;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
@@ -54,6 +55,15 @@ public interface GmailClient {
   Message getUserMessageWithMetadataHeaders(String messageId, List<String> metadataHeaders)
       throws IOException;
 
+  /**
+   * Gets the current history ID of the user's mailbox. The history ID increases whenever a message
+   * is added to, removed from or relabelled in the mailbox, so it identifies the mailbox's version
+   *
+   * @return the current history ID of the mailbox
+   * @throws IOException if an issue occurs with the Gmail service
+   */
+  BigInteger getHistoryId() throws IOException;
+
   /**
    * Encapsulates possible values for the "format" query parameter in the Gmail GET message method
    */
@@ -15,31 +15,66 @@
 package com.google.sps.model;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.appengine.http.UrlFetchTransport;
 import com.google.api.client.googleapis.batch.BatchRequest;
 import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
 import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.BackOff;
+import com.google.api.client.util.BackOffUtils;
+import com.google.api.client.util.ExponentialBackOff;
+import com.google.api.client.util.Sleeper;
 import com.google.api.services.gmail.Gmail;
 import com.google.api.services.gmail.model.ListMessagesResponse;
 import com.google.api.services.gmail.model.Message;
+import com.google.common.collect.ImmutableSet;
 import com.google.sps.exceptions.GmailException;
+import com.google.sps.utility.HttpTransportUtility;
 import com.google.sps.utility.ServletUtility;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Logger;
 
 /** Handles GET requests from Gmail API */
 public class GmailClientImpl implements GmailClient {
-  private Gmail gmailService;
+  private static final Logger logger = Logger.getLogger(GmailClientImpl.class.getName());
+
   private static final int BATCH_REQUEST_CALL_LIMIT = 100;
 
-  private GmailClientImpl(Credential credential) {
+  // Messages of a listing are requested at most this many times before the listing fails. Delays
+  // between attempts start at half a second and double each time, each randomized by up to 50% so
+  // that requests rate limited together are not retried together
+  private static final int MAX_MESSAGE_ATTEMPTS = 5;
+  private static final int INITIAL_RETRY_DELAY_MILLIS = 500;
+  private static final double RETRY_DELAY_MULTIPLIER = 2;
+  private static final double RETRY_DELAY_RANDOMIZATION = 0.5;
+  private static final int MAX_RETRY_DELAY_MILLIS = 8000;
+  private static final int MAX_RETRY_ELAPSED_MILLIS = 30000;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final ImmutableSet<String> RATE_LIMIT_REASONS =
+      ImmutableSet.of("rateLimitExceeded", "userRateLimitExceeded");
+
+  // Retries are reported under the Gmail API, as a method of their own since they are made by
+  // several client methods
+  private static final String METRICS_API = "gmail";
+  private static final String BATCH_GET_METHOD = "batchGetMessage";
+
+  private final Gmail gmailService;
+  private final Sleeper sleeper;
+  private final ApiMetrics metrics;
+
+  private GmailClientImpl(
+      Credential credential, HttpTransport transport, Sleeper sleeper, ApiMetrics metrics) {
+    this.sleeper = sleeper;
+    this.metrics = metrics;
     JsonFactory jsonFactory = JacksonFactory.getDefaultInstance();
-    HttpTransport transport = UrlFetchTransport.getDefaultInstance();
     String applicationName = ServletUtility.APPLICATION_NAME;
 
     gmailService =
@@ -113,6 +148,11 @@ public class GmailClientImpl implements GmailClient {
     return message;
   }
 
+  @Override
+  public BigInteger getHistoryId() throws IOException {
+    return gmailService.users().getProfile("me").execute().getHistoryId();
+  }
+
   @Override
   public List<Message> getUnreadEmailsFromNDays(GmailClient.MessageFormat messageFormat, int nDays)
       throws IOException {
@@ -154,74 +194,217 @@ public class GmailClientImpl implements GmailClient {
 
   /**
    * Lists out messages, but maps each user message to a specific message format Uses batching,
-   * where there is a limit of 100 calls per batch request.
+   * where there is a limit of 100 calls per batch request. Messages which fail because of rate
+   * limits or server errors are collected and requested again in follow-up batches, after an
+   * exponentially growing and randomized delay, while messages already retrieved are kept.
    *
    * @param messageFormat GmailClient.MessageFormat setting that specifies how much information from
    *     each email to retrieve
    * @param searchQuery search query to filter which results are returned (see:
    *     https://support.google.com/mail/answer/7190?hl=en)
    * @param metadataHeaders list of names of headers (e.g. "From") that should be included
-   * @return list of messages with requested information
+   * @return list of messages with requested information, in the order they were listed
    * @throws IOException if there is an issue with the GmailService
+   * @throws GmailException if a message cannot be retrieved, or still fails after every retry
    */
   private List<Message> listUserMessagesWithFormat(
       String searchQuery, GmailClient.MessageFormat messageFormat, List<String> metadataHeaders)
       throws IOException {
     List<Message> userMessagesWithoutFormat = listUserMessages(searchQuery);
-    List<Message> userMessagesWithFormat = new ArrayList<>();
 
-    // When each message is retrieved, add them to the userMessagesWithFormat list
-    JsonBatchCallback<Message> batchCallback = addToListMessageCallback(userMessagesWithFormat);
+    // Each retrieved message is stored at the position of its ID in the listing, so retried
+    // messages keep their place in the results
+    Message[] userMessagesWithFormat = new Message[userMessagesWithoutFormat.size()];
+    List<Integer> pendingIndices = new ArrayList<>(userMessagesWithoutFormat.size());
+    for (int messageIndex = 0; messageIndex < userMessagesWithoutFormat.size(); messageIndex++) {
+      pendingIndices.add(messageIndex);
+    }
+
+    BackOff backOff = newBatchBackOff();
+    int attempt = 1;
+    while (true) {
+      List<Integer> failedIndices =
+          executeBatches(
+              userMessagesWithoutFormat,
+              pendingIndices,
+              messageFormat,
+              metadataHeaders,
+              userMessagesWithFormat);
+      if (failedIndices.isEmpty()) {
+        break;
+      }
+      if (attempt >= MAX_MESSAGE_ATTEMPTS || !waitBeforeRetry(backOff)) {
+        throw new GmailException(
+            String.format(
+                "Could not retrieve %d of %d messages after %d attempts",
+                failedIndices.size(), userMessagesWithFormat.length, attempt));
+      }
+      logger.info(
+          String.format(
+              "Retrying %d of %d messages (attempt %d)",
+              failedIndices.size(), userMessagesWithFormat.length, attempt + 1));
+      metrics.recordRetries(METRICS_API, BATCH_GET_METHOD, failedIndices.size());
+      pendingIndices = failedIndices;
+      attempt++;
+    }
+
+    return new ArrayList<>(Arrays.asList(userMessagesWithFormat));
+  }
+
+  /**
+   * Requests the messages at the given positions of a listing in batch requests of at most
+   * BATCH_REQUEST_CALL_LIMIT messages each.
+   *
+   * @param userMessagesWithoutFormat listed messages, which have an ID and thread ID
+   * @param pendingIndices positions of the messages to request
+   * @param messageFormat how much information from each email to retrieve
+   * @param metadataHeaders list of names of headers that should be included, or null
+   * @param userMessagesWithFormat array each retrieved message is stored into at its position
+   * @return positions of the messages which failed with an error worth retrying
+   * @throws IOException if there is an issue with the GmailService
+   */
+  private List<Integer> executeBatches(
+      List<Message> userMessagesWithoutFormat,
+      List<Integer> pendingIndices,
+      GmailClient.MessageFormat messageFormat,
+      List<String> metadataHeaders,
+      Message[] userMessagesWithFormat)
+      throws IOException {
+    List<Integer> failedIndices = new ArrayList<>();
 
     // Add messages to a batch request, BATCH_REQUEST_CALL_LIMIT messages at a time
     // At time of writing, the limit is 100 messages, so it will add 100 messages per request
-    int messageIndex = 0;
-    while (messageIndex < userMessagesWithoutFormat.size()) {
+    int pendingIndex = 0;
+    while (pendingIndex < pendingIndices.size()) {
       BatchRequest batchRequest = gmailService.batch();
 
-      while (messageIndex < userMessagesWithoutFormat.size()
+      while (pendingIndex < pendingIndices.size()
           && batchRequest.size() < BATCH_REQUEST_CALL_LIMIT) {
-        Message currentMessage = userMessagesWithoutFormat.get(messageIndex);
+        int messageIndex = pendingIndices.get(pendingIndex);
         gmailService
             .users()
             .messages()
-            .get("me", currentMessage.getId())
+            .get("me", userMessagesWithoutFormat.get(messageIndex).getId())
             .setFormat(messageFormat.formatValue)
             .setMetadataHeaders(metadataHeaders)
-            .queue(batchRequest, batchCallback);
-        messageIndex++;
+            .queue(
+                batchRequest,
+                storeMessageCallback(userMessagesWithFormat, messageIndex, failedIndices));
+        pendingIndex++;
       }
 
       batchRequest.execute();
     }
 
-    return userMessagesWithFormat;
+    return failedIndices;
   }
 
   /**
-   * Will create a callback function for a batch request that adds a message to a specified list in
-   * the case of success, or throws a GmailException in the case of failure
+   * Will create a callback function for a batch request that stores a message at a position of an
+   * array in the case of success, or records the position for a retry in the case of a failure
+   * worth retrying. Other failures throw a GmailException.
    *
-   * @param listToAddTo a reference to a list the message should be added to
-   * @return a callback that can be used in a batch request to add a message to the specified list
-   * @throws GmailException if a GoogleJsonError arises while processing the request
+   * @param results a reference to the array the message should be stored into
+   * @param messageIndex position of the message in the array
+   * @param failedIndices a reference to a list of positions of messages to retry
+   * @return a callback that can be used in a batch request to store the message
+   * @throws GmailException if a GoogleJsonError which is not worth retrying arises while processing
+   *     the request
    */
-  private JsonBatchCallback<Message> addToListMessageCallback(List<Message> listToAddTo) {
+  private static JsonBatchCallback<Message> storeMessageCallback(
+      Message[] results, int messageIndex, List<Integer> failedIndices) {
     return new JsonBatchCallback<Message>() {
       @Override
       public void onFailure(GoogleJsonError googleJsonError, HttpHeaders httpHeaders) {
-        throw new GmailException(googleJsonError.getMessage());
+        if (!isRetryable(googleJsonError)) {
+          throw new GmailException(googleJsonError.getMessage());
+        }
+        failedIndices.add(messageIndex);
       }
 
       @Override
       public void onSuccess(Message message, HttpHeaders httpHeaders) {
-        listToAddTo.add(message);
+        results[messageIndex] = message;
       }
     };
   }
 
+  /**
+   * Determines whether a failed request may succeed when sent again: rate limit errors (429, or
+   * 403 with a rate limit reason) and server errors.
+   */
+  private static boolean isRetryable(GoogleJsonError googleJsonError) {
+    int code = googleJsonError.getCode();
+    if (code == HTTP_TOO_MANY_REQUESTS || code >= HttpStatusCodes.STATUS_CODE_SERVER_ERROR) {
+      return true;
+    }
+    if (code != HttpStatusCodes.STATUS_CODE_FORBIDDEN || googleJsonError.getErrors() == null) {
+      return false;
+    }
+    return googleJsonError.getErrors().stream()
+        .map(GoogleJsonError.ErrorInfo::getReason)
+        .anyMatch(RATE_LIMIT_REASONS::contains);
+  }
+
+  private static BackOff newBatchBackOff() {
+    return new ExponentialBackOff.Builder()
+        .setInitialIntervalMillis(INITIAL_RETRY_DELAY_MILLIS)
+        .setMultiplier(RETRY_DELAY_MULTIPLIER)
+        .setRandomizationFactor(RETRY_DELAY_RANDOMIZATION)
+        .setMaxIntervalMillis(MAX_RETRY_DELAY_MILLIS)
+        .setMaxElapsedTimeMillis(MAX_RETRY_ELAPSED_MILLIS)
+        .build();
+  }
+
+  /**
+   * Sleeps for the next delay of a back-off
+   *
+   * @return false if the back-off gave up and the request should not be retried
+   * @throws IOException if the back-off fails, or the thread is interrupted while sleeping
+   */
+  private boolean waitBeforeRetry(BackOff backOff) throws IOException {
+    try {
+      return BackOffUtils.next(sleeper, backOff);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry Gmail messages");
+    }
+  }
+
   /** Factory to create a GmailClientImpl instance with given credential */
   public static class Factory implements GmailClientFactory {
+    private final HttpTransportProvider transportProvider;
+    private final Sleeper sleeper;
+    private final ApiMetrics metrics;
+
+    /** Create factory whose clients share the default Google API transport */
+    public Factory() {
+      this(HttpTransportUtility.getDefaultProvider());
+    }
+
+    /**
+     * Create factory whose clients send requests through the given transport
+     *
+     * @param transportProvider provides the transport shared by every created client
+     */
+    public Factory(HttpTransportProvider transportProvider) {
+      this(transportProvider, Sleeper.DEFAULT, ApiMetrics.getDefault());
+    }
+
+    /**
+     * Create factory whose clients send requests through the given transport, and wait before
+     * retrying failed messages with the given sleeper
+     *
+     * @param transportProvider provides the transport shared by every created client
+     * @param sleeper sleeps for the delay before a failed message is retried
+     * @param metrics records the number of retried messages
+     */
+    public Factory(HttpTransportProvider transportProvider, Sleeper sleeper, ApiMetrics metrics) {
+      this.transportProvider = transportProvider;
+      this.sleeper = sleeper;
+      this.metrics = metrics;
+    }
+
     /**
      * Create a GmailClientImpl instance
      *
@@ -230,7 +413,7 @@ public class GmailClientImpl implements GmailClient {
      */
     @Override
     public GmailClient getGmailClient(Credential credential) {
-      return new GmailClientImpl(credential);
+      return new GmailClientImpl(credential, transportProvider.getTransport(), sleeper, metrics);
     }
   }
 }
@@ -0,0 +1,30 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.api.client.http.HttpTransport;
+
+/**
+ * Contract for providing the HTTP transport used by the Google API clients. Transports are
+ * thread-safe and shared by every client created from the provider.
+ */
+public interface HttpTransportProvider {
+  /**
+   * Get the transport to send Google API requests through
+   *
+   * @return a thread-safe HttpTransport
+   */
+  HttpTransport getTransport();
+}
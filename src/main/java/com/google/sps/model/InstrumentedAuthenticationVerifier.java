@@ -0,0 +1,51 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Optional;
+
+/** Records the count, errors and latency of every ID token verified by the wrapped verifier. */
+public class InstrumentedAuthenticationVerifier implements AuthenticationVerifier {
+  private final AuthenticationVerifier authenticationVerifier;
+  private final ApiMetrics metrics;
+
+  /**
+   * Create a verifier which records its calls into the given metrics.
+   *
+   * @param authenticationVerifier Verifier which checks the tokens.
+   * @param metrics Metrics the calls are recorded into.
+   */
+  public InstrumentedAuthenticationVerifier(
+      AuthenticationVerifier authenticationVerifier, ApiMetrics metrics) {
+    this.authenticationVerifier = authenticationVerifier;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Optional<String> getUserEmail(String idToken)
+      throws GeneralSecurityException, IOException {
+    ApiMetrics.CallTimer timer = metrics.startCall("idToken", "getUserEmail");
+    boolean failed = true;
+    try {
+      Optional<String> userEmail = authenticationVerifier.getUserEmail(idToken);
+      failed = false;
+      return userEmail;
+    } finally {
+      timer.stop(failed);
+    }
+  }
+}
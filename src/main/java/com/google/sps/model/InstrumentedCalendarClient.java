@@ -0,0 +1,101 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Event;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+/** Records every call to the wrapped CalendarClient, such as its count, errors and latency. */
+public class InstrumentedCalendarClient implements CalendarClient {
+  private static final String API = "calendar";
+
+  private final CalendarClient calendarClient;
+  private final ApiCallRecorder recorder;
+
+  /**
+   * Create a client which records its calls with the given recorder.
+   *
+   * @param calendarClient Client which sends the calls.
+   * @param recorder Records the calls, e.g. into ApiMetrics.
+   */
+  public InstrumentedCalendarClient(CalendarClient calendarClient, ApiCallRecorder recorder) {
+    this.calendarClient = calendarClient;
+    this.recorder = recorder;
+  }
+
+  /** Factory to create InstrumentedCalendarClient instances. */
+  public static class Factory implements CalendarClientFactory {
+    private final CalendarClientFactory calendarClientFactory;
+    private final ApiCallRecorder recorder;
+
+    /**
+     * Create a factory which instruments the clients of another factory.
+     *
+     * @param calendarClientFactory Factory of the clients which send the calls.
+     * @param recorder Records the calls, e.g. into ApiMetrics.
+     */
+    public Factory(CalendarClientFactory calendarClientFactory, ApiCallRecorder recorder) {
+      this.calendarClientFactory = calendarClientFactory;
+      this.recorder = recorder;
+    }
+
+    @Override
+    public CalendarClient getCalendarClient(Credential credential) {
+      return new InstrumentedCalendarClient(
+          calendarClientFactory.getCalendarClient(credential), recorder);
+    }
+  }
+
+  @Override
+  public List<CalendarListEntry> getCalendarList() throws IOException {
+    return recorder.record(API, "getCalendarList", calendarClient::getCalendarList);
+  }
+
+  @Override
+  public List<Event> getCalendarEvents(CalendarListEntry calendarList) throws IOException {
+    return recorder.record(
+        API, "getCalendarEvents", () -> calendarClient.getCalendarEvents(calendarList));
+  }
+
+  @Override
+  public List<Event> getUpcomingEvents(CalendarListEntry calendarList, Date timeMin, Date timeMax)
+      throws IOException {
+    return recorder.record(
+        API,
+        "getUpcomingEvents",
+        () -> calendarClient.getUpcomingEvents(calendarList, timeMin, timeMax));
+  }
+
+  @Override
+  public Date getCurrentTime() throws IOException {
+    return recorder.record(API, "getCurrentTime", calendarClient::getCurrentTime);
+  }
+
+  @Override
+  public void createNewEvent(Date start, Date end, String summary, String calendarId)
+      throws IOException {
+    recorder.<Void, IOException>record(
+        API,
+        "createNewEvent",
+        () -> {
+          calendarClient.createNewEvent(start, end, summary, calendarId);
+          return null;
+        });
+  }
+}
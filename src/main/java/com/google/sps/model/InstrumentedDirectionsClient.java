@@ -0,0 +1,68 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.maps.model.DirectionsResult;
+import com.google.sps.exceptions.DirectionsException;
+import java.util.List;
+
+/** Records every call to the wrapped DirectionsClient, such as its count, errors and latency. */
+public class InstrumentedDirectionsClient implements DirectionsClient {
+  private final DirectionsClient directionsClient;
+  private final ApiCallRecorder recorder;
+
+  /**
+   * Create a client which records its calls with the given recorder.
+   *
+   * @param directionsClient Client which sends the calls.
+   * @param recorder Records the calls, e.g. into ApiMetrics.
+   */
+  public InstrumentedDirectionsClient(DirectionsClient directionsClient, ApiCallRecorder recorder) {
+    this.directionsClient = directionsClient;
+    this.recorder = recorder;
+  }
+
+  /** Factory to create InstrumentedDirectionsClient instances. */
+  public static class Factory implements DirectionsClientFactory {
+    private final DirectionsClientFactory directionsClientFactory;
+    private final ApiCallRecorder recorder;
+
+    /**
+     * Create a factory which instruments the clients of another factory.
+     *
+     * @param directionsClientFactory Factory of the clients which send the calls.
+     * @param recorder Records the calls, e.g. into ApiMetrics.
+     */
+    public Factory(DirectionsClientFactory directionsClientFactory, ApiCallRecorder recorder) {
+      this.directionsClientFactory = directionsClientFactory;
+      this.recorder = recorder;
+    }
+
+    @Override
+    public DirectionsClient getDirectionsClient(String apiKey) {
+      return new InstrumentedDirectionsClient(
+          directionsClientFactory.getDirectionsClient(apiKey), recorder);
+    }
+  }
+
+  @Override
+  public DirectionsResult getDirections(String origin, String destination, List<String> waypoints)
+      throws DirectionsException {
+    return recorder.record(
+        "directions",
+        "getDirections",
+        () -> directionsClient.getDirections(origin, destination, waypoints));
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.maps.model.GeocodingResult;
+import com.google.sps.exceptions.GeocodingException;
+import java.util.List;
+
+/** Records every call to the wrapped GeocodingClient, such as its count, errors and latency. */
+public class InstrumentedGeocodingClient implements GeocodingClient {
+  private final GeocodingClient geocodingClient;
+  private final ApiCallRecorder recorder;
+
+  /**
+   * Create a client which records its calls with the given recorder.
+   *
+   * @param geocodingClient Client which sends the calls.
+   * @param recorder Records the calls, e.g. into ApiMetrics.
+   */
+  public InstrumentedGeocodingClient(GeocodingClient geocodingClient, ApiCallRecorder recorder) {
+    this.geocodingClient = geocodingClient;
+    this.recorder = recorder;
+  }
+
+  /** Factory to create InstrumentedGeocodingClient instances. */
+  public static class Factory implements GeocodingClientFactory {
+    private final GeocodingClientFactory geocodingClientFactory;
+    private final ApiCallRecorder recorder;
+
+    /**
+     * Create a factory which instruments the clients of another factory.
+     *
+     * @param geocodingClientFactory Factory of the clients which send the calls.
+     * @param recorder Records the calls, e.g. into ApiMetrics.
+     */
+    public Factory(GeocodingClientFactory geocodingClientFactory, ApiCallRecorder recorder) {
+      this.geocodingClientFactory = geocodingClientFactory;
+      this.recorder = recorder;
+    }
+
+    @Override
+    public GeocodingClient getGeocodingClient(String apiKey) {
+      return new InstrumentedGeocodingClient(
+          geocodingClientFactory.getGeocodingClient(apiKey), recorder);
+    }
+  }
+
+  @Override
+  public List<GeocodingResult> getGeocodingResult(String address) throws GeocodingException {
+    return recorder.record(
+        "geocoding", "getGeocodingResult", () -> geocodingClient.getGeocodingResult(address));
+  }
+}
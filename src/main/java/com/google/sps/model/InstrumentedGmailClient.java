@@ -0,0 +1,111 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.gmail.model.Message;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+
+/** Records every call to the wrapped GmailClient, such as its count, errors and latency. */
+public class InstrumentedGmailClient implements GmailClient {
+  private static final String API = "gmail";
+
+  private final GmailClient gmailClient;
+  private final ApiCallRecorder recorder;
+
+  /**
+   * Create a client which records its calls with the given recorder.
+   *
+   * @param gmailClient Client which sends the calls.
+   * @param recorder Records the calls, e.g. into ApiMetrics.
+   */
+  public InstrumentedGmailClient(GmailClient gmailClient, ApiCallRecorder recorder) {
+    this.gmailClient = gmailClient;
+    this.recorder = recorder;
+  }
+
+  /** Factory to create InstrumentedGmailClient instances. */
+  public static class Factory implements GmailClientFactory {
+    private final GmailClientFactory gmailClientFactory;
+    private final ApiCallRecorder recorder;
+
+    /**
+     * Create a factory which instruments the clients of another factory.
+     *
+     * @param gmailClientFactory Factory of the clients which send the calls.
+     * @param recorder Records the calls, e.g. into ApiMetrics.
+     */
+    public Factory(GmailClientFactory gmailClientFactory, ApiCallRecorder recorder) {
+      this.gmailClientFactory = gmailClientFactory;
+      this.recorder = recorder;
+    }
+
+    @Override
+    public GmailClient getGmailClient(Credential credential) {
+      return new InstrumentedGmailClient(gmailClientFactory.getGmailClient(credential), recorder);
+    }
+  }
+
+  @Override
+  public List<Message> listUserMessages(String query) throws IOException {
+    return recorder.record(API, "listUserMessages", () -> gmailClient.listUserMessages(query));
+  }
+
+  @Override
+  public Message getUserMessage(String messageId, MessageFormat format) throws IOException {
+    return recorder.record(
+        API, "getUserMessage", () -> gmailClient.getUserMessage(messageId, format));
+  }
+
+  @Override
+  public Message getUserMessageWithMetadataHeaders(String messageId, List<String> metadataHeaders)
+      throws IOException {
+    return recorder.record(
+        API,
+        "getUserMessageWithMetadataHeaders",
+        () -> gmailClient.getUserMessageWithMetadataHeaders(messageId, metadataHeaders));
+  }
+
+  @Override
+  public BigInteger getHistoryId() throws IOException {
+    return recorder.record(API, "getHistoryId", gmailClient::getHistoryId);
+  }
+
+  @Override
+  public List<Message> getUnreadEmailsFromNDays(MessageFormat messageFormat, int nDays)
+      throws IOException {
+    return recorder.record(
+        API,
+        "getUnreadEmailsFromNDays",
+        () -> gmailClient.getUnreadEmailsFromNDays(messageFormat, nDays));
+  }
+
+  @Override
+  public List<Message> getActionableEmails(
+      List<String> subjectLinePhrases,
+      boolean unreadOnly,
+      int nDays,
+      List<String> metadataHeaders)
+      throws IOException {
+    return recorder.record(
+        API,
+        "getActionableEmails",
+        () ->
+            gmailClient.getActionableEmails(
+                subjectLinePhrases, unreadOnly, nDays, metadataHeaders));
+  }
+}
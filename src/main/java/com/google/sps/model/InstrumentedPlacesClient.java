@@ -0,0 +1,79 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlaceType;
+import com.google.maps.model.PlacesSearchResult;
+import com.google.maps.model.RankBy;
+import com.google.sps.exceptions.PlacesException;
+import java.util.Optional;
+
+/** Records every call to the wrapped PlacesClient, such as its count, errors and latency. */
+public class InstrumentedPlacesClient implements PlacesClient {
+  private static final String API = "places";
+
+  private final PlacesClient placesClient;
+  private final ApiCallRecorder recorder;
+
+  /**
+   * Create a client which records its calls with the given recorder.
+   *
+   * @param placesClient Client which sends the calls.
+   * @param recorder Records the calls, e.g. into ApiMetrics.
+   */
+  public InstrumentedPlacesClient(PlacesClient placesClient, ApiCallRecorder recorder) {
+    this.placesClient = placesClient;
+    this.recorder = recorder;
+  }
+
+  /** Factory to create InstrumentedPlacesClient instances. */
+  public static class Factory implements PlacesClientFactory {
+    private final PlacesClientFactory placesClientFactory;
+    private final ApiCallRecorder recorder;
+
+    /**
+     * Create a factory which instruments the clients of another factory.
+     *
+     * @param placesClientFactory Factory of the clients which send the calls.
+     * @param recorder Records the calls, e.g. into ApiMetrics.
+     */
+    public Factory(PlacesClientFactory placesClientFactory, ApiCallRecorder recorder) {
+      this.placesClientFactory = placesClientFactory;
+      this.recorder = recorder;
+    }
+
+    @Override
+    public PlacesClient getPlacesClient(String apiKey) {
+      return new InstrumentedPlacesClient(placesClientFactory.getPlacesClient(apiKey), recorder);
+    }
+  }
+
+  @Override
+  public String searchNearby(LatLng location, PlaceType placeType, RankBy rankBy)
+      throws PlacesException {
+    return recorder.record(
+        API, "searchNearby", () -> placesClient.searchNearby(location, placeType, rankBy));
+  }
+
+  @Override
+  public Optional<PlacesSearchResult> searchNearbyPlace(
+      LatLng location, PlaceType placeType, RankBy rankBy) throws PlacesException {
+    return recorder.record(
+        API,
+        "searchNearbyPlace",
+        () -> placesClient.searchNearbyPlace(location, placeType, rankBy));
+  }
+}
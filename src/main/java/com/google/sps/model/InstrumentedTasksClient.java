@@ -0,0 +1,82 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import java.io.IOException;
+import java.util.List;
+
+/** Records every call to the wrapped TasksClient, such as its count, errors and latency. */
+public class InstrumentedTasksClient implements TasksClient {
+  private static final String API = "tasks";
+
+  private final TasksClient tasksClient;
+  private final ApiCallRecorder recorder;
+
+  /**
+   * Create a client which records its calls with the given recorder.
+   *
+   * @param tasksClient Client which sends the calls.
+   * @param recorder Records the calls, e.g. into ApiMetrics.
+   */
+  public InstrumentedTasksClient(TasksClient tasksClient, ApiCallRecorder recorder) {
+    this.tasksClient = tasksClient;
+    this.recorder = recorder;
+  }
+
+  /** Factory to create InstrumentedTasksClient instances. */
+  public static class Factory implements TasksClientFactory {
+    private final TasksClientFactory tasksClientFactory;
+    private final ApiCallRecorder recorder;
+
+    /**
+     * Create a factory which instruments the clients of another factory.
+     *
+     * @param tasksClientFactory Factory of the clients which send the calls.
+     * @param recorder Records the calls, e.g. into ApiMetrics.
+     */
+    public Factory(TasksClientFactory tasksClientFactory, ApiCallRecorder recorder) {
+      this.tasksClientFactory = tasksClientFactory;
+      this.recorder = recorder;
+    }
+
+    @Override
+    public TasksClient getTasksClient(Credential credential) {
+      return new InstrumentedTasksClient(tasksClientFactory.getTasksClient(credential), recorder);
+    }
+  }
+
+  @Override
+  public List<Task> listTasks(TaskList taskList) throws IOException {
+    return recorder.record(API, "listTasks", () -> tasksClient.listTasks(taskList));
+  }
+
+  @Override
+  public List<TaskList> listTaskLists() throws IOException {
+    return recorder.record(API, "listTaskLists", tasksClient::listTaskLists);
+  }
+
+  @Override
+  public TaskList postTaskList(String title) throws IOException {
+    return recorder.record(API, "postTaskList", () -> tasksClient.postTaskList(title));
+  }
+
+  @Override
+  public Task postTask(String parentTaskListId, Task task) throws IOException {
+    return recorder.record(API, "postTask", () -> tasksClient.postTask(parentTaskListId, task));
+  }
+}
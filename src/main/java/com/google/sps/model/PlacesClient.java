@@ -16,12 +16,15 @@ package com.google.sps.model;
 
 import com.google.maps.model.LatLng;
 import com.google.maps.model.PlaceType;
+import com.google.maps.model.PlacesSearchResult;
 import com.google.maps.model.RankBy;
 import com.google.sps.exceptions.PlacesException;
+import java.util.Optional;
 
 /**
  * Contract for sending GET requests to the Google Places API. Implement searchNearby to obtain the
- * Place ID of the first result satisfying criteria set in the parameters from the API.
+ * Place ID of the first result satisfying criteria set in the parameters from the API, and
+ * searchNearbyPlace to obtain the whole result including its coordinates.
  */
 public interface PlacesClient {
   /**
@@ -36,4 +39,19 @@ public interface PlacesClient {
    *     Places API.
    */
   String searchNearby(LatLng location, PlaceType placeType, RankBy rankBy) throws PlacesException;
+
+  /**
+   * Sends a GET request to the Google Places API for nearby locations. In the event of multiple
+   * results, the first result is returned.
+   *
+   * @param location A LatLng with coordinates of the location to search nearby.
+   * @param placeType A PlaceType representing the type of place to look for.
+   * @param rankBy A RankBy representing how to sort results. e.g. distance to location.
+   * @return An optional containing the first result, including its Place ID and coordinates, or an
+   *     empty optional if no place is found.
+   * @throws PlacesException A custom exception is thrown to signal an error pertaining to the
+   *     Places API.
+   */
+  Optional<PlacesSearchResult> searchNearbyPlace(
+      LatLng location, PlaceType placeType, RankBy rankBy) throws PlacesException;
 }
@@ -20,26 +20,47 @@ import com.google.maps.errors.ApiException;
 import com.google.maps.model.LatLng;
 import com.google.maps.model.PlaceType;
 import com.google.maps.model.PlacesSearchResponse;
+import com.google.maps.model.PlacesSearchResult;
 import com.google.maps.model.RankBy;
 import com.google.sps.exceptions.PlacesException;
+import com.google.sps.utility.GeoApiContextUtility;
 import com.google.sps.utility.PlacesResultUtility;
 import java.io.IOException;
+import java.util.Optional;
 
 /** Handles GET requests to the Google Places API */
 public class PlacesClientImpl implements PlacesClient {
-  private NearbySearchRequest placesService;
+  // Shared context each nearby search is built from
+  private final GeoApiContext context;
 
-  private PlacesClientImpl(NearbySearchRequest service) {
-    placesService = service;
+  private PlacesClientImpl(GeoApiContext context) {
+    this.context = context;
   }
 
   /** Factory to create a PlacesClientImpl instance with given API key */
   public static class Factory implements PlacesClientFactory {
+    private final Optional<String> baseUrl;
+
+    /**
+     * Create a factory whose clients send requests to maps.googleapis.com, or to the server set in
+     * the maps.api.baseUrl system property.
+     */
+    public Factory() {
+      baseUrl = GeoApiContextUtility.getConfiguredBaseUrl();
+    }
+
+    /**
+     * Create a factory whose clients send requests to the given server, such as a local stand-in.
+     *
+     * @param baseUrl URL (e.g. http://localhost:8089) to send requests to.
+     */
+    public Factory(String baseUrl) {
+      this.baseUrl = Optional.of(baseUrl);
+    }
+
     @Override
     public PlacesClient getPlacesClient(String apiKey) {
-      GeoApiContext context = new GeoApiContext.Builder().apiKey(apiKey).build();
-      NearbySearchRequest service = new NearbySearchRequest(context);
-      return new PlacesClientImpl(service);
+      return new PlacesClientImpl(GeoApiContextUtility.getContext(apiKey, baseUrl));
     }
   }
 
@@ -59,10 +80,23 @@ public class PlacesClientImpl implements PlacesClient {
   @Override
   public String searchNearby(LatLng location, PlaceType placeType, RankBy rankBy)
       throws PlacesException {
+    return PlacesResultUtility.getPlaceId(sendNearbySearch(location, placeType, rankBy));
+  }
+
+  @Override
+  public Optional<PlacesSearchResult> searchNearbyPlace(
+      LatLng location, PlaceType placeType, RankBy rankBy) throws PlacesException {
+    return PlacesResultUtility.getFirstResult(sendNearbySearch(location, placeType, rankBy));
+  }
+
+  private PlacesSearchResponse sendNearbySearch(
+      LatLng location, PlaceType placeType, RankBy rankBy) throws PlacesException {
     try {
-      PlacesSearchResponse response =
-          placesService.location(location).type(placeType).rankby(rankBy).await();
-      return PlacesResultUtility.getPlaceId(response);
+      return new NearbySearchRequest(context)
+          .location(location)
+          .type(placeType)
+          .rankby(rankBy)
+          .await();
     } catch (ApiException | InterruptedException | IOException e) {
       throw new PlacesException("Failed to get directions", e);
     }
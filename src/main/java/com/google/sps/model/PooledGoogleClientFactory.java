@@ -0,0 +1,181 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Serves Gmail, Calendar and Tasks clients from pools keyed by access token, so repeat requests of
+ * the same session reuse the clients built for the first one instead of building new services.
+ * Clients are dropped once their access token expires, or after the longest lifetime of a Google
+ * access token if the credential does not say when it expires.
+ */
+public class PooledGoogleClientFactory
+    implements GmailClientFactory, CalendarClientFactory, TasksClientFactory {
+  // Google OAuth 2.0 access tokens are valid for an hour
+  private static final Duration DEFAULT_MAX_TOKEN_LIFETIME = Duration.ofHours(1);
+  private static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+  // Created on first use so every servlet shares the same pools
+  private static final Supplier<PooledGoogleClientFactory> defaultFactory =
+      Suppliers.memoize(PooledGoogleClientFactory::new)::get;
+
+  private final ClientPool<GmailClient> gmailClients;
+  private final ClientPool<CalendarClient> calendarClients;
+  private final ClientPool<TasksClient> tasksClients;
+
+  /** Create factory pooling the default client implementations, instrumented with ApiMetrics */
+  public PooledGoogleClientFactory() {
+    this(
+        new InstrumentedGmailClient.Factory(new GmailClientImpl.Factory(), ApiMetrics.getDefault()),
+        new InstrumentedCalendarClient.Factory(
+            new CalendarClientImpl.Factory(), ApiMetrics.getDefault()),
+        new InstrumentedTasksClient.Factory(new TasksClientImpl.Factory(), ApiMetrics.getDefault()),
+        DEFAULT_MAX_TOKEN_LIFETIME,
+        DEFAULT_MAXIMUM_SIZE,
+        Ticker.systemTicker());
+  }
+
+  /**
+   * Create factory with explicit client factories, pool limits and time source
+   *
+   * @param gmailClientFactory factory of the Gmail clients built on a pool miss
+   * @param calendarClientFactory factory of the Calendar clients built on a pool miss
+   * @param tasksClientFactory factory of the Tasks clients built on a pool miss
+   * @param maxTokenLifetime longest time a client is pooled for after it is built
+   * @param maximumSize maximum number of clients of each service held in the pool
+   * @param ticker time source used to expire clients
+   */
+  public PooledGoogleClientFactory(
+      GmailClientFactory gmailClientFactory,
+      CalendarClientFactory calendarClientFactory,
+      TasksClientFactory tasksClientFactory,
+      Duration maxTokenLifetime,
+      long maximumSize,
+      Ticker ticker) {
+    gmailClients =
+        new ClientPool<>(gmailClientFactory::getGmailClient, maxTokenLifetime, maximumSize, ticker);
+    calendarClients =
+        new ClientPool<>(
+            calendarClientFactory::getCalendarClient, maxTokenLifetime, maximumSize, ticker);
+    tasksClients =
+        new ClientPool<>(tasksClientFactory::getTasksClient, maxTokenLifetime, maximumSize, ticker);
+  }
+
+  /**
+   * Get the factory shared by every servlet
+   *
+   * @return the default PooledGoogleClientFactory
+   */
+  public static PooledGoogleClientFactory getDefault() {
+    return defaultFactory.get();
+  }
+
+  @Override
+  public GmailClient getGmailClient(Credential credential) {
+    return gmailClients.get(credential);
+  }
+
+  @Override
+  public CalendarClient getCalendarClient(Credential credential) {
+    return calendarClients.get(credential);
+  }
+
+  @Override
+  public TasksClient getTasksClient(Credential credential) {
+    return tasksClients.get(credential);
+  }
+
+  /** Pool of the clients of one service, each valid until its access token expires. */
+  private static final class ClientPool<C> {
+    private final Function<Credential, C> clientFactory;
+    private final long maxLifetimeNanos;
+    private final Ticker ticker;
+    private final Cache<String, PooledClient<C>> cache;
+
+    ClientPool(
+        Function<Credential, C> clientFactory,
+        Duration maxTokenLifetime,
+        long maximumSize,
+        Ticker ticker) {
+      this.clientFactory = clientFactory;
+      this.maxLifetimeNanos = maxTokenLifetime.toNanos();
+      this.ticker = ticker;
+      this.cache =
+          CacheBuilder.newBuilder()
+              .expireAfterWrite(maxLifetimeNanos, TimeUnit.NANOSECONDS)
+              .maximumSize(maximumSize)
+              .ticker(ticker)
+              .build();
+    }
+
+    C get(Credential credential) {
+      String accessToken = credential.getAccessToken();
+      if (accessToken == null) {
+        return clientFactory.apply(credential);
+      }
+      PooledClient<C> pooled = load(accessToken, credential);
+      if (pooled.expiresAtNanos - ticker.read() <= 0) {
+        // The token expired before the pool's own expiry, e.g. a reissued credential
+        cache.asMap().remove(accessToken, pooled);
+        pooled = load(accessToken, credential);
+      }
+      return pooled.client;
+    }
+
+    private PooledClient<C> load(String accessToken, Credential credential) {
+      try {
+        // Concurrent misses on the same token wait for a single client to be built
+        return cache.get(
+            accessToken,
+            () -> new PooledClient<>(clientFactory.apply(credential), expiresAt(credential)));
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    private long expiresAt(Credential credential) {
+      long lifetimeNanos = maxLifetimeNanos;
+      Long expiresInSeconds = credential.getExpiresInSeconds();
+      if (expiresInSeconds != null) {
+        lifetimeNanos = Math.min(lifetimeNanos, TimeUnit.SECONDS.toNanos(expiresInSeconds));
+      }
+      return ticker.read() + lifetimeNanos;
+    }
+  }
+
+  /** A pooled client and the ticker time its access token expires at. */
+  private static final class PooledClient<C> {
+    private final C client;
+    private final long expiresAtNanos;
+
+    PooledClient(C client, long expiresAtNanos) {
+      this.client = client;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+}
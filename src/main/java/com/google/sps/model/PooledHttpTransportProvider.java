@@ -0,0 +1,147 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.api.client.http.HttpTransport;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Provides a transport which keeps connections to Google APIs alive in a pool shared by every
+ * client, so requests reuse connections instead of opening a new one each. The transport can be
+ * pointed at a local stand-in server instead of Google's, in which case every request is sent to
+ * the stand-in whatever its URL.
+ */
+// google-http-client only ships a transport for the HttpClient 4.0 API. Its deprecated classes are
+// named in full rather than imported, since Java 8 warns about deprecated imports regardless
+@SuppressWarnings("deprecation")
+public class PooledHttpTransportProvider implements HttpTransportProvider {
+  private static final int SOCKET_BUFFER_SIZE = 8192;
+
+  private final org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager;
+  private final HttpTransport transport;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong reusedConnections = new AtomicLong();
+
+  /**
+   * Create provider with an explicit pool configuration
+   *
+   * @param maxConnections Maximum number of connections open at once across all hosts
+   * @param maxConnectionsPerHost Maximum number of connections open at once to one host
+   * @param keepAlive Time an idle connection is kept open, unless the server asks for less
+   * @param baseUrl An optional URL (e.g. http://localhost:8089) of a stand-in server to send every
+   *     request to. If empty, requests go to the host in their URL.
+   * @throws IllegalArgumentException if the base URL cannot be parsed.
+   */
+  public PooledHttpTransportProvider(
+      int maxConnections, int maxConnectionsPerHost, Duration keepAlive, Optional<String> baseUrl) {
+    connectionManager =
+        new org.apache.http.impl.conn.PoolingClientConnectionManager(
+            org.apache.http.impl.conn.SchemeRegistryFactory.createDefault());
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+
+    org.apache.http.params.HttpParams params = new org.apache.http.params.BasicHttpParams();
+    org.apache.http.params.HttpConnectionParams.setSocketBufferSize(params, SOCKET_BUFFER_SIZE);
+    // Pooled connections may have been closed by the server while idle
+    org.apache.http.params.HttpConnectionParams.setStaleCheckingEnabled(params, true);
+    org.apache.http.impl.client.DefaultHttpClient httpClient =
+        new org.apache.http.impl.client.DefaultHttpClient(connectionManager, params);
+
+    long keepAliveMillis = keepAlive.toMillis();
+    httpClient.setKeepAliveStrategy(
+        (response, context) -> {
+          long serverKeepAlive =
+              DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+          return serverKeepAlive < 0 ? keepAliveMillis : Math.min(serverKeepAlive, keepAliveMillis);
+        });
+    // A connection's request count is above one once it serves a second request
+    httpClient.addResponseInterceptor(
+        (response, context) -> {
+          requests.incrementAndGet();
+          Object connection =
+              context.getAttribute(org.apache.http.protocol.ExecutionContext.HTTP_CONNECTION);
+          if (connection instanceof HttpConnection
+              && ((HttpConnection) connection).getMetrics().getRequestCount() > 1) {
+            reusedConnections.incrementAndGet();
+          }
+        });
+    if (baseUrl.isPresent()) {
+      HttpHost standInHost = parseHost(baseUrl.get());
+      // The route planner sends every request to the stand-in, whatever host its URL names
+      httpClient.setRoutePlanner((target, request, context) -> new HttpRoute(standInHost));
+    }
+    transport = new com.google.api.client.http.apache.ApacheHttpTransport(httpClient);
+  }
+
+  private static HttpHost parseHost(String baseUrl) {
+    try {
+      URL url = new URL(baseUrl);
+      return new HttpHost(url.getHost(), url.getPort(), url.getProtocol());
+    } catch (MalformedURLException e) {
+      throw new IllegalArgumentException("Invalid Google API base URL: " + baseUrl, e);
+    }
+  }
+
+  @Override
+  public HttpTransport getTransport() {
+    return transport;
+  }
+
+  /** @return The number of responses received through the transport. */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /** @return The number of requests sent on a connection kept alive from an earlier request. */
+  public long getReusedConnections() {
+    return reusedConnections.get();
+  }
+
+  /** @return The number of requests which had to open a new connection. */
+  public long getOpenedConnections() {
+    return requests.get() - reusedConnections.get();
+  }
+
+  /** @return The number of pooled connections currently serving a request. */
+  public int getLeasedConnections() {
+    return connectionManager.getTotalStats().getLeased();
+  }
+
+  /** @return The number of pooled connections currently idle and kept alive. */
+  public int getIdleConnections() {
+    PoolStats stats = connectionManager.getTotalStats();
+    return stats.getAvailable();
+  }
+
+  /**
+   * Closes the connections which have been idle for longer than the given time.
+   *
+   * @param idleTime Time after which idle connections are closed.
+   */
+  public void closeIdleConnections(Duration idleTime) {
+    connectionManager.closeExpiredConnections();
+    connectionManager.closeIdleConnections(idleTime.toMillis(), TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,280 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.sps.exceptions.RateLimitException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Token bucket limiting the rate of calls to a single API across every request served by this
+ * instance. Permits are refilled at a fixed rate up to a burst size. Callers waiting for a permit
+ * are queued per user and users are served in turn, so one user with many pending calls cannot
+ * starve the others. A caller which cannot get a permit within the maximum wait is rejected. The
+ * limits of the shared Maps API governors are configured through system properties.
+ */
+public final class QpsGovernor {
+  private static final Logger logger = Logger.getLogger(QpsGovernor.class.getName());
+
+  /**
+   * Format of the system property holding the permits per second of an API, e.g.
+   * maps.api.directions.qps. Defaults to 50.
+   */
+  public static final String QPS_PROPERTY_FORMAT = "maps.api.%s.qps";
+
+  /**
+   * Format of the system property holding the burst size of an API, e.g. maps.api.directions.burst.
+   * Defaults to one second's worth of permits.
+   */
+  public static final String BURST_PROPERTY_FORMAT = "maps.api.%s.burst";
+
+  /**
+   * Format of the system property holding the longest time in milliseconds a call to an API waits
+   * for a permit, e.g. maps.api.directions.maxWaitMillis. Defaults to 10 seconds.
+   */
+  public static final String MAX_WAIT_MILLIS_PROPERTY_FORMAT = "maps.api.%s.maxWaitMillis";
+
+  // Default quotas of the Maps web services are 50 queries per second per project
+  private static final double DEFAULT_PERMITS_PER_SECOND = 50;
+  private static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(10);
+
+  /** Governor shared by every call to the Directions API. */
+  public static final QpsGovernor DIRECTIONS = createConfigured("directions");
+
+  /** Governor shared by every call to the Places API. */
+  public static final QpsGovernor PLACES = createConfigured("places");
+
+  /** Governor shared by every call to the Geocoding API. */
+  public static final QpsGovernor GEOCODING = createConfigured("geocoding");
+
+  private final String name;
+  private final double permitsPerNano;
+  private final double maxPermits;
+  private final long maxWaitNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition permitsGranted = lock.newCondition();
+  // Waiting callers of each user in arrival order, and the users with waiting callers in the order
+  // they are next served in
+  private final Map<String, Deque<Waiter>> waitersByUser = new HashMap<>();
+  private final Deque<String> userRotation = new ArrayDeque<>();
+  private double storedPermits;
+  private long lastRefillNanos;
+  private int queueDepth;
+  private long grantedCalls;
+  private long rejectedCalls;
+
+  /**
+   * Create a governor which starts with a full bucket.
+   *
+   * @param name Name of the governed API, used in logs and errors.
+   * @param permitsPerSecond Rate at which permits are refilled.
+   * @param burst Maximum number of permits which can be stored while the API is idle.
+   * @param maxWait Longest time a caller waits for a permit before being rejected.
+   */
+  public QpsGovernor(String name, double permitsPerSecond, int burst, Duration maxWait) {
+    if (permitsPerSecond <= 0 || burst < 1 || maxWait.isNegative()) {
+      throw new IllegalArgumentException("Invalid rate limit for " + name);
+    }
+    this.name = name;
+    this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.maxPermits = burst;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.storedPermits = burst;
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  /**
+   * Creates a governor from the maps.api.<name>.* system properties.
+   *
+   * @param name Name of the governed API, e.g. "directions".
+   * @return a new QpsGovernor
+   * @throws IllegalArgumentException if a property holds an invalid value.
+   */
+  public static QpsGovernor createConfigured(String name) {
+    double permitsPerSecond =
+        getProperty(QPS_PROPERTY_FORMAT, name, Double::parseDouble, DEFAULT_PERMITS_PER_SECOND);
+    int burst =
+        getProperty(
+            BURST_PROPERTY_FORMAT,
+            name,
+            Integer::parseInt,
+            (int) Math.max(1, Math.ceil(permitsPerSecond)));
+    long maxWaitMillis =
+        getProperty(
+            MAX_WAIT_MILLIS_PROPERTY_FORMAT, name, Long::parseLong, DEFAULT_MAX_WAIT.toMillis());
+    return new QpsGovernor(name, permitsPerSecond, burst, Duration.ofMillis(maxWaitMillis));
+  }
+
+  private static <T> T getProperty(
+      String propertyFormat, String name, Function<String, T> parser, T defaultValue) {
+    String property = String.format(propertyFormat, name);
+    String value = System.getProperty(property);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return parser.apply(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(property + " is not a number: " + value, e);
+    }
+  }
+
+  /**
+   * Waits for a permit to call the governed API. Callers of the same user are served in the order
+   * they arrive, and users waiting at the same time are served in turn.
+   *
+   * @param user Identifies the user the call is made on behalf of.
+   * @throws RateLimitException if no permit is available within the maximum wait.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  public void acquire(String user) throws RateLimitException, InterruptedException {
+    lock.lock();
+    try {
+      Waiter waiter = new Waiter();
+      enqueue(user, waiter);
+      long deadline = System.nanoTime() + maxWaitNanos;
+      while (true) {
+        grantPermits();
+        if (waiter.granted) {
+          grantedCalls++;
+          return;
+        }
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+          dequeue(user, waiter);
+          rejectedCalls++;
+          logger.warning(String.format("Rejected %s API call after waiting for quota", name));
+          throw new RateLimitException(
+              String.format("Timed out waiting for %s API quota", name));
+        }
+        try {
+          permitsGranted.awaitNanos(Math.min(remainingNanos, nanosUntilNextPermit()));
+        } catch (InterruptedException e) {
+          if (waiter.granted) {
+            // The permit was already handed over, so the call goes ahead
+            grantedCalls++;
+            Thread.currentThread().interrupt();
+            return;
+          }
+          dequeue(user, waiter);
+          throw e;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Hands out every available permit to waiting callers, one user at a time. */
+  private void grantPermits() {
+    refill();
+    boolean granted = false;
+    while (storedPermits >= 1 && !userRotation.isEmpty()) {
+      String user = userRotation.pollFirst();
+      Deque<Waiter> waiters = waitersByUser.get(user);
+      waiters.pollFirst().granted = true;
+      queueDepth--;
+      storedPermits -= 1;
+      granted = true;
+      if (waiters.isEmpty()) {
+        waitersByUser.remove(user);
+      } else {
+        userRotation.addLast(user);
+      }
+    }
+    if (granted) {
+      permitsGranted.signalAll();
+    }
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    storedPermits = Math.min(maxPermits, storedPermits + (now - lastRefillNanos) * permitsPerNano);
+    lastRefillNanos = now;
+  }
+
+  private long nanosUntilNextPermit() {
+    return Math.max(1, (long) Math.ceil((1 - storedPermits) / permitsPerNano));
+  }
+
+  private void enqueue(String user, Waiter waiter) {
+    Deque<Waiter> waiters = waitersByUser.get(user);
+    if (waiters == null) {
+      waiters = new ArrayDeque<>();
+      waitersByUser.put(user, waiters);
+      userRotation.addLast(user);
+    }
+    waiters.addLast(waiter);
+    queueDepth++;
+  }
+
+  private void dequeue(String user, Waiter waiter) {
+    Deque<Waiter> waiters = waitersByUser.get(user);
+    waiters.remove(waiter);
+    queueDepth--;
+    if (waiters.isEmpty()) {
+      waitersByUser.remove(user);
+      userRotation.remove(user);
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** @return The number of callers currently waiting for a permit. */
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return queueDepth;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return The number of calls which were given a permit. */
+  public long getGrantedCalls() {
+    lock.lock();
+    try {
+      return grantedCalls;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return The number of calls which timed out waiting for a permit. */
+  public long getRejectedCalls() {
+    lock.lock();
+    try {
+      return rejectedCalls;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** A caller waiting for a permit. Only accessed while holding the lock. */
+  private static final class Waiter {
+    private boolean granted;
+  }
+}
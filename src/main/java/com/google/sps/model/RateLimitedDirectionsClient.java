@@ -0,0 +1,58 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.maps.model.DirectionsResult;
+import com.google.sps.exceptions.DirectionsException;
+import com.google.sps.exceptions.RateLimitException;
+import java.util.List;
+
+/**
+ * Waits for a permit from the Directions API governor before every call to the wrapped
+ * DirectionsClient. Calls are queued on behalf of a single user.
+ */
+public class RateLimitedDirectionsClient implements DirectionsClient {
+  private final DirectionsClient directionsClient;
+  private final QpsGovernor governor;
+  private final String user;
+
+  /**
+   * Create a client which calls the wrapped client once the governor allows it.
+   *
+   * @param directionsClient Client which sends the calls.
+   * @param governor Governor limiting the rate of calls to the Directions API.
+   * @param user Identifies the user calls are made on behalf of.
+   */
+  public RateLimitedDirectionsClient(
+      DirectionsClient directionsClient, QpsGovernor governor, String user) {
+    this.directionsClient = directionsClient;
+    this.governor = governor;
+    this.user = user;
+  }
+
+  @Override
+  public DirectionsResult getDirections(String origin, String destination, List<String> waypoints)
+      throws DirectionsException {
+    try {
+      governor.acquire(user);
+    } catch (RateLimitException e) {
+      throw new DirectionsException(e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DirectionsException("Interrupted while waiting for Directions API quota", e);
+    }
+    return directionsClient.getDirections(origin, destination, waypoints);
+  }
+}
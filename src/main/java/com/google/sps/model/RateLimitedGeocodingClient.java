@@ -0,0 +1,57 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.maps.model.GeocodingResult;
+import com.google.sps.exceptions.GeocodingException;
+import com.google.sps.exceptions.RateLimitException;
+import java.util.List;
+
+/**
+ * Waits for a permit from the Geocoding API governor before every call to the wrapped
+ * GeocodingClient. Calls are queued on behalf of a single user.
+ */
+public class RateLimitedGeocodingClient implements GeocodingClient {
+  private final GeocodingClient geocodingClient;
+  private final QpsGovernor governor;
+  private final String user;
+
+  /**
+   * Create a client which calls the wrapped client once the governor allows it.
+   *
+   * @param geocodingClient Client which sends the calls.
+   * @param governor Governor limiting the rate of calls to the Geocoding API.
+   * @param user Identifies the user calls are made on behalf of.
+   */
+  public RateLimitedGeocodingClient(
+      GeocodingClient geocodingClient, QpsGovernor governor, String user) {
+    this.geocodingClient = geocodingClient;
+    this.governor = governor;
+    this.user = user;
+  }
+
+  @Override
+  public List<GeocodingResult> getGeocodingResult(String address) throws GeocodingException {
+    try {
+      governor.acquire(user);
+    } catch (RateLimitException e) {
+      throw new GeocodingException(e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GeocodingException("Interrupted while waiting for Geocoding API quota", e);
+    }
+    return geocodingClient.getGeocodingResult(address);
+  }
+}
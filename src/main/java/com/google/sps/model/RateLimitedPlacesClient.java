@@ -0,0 +1,71 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.maps.model.LatLng;
+import com.google.maps.model.PlaceType;
+import com.google.maps.model.PlacesSearchResult;
+import com.google.maps.model.RankBy;
+import com.google.sps.exceptions.PlacesException;
+import com.google.sps.exceptions.RateLimitException;
+import java.util.Optional;
+
+/**
+ * Waits for a permit from the Places API governor before every call to the wrapped PlacesClient.
+ * Calls are queued on behalf of a single user.
+ */
+public class RateLimitedPlacesClient implements PlacesClient {
+  private final PlacesClient placesClient;
+  private final QpsGovernor governor;
+  private final String user;
+
+  /**
+   * Create a client which calls the wrapped client once the governor allows it.
+   *
+   * @param placesClient Client which sends the calls.
+   * @param governor Governor limiting the rate of calls to the Places API.
+   * @param user Identifies the user calls are made on behalf of.
+   */
+  public RateLimitedPlacesClient(PlacesClient placesClient, QpsGovernor governor, String user) {
+    this.placesClient = placesClient;
+    this.governor = governor;
+    this.user = user;
+  }
+
+  @Override
+  public String searchNearby(LatLng location, PlaceType placeType, RankBy rankBy)
+      throws PlacesException {
+    acquirePermit();
+    return placesClient.searchNearby(location, placeType, rankBy);
+  }
+
+  @Override
+  public Optional<PlacesSearchResult> searchNearbyPlace(
+      LatLng location, PlaceType placeType, RankBy rankBy) throws PlacesException {
+    acquirePermit();
+    return placesClient.searchNearbyPlace(location, placeType, rankBy);
+  }
+
+  private void acquirePermit() throws PlacesException {
+    try {
+      governor.acquire(user);
+    } catch (RateLimitException e) {
+      throw new PlacesException(e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PlacesException("Interrupted while waiting for Places API quota", e);
+    }
+  }
+}
@@ -0,0 +1,327 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.model;
+
+import com.google.common.base.Ticker;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Times the stages of a request to an AuthenticatedHttpServlet: parsing cookies, verifying the ID
+ * token, creating clients, fetching from upstream APIs, computing the response and serializing it.
+ * The stages up to the first byte of the body are sent in a Server-Timing header, so they show in
+ * the browser's developer tools, and every stage can be logged once the request completes. Servlets
+ * may time stages of their own, which are not counted in the compute stage.
+ *
+ * <p>A stage may be entered several times, including from several threads at once. Its duration is
+ * the time during which at least one thread was in it, so concurrent upstream calls are not
+ * counted twice.
+ */
+public final class RequestTiming implements ApiCallRecorder {
+  public static final String COOKIES = "cookies";
+  public static final String VERIFY = "verify";
+  public static final String CLIENTS = "clients";
+  public static final String FETCH = "fetch";
+  public static final String COMPUTE = "compute";
+  public static final String SERIALIZE = "serialize";
+
+  private static final String REQUEST_ATTRIBUTE = RequestTiming.class.getName();
+  private static final String HEADER = "Server-Timing";
+
+  private final Ticker ticker;
+  private final long startNanos;
+  // Stages in the order they were first entered. Guarded by this
+  private final Map<String, StageTime> stages = new LinkedHashMap<>();
+  private long handlerStartNanos = -1;
+  private Stage serializeStage;
+  private long endNanos = -1;
+
+  /**
+   * Create timing starting now
+   *
+   * @param ticker time source the stages are measured with
+   */
+  public RequestTiming(Ticker ticker) {
+    this.ticker = ticker;
+    this.startNanos = ticker.read();
+  }
+
+  /**
+   * Get the timing of a request, starting it if this is the first call for the request
+   *
+   * @param request the timed request
+   * @return the RequestTiming of the request
+   */
+  public static RequestTiming forRequest(HttpServletRequest request) {
+    Object timing = request.getAttribute(REQUEST_ATTRIBUTE);
+    if (timing instanceof RequestTiming) {
+      return (RequestTiming) timing;
+    }
+    RequestTiming newTiming = new RequestTiming(Ticker.systemTicker());
+    request.setAttribute(REQUEST_ATTRIBUTE, newTiming);
+    return newTiming;
+  }
+
+  /**
+   * Enters a stage until the returned Stage is closed
+   *
+   * @param name name of the stage, e.g. RequestTiming.FETCH
+   * @return Stage to close when the stage is left
+   */
+  public Stage start(String name) {
+    synchronized (this) {
+      StageTime stageTime = stages.computeIfAbsent(name, key -> new StageTime());
+      if (stageTime.active++ == 0) {
+        stageTime.activeSinceNanos = ticker.read();
+      }
+      return new Stage(stageTime);
+    }
+  }
+
+  /**
+   * Creates a client in the clients stage, and instruments it so its calls are timed in the fetch
+   * stage
+   *
+   * @param factory creates the client, e.g. from a GmailClientFactory
+   * @param instrument wraps the client to record its calls, e.g. InstrumentedGmailClient::new
+   * @return the instrumented client
+   */
+  @SuppressWarnings("try")
+  public <C> C createClient(
+      Supplier<C> factory, BiFunction<C, ApiCallRecorder, ? extends C> instrument) {
+    C client;
+    try (Stage stage = start(CLIENTS)) {
+      client = factory.get();
+    }
+    return instrument.apply(client, this);
+  }
+
+  /** Makes a call to an upstream API in the fetch stage. */
+  @Override
+  @SuppressWarnings("try")
+  public <T, E extends Exception> T record(String api, String method, ApiCall<T, E> call)
+      throws E {
+    try (Stage stage = start(FETCH)) {
+      return call.call();
+    }
+  }
+
+  /**
+   * Get the time spent in a stage so far, not counting the current visit of a stage still entered
+   *
+   * @param name name of the stage
+   * @return duration of the stage, zero if it was never entered
+   */
+  public synchronized Duration getDuration(String name) {
+    StageTime stageTime = stages.get(name);
+    return Duration.ofNanos(stageTime == null ? 0 : stageTime.totalNanos);
+  }
+
+  /** @return the value of the Server-Timing header, e.g. "cookies;dur=0.1, verify;dur=35.2" */
+  public synchronized String getServerTimingHeader() {
+    return stages.entrySet().stream()
+        .filter(stage -> !SERIALIZE.equals(stage.getKey()))
+        .map(
+            stage ->
+                String.format(
+                    Locale.ROOT,
+                    "%s;dur=%.1f",
+                    stage.getKey(),
+                    toMillis(stage.getValue().totalNanos)))
+        .collect(Collectors.joining(", "));
+  }
+
+  /**
+   * Formats every stage as a JSON log line once the request is finished
+   *
+   * @param path path of the request
+   * @param status status code of the response
+   * @return a JSON object with the path, status, total duration and duration of every stage
+   */
+  public synchronized String toLogLine(String path, int status) {
+    JsonObject stagesJson = new JsonObject();
+    stages.forEach(
+        (name, stageTime) -> stagesJson.addProperty(name, toMillis(stageTime.totalNanos)));
+    JsonObject logLine = new JsonObject();
+    logLine.addProperty("path", path);
+    logLine.addProperty("status", status);
+    logLine.addProperty(
+        "totalMs", toMillis((endNanos < 0 ? ticker.read() : endNanos) - startNanos));
+    logLine.add("stagesMs", stagesJson);
+    return logLine.toString();
+  }
+
+  /** Marks the start of the servlet's handler, after the user is authenticated. */
+  synchronized void startHandler() {
+    handlerStartNanos = ticker.read();
+  }
+
+  /**
+   * Marks the start of the response body. The compute stage is whatever time the handler spent
+   * until now outside every stage it entered, and the serialize stage starts.
+   */
+  synchronized void startBody() {
+    if (serializeStage != null || endNanos >= 0) {
+      return;
+    }
+    if (handlerStartNanos >= 0) {
+      long handlerNanos = ticker.read() - handlerStartNanos;
+      long stagedNanos =
+          stages.entrySet().stream()
+              .filter(stage -> !COOKIES.equals(stage.getKey()) && !VERIFY.equals(stage.getKey()))
+              .mapToLong(stage -> stage.getValue().totalNanos)
+              .sum();
+      stages.computeIfAbsent(COMPUTE, key -> new StageTime()).totalNanos +=
+          Math.max(0, handlerNanos - stagedNanos);
+    }
+    serializeStage = start(SERIALIZE);
+  }
+
+  /**
+   * Marks the end of the request, ending the serialize stage. A response which never started a
+   * body, such as a 304, gets its Server-Timing header now.
+   *
+   * @param timedResponse the response returned by wrap
+   */
+  void finish(HttpServletResponse timedResponse) {
+    if (timedResponse instanceof ServerTimingResponse) {
+      ((ServerTimingResponse) timedResponse).startBody();
+    }
+    synchronized (this) {
+      startBody();
+      if (endNanos < 0) {
+        serializeStage.close();
+        endNanos = ticker.read();
+      }
+    }
+  }
+
+  /**
+   * Wraps a response so the Server-Timing header is set just before the body starts, or an error
+   * is sent, while headers can still be set.
+   *
+   * @param response response to the timed request
+   * @return response which sets the header when the body starts
+   */
+  HttpServletResponse wrap(HttpServletResponse response) {
+    return new ServerTimingResponse(response, this);
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  /** Time spent in one stage. Guarded by the RequestTiming. */
+  private static final class StageTime {
+    private int active;
+    private long activeSinceNanos;
+    private long totalNanos;
+  }
+
+  /**
+   * A visit of a stage, which ends when closed. Stages are entered in try-with-resources blocks
+   * which never reference the Stage, so methods timing a stage suppress javac's "try" lint.
+   */
+  public final class Stage implements AutoCloseable {
+    private final StageTime stageTime;
+    private boolean closed;
+
+    private Stage(StageTime stageTime) {
+      this.stageTime = stageTime;
+    }
+
+    @Override
+    public void close() {
+      synchronized (RequestTiming.this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        if (--stageTime.active == 0) {
+          stageTime.totalNanos += ticker.read() - stageTime.activeSinceNanos;
+        }
+      }
+    }
+  }
+
+  /** Sets the Server-Timing header the first time the body is written or an error is sent. */
+  private static final class ServerTimingResponse extends HttpServletResponseWrapper {
+    private final RequestTiming timing;
+    private final AtomicBoolean bodyStarted = new AtomicBoolean();
+
+    ServerTimingResponse(HttpServletResponse response, RequestTiming timing) {
+      super(response);
+      this.timing = timing;
+    }
+
+    private void startBody() {
+      if (bodyStarted.compareAndSet(false, true)) {
+        timing.startBody();
+        if (!isCommitted()) {
+          setHeader(HEADER, timing.getServerTimingHeader());
+        }
+      }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      startBody();
+      return super.getWriter();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      startBody();
+      return super.getOutputStream();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      startBody();
+      super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int status, String message) throws IOException {
+      startBody();
+      super.sendError(status, message);
+    }
+
+    @Override
+    public void sendError(int status) throws IOException {
+      startBody();
+      super.sendError(status);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      startBody();
+      super.sendRedirect(location);
+    }
+  }
+}
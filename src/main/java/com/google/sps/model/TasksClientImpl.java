@@ -15,13 +15,13 @@
 package com.google.sps.model;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.appengine.http.UrlFetchTransport;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.tasks.Tasks;
 import com.google.api.services.tasks.model.Task;
 import com.google.api.services.tasks.model.TaskList;
+import com.google.sps.utility.HttpTransportUtility;
 import com.google.sps.utility.ServletUtility;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -32,8 +32,7 @@ public class TasksClientImpl implements TasksClient {
 
   private final Tasks tasksService;
 
-  private TasksClientImpl(Credential credential) {
-    HttpTransport transport = UrlFetchTransport.getDefaultInstance();
+  private TasksClientImpl(Credential credential, HttpTransport transport) {
     JsonFactory jsonFactory = JacksonFactory.getDefaultInstance();
     String applicationName = ServletUtility.APPLICATION_NAME;
 
@@ -76,6 +75,22 @@ public class TasksClientImpl implements TasksClient {
 
   /** Factory to create a TasksClientImpl instance with given credential */
   public static class Factory implements TasksClientFactory {
+    private final HttpTransportProvider transportProvider;
+
+    /** Create factory whose clients share the default Google API transport */
+    public Factory() {
+      this(HttpTransportUtility.getDefaultProvider());
+    }
+
+    /**
+     * Create factory whose clients send requests through the given transport
+     *
+     * @param transportProvider provides the transport shared by every created client
+     */
+    public Factory(HttpTransportProvider transportProvider) {
+      this.transportProvider = transportProvider;
+    }
+
     /**
      * Create a TasksClientImpl instance
      *
@@ -84,7 +99,7 @@ public class TasksClientImpl implements TasksClient {
      */
     @Override
     public TasksClient getTasksClient(Credential credential) {
-      return new TasksClientImpl(credential);
+      return new TasksClientImpl(credential, transportProvider.getTransport());
     }
   }
 }
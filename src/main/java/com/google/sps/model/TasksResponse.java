@@ -17,12 +17,14 @@ package com.google.sps.model;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.Builder;
+import lombok.Getter;
 
 /**
  * Contains the summary tasks information that should be passed to the client, as well as the
  * methods to generate these statistics.
  */
 @Builder
+@Getter
 public final class TasksResponse {
   @Builder.Default Map<String, String> taskListIdsToTitles = new HashMap<String, String>();
   @Builder.Default long tasksToCompleteCount = 0;
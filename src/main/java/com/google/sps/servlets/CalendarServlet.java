@@ -18,11 +18,15 @@ import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.model.CalendarListEntry;
 import com.google.api.services.calendar.model.Event;
+import com.google.sps.data.CalendarSummaryResponse;
 import com.google.sps.model.AuthenticatedHttpServlet;
 import com.google.sps.model.AuthenticationVerifier;
 import com.google.sps.model.CalendarClient;
 import com.google.sps.model.CalendarClientFactory;
-import com.google.sps.model.CalendarClientImpl;
+import com.google.sps.model.InstrumentedCalendarClient;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.RequestTiming;
+import com.google.sps.utility.ETagUtility;
 import com.google.sps.utility.FreeTimeUtility;
 import com.google.sps.utility.JsonUtility;
 import java.io.IOException;
@@ -43,11 +47,13 @@ public class CalendarServlet extends AuthenticatedHttpServlet {
   private static final int WORK_BEGIN_HOUR = 10;
   private static final int WORK_END_HOUR = 18;
   private static final int PERSONAL_END_HOUR = 23;
-  private static final int NUM_DAYS = 5;
+
+  /** Number of days, starting now, covered by the calendar summary */
+  public static final int NUM_DAYS = 5;
 
   /** Create servlet with default CalendarClient and Authentication Verifier implementations */
   public CalendarServlet() {
-    calendarClientFactory = new CalendarClientImpl.Factory();
+    calendarClientFactory = PooledGoogleClientFactory.getDefault();
   }
 
   /**
@@ -76,12 +82,33 @@ public class CalendarServlet extends AuthenticatedHttpServlet {
     assert googleCredential != null
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
 
-    CalendarClient calendarClient = calendarClientFactory.getCalendarClient(googleCredential);
+    CalendarClient calendarClient =
+        RequestTiming.forRequest(request)
+            .createClient(
+                () -> calendarClientFactory.getCalendarClient(googleCredential),
+                InstrumentedCalendarClient::new);
     long fiveDaysInMillis = TimeUnit.DAYS.toMillis(NUM_DAYS);
     Date timeMin = calendarClient.getCurrentTime();
     Date timeMax = Date.from(timeMin.toInstant().plus(Duration.ofDays(NUM_DAYS)));
     List<Event> calendarEvents = getEvents(calendarClient, timeMin, timeMax);
 
+    // Convert event list to JSON and print to response. The summary depends on the current time, so
+    // it is validated by its content
+    ETagUtility.sendJsonWithETag(
+        request, response, createCalendarSummaryResponse(calendarEvents, timeMin, timeMax));
+  }
+
+  /**
+   * Creates a CalendarSummaryResponse object from the user's events. Public for use by the
+   * dashboard
+   *
+   * @param calendarEvents the events in the user's calendars between timeMin and timeMax
+   * @param timeMin the start of the summarized period
+   * @param timeMax the end of the summarized period
+   * @return CalendarSummaryResponse object with the user's free hours in the period
+   */
+  public static CalendarSummaryResponse createCalendarSummaryResponse(
+      List<Event> calendarEvents, Date timeMin, Date timeMax) {
     FreeTimeUtility freeTimeUtility =
         new FreeTimeUtility(
             timeMin,
@@ -105,13 +132,11 @@ public class CalendarServlet extends AuthenticatedHttpServlet {
       }
       freeTimeUtility.addEvent(eventStart, eventEnd);
     }
-
-    // Convert event list to JSON and print to response
-    JsonUtility.sendJson(response, freeTimeUtility.getCalendarSummaryResponse());
+    return freeTimeUtility.getCalendarSummaryResponse();
   }
 
   /**
-   * Get the events in the user's calendars
+   * Get the events in the user's calendars. Public for use by the dashboard
    *
    * @param calendarClient either a mock CalendarClient or a calendarClient with a valid credential
    * @param timeMin the minimum time to start looking for events
@@ -119,7 +144,7 @@ public class CalendarServlet extends AuthenticatedHttpServlet {
    * @return List of Events from all of the user's calendars
    * @throws IOException if an issue occurs in the method
    */
-  private List<Event> getEvents(CalendarClient calendarClient, Date timeMin, Date timeMax)
+  public static List<Event> getEvents(CalendarClient calendarClient, Date timeMin, Date timeMax)
       throws IOException {
     List<CalendarListEntry> calendarList = calendarClient.getCalendarList();
     List<Event> events = new ArrayList<>();
@@ -144,7 +169,11 @@ public class CalendarServlet extends AuthenticatedHttpServlet {
     assert googleCredential != null
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
 
-    CalendarClient calendarClient = calendarClientFactory.getCalendarClient(googleCredential);
+    CalendarClient calendarClient =
+        RequestTiming.forRequest(request)
+            .createClient(
+                () -> calendarClientFactory.getCalendarClient(googleCredential),
+                InstrumentedCalendarClient::new);
     Date start = new Date(request.getParameter("start"));
     Date end = new Date(request.getParameter("end"));
     String summary = request.getParameter("summary");
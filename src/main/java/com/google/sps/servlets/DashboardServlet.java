@@ -0,0 +1,384 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.sps.data.CalendarSummaryResponse;
+import com.google.sps.data.DashboardResponse;
+import com.google.sps.data.PlanMailResponse;
+import com.google.sps.model.ActionableMessage;
+import com.google.sps.model.ActionableMessageHelper;
+import com.google.sps.model.ActionableMessageHelperImpl;
+import com.google.sps.model.AuthenticatedHttpServlet;
+import com.google.sps.model.AuthenticationVerifier;
+import com.google.sps.model.CalendarClient;
+import com.google.sps.model.CalendarClientFactory;
+import com.google.sps.model.GmailClient;
+import com.google.sps.model.GmailClientFactory;
+import com.google.sps.model.GmailResponse;
+import com.google.sps.model.GmailResponseHelper;
+import com.google.sps.model.GmailResponseHelperImpl;
+import com.google.sps.model.InstrumentedCalendarClient;
+import com.google.sps.model.InstrumentedGmailClient;
+import com.google.sps.model.InstrumentedTasksClient;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.RequestTiming;
+import com.google.sps.model.TasksClient;
+import com.google.sps.model.TasksClientFactory;
+import com.google.sps.model.TasksResponse;
+import com.google.sps.utility.ETagUtility;
+import com.google.sps.utility.ServletUtility;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the information of every dashboard panel in one response. The user is authenticated once,
+ * and the Gmail, Calendar and Tasks data is fetched concurrently. Data needed by several panels is
+ * fetched once: the calendar events are shared by the Calendar and Plan Mail panels.
+ */
+@WebServlet(value = "/dashboard", asyncSupported = true)
+public class DashboardServlet extends AuthenticatedHttpServlet {
+  // The fetches of every request share one pool, so concurrent page loads cannot multiply the
+  // number of threads and upstream calls in flight. Once the queue is full, the container thread
+  // runs the fetch itself
+  private static final int FETCH_THREADS = 16;
+  private static final int FETCH_QUEUE_CAPACITY = 256;
+
+  private final GmailClientFactory gmailClientFactory;
+  private final CalendarClientFactory calendarClientFactory;
+  private final TasksClientFactory tasksClientFactory;
+  private final GmailResponseHelper gmailResponseHelper;
+  private final ActionableMessageHelper actionableMessageHelper;
+  private final ExecutorService executor = createExecutor();
+
+  /** Create servlet with default client and Authentication Verifier implementations */
+  public DashboardServlet() {
+    gmailClientFactory = PooledGoogleClientFactory.getDefault();
+    calendarClientFactory = PooledGoogleClientFactory.getDefault();
+    tasksClientFactory = PooledGoogleClientFactory.getDefault();
+    gmailResponseHelper = new GmailResponseHelperImpl();
+    actionableMessageHelper = new ActionableMessageHelperImpl();
+  }
+
+  /**
+   * Create servlet with explicit implementations of the clients and AuthenticationVerifier
+   *
+   * @param authenticationVerifier implementation of AuthenticationVerifier
+   * @param gmailClientFactory implementation of GmailClientFactory
+   * @param calendarClientFactory implementation of CalendarClientFactory
+   * @param tasksClientFactory implementation of TasksClientFactory
+   * @param gmailResponseHelper implementation of GmailResponseHelper
+   * @param actionableMessageHelper implementation of ActionableMessageHelper
+   */
+  public DashboardServlet(
+      AuthenticationVerifier authenticationVerifier,
+      GmailClientFactory gmailClientFactory,
+      CalendarClientFactory calendarClientFactory,
+      TasksClientFactory tasksClientFactory,
+      GmailResponseHelper gmailResponseHelper,
+      ActionableMessageHelper actionableMessageHelper) {
+    super(authenticationVerifier);
+    this.gmailClientFactory = gmailClientFactory;
+    this.calendarClientFactory = calendarClientFactory;
+    this.tasksClientFactory = tasksClientFactory;
+    this.gmailResponseHelper = gmailResponseHelper;
+    this.actionableMessageHelper = actionableMessageHelper;
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+
+  /**
+   * Returns a DashboardResponse with the information of every panel. The container thread is
+   * released while the panels are assembled.
+   *
+   * @param request Http request from the client. Should contain idToken and accessToken, integer
+   *     values for nDays and mHours (both > 0) used by the Gmail panel, and the summary of events
+   *     used by the Plan Mail panel. taskLists is an optional comma-separated list of task list ids
+   *     used by the Tasks panel. subjectLinePhrases is an optional comma-separated list of phrases
+   *     used by the Assign panel. If present, actionableNDays (> 0) must be present as well, and
+   *     unreadOnly is an optional boolean
+   * @param response 400 if the parameters are invalid, 304 if the client already holds the current
+   *     DashboardResponse, DashboardResponse otherwise
+   * @param googleCredential valid, verified google credential object
+   * @param userEmail the email address of the user
+   * @return a future which completes once the response is written
+   */
+  @Override
+  public CompletionStage<Void> doGetAsync(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Credential googleCredential,
+      String userEmail) {
+    CompletableFuture<Void> completion = new CompletableFuture<>();
+    DashboardParameters parameters;
+    try {
+      parameters = getParameters(request, response);
+    } catch (IOException e) {
+      completion.completeExceptionally(e);
+      return completion;
+    }
+    if (parameters == null) {
+      completion.complete(null);
+      return completion;
+    }
+
+    RequestTiming timing = RequestTiming.forRequest(request);
+    GmailClient gmailClient =
+        timing.createClient(
+            () -> gmailClientFactory.getGmailClient(googleCredential),
+            InstrumentedGmailClient::new);
+    CalendarClient calendarClient =
+        timing.createClient(
+            () -> calendarClientFactory.getCalendarClient(googleCredential),
+            InstrumentedCalendarClient::new);
+    TasksClient tasksClient =
+        timing.createClient(
+            () -> tasksClientFactory.getTasksClient(googleCredential),
+            InstrumentedTasksClient::new);
+
+    CompletableFuture<TasksResponse> tasks =
+        supplyAsync(
+            () -> {
+              List<TaskList> allTaskLists = tasksClient.listTaskLists();
+              List<Task> selectedTasks =
+                  TasksServlet.getSelectedTasks(tasksClient, parameters.taskLists);
+              return TasksServlet.createTasksResponse(allTaskLists, selectedTasks);
+            },
+            executor);
+
+    // Events of the next days, shared by the Calendar and Plan Mail panels
+    CompletableFuture<Date> timeMin = supplyAsync(calendarClient::getCurrentTime, executor);
+    CompletableFuture<Date> timeMax =
+        timeMin.thenApply(
+            time -> Date.from(time.toInstant().plus(Duration.ofDays(CalendarServlet.NUM_DAYS))));
+    CompletableFuture<List<Event>> events =
+        timeMax.thenCompose(
+            time ->
+                supplyAsync(
+                    () -> CalendarServlet.getEvents(calendarClient, timeMin.join(), time),
+                    executor));
+
+    // The Gmail panel only needs the headers of its unread emails, while Plan Mail needs the bodies
+    // of the last week's. Each is fetched in the format and over the period its servlet uses
+    CompletableFuture<List<Message>> gmailMessages =
+        supplyAsync(
+            () ->
+                gmailClient.getUnreadEmailsFromNDays(
+                    GmailClient.MessageFormat.METADATA, parameters.nDays),
+            executor);
+    CompletableFuture<List<Message>> planMailMessages =
+        supplyAsync(
+            () ->
+                gmailClient.getUnreadEmailsFromNDays(
+                    GmailClient.MessageFormat.FULL, PlanMailServlet.UNREAD_EMAIL_DAYS),
+            executor);
+
+    CompletableFuture<List<ActionableMessage>> actionableEmails;
+    if (parameters.subjectLinePhrases == null) {
+      actionableEmails = CompletableFuture.completedFuture(null);
+    } else {
+      actionableEmails =
+          supplyAsync(
+                  () ->
+                      gmailClient.getActionableEmails(
+                          parameters.subjectLinePhrases,
+                          parameters.unreadOnly,
+                          parameters.actionableNDays,
+                          GmailActionableEmailsServlet.METADATA_HEADERS),
+                  executor)
+              .thenApply(
+                  messages ->
+                      GmailActionableEmailsServlet.createActionableMessages(
+                          messages, userEmail, actionableMessageHelper));
+    }
+
+    CompletableFuture<GmailResponse> gmail =
+        gmailMessages.thenApply(
+            messages ->
+                GmailServlet.createGmailResponse(messages, parameters.mHours, gmailResponseHelper));
+    CompletableFuture<CalendarSummaryResponse> calendar =
+        events.thenApply(
+            calendarEvents ->
+                CalendarServlet.createCalendarSummaryResponse(
+                    calendarEvents, timeMin.join(), timeMax.join()));
+    CompletableFuture<PlanMailResponse> planMail =
+        events.thenCombine(
+            planMailMessages,
+            (calendarEvents, messages) ->
+                PlanMailServlet.createPlanMailResponse(
+                    calendarEvents, timeMin.join(), timeMax.join(), parameters.summary, messages));
+
+    CompletableFuture.allOf(tasks, gmail, calendar, planMail, actionableEmails)
+        .thenAccept(
+            ignored -> {
+              DashboardResponse dashboardResponse =
+                  new DashboardResponse(
+                      tasks.join(),
+                      gmail.join(),
+                      calendar.join(),
+                      planMail.join(),
+                      actionableEmails.join());
+              // The panels depend on the current time as well as the upstream data, so the
+              // dashboard is validated by its content, like the panel endpoints
+              try {
+                ETagUtility.sendJsonWithETag(request, response, dashboardResponse);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            })
+        .whenComplete(
+            (ignored, error) -> {
+              if (error == null) {
+                completion.complete(null);
+              } else {
+                completion.completeExceptionally(unwrap(error));
+              }
+            });
+    return completion;
+  }
+
+  /**
+   * Parses and validates the request parameters, sending a 400 error if they are invalid
+   *
+   * @param request Http request from the client
+   * @param response Http response to be sent to client
+   * @return the parsed parameters, or null if an error was sent
+   * @throws IOException if the error cannot be sent
+   */
+  private static DashboardParameters getParameters(
+      HttpServletRequest request, HttpServletResponse response) throws IOException {
+    DashboardParameters parameters = new DashboardParameters();
+    try {
+      parameters.nDays = Integer.parseInt(request.getParameter("nDays"));
+      parameters.mHours = Integer.parseInt(request.getParameter("mHours"));
+    } catch (NumberFormatException e) {
+      response.sendError(400, "nDays and mHours must be integers");
+      return null;
+    }
+    if (parameters.nDays <= 0 || parameters.mHours <= 0) {
+      response.sendError(400, "nDays and mHours must be positive");
+      return null;
+    }
+    if (parameters.mHours > TimeUnit.DAYS.toHours(parameters.nDays)) {
+      response.sendError(400, "mHours must represent less time than nDays");
+      return null;
+    }
+
+    parameters.taskLists = request.getParameter("taskLists");
+    parameters.summary = request.getParameter("summary");
+
+    if (request.getParameter("subjectLinePhrases") == null) {
+      return parameters;
+    }
+    parameters.subjectLinePhrases =
+        ServletUtility.getListFromQueryString(request, "subjectLinePhrases");
+    if (parameters.subjectLinePhrases.isEmpty()) {
+      response.sendError(400, "subjectLinePhrases must be non-empty");
+      return null;
+    }
+    parameters.unreadOnly = Boolean.parseBoolean(request.getParameter("unreadOnly"));
+    try {
+      parameters.actionableNDays = Integer.parseInt(request.getParameter("actionableNDays"));
+    } catch (NumberFormatException e) {
+      response.sendError(400, "actionableNDays must be present with subjectLinePhrases");
+      return null;
+    }
+    if (parameters.actionableNDays <= 0) {
+      response.sendError(400, "actionableNDays must be positive");
+      return null;
+    }
+    return parameters;
+  }
+
+  /**
+   * Creates the bounded pool shared by the fetches of every request. Threads from
+   * ThreadManager.currentRequestThreadFactory end with the request that created them, so the pool
+   * uses standard daemon threads, which the java8 runtime supports
+   *
+   * @return a fixed size executor with a bounded queue
+   */
+  private static ExecutorService createExecutor() {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            FETCH_THREADS,
+            FETCH_THREADS,
+            1,
+            TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(FETCH_QUEUE_CAPACITY),
+            new ThreadFactoryBuilder().setNameFormat("dashboard-fetch-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static <T> CompletableFuture<T> supplyAsync(IoSupplier<T> supplier, Executor executor) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return supplier.get();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        },
+        executor);
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    while (error.getCause() != null
+        && (error instanceof CompletionException
+            || error instanceof UncheckedIOException)) {
+      error = error.getCause();
+    }
+    return error;
+  }
+
+  /** Supplies a value from an upstream API. */
+  private interface IoSupplier<T> {
+    T get() throws IOException;
+  }
+
+  /** The validated parameters of a dashboard request. */
+  private static final class DashboardParameters {
+    private int nDays;
+    private int mHours;
+    private String taskLists;
+    private String summary;
+    private List<String> subjectLinePhrases;
+    private boolean unreadOnly;
+    private int actionableNDays;
+  }
+}
@@ -25,7 +25,9 @@ import com.google.sps.model.AuthenticatedHttpServlet;
 import com.google.sps.model.AuthenticationVerifier;
 import com.google.sps.model.GmailClient;
 import com.google.sps.model.GmailClientFactory;
-import com.google.sps.model.GmailClientImpl;
+import com.google.sps.model.InstrumentedGmailClient;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.RequestTiming;
 import com.google.sps.utility.GmailUtility;
 import com.google.sps.utility.JsonUtility;
 import com.google.sps.utility.ServletUtility;
@@ -48,11 +50,12 @@ public class GmailActionableEmailsServlet extends AuthenticatedHttpServlet {
 
   /** Create new servlet instance (called by java during HttpRequest handling */
   public GmailActionableEmailsServlet() {
-    gmailClientFactory = new GmailClientImpl.Factory();
+    gmailClientFactory = PooledGoogleClientFactory.getDefault();
     actionableMessageHelper = new ActionableMessageHelperImpl();
   }
 
-  private static final List<String> METADATA_HEADERS =
+  /** Headers requested for each actionable email */
+  public static final List<String> METADATA_HEADERS =
       ImmutableList.of("Subject", "From", "To", "List-ID");
 
   /**
@@ -95,7 +98,11 @@ public class GmailActionableEmailsServlet extends AuthenticatedHttpServlet {
       Credential googleCredential,
       String userEmail)
       throws IOException {
-    GmailClient gmailClient = gmailClientFactory.getGmailClient(googleCredential);
+    GmailClient gmailClient =
+        RequestTiming.forRequest(request)
+            .createClient(
+                () -> gmailClientFactory.getGmailClient(googleCredential),
+                InstrumentedGmailClient::new);
 
     List<String> subjectLinePhrases;
     try {
@@ -125,24 +132,45 @@ public class GmailActionableEmailsServlet extends AuthenticatedHttpServlet {
     }
 
     List<ActionableMessage> actionableEmails =
-        gmailClient.getActionableEmails(subjectLinePhrases, unreadOnly, nDays, METADATA_HEADERS)
-            .stream()
-            .map((message) -> createActionableMessage(message, userEmail))
-            .sorted(Comparator.reverseOrder())
-            .collect(Collectors.toList());
+        createActionableMessages(
+            gmailClient.getActionableEmails(
+                subjectLinePhrases, unreadOnly, nDays, METADATA_HEADERS),
+            userEmail,
+            actionableMessageHelper);
     JsonUtility.sendJson(response, actionableEmails);
   }
 
+  /**
+   * Creates ActionableMessage objects from Gmail Messages, highest priority first. Public for use
+   * by the dashboard
+   *
+   * @param messages actionable Messages from user's Gmail account, with the METADATA_HEADERS
+   * @param userEmail the email address of the current user. Used for assigning priority
+   * @param actionableMessageHelper ActionableMessageHelper implementation
+   * @return List of ActionableMessage objects, sorted by descending priority
+   * @throws GmailMessageFormatException if the "Subject" header is not present in a message
+   */
+  public static List<ActionableMessage> createActionableMessages(
+      List<Message> messages, String userEmail, ActionableMessageHelper actionableMessageHelper)
+      throws GmailMessageFormatException {
+    return messages.stream()
+        .map((message) -> createActionableMessage(message, userEmail, actionableMessageHelper))
+        .sorted(Comparator.reverseOrder())
+        .collect(Collectors.toList());
+  }
+
   /**
    * Creates an ActionableMessage object from a Gmail Message
    *
    * @param message Message object from user's Gmail account
    * @param userEmail the email address of the current user. Used for assigning priority
+   * @param actionableMessageHelper ActionableMessageHelper implementation
    * @return ActionableMessage object with information from Gmail Message object
    * @throws GmailMessageFormatException if the "Subject" header is not present (despite filtering
    *     for this in the search query).
    */
-  private ActionableMessage createActionableMessage(Message message, String userEmail)
+  private static ActionableMessage createActionableMessage(
+      Message message, String userEmail, ActionableMessageHelper actionableMessageHelper)
       throws GmailMessageFormatException {
     String messageId = message.getId();
     String subject = GmailUtility.extractHeader(message, "Subject").getValue();
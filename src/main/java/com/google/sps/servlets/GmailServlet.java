@@ -20,10 +20,13 @@ import com.google.sps.model.AuthenticatedHttpServlet;
 import com.google.sps.model.AuthenticationVerifier;
 import com.google.sps.model.GmailClient;
 import com.google.sps.model.GmailClientFactory;
-import com.google.sps.model.GmailClientImpl;
 import com.google.sps.model.GmailResponse;
 import com.google.sps.model.GmailResponseHelper;
 import com.google.sps.model.GmailResponseHelperImpl;
+import com.google.sps.model.InstrumentedGmailClient;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.RequestTiming;
+import com.google.sps.utility.ETagUtility;
 import com.google.sps.utility.JsonUtility;
 import java.io.IOException;
 import java.util.List;
@@ -41,7 +44,7 @@ public class GmailServlet extends AuthenticatedHttpServlet {
   /** Create servlet with default GmailClient and Authentication Verifier implementations */
   public GmailServlet() {
     super();
-    gmailClientFactory = new GmailClientImpl.Factory();
+    gmailClientFactory = PooledGoogleClientFactory.getDefault();
     gmailResponseHelper = new GmailResponseHelperImpl();
   }
 
@@ -79,7 +82,11 @@ public class GmailServlet extends AuthenticatedHttpServlet {
     assert googleCredential != null
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
 
-    GmailClient gmailClient = gmailClientFactory.getGmailClient(googleCredential);
+    GmailClient gmailClient =
+        RequestTiming.forRequest(request)
+            .createClient(
+                () -> gmailClientFactory.getGmailClient(googleCredential),
+                InstrumentedGmailClient::new);
 
     int nDays;
     int mHours;
@@ -101,8 +108,10 @@ public class GmailServlet extends AuthenticatedHttpServlet {
       return;
     }
 
+    // The statistics depend on the current time as well as the mailbox, so they are validated by
+    // their content
     GmailResponse gmailResponse = generateGmailResponse(nDays, mHours, gmailClient);
-    JsonUtility.sendJson(response, gmailResponse);
+    ETagUtility.sendJsonWithETag(request, response, gmailResponse);
   }
 
   /**
@@ -120,6 +129,20 @@ public class GmailServlet extends AuthenticatedHttpServlet {
     GmailClient.MessageFormat messageFormat = GmailClient.MessageFormat.METADATA;
 
     List<Message> unreadMessages = gmailClient.getUnreadEmailsFromNDays(messageFormat, nDays);
+    return createGmailResponse(unreadMessages, mHours, gmailResponseHelper);
+  }
+
+  /**
+   * Creates a GmailResponse object from the user's unread emails. Public for use by the dashboard
+   *
+   * @param unreadMessages unread emails from the last nDays days, in METADATA or FULL format
+   * @param mHours unread emails from the last mHours hours should be used to calculate the
+   *     "unreadEmailsFromMHours" statistic
+   * @param gmailResponseHelper GmailResponseHelper implementation
+   * @return GmailResponse object
+   */
+  public static GmailResponse createGmailResponse(
+      List<Message> unreadMessages, int mHours, GmailResponseHelper gmailResponseHelper) {
     int unreadEmailsFromNDays = gmailResponseHelper.countEmailsFromNDays(unreadMessages);
     int unreadEmailsFromMHours = gmailResponseHelper.countEmailsFromMHours(unreadMessages, mHours);
     int unreadImportantEmailsFromNDays = gmailResponseHelper.countImportantEmails(unreadMessages);
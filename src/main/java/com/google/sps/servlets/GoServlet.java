@@ -16,41 +16,71 @@ package com.google.sps.servlets;
 
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.services.tasks.model.Task;
+import com.google.appengine.api.ThreadManager;
+import com.google.gson.Gson;
 import com.google.maps.model.DirectionsResult;
 import com.google.maps.model.GeocodingResult;
 import com.google.maps.model.LatLng;
 import com.google.maps.model.PlaceType;
+import com.google.maps.model.PlacesSearchResult;
 import com.google.maps.model.RankBy;
+import com.google.sps.data.WaypointCombinationResult;
 import com.google.sps.exceptions.DirectionsException;
 import com.google.sps.exceptions.GeocodingException;
 import com.google.sps.exceptions.PlacesException;
+import com.google.sps.model.ApiMetrics;
 import com.google.sps.model.AuthenticatedHttpServlet;
+import com.google.sps.model.CachedDirectionsClient;
 import com.google.sps.model.DirectionsClient;
 import com.google.sps.model.DirectionsClientFactory;
 import com.google.sps.model.DirectionsClientImpl;
 import com.google.sps.model.GeocodingClient;
 import com.google.sps.model.GeocodingClientFactory;
 import com.google.sps.model.GeocodingClientImpl;
+import com.google.sps.model.InstrumentedDirectionsClient;
+import com.google.sps.model.InstrumentedGeocodingClient;
+import com.google.sps.model.InstrumentedPlacesClient;
+import com.google.sps.model.InstrumentedTasksClient;
 import com.google.sps.model.PlacesClient;
 import com.google.sps.model.PlacesClientFactory;
 import com.google.sps.model.PlacesClientImpl;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.QpsGovernor;
+import com.google.sps.model.RateLimitedDirectionsClient;
+import com.google.sps.model.RateLimitedGeocodingClient;
+import com.google.sps.model.RateLimitedPlacesClient;
+import com.google.sps.model.RequestTiming;
 import com.google.sps.model.TasksClient;
 import com.google.sps.model.TasksClientFactory;
-import com.google.sps.model.TasksClientImpl;
 import com.google.sps.utility.GeocodingResultUtility;
 import com.google.sps.utility.JsonUtility;
 import com.google.sps.utility.KeyProvider;
 import com.google.sps.utility.LocationsUtility;
+import com.google.sps.utility.RouteBoundUtility;
 import com.google.sps.utility.TasksUtility;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.servlet.ServletException;
@@ -63,11 +93,29 @@ import org.apache.commons.lang3.StringUtils;
 @WebServlet("/go")
 public class GoServlet extends AuthenticatedHttpServlet {
 
+  private static final Logger logger = Logger.getLogger(GoServlet.class.getName());
+
+  // Number of Directions API calls which may be in flight at once for a single request
+  private static final int MAX_CONCURRENT_DIRECTIONS_REQUESTS = 4;
+  // Time allowed for scoring waypoint combinations before the best route so far is returned
+  private static final Duration COMBINATION_SEARCH_DEADLINE = Duration.ofSeconds(20);
+  // Maps API calls which are not made on behalf of a signed in user share one queue
+  private static final String UNATTRIBUTED_USER = "";
+  // Content type of the stream of routes sent when the stream query parameter is true
+  private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+  // Server-Timing stage of the waypoint combination search
+  private static final String ROUTE_STAGE = "route";
+
   private final DirectionsClientFactory directionsClientFactory;
+  // Wraps a rate limited Directions client in a client serving repeat requests from a cache
+  private final UnaryOperator<DirectionsClient> directionsCache;
   private final PlacesClientFactory placesClientFactory;
   private final TasksClientFactory tasksClientFactory;
   private final GeocodingClientFactory geocodingClientFactory;
   private final String apiKey;
+  private final Supplier<ThreadFactory> threadFactorySupplier;
+  private final int maxConcurrentDirectionsRequests;
+  private final Duration combinationSearchDeadline;
 
   public class GoResponse {
     List<String> streetAddressWaypoints;
@@ -96,17 +144,53 @@ public class GoServlet extends AuthenticatedHttpServlet {
     }
   }
 
+  /**
+   * Receives the routes found while waypoints are optimized, before the optimal route is known.
+   */
+  public interface RouteListener {
+    /**
+     * Called with the route through the street address waypoints only, before any place is
+     * searched for.
+     *
+     * @param directionsResult The route from the Directions API.
+     */
+    void onBaselineRoute(DirectionsResult directionsResult);
+
+    /**
+     * Called whenever a waypoint combination is found to be shorter than every combination scored
+     * before it. Combinations are scored concurrently, so this may be called from several threads
+     * and out of order.
+     *
+     * @param directionsResult The route from the Directions API.
+     */
+    void onImprovedRoute(DirectionsResult directionsResult);
+  }
+
   /**
    * Construct servlet with default DirectionsClient.
    *
    * @throws IOException
    */
   public GoServlet() throws IOException {
-    directionsClientFactory = new DirectionsClientImpl.Factory();
-    placesClientFactory = new PlacesClientImpl.Factory();
-    tasksClientFactory = new TasksClientImpl.Factory();
-    geocodingClientFactory = new GeocodingClientImpl.Factory();
-    apiKey = (new KeyProvider()).getKey("apiKey");
+    // Repeat requests, and the final route for the chosen combination, are served from the cache
+    // Only calls which reach the Directions API, i.e. cache misses, wait for quota and are
+    // recorded in ApiMetrics
+    directionsClientFactory =
+        new InstrumentedDirectionsClient.Factory(
+            new DirectionsClientImpl.Factory(), ApiMetrics.getDefault());
+    directionsCache = new CachedDirectionsClient.Factory(directionsClientFactory)::getCachingClient;
+    placesClientFactory =
+        new InstrumentedPlacesClient.Factory(
+            new PlacesClientImpl.Factory(), ApiMetrics.getDefault());
+    tasksClientFactory = PooledGoogleClientFactory.getDefault();
+    geocodingClientFactory =
+        new InstrumentedGeocodingClient.Factory(
+            new GeocodingClientImpl.Factory(), ApiMetrics.getDefault());
+    apiKey = KeyProvider.getDefault().getKey("apiKey");
+    // App Engine only allows request threads to be created through ThreadManager
+    threadFactorySupplier = ThreadManager::currentRequestThreadFactory;
+    maxConcurrentDirectionsRequests = MAX_CONCURRENT_DIRECTIONS_REQUESTS;
+    combinationSearchDeadline = COMBINATION_SEARCH_DEADLINE;
   }
 
   /**
@@ -121,31 +205,78 @@ public class GoServlet extends AuthenticatedHttpServlet {
       TasksClientFactory tasksClientFactory,
       GeocodingClientFactory geocodingClientFactory,
       String apiKey) {
+    this(
+        directionsClientFactory,
+        placesClientFactory,
+        tasksClientFactory,
+        geocodingClientFactory,
+        apiKey,
+        MAX_CONCURRENT_DIRECTIONS_REQUESTS,
+        COMBINATION_SEARCH_DEADLINE);
+  }
+
+  /**
+   * Construct servlet with explicit implementation of DirectionsClient and explicit limits on
+   * scoring waypoint combinations.
+   *
+   * @param maxConcurrentDirectionsRequests Number of Directions API calls which may be in flight at
+   *     once while scoring waypoint combinations.
+   * @param combinationSearchDeadline Time allowed for scoring waypoint combinations before the best
+   *     route so far is returned.
+   */
+  public GoServlet(
+      DirectionsClientFactory directionsClientFactory,
+      PlacesClientFactory placesClientFactory,
+      TasksClientFactory tasksClientFactory,
+      GeocodingClientFactory geocodingClientFactory,
+      String apiKey,
+      int maxConcurrentDirectionsRequests,
+      Duration combinationSearchDeadline) {
     this.directionsClientFactory = directionsClientFactory;
+    this.directionsCache = UnaryOperator.identity();
     this.placesClientFactory = placesClientFactory;
     this.tasksClientFactory = tasksClientFactory;
     this.geocodingClientFactory = geocodingClientFactory;
     this.apiKey = apiKey;
+    this.threadFactorySupplier = Executors::defaultThreadFactory;
+    this.maxConcurrentDirectionsRequests = maxConcurrentDirectionsRequests;
+    this.combinationSearchDeadline = combinationSearchDeadline;
   }
 
   /**
-   * Returns the most optimal order of travel between addresses.
+   * Returns the most optimal order of travel between addresses. Maps API calls are queued for
+   * quota on behalf of the user, so users sharing the instance are served in turn. If the stream
+   * query parameter is true, routes are instead streamed as newline-delimited JSON objects: a
+   * baseline route through the street addresses first, then every improved route as it is found,
+   * and finally the most optimal route. Each object has a stage (baseline, improved or final) and
+   * the legs of the route.
    *
    * @param taskLists A String of comma separated task list IDs from the query string.
    * @param request HTTP request from the client.
    * @param response HTTP response to the client.
+   * @param userEmail The email address of the user the route is planned for.
    * @throws ServletException
    * @throws IOException
    */
   @Override
+  @SuppressWarnings("try")
   public void doGet(
-      HttpServletRequest request, HttpServletResponse response, Credential googleCredential)
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Credential googleCredential,
+      String userEmail)
       throws ServletException, IOException {
     assert googleCredential != null
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
     // Get all tasks from user's tasks account TODO: Allow user to pick specific task lists PR #149
-    TasksClient tasksClient = tasksClientFactory.getTasksClient(googleCredential);
-    DirectionsClient directionsClient = directionsClientFactory.getDirectionsClient(apiKey);
+    RequestTiming timing = RequestTiming.forRequest(request);
+    TasksClient tasksClient =
+        timing.createClient(
+            () -> tasksClientFactory.getTasksClient(googleCredential),
+            InstrumentedTasksClient::new);
+    DirectionsClient directionsClient =
+        timing.createClient(
+            () -> getDirectionsClient(userEmail), InstrumentedDirectionsClient::new);
 
     // Initialize Tasks Response
     List<Task> tasks;
@@ -160,11 +291,19 @@ public class GoServlet extends AuthenticatedHttpServlet {
 
     String origin = request.getParameter("origin");
     String destination = request.getParameter("destination");
-    List<String> waypoints = LocationsUtility.getLocations("Location", tasks);
+    List<String> waypoints = LocationsUtility.getLocations(LocationsUtility.LOCATION_PREFIX, tasks);
 
     try {
-      List<String> optimalWaypointCombination =
-          optimizeSearchNearbyWaypoints(origin, destination, waypoints);
+      if (Boolean.parseBoolean(request.getParameter("stream"))) {
+        streamOptimizedRoutes(
+            response, timing, directionsClient, origin, destination, waypoints, userEmail);
+        return;
+      }
+      List<String> optimalWaypointCombination;
+      try (RequestTiming.Stage stage = timing.start(ROUTE_STAGE)) {
+        optimalWaypointCombination =
+            optimizeSearchNearbyWaypoints(origin, destination, waypoints, userEmail);
+      }
       DirectionsResult directionsResult =
           directionsClient.getDirections(origin, destination, optimalWaypointCombination);
       List<String> optimizedRoute = DirectionsClient.parseDirectionsResult(directionsResult);
@@ -174,6 +313,94 @@ public class GoServlet extends AuthenticatedHttpServlet {
     }
   }
 
+  /**
+   * Streams routes as they are found, flushing each one to the client so a usable route is shown
+   * long before every waypoint combination is scored. The search and the final route are timed
+   * the same way as for a single response.
+   */
+  @SuppressWarnings("try")
+  private void streamOptimizedRoutes(
+      HttpServletResponse response,
+      RequestTiming timing,
+      DirectionsClient directionsClient,
+      String origin,
+      String destination,
+      List<String> waypoints,
+      String userEmail)
+      throws GeocodingException, PlacesException, DirectionsException, IOException {
+    response.setContentType(NDJSON_CONTENT_TYPE);
+    RouteStream routeStream = new RouteStream(response.getWriter());
+    List<String> optimalWaypointCombination;
+    try (RequestTiming.Stage stage = timing.start(ROUTE_STAGE)) {
+      optimalWaypointCombination =
+          optimizeSearchNearbyWaypoints(origin, destination, waypoints, userEmail, routeStream);
+    }
+    // Served from the cache, as the optimal combination was scored while optimizing
+    routeStream.sendFinalRoute(
+        directionsClient.getDirections(origin, destination, optimalWaypointCombination));
+  }
+
+  /**
+   * Writes routes to the client as newline-delimited JSON. Improved routes which arrive out of
+   * order or after the final route are dropped, so every improved route sent is shorter than the
+   * last.
+   */
+  private static class RouteStream implements RouteListener {
+    private final PrintWriter writer;
+    private final Gson gson = JsonUtility.getGson();
+    private OptionalLong sentTravelTime = OptionalLong.empty();
+    private boolean finished;
+
+    RouteStream(PrintWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public synchronized void onBaselineRoute(DirectionsResult directionsResult) {
+      send("baseline", directionsResult);
+    }
+
+    @Override
+    public synchronized void onImprovedRoute(DirectionsResult directionsResult) {
+      long travelTime = DirectionsClient.getTotalTravelTime(directionsResult);
+      if (finished
+          || (sentTravelTime.isPresent() && travelTime >= sentTravelTime.getAsLong())) {
+        return;
+      }
+      sentTravelTime = OptionalLong.of(travelTime);
+      send("improved", directionsResult);
+    }
+
+    synchronized void sendFinalRoute(DirectionsResult directionsResult) {
+      send("final", directionsResult);
+      finished = true;
+    }
+
+    private void send(String stage, DirectionsResult directionsResult) {
+      Map<String, Object> update = new LinkedHashMap<>();
+      update.put("stage", stage);
+      update.put("route", DirectionsClient.parseDirectionsResult(directionsResult));
+      writer.println(gson.toJson(update));
+      writer.flush();
+    }
+  }
+
+  private DirectionsClient getDirectionsClient(String user) {
+    return directionsCache.apply(
+        new RateLimitedDirectionsClient(
+            directionsClientFactory.getDirectionsClient(apiKey), QpsGovernor.DIRECTIONS, user));
+  }
+
+  private PlacesClient getPlacesClient(String user) {
+    return new RateLimitedPlacesClient(
+        placesClientFactory.getPlacesClient(apiKey), QpsGovernor.PLACES, user);
+  }
+
+  private GeocodingClient getGeocodingClient(String user) {
+    return new RateLimitedGeocodingClient(
+        geocodingClientFactory.getGeocodingClient(apiKey), QpsGovernor.GEOCODING, user);
+  }
+
   /**
    * Separate waypoints into street addresses and non street addresses. Street addresses are
    * converted to coordinates and non street addresses are converted to place types. Scope of method
@@ -184,11 +411,25 @@ public class GoServlet extends AuthenticatedHttpServlet {
    * @throws GeocodingException An exception thrown when an error occurs with the Geocoding API.
    */
   public GoResponse separateWaypoints(List<String> waypoints) throws GeocodingException {
+    return separateWaypoints(waypoints, UNATTRIBUTED_USER);
+  }
+
+  /**
+   * Separate waypoints into street addresses and non street addresses on behalf of a user. Scope of
+   * method is public for testing purposes.
+   *
+   * @param waypoints A list of waypoints to filter into the two categories: street addresses and
+   *     non street addresses.
+   * @param user Identifies the user Geocoding API calls are queued for quota on behalf of.
+   * @throws GeocodingException An exception thrown when an error occurs with the Geocoding API.
+   */
+  public GoResponse separateWaypoints(List<String> waypoints, String user)
+      throws GeocodingException {
     List<String> streetAddressWaypoints = new ArrayList<>();
     List<Optional<LatLng>> streetAddressWaypointsAsCoordinates = new ArrayList<>();
     List<Optional<PlaceType>> nonStreetAddressWaypointsAsPlaceTypes = new ArrayList<>();
     for (String waypoint : waypoints) {
-      GeocodingClient geocodingClient = geocodingClientFactory.getGeocodingClient(apiKey);
+      GeocodingClient geocodingClient = getGeocodingClient(user);
       List<GeocodingResult> geocodingResult = geocodingClient.getGeocodingResult(waypoint);
       if (GeocodingResultUtility.hasStreetAddress(geocodingResult)) {
         streetAddressWaypoints.add(waypoint);
@@ -221,15 +462,44 @@ public class GoServlet extends AuthenticatedHttpServlet {
   public List<List<String>> searchForPlacesNearLocations(
       List<PlaceType> placeTypeWaypoints, List<LatLng> streetAddressWaypoints)
       throws PlacesException {
+    return searchForPlacesNearLocations(
+        placeTypeWaypoints, streetAddressWaypoints, new HashMap<>(), UNATTRIBUTED_USER);
+  }
+
+  /**
+   * Search nearby every street address with known coordinates for a place type match, recording the
+   * coordinates of every match found. Scope of method is public for testing purposes.
+   *
+   * @param placeTypeWaypoints A list of place types to call search for. (e.g. restaurant,
+   *     supermarket, police station)
+   * @param streetAddressWaypoints A list of coordinates to look for place type matches around.
+   * @param placeCoordinates A pointer to a map to contain the coordinates of every match, keyed by
+   *     the same place ID waypoint as in the returned lists.
+   * @param user Identifies the user Places API calls are queued for quota on behalf of.
+   * @return A list of lists of place IDs where each list represents the search nearby result for
+   *     every known coordinate.
+   * @throws PlacesException An exception thrown when an error occurs with the Places API.
+   */
+  public List<List<String>> searchForPlacesNearLocations(
+      List<PlaceType> placeTypeWaypoints,
+      List<LatLng> streetAddressWaypoints,
+      Map<String, LatLng> placeCoordinates,
+      String user)
+      throws PlacesException {
     List<List<String>> allSearchNearbyResults = new ArrayList<>();
     for (PlaceType placeTypeWaypoint : placeTypeWaypoints) {
       List<String> searchNearbyResults = new ArrayList<>();
       for (LatLng streetAddressWaypoint : streetAddressWaypoints) {
-        PlacesClient placesClient = placesClientFactory.getPlacesClient(apiKey);
-        String nearestMatch =
-            placesClient.searchNearby(streetAddressWaypoint, placeTypeWaypoint, RankBy.DISTANCE);
-        if (nearestMatch != null) {
-          searchNearbyResults.add("place_id:" + nearestMatch);
+        PlacesClient placesClient = getPlacesClient(user);
+        Optional<PlacesSearchResult> nearestMatch =
+            placesClient.searchNearbyPlace(
+                streetAddressWaypoint, placeTypeWaypoint, RankBy.DISTANCE);
+        if (nearestMatch.isPresent() && !StringUtils.isEmpty(nearestMatch.get().placeId)) {
+          String placeIdWaypoint = "place_id:" + nearestMatch.get().placeId;
+          searchNearbyResults.add(placeIdWaypoint);
+          if (nearestMatch.get().geometry != null && nearestMatch.get().geometry.location != null) {
+            placeCoordinates.put(placeIdWaypoint, nearestMatch.get().geometry.location);
+          }
         }
       }
       allSearchNearbyResults.add(searchNearbyResults);
@@ -243,8 +513,9 @@ public class GoServlet extends AuthenticatedHttpServlet {
    *
    * @param origin The starting point of travel.
    * @param destination The ending point of travel.
-   * @param allWaypointCombinations A list of waypoint combinations to select between for the
-   *     shortest travel time possible.
+   * @param allWaypointCombinations The waypoint combinations to select between for the shortest
+   *     travel time possible. Combinations are consumed one at a time, so a lazy iterable avoids
+   *     holding every combination in memory.
    * @param streetAddressWaypoints A list of street address waypoints to be included in every
    *     waypoint combination.
    * @return The most optimal combination of waypoint with the shortest travel time.
@@ -253,26 +524,225 @@ public class GoServlet extends AuthenticatedHttpServlet {
   public List<String> chooseWaypointCombinationWithShortestTravelTime(
       String origin,
       String destination,
-      List<List<String>> allWaypointCombinations,
+      Iterable<List<String>> allWaypointCombinations,
       List<String> streetAddressWaypoints)
       throws DirectionsException {
-    OptionalLong minTravelTime = OptionalLong.empty();
-    List<String> optimalWaypointCombination = new ArrayList<String>();
-    for (List<String> waypointCombination : allWaypointCombinations) {
-      List<String> waypoints =
-          Stream.of(waypointCombination, streetAddressWaypoints)
-              .flatMap(Collection::stream)
-              .collect(Collectors.toList());
-      DirectionsClient directionsClient = directionsClientFactory.getDirectionsClient(apiKey);
-      DirectionsResult directionsResult =
-          directionsClient.getDirections(origin, destination, waypoints);
-      long travelTime = DirectionsClient.getTotalTravelTime(directionsResult);
-      if (!minTravelTime.isPresent() || travelTime < minTravelTime.getAsLong()) {
+    return searchWaypointCombinations(
+            origin,
+            destination,
+            allWaypointCombinations,
+            streetAddressWaypoints,
+            waypointCombination -> 0)
+        .getOptimalWaypoints();
+  }
+
+  /**
+   * Chooses the combination of waypoints that results in the shortest travel time possible,
+   * skipping any combination whose travel time lower bound cannot beat the shortest travel time
+   * found so far. Pruned combinations are never sent to the Directions API. Combinations are scored
+   * concurrently, and once the search deadline passes any calls still in flight are cancelled and
+   * the best combination so far is returned. Scope of method is public for testing purposes.
+   *
+   * @param origin The starting point of travel.
+   * @param destination The ending point of travel.
+   * @param allWaypointCombinations The waypoint combinations to select between for the shortest
+   *     travel time possible.
+   * @param streetAddressWaypoints A list of street address waypoints to be included in every
+   *     waypoint combination.
+   * @param travelTimeLowerBound A function giving a lower bound in seconds on the travel time of a
+   *     route through a waypoint combination and every street address waypoint.
+   * @return The most optimal combination of waypoints along with how many combinations were
+   *     evaluated and pruned. If the deadline passes before any combination is scored, the first
+   *     combination is returned unscored.
+   * @throws DirectionsException An exception thrown when an error occurs with the Directions API.
+   */
+  public WaypointCombinationResult searchWaypointCombinations(
+      String origin,
+      String destination,
+      Iterable<List<String>> allWaypointCombinations,
+      List<String> streetAddressWaypoints,
+      ToLongFunction<List<String>> travelTimeLowerBound)
+      throws DirectionsException {
+    return searchWaypointCombinations(
+        origin,
+        destination,
+        allWaypointCombinations,
+        streetAddressWaypoints,
+        travelTimeLowerBound,
+        UNATTRIBUTED_USER,
+        null);
+  }
+
+  /**
+   * Chooses the combination of waypoints that results in the shortest travel time possible on
+   * behalf of a user, as described above. Scope of method is public for testing purposes.
+   *
+   * @param origin The starting point of travel.
+   * @param destination The ending point of travel.
+   * @param allWaypointCombinations The waypoint combinations to select between for the shortest
+   *     travel time possible.
+   * @param streetAddressWaypoints A list of street address waypoints to be included in every
+   *     waypoint combination.
+   * @param travelTimeLowerBound A function giving a lower bound in seconds on the travel time of a
+   *     route through a waypoint combination and every street address waypoint.
+   * @param user Identifies the user Directions API calls are queued for quota on behalf of.
+   * @param routeListener Listener told about every improved route as it is found, or null.
+   * @return The most optimal combination of waypoints along with how many combinations were
+   *     evaluated and pruned.
+   * @throws DirectionsException An exception thrown when an error occurs with the Directions API.
+   */
+  public WaypointCombinationResult searchWaypointCombinations(
+      String origin,
+      String destination,
+      Iterable<List<String>> allWaypointCombinations,
+      List<String> streetAddressWaypoints,
+      ToLongFunction<List<String>> travelTimeLowerBound,
+      String user,
+      RouteListener routeListener)
+      throws DirectionsException {
+    long deadline = System.nanoTime() + combinationSearchDeadline.toNanos();
+    CombinationSearch search = new CombinationSearch();
+    Semaphore permits = new Semaphore(maxConcurrentDirectionsRequests);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(maxConcurrentDirectionsRequests, threadFactorySupplier.get());
+    long prunedCombinations = 0;
+    boolean deadlineExceeded = false;
+    try {
+      long combinationIndex = 0;
+      for (List<String> waypointCombination : allWaypointCombinations) {
+        long lowerBound = travelTimeLowerBound.applyAsLong(waypointCombination);
+        if (search.cannotImproveOn(lowerBound)) {
+          prunedCombinations++;
+          continue;
+        }
+        if (!permits.tryAcquire(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+          deadlineExceeded = true;
+          break;
+        }
+        if (search.hasFailed()) {
+          break;
+        }
+        // The best travel time may have improved while waiting for a permit
+        if (search.cannotImproveOn(lowerBound)) {
+          permits.release();
+          prunedCombinations++;
+          continue;
+        }
+        List<String> waypoints =
+            Stream.of(waypointCombination, streetAddressWaypoints)
+                .flatMap(Collection::stream)
+                .collect(Collectors.toList());
+        search.offerFallback(waypoints);
+        long index = combinationIndex++;
+        executor.execute(
+            () -> {
+              try {
+                DirectionsClient directionsClient = getDirectionsClient(user);
+                DirectionsResult directionsResult =
+                    directionsClient.getDirections(origin, destination, waypoints);
+                boolean improved =
+                    search.offer(
+                        index, waypoints, DirectionsClient.getTotalTravelTime(directionsResult));
+                if (improved && routeListener != null) {
+                  routeListener.onImprovedRoute(directionsResult);
+                }
+              } catch (DirectionsException e) {
+                search.fail(e);
+              } finally {
+                permits.release();
+              }
+            });
+      }
+      executor.shutdown();
+      if (!executor.awaitTermination(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+        deadlineExceeded = true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      deadlineExceeded = true;
+    } finally {
+      search.cancel();
+      executor.shutdownNow();
+    }
+    search.throwIfFailed();
+    return search.getResult(prunedCombinations, deadlineExceeded);
+  }
+
+  private static long remainingNanos(long deadline) {
+    return Math.max(0, deadline - System.nanoTime());
+  }
+
+  /**
+   * Tracks the best waypoint combination scored so far across the threads scoring combinations.
+   * Ties in travel time are broken by the order of the combinations, so concurrent scoring chooses
+   * the same combination as scoring them one by one.
+   */
+  private static class CombinationSearch {
+    private OptionalLong minTravelTime = OptionalLong.empty();
+    private long optimalIndex;
+    private List<String> optimalWaypointCombination;
+    private List<String> fallbackWaypointCombination = new ArrayList<>();
+    private long evaluatedCombinations;
+    private DirectionsException failure;
+    private boolean cancelled;
+
+    synchronized boolean cannotImproveOn(long travelTimeLowerBound) {
+      return minTravelTime.isPresent() && travelTimeLowerBound >= minTravelTime.getAsLong();
+    }
+
+    synchronized void offerFallback(List<String> waypoints) {
+      if (fallbackWaypointCombination.isEmpty()) {
+        fallbackWaypointCombination = waypoints;
+      }
+    }
+
+    /** Records a scored combination, returning whether it is the best combination so far. */
+    synchronized boolean offer(long index, List<String> waypoints, long travelTime) {
+      if (cancelled) {
+        return false;
+      }
+      evaluatedCombinations++;
+      if (!minTravelTime.isPresent()
+          || travelTime < minTravelTime.getAsLong()
+          || (travelTime == minTravelTime.getAsLong() && index < optimalIndex)) {
         minTravelTime = OptionalLong.of(travelTime);
+        optimalIndex = index;
         optimalWaypointCombination = waypoints;
+        return true;
       }
+      return false;
+    }
+
+    synchronized void fail(DirectionsException e) {
+      // Calls interrupted by cancellation are expected to fail and are not reported
+      if (!cancelled && failure == null) {
+        failure = e;
+      }
+    }
+
+    synchronized boolean hasFailed() {
+      return failure != null;
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+    }
+
+    synchronized void throwIfFailed() throws DirectionsException {
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+    synchronized WaypointCombinationResult getResult(
+        long prunedCombinations, boolean deadlineExceeded) {
+      return new WaypointCombinationResult(
+          minTravelTime.isPresent() ? optimalWaypointCombination : fallbackWaypointCombination,
+          minTravelTime,
+          evaluatedCombinations,
+          prunedCombinations,
+          deadlineExceeded);
     }
-    return optimalWaypointCombination;
   }
 
   private <T> List<T> filterNonNull(List<Optional<T>> objects) {
@@ -298,20 +768,72 @@ public class GoServlet extends AuthenticatedHttpServlet {
   public List<String> optimizeSearchNearbyWaypoints(
       String origin, String destination, List<String> waypoints)
       throws GeocodingException, PlacesException, DirectionsException {
+    return optimizeSearchNearbyWaypoints(origin, destination, waypoints, UNATTRIBUTED_USER);
+  }
+
+  /**
+   * Finds the most optimal route of travel between the origin and destination and a set of
+   * waypoints on behalf of a user. Scope of method is public for testing purposes.
+   *
+   * @param origin The starting point of travel.
+   * @param destination The ending point of travel.
+   * @param waypoints The waypoints that should be visited while travelling from the origin to the
+   *     destination.
+   * @param user Identifies the user Maps API calls are queued for quota on behalf of.
+   * @return The most optimal set of waypoints between origin and destination.
+   * @throws GeocodingException An exception thrown when an error occurs with the Geocoding API.
+   * @throws PlacesException An exception thrown when an error occurs with the Places API.
+   * @throws DirectionsException An exception thrown when an error occurs with the Directions API.
+   */
+  public List<String> optimizeSearchNearbyWaypoints(
+      String origin, String destination, List<String> waypoints, String user)
+      throws GeocodingException, PlacesException, DirectionsException {
+    return optimizeSearchNearbyWaypoints(origin, destination, waypoints, user, null);
+  }
+
+  /**
+   * Finds the most optimal route of travel between the origin and destination and a set of
+   * waypoints on behalf of a user, telling a listener about the routes found along the way. Scope
+   * of method is public for testing purposes.
+   *
+   * @param origin The starting point of travel.
+   * @param destination The ending point of travel.
+   * @param waypoints The waypoints that should be visited while travelling from the origin to the
+   *     destination.
+   * @param user Identifies the user Maps API calls are queued for quota on behalf of.
+   * @param routeListener Listener told about the baseline route through the street addresses and
+   *     every improved route as it is found, or null. The baseline route costs one extra call to
+   *     the Directions API, so it is only requested when there is a listener.
+   * @return The most optimal set of waypoints between origin and destination.
+   * @throws GeocodingException An exception thrown when an error occurs with the Geocoding API.
+   * @throws PlacesException An exception thrown when an error occurs with the Places API.
+   * @throws DirectionsException An exception thrown when an error occurs with the Directions API.
+   */
+  public List<String> optimizeSearchNearbyWaypoints(
+      String origin,
+      String destination,
+      List<String> waypoints,
+      String user,
+      RouteListener routeListener)
+      throws GeocodingException, PlacesException, DirectionsException {
 
     Optional<LatLng> originAsCoordinates =
-        GeocodingResultUtility.getCoordinates(
-            geocodingClientFactory.getGeocodingClient(apiKey).getGeocodingResult(origin));
+        GeocodingResultUtility.getCoordinates(getGeocodingClient(user).getGeocodingResult(origin));
 
     Optional<LatLng> destinationAsCoordinates =
         GeocodingResultUtility.getCoordinates(
-            geocodingClientFactory.getGeocodingClient(apiKey).getGeocodingResult(destination));
+            getGeocodingClient(user).getGeocodingResult(destination));
 
     if (!originAsCoordinates.isPresent() || !destinationAsCoordinates.isPresent()) {
       throw new GeocodingException("Origin or destination is invalid");
     }
 
-    GoResponse separatedWaypoints = separateWaypoints(waypoints);
+    GoResponse separatedWaypoints = separateWaypoints(waypoints, user);
+    if (routeListener != null) {
+      routeListener.onBaselineRoute(
+          getDirectionsClient(user)
+              .getDirections(origin, destination, separatedWaypoints.streetAddressWaypoints));
+    }
 
     // All street address coordinates including origin and destination are collected
     List<Optional<LatLng>> streetAddressesAsCoordinates = new ArrayList<>();
@@ -325,20 +847,68 @@ public class GoServlet extends AuthenticatedHttpServlet {
     List<PlaceType> nonEmptyNonStreetAddressWaypointsAsPlaceTypes =
         filterNonNull(separatedWaypoints.nonStreetAddressWaypointsAsPlaceTypes);
 
+    Map<String, LatLng> placeCoordinates = new HashMap<>();
     List<List<String>> allSearchNearbyResults =
         searchForPlacesNearLocations(
-            nonEmptyNonStreetAddressWaypointsAsPlaceTypes, nonEmptyStreetAddressesAsCoordinates);
+            nonEmptyNonStreetAddressWaypointsAsPlaceTypes,
+            nonEmptyStreetAddressesAsCoordinates,
+            placeCoordinates,
+            user);
 
-    List<List<String>> allWaypointCombinations =
-        LocationsUtility.generateCombinations(allSearchNearbyResults);
+    Iterable<List<String>> allWaypointCombinations =
+        LocationsUtility.iterateCombinations(allSearchNearbyResults);
 
-    List<String> optimalWaypointCombination =
-        chooseWaypointCombinationWithShortestTravelTime(
+    WaypointCombinationResult result =
+        searchWaypointCombinations(
             origin,
             destination,
             allWaypointCombinations,
-            separatedWaypoints.streetAddressWaypoints);
+            separatedWaypoints.streetAddressWaypoints,
+            getTravelTimeLowerBound(
+                originAsCoordinates.get(),
+                destinationAsCoordinates.get(),
+                filterNonNull(separatedWaypoints.streetAddressWaypointsAsCoordinates),
+                placeCoordinates),
+            user,
+            routeListener);
+    logger.info(
+        String.format(
+            "Evaluated %d and pruned %d waypoint combinations%s",
+            result.getEvaluatedCombinations(),
+            result.getPrunedCombinations(),
+            result.isDeadlineExceeded() ? " before the deadline passed" : ""));
 
-    return optimalWaypointCombination;
+    return result.getOptimalWaypoints();
+  }
+
+  /**
+   * Builds a great-circle lower bound on the travel time of a route through a waypoint
+   * combination. The bound of each place is computed once up front, so bounding a combination only
+   * looks up the bounds of its places. Places with unknown coordinates contribute no bound.
+   *
+   * @param origin The coordinates of the starting point of travel.
+   * @param destination The coordinates of the ending point of travel.
+   * @param streetAddressCoordinates The coordinates of the street addresses included in every
+   *     waypoint combination.
+   * @param placeCoordinates The coordinates of the places which make up waypoint combinations.
+   * @return A function giving a lower bound in seconds on the travel time of a waypoint
+   *     combination.
+   */
+  private ToLongFunction<List<String>> getTravelTimeLowerBound(
+      LatLng origin,
+      LatLng destination,
+      List<LatLng> streetAddressCoordinates,
+      Map<String, LatLng> placeCoordinates) {
+    long streetAddressLowerBound =
+        RouteBoundUtility.travelTimeLowerBound(origin, destination, streetAddressCoordinates);
+    Map<String, Long> placeLowerBounds = new HashMap<>();
+    placeCoordinates.forEach(
+        (place, coordinates) ->
+            placeLowerBounds.put(
+                place, RouteBoundUtility.travelTimeLowerBound(origin, destination, coordinates)));
+    return waypointCombination ->
+        waypointCombination.stream()
+            .mapToLong(place -> placeLowerBounds.getOrDefault(place, 0L))
+            .reduce(streetAddressLowerBound, Math::max);
   }
 }
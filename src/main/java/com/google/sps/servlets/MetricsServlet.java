@@ -0,0 +1,190 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.filters.CompressionFilter;
+import com.google.sps.model.ApiMetrics;
+import com.google.sps.model.HttpTransportProvider;
+import com.google.sps.model.PooledHttpTransportProvider;
+import com.google.sps.model.QpsGovernor;
+import com.google.sps.utility.HttpTransportUtility;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the metrics of this instance in the Prometheus text format: calls to the upstream APIs,
+ * the QPS governors of the Maps APIs, the pooled HTTP transport and response compression. Only
+ * administrators of the App Engine app may read them.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  private static final List<QpsGovernor> GOVERNORS =
+      Arrays.asList(QpsGovernor.DIRECTIONS, QpsGovernor.PLACES, QpsGovernor.GEOCODING);
+
+  private final ApiMetrics apiMetrics;
+  private final HttpTransportProvider transportProvider;
+  private final Predicate<HttpServletRequest> isAdmin;
+
+  /** Create servlet serving the default metrics to signed in App Engine administrators */
+  public MetricsServlet() {
+    this(
+        ApiMetrics.getDefault(),
+        HttpTransportUtility.getDefaultProvider(),
+        request -> {
+          UserService userService = UserServiceFactory.getUserService();
+          return userService.isUserLoggedIn() && userService.isUserAdmin();
+        });
+  }
+
+  /**
+   * Create servlet with explicit metrics and access check
+   *
+   * @param apiMetrics metrics of the calls to upstream APIs
+   * @param transportProvider provider of the HTTP transport whose connections are reported, if it
+   *     is pooled
+   * @param isAdmin decides whether a request comes from an administrator
+   */
+  public MetricsServlet(
+      ApiMetrics apiMetrics,
+      HttpTransportProvider transportProvider,
+      Predicate<HttpServletRequest> isAdmin) {
+    this.apiMetrics = apiMetrics;
+    this.transportProvider = transportProvider;
+    this.isAdmin = isAdmin;
+  }
+
+  /**
+   * Writes every metric of this instance
+   *
+   * @param request Http request from the client
+   * @param response 403 if the client is not an administrator, the metrics otherwise
+   * @throws IOException if an issue arises while writing the response
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!isAdmin.test(request)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    response.setContentType(CONTENT_TYPE);
+    response.setHeader("Cache-Control", "no-store");
+    PrintWriter writer = response.getWriter();
+    apiMetrics.writePrometheus(writer);
+    writeGovernorMetrics(writer);
+    if (transportProvider instanceof PooledHttpTransportProvider) {
+      writeTransportMetrics(writer, (PooledHttpTransportProvider) transportProvider);
+    }
+    writeCompressionMetrics(writer);
+  }
+
+  private static void writeGovernorMetrics(PrintWriter writer) {
+    writeHeader(writer, "qps_governor_queue_depth", "gauge", "Calls waiting for a permit.");
+    for (QpsGovernor governor : GOVERNORS) {
+      writer.printf(
+          "qps_governor_queue_depth{api=\"%s\"} %d%n",
+          governor.getName(), governor.getQueueDepth());
+    }
+    writeHeader(writer, "qps_governor_granted_total", "counter", "Calls given a permit.");
+    for (QpsGovernor governor : GOVERNORS) {
+      writer.printf(
+          "qps_governor_granted_total{api=\"%s\"} %d%n",
+          governor.getName(), governor.getGrantedCalls());
+    }
+    writeHeader(
+        writer, "qps_governor_rejected_total", "counter", "Calls which timed out for a permit.");
+    for (QpsGovernor governor : GOVERNORS) {
+      writer.printf(
+          "qps_governor_rejected_total{api=\"%s\"} %d%n",
+          governor.getName(), governor.getRejectedCalls());
+    }
+  }
+
+  private static void writeTransportMetrics(
+      PrintWriter writer, PooledHttpTransportProvider provider) {
+    writeMetric(
+        writer,
+        "http_transport_requests_total",
+        "counter",
+        "Requests sent to Google APIs.",
+        provider.getRequests());
+    writeMetric(
+        writer,
+        "http_transport_reused_connections_total",
+        "counter",
+        "Requests sent over a kept-alive connection.",
+        provider.getReusedConnections());
+    writeMetric(
+        writer,
+        "http_transport_opened_connections_total",
+        "counter",
+        "Connections opened to Google APIs.",
+        provider.getOpenedConnections());
+    writeMetric(
+        writer,
+        "http_transport_leased_connections",
+        "gauge",
+        "Connections in use.",
+        provider.getLeasedConnections());
+    writeMetric(
+        writer,
+        "http_transport_idle_connections",
+        "gauge",
+        "Connections kept alive in the pool.",
+        provider.getIdleConnections());
+  }
+
+  private static void writeCompressionMetrics(PrintWriter writer) {
+    writeMetric(
+        writer,
+        "compression_responses_total",
+        "counter",
+        "Responses sent compressed.",
+        CompressionFilter.getCompressedResponses());
+    writeMetric(
+        writer,
+        "compression_uncompressed_bytes_total",
+        "counter",
+        "Bytes of compressed responses before compression.",
+        CompressionFilter.getUncompressedBytes());
+    writeMetric(
+        writer,
+        "compression_compressed_bytes_total",
+        "counter",
+        "Bytes of compressed responses after compression.",
+        CompressionFilter.getCompressedBytes());
+  }
+
+  private static void writeMetric(
+      PrintWriter writer, String name, String type, String help, long value) {
+    writeHeader(writer, name, type, help);
+    writer.printf("%s %d%n", name, value);
+  }
+
+  private static void writeHeader(PrintWriter writer, String name, String type, String help) {
+    writer.printf("# HELP %s %s%n", name, help);
+    writer.printf("# TYPE %s %s%n", name, type);
+  }
+}
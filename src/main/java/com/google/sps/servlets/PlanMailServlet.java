@@ -17,7 +17,6 @@ package com.google.sps.servlets;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.util.DateTime;
 import com.google.api.client.util.StringUtils;
-import com.google.api.services.calendar.model.CalendarListEntry;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.gmail.model.Message;
 import com.google.api.services.gmail.model.MessagePart;
@@ -28,10 +27,12 @@ import com.google.sps.model.AuthenticatedHttpServlet;
 import com.google.sps.model.AuthenticationVerifier;
 import com.google.sps.model.CalendarClient;
 import com.google.sps.model.CalendarClientFactory;
-import com.google.sps.model.CalendarClientImpl;
 import com.google.sps.model.GmailClient;
 import com.google.sps.model.GmailClientFactory;
-import com.google.sps.model.GmailClientImpl;
+import com.google.sps.model.InstrumentedCalendarClient;
+import com.google.sps.model.InstrumentedGmailClient;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.RequestTiming;
 import com.google.sps.utility.DateInterval;
 import com.google.sps.utility.FreeTimeUtility;
 import com.google.sps.utility.JsonUtility;
@@ -64,10 +65,13 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
   private static final int PERSONAL_END_HOUR = 23;
   private static final int NUM_DAYS = 5;
 
+  /** Number of days, ending now, of unread emails planned for */
+  public static final int UNREAD_EMAIL_DAYS = 7;
+
   /** Create servlet with default CalendarClient and Authentication Verifier implementations */
   public PlanMailServlet() {
-    calendarClientFactory = new CalendarClientImpl.Factory();
-    gmailClientFactory = new GmailClientImpl.Factory();
+    calendarClientFactory = PooledGoogleClientFactory.getDefault();
+    gmailClientFactory = PooledGoogleClientFactory.getDefault();
   }
 
   /**
@@ -100,15 +104,50 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
     assert googleCredential != null
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
 
-    CalendarClient calendarClient = calendarClientFactory.getCalendarClient(googleCredential);
+    RequestTiming timing = RequestTiming.forRequest(request);
+    CalendarClient calendarClient =
+        timing.createClient(
+            () -> calendarClientFactory.getCalendarClient(googleCredential),
+            InstrumentedCalendarClient::new);
     long fiveDaysInMillis = TimeUnit.DAYS.toMillis(5);
     Date timeMin = calendarClient.getCurrentTime();
     Date timeMax = Date.from(timeMin.toInstant().plus(Duration.ofDays(NUM_DAYS)));
-    List<Event> calendarEvents = getEvents(calendarClient, timeMin, timeMax);
+    List<Event> calendarEvents = CalendarServlet.getEvents(calendarClient, timeMin, timeMax);
+
+    GmailClient gmailClient =
+        timing.createClient(
+            () -> gmailClientFactory.getGmailClient(googleCredential),
+            InstrumentedGmailClient::new);
+    List<Message> unreadMessages =
+        gmailClient.getUnreadEmailsFromNDays(GmailClient.MessageFormat.FULL, UNREAD_EMAIL_DAYS);
+
+    PlanMailResponse planMailResponse =
+        createPlanMailResponse(
+            calendarEvents, timeMin, timeMax, request.getParameter("summary"), unreadMessages);
+    // Convert event list to JSON and print to response
+    JsonUtility.sendJson(response, planMailResponse);
+  }
+
+  /**
+   * Creates a PlanMailResponse object, proposing times to read the given unread emails. Public for
+   * use by the dashboard
+   *
+   * @param calendarEvents the events in the user's calendars between timeMin and timeMax
+   * @param timeMin the start of the planned period
+   * @param timeMax the end of the planned period
+   * @param eventSummary the summary of events already created to read emails
+   * @param unreadMessages the unread emails to plan for, in FULL format
+   * @return PlanMailResponse object with the word count and the proposed times
+   */
+  public static PlanMailResponse createPlanMailResponse(
+      List<Event> calendarEvents,
+      Date timeMin,
+      Date timeMax,
+      String eventSummary,
+      List<Message> unreadMessages) {
     // Initialize the freeTime utility. Keep track of the free time in the next 5 days, with
     // work hours as defined between 10am and 6 pm. The rest of the time between 7 am and 11 pm
     // should be considered personal time.
-
     FreeTimeUtility freeTimeUtility =
         new FreeTimeUtility(
             timeMin,
@@ -121,7 +160,6 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
     // The summary for the events we are creating is the same as the defined eventSummary
     // For now this is the check we are using. We assume that the user will not create
     // events with the same summary if they are not related to reading emails.
-    String eventSummary = request.getParameter("summary");
     for (Event event : calendarEvents) {
       DateTime start = event.getStart().getDateTime();
       start = start == null ? event.getStart().getDate() : start;
@@ -142,7 +180,7 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
       freeTimeUtility.addEvent(eventStart, eventEnd);
     }
 
-    int wordCount = getWordCount(googleCredential);
+    int wordCount = getWordCount(unreadMessages);
     int minutesToRead = (int) Math.ceil((double) wordCount / AVERAGE_READING_SPEED);
     long timeNeeded = minutesToRead * TimeUnit.MINUTES.toMillis(1);
     timeNeeded = Math.max(0, timeNeeded - preAssignedTime);
@@ -153,10 +191,7 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
       potentialTimes = new ArrayList<>();
     }
 
-    PlanMailResponse planMailResponse =
-        new PlanMailResponse(wordCount, AVERAGE_READING_SPEED, minutesToRead, potentialTimes);
-    // Convert event list to JSON and print to response
-    JsonUtility.sendJson(response, planMailResponse);
+    return new PlanMailResponse(wordCount, AVERAGE_READING_SPEED, minutesToRead, potentialTimes);
   }
 
   /**
@@ -167,7 +202,8 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
    * @param timeNeeded the unix time of the time length needed
    * @return The list of date intervals necessary
    */
-  private List<DateInterval> getPotentialTimes(FreeTimeUtility freeTimeUtility, long timeNeeded) {
+  private static List<DateInterval> getPotentialTimes(
+      FreeTimeUtility freeTimeUtility, long timeNeeded) {
     List<DateInterval> workFreeInterval = freeTimeUtility.getWorkFreeInterval();
     List<DateInterval> potentialEventTimes = new ArrayList<>();
     long remainingTime = timeNeeded;
@@ -185,24 +221,13 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
   }
 
   /**
-   * Get the unread emails from the last week, and perform a word count for the body of each message
+   * Perform a word count for the body of each unread message
    *
-   * @param googleCredential the credential to creare a gmailClient with
+   * @param unreadMessages the unread messages, in FULL format
    * @return The final word count
-   * @throws IOException if an issue occurs in the method
-   * @throws MessagingException if an issue occurs in the method
    */
-  private int getWordCount(Credential googleCredential) {
-    GmailClient gmailClient = gmailClientFactory.getGmailClient(googleCredential);
-    GmailClient.MessageFormat messageFormat = GmailClient.MessageFormat.FULL;
-    int numberDays = 7;
+  private static int getWordCount(List<Message> unreadMessages) {
     int wordCount = 0;
-    List<Message> unreadMessages = new ArrayList<>();
-    try {
-      unreadMessages = gmailClient.getUnreadEmailsFromNDays(messageFormat, numberDays);
-    } catch (IOException e) {
-      throw Throwables.propagate(e);
-    }
     for (Message message : unreadMessages) {
       try {
         wordCount += getMessageSize(message);
@@ -213,25 +238,6 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
     return wordCount;
   }
 
-  /**
-   * Get the events in the user's calendars
-   *
-   * @param calendarClient either a mock CalendarClient or a calendarClient with a valid credential
-   * @param timeMin the minimum time to start looking for events
-   * @param timeMax the maximum time to look for events
-   * @return List of Events from all of the user's calendars
-   * @throws IOException if an issue occurs in the method
-   */
-  private List<Event> getEvents(CalendarClient calendarClient, Date timeMin, Date timeMax)
-      throws IOException {
-    List<CalendarListEntry> calendarList = calendarClient.getCalendarList();
-    List<Event> events = new ArrayList<>();
-    for (CalendarListEntry calendar : calendarList) {
-      events.addAll(calendarClient.getUpcomingEvents(calendar, timeMin, timeMax));
-    }
-    return events;
-  }
-
   /**
    * Get the word-count in an individual message.
    *
@@ -239,7 +245,7 @@ public class PlanMailServlet extends AuthenticatedHttpServlet {
    * @throws IOException if an issue occurs in the method
    * @throws MessagingException if an issue occurs in the method
    */
-  private int getMessageSize(Message message) throws MessagingException, IOException {
+  private static int getMessageSize(Message message) throws MessagingException, IOException {
     List<MessagePart> messageParts = message.getPayload().getParts();
     List<MessagePart> messageBody =
         messageParts.stream()
@@ -17,13 +17,14 @@ package com.google.sps.servlets;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.services.tasks.model.Task;
 import com.google.api.services.tasks.model.TaskList;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.google.common.collect.ImmutableMap;
 import com.google.sps.model.AuthenticatedHttpServlet;
 import com.google.sps.model.AuthenticationVerifier;
+import com.google.sps.model.InstrumentedTasksClient;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.RequestTiming;
 import com.google.sps.model.TasksClient;
 import com.google.sps.model.TasksClientFactory;
-import com.google.sps.model.TasksClientImpl;
 import com.google.sps.utility.JsonUtility;
 import java.io.IOException;
 import java.util.HashMap;
@@ -41,7 +42,7 @@ public class TaskListServlet extends AuthenticatedHttpServlet {
 
   /** Create servlet with default TasksClientFactory and Authentication Verifier implementations */
   public TaskListServlet() {
-    tasksClientFactory = new TasksClientImpl.Factory();
+    tasksClientFactory = PooledGoogleClientFactory.getDefault();
   }
 
   /**
@@ -72,21 +73,17 @@ public class TaskListServlet extends AuthenticatedHttpServlet {
     assert googleCredential != null
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
 
-    TasksClient tasksClient = tasksClientFactory.getTasksClient(googleCredential);
+    TasksClient tasksClient =
+        RequestTiming.forRequest(request)
+            .createClient(
+                () -> tasksClientFactory.getTasksClient(googleCredential),
+                InstrumentedTasksClient::new);
 
     List<TaskList> taskLists = tasksClient.listTaskLists();
     Map<String, List<Task>> taskListsWithTasks = mapTaskListsToTasks(taskLists, tasksClient);
 
-    // Cannot use JsonUtility since gson needs to know the object is a JsonObject, not just a
-    // generic object.
-    Gson gson = new Gson();
-    JsonObject jsonObject = new JsonObject();
-    jsonObject.add("taskLists", gson.toJsonTree(taskLists));
-    jsonObject.add("tasks", gson.toJsonTree(taskListsWithTasks));
-    String json = gson.toJson(jsonObject);
-
-    response.setContentType("application/json");
-    response.getWriter().println(json);
+    JsonUtility.sendJson(
+        response, ImmutableMap.of("taskLists", taskLists, "tasks", taskListsWithTasks));
   }
 
   /**
@@ -124,7 +121,11 @@ public class TaskListServlet extends AuthenticatedHttpServlet {
     assert googleCredential != null
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
 
-    TasksClient tasksClient = tasksClientFactory.getTasksClient(googleCredential);
+    TasksClient tasksClient =
+        RequestTiming.forRequest(request)
+            .createClient(
+                () -> tasksClientFactory.getTasksClient(googleCredential),
+                InstrumentedTasksClient::new);
     String taskListName = request.getParameter("taskListTitle");
 
     if (taskListName == null || taskListName.equals("")) {
@@ -18,13 +18,15 @@ import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.tasks.model.Task;
 import com.google.api.services.tasks.model.TaskList;
-import com.google.gson.Gson;
 import com.google.sps.model.AuthenticatedHttpServlet;
 import com.google.sps.model.AuthenticationVerifier;
+import com.google.sps.model.InstrumentedTasksClient;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.RequestTiming;
 import com.google.sps.model.TasksClient;
 import com.google.sps.model.TasksClientFactory;
-import com.google.sps.model.TasksClientImpl;
 import com.google.sps.model.TasksResponse;
+import com.google.sps.utility.ETagUtility;
 import com.google.sps.utility.JsonUtility;
 import com.google.sps.utility.TasksUtility;
 import java.io.IOException;
@@ -51,7 +53,7 @@ public class TasksServlet extends AuthenticatedHttpServlet {
 
   /** Create servlet with default TasksClient and Authentication Verifier implementations */
   public TasksServlet() {
-    tasksClientFactory = new TasksClientImpl.Factory();
+    tasksClientFactory = PooledGoogleClientFactory.getDefault();
   }
 
   /**
@@ -82,33 +84,24 @@ public class TasksServlet extends AuthenticatedHttpServlet {
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
 
     // Get tasks from Google Tasks
-    TasksClient tasksClient = tasksClientFactory.getTasksClient(googleCredential);
+    TasksClient tasksClient =
+        RequestTiming.forRequest(request)
+            .createClient(
+                () -> tasksClientFactory.getTasksClient(googleCredential),
+                InstrumentedTasksClient::new);
     List<TaskList> allTaskLists = tasksClient.listTaskLists();
-
-    // Initialize Tasks Response
-    List<Task> tasks;
-
     String taskLists = request.getParameter("taskLists");
-    if (taskLists == null) {
-      tasks = TasksUtility.getAllTasksFromAllTaskLists(tasksClient);
-    } else {
-      Set<String> selectedTaskListIds = new HashSet<>(Arrays.asList(taskLists.split(",")));
-      tasks = TasksUtility.getAllTasksFromSpecificTaskLists(tasksClient, selectedTaskListIds);
+
+    // The statistics are determined by the task lists' versions, the selection and today's date,
+    // so an unchanged response is validated without fetching any tasks
+    String eTag =
+        ETagUtility.versionETag(getTaskListsVersion(allTaskLists), taskLists, LocalDate.now());
+    if (ETagUtility.sendNotModifiedIfMatches(request, response, eTag)) {
+      return;
     }
 
-    Map<String, String> taskListIdsToTitles = getTaskListIdsAndTitles(allTaskLists);
-    long tasksToCompleteCount = countTasksToComplete(tasks);
-    long tasksDueTodayCount = countTasksDueToday(tasks);
-    long tasksCompletedTodayCount = countTasksCompletedToday(tasks);
-    long tasksOverdueCount = countTasksOverdue(tasks);
-    TasksResponse tasksResponse =
-        TasksResponse.builder()
-            .taskListIdsToTitles(taskListIdsToTitles)
-            .tasksToCompleteCount(tasksToCompleteCount)
-            .tasksDueTodayCount(tasksDueTodayCount)
-            .tasksCompletedTodayCount(tasksCompletedTodayCount)
-            .tasksOverdueCount(tasksOverdueCount)
-            .build();
+    List<Task> tasks = getSelectedTasks(tasksClient, taskLists);
+    TasksResponse tasksResponse = createTasksResponse(allTaskLists, tasks);
 
     JsonUtility.sendJson(response, tasksResponse);
   }
@@ -128,7 +121,11 @@ public class TasksServlet extends AuthenticatedHttpServlet {
       throws IOException {
     assert googleCredential != null
         : "Null credentials (i.e. unauthenticated requests) should already be handled";
-    TasksClient tasksClient = tasksClientFactory.getTasksClient(googleCredential);
+    TasksClient tasksClient =
+        RequestTiming.forRequest(request)
+            .createClient(
+                () -> tasksClientFactory.getTasksClient(googleCredential),
+                InstrumentedTasksClient::new);
 
     String taskListId = request.getParameter("taskListId");
 
@@ -137,8 +134,7 @@ public class TasksServlet extends AuthenticatedHttpServlet {
       return;
     }
 
-    Gson gson = new Gson();
-    Task taskToPost = gson.fromJson(request.getReader(), Task.class);
+    Task taskToPost = JsonUtility.getGson().fromJson(request.getReader(), Task.class);
 
     // Check if passed task is present and valid
     if (taskToPost == null || taskToPost.isEmpty()) {
@@ -159,23 +155,71 @@ public class TasksServlet extends AuthenticatedHttpServlet {
     }
   }
 
-  private Map<String, String> getTaskListIdsAndTitles(List<TaskList> taskLists) throws IOException {
+  /**
+   * Get the tasks from the selected task lists. Public for use by the dashboard
+   *
+   * @param tasksClient TasksClient implementation with a valid credential
+   * @param taskLists comma-separated ids of the selected task lists. If null, tasks are taken from
+   *     all of the user's task lists
+   * @return List of tasks from the selected task lists
+   * @throws IOException if an issue occurs with the tasks service
+   */
+  public static List<Task> getSelectedTasks(TasksClient tasksClient, String taskLists)
+      throws IOException {
+    if (taskLists == null) {
+      return TasksUtility.getAllTasksFromAllTaskLists(tasksClient);
+    }
+    Set<String> selectedTaskListIds = new HashSet<>(Arrays.asList(taskLists.split(",")));
+    return TasksUtility.getAllTasksFromSpecificTaskLists(tasksClient, selectedTaskListIds);
+  }
+
+  /**
+   * Creates a TasksResponse object. Public for use by the dashboard
+   *
+   * @param allTaskLists all of the user's task lists
+   * @param tasks the tasks from the selected task lists
+   * @return TasksResponse object with the statistics of the given tasks
+   */
+  public static TasksResponse createTasksResponse(List<TaskList> allTaskLists, List<Task> tasks) {
+    return TasksResponse.builder()
+        .taskListIdsToTitles(getTaskListIdsAndTitles(allTaskLists))
+        .tasksToCompleteCount(countTasksToComplete(tasks))
+        .tasksDueTodayCount(countTasksDueToday(tasks))
+        .tasksCompletedTodayCount(countTasksCompletedToday(tasks))
+        .tasksOverdueCount(countTasksOverdue(tasks))
+        .build();
+  }
+
+  /**
+   * Get a version token of the user's task lists. A task list's updated time changes whenever the
+   * task list or one of its tasks is modified
+   *
+   * @param taskLists all of the user's task lists
+   * @return String which changes whenever one of the task lists or their tasks change
+   */
+  private static String getTaskListsVersion(List<TaskList> taskLists) {
+    return taskLists.stream()
+        .map(taskList -> taskList.getId() + "@" + taskList.getUpdated())
+        .collect(Collectors.joining(","));
+  }
+
+  private static Map<String, String> getTaskListIdsAndTitles(List<TaskList> taskLists) {
     return taskLists.stream().collect(Collectors.toMap(TaskList::getId, TaskList::getTitle));
   }
 
-  private long countTasksToComplete(List<Task> tasks) {
+  private static long countTasksToComplete(List<Task> tasks) {
     // getHidden is defined for incomplete tasks
     return tasks.stream().filter(task -> task.getHidden() == null).count();
   }
 
-  private long countTasksDueToday(List<Task> tasks) {
+  private static long countTasksDueToday(List<Task> tasks) {
     String today = LocalDate.now().toString();
     return tasks.stream()
         .filter(task -> task.getDue() != null && task.getDue().contains(today))
         .count();
   }
 
-  private long countTasksCompletedToday(List<Task> tasks) {
+  private static long countTasksCompletedToday(List<Task> tasks) {
     ZoneId zoneId = ZoneId.systemDefault();
     Instant startOfDay = LocalDate.now(zoneId).atStartOfDay(zoneId).toInstant();
     Instant endOfDay = LocalDate.now(zoneId).plusDays(1).atStartOfDay(zoneId).toInstant();
@@ -191,7 +235,7 @@ public class TasksServlet extends AuthenticatedHttpServlet {
         .count();
   }
 
-  private long countTasksOverdue(List<Task> tasks) {
+  private static long countTasksOverdue(List<Task> tasks) {
     ZoneId zoneId = ZoneId.systemDefault();
     String zoneOffset = zoneId.getRules().getOffset(Instant.now()).toString();
     Instant endOfDay = LocalDate.now(zoneId).plusDays(1).atStartOfDay(zoneId).toInstant();
@@ -0,0 +1,141 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.utility;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazily enumerates the Cartesian product of a list of lists. Every combination is identified by
+ * its index in the product and decoded into an odometer of per-list positions, so combinations are
+ * only built when they are consumed. Ranges of indices can be split off for parallel traversal.
+ *
+ * @param <T> The type of the elements being combined.
+ */
+public final class CombinationSpliterator<T> implements Spliterator<List<T>> {
+
+  private final List<List<T>> lists;
+  private final int[] odometer;
+  private long index;
+  private final long fence;
+
+  /**
+   * Creates a spliterator over every combination of the lists. Combinations are produced in the
+   * same order as nested loops over the lists, with the last list varying fastest.
+   *
+   * @param lists A list of lists to generate combinations for.
+   * @throws IllegalArgumentException if the number of combinations does not fit in a long.
+   */
+  public CombinationSpliterator(List<List<T>> lists) {
+    this(ImmutableList.copyOf(lists), 0, countCombinations(lists));
+  }
+
+  private CombinationSpliterator(List<List<T>> lists, long index, long fence) {
+    this.lists = lists;
+    this.odometer = new int[lists.size()];
+    this.index = index;
+    this.fence = fence;
+    if (index < fence) {
+      setOdometer(index);
+    }
+  }
+
+  /**
+   * Counts the combinations of the lists. No lists yield a single empty combination, and any empty
+   * list yields no combinations at all.
+   *
+   * @param lists A list of lists to count combinations for.
+   * @return The number of combinations.
+   * @throws IllegalArgumentException if the number of combinations does not fit in a long.
+   */
+  public static long countCombinations(List<? extends List<?>> lists) {
+    long count = 1;
+    try {
+      for (List<?> list : lists) {
+        count = Math.multiplyExact(count, list.size());
+      }
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Too many combinations to enumerate", e);
+    }
+    return count;
+  }
+
+  /**
+   * Decodes an index into the position of each list, treating the last list as the least
+   * significant digit.
+   */
+  private void setOdometer(long combinationIndex) {
+    for (int depth = lists.size() - 1; depth >= 0; depth--) {
+      int radix = lists.get(depth).size();
+      odometer[depth] = (int) (combinationIndex % radix);
+      combinationIndex /= radix;
+    }
+  }
+
+  /** Advances the odometer by one, carrying into the lists to the left. */
+  private void incrementOdometer() {
+    for (int depth = lists.size() - 1; depth >= 0; depth--) {
+      if (++odometer[depth] < lists.get(depth).size()) {
+        return;
+      }
+      odometer[depth] = 0;
+    }
+  }
+
+  private List<T> currentCombination() {
+    ImmutableList.Builder<T> combination = ImmutableList.builder();
+    for (int depth = 0; depth < lists.size(); depth++) {
+      combination.add(lists.get(depth).get(odometer[depth]));
+    }
+    return combination.build();
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super List<T>> action) {
+    if (index >= fence) {
+      return false;
+    }
+    action.accept(currentCombination());
+    index++;
+    if (index < fence) {
+      incrementOdometer();
+    }
+    return true;
+  }
+
+  @Override
+  public Spliterator<List<T>> trySplit() {
+    long middle = index + (fence - index) / 2;
+    if (middle <= index) {
+      return null;
+    }
+    Spliterator<List<T>> prefix = new CombinationSpliterator<>(lists, index, middle);
+    index = middle;
+    setOdometer(middle);
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return fence - index;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+  }
+}
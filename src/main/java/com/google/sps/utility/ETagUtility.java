@@ -0,0 +1,174 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.utility;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Utility class for conditional GET requests. Responses are tagged with a strong ETag, and requests
+ * whose If-None-Match header holds the current ETag are answered with 304 Not Modified. A
+ * compressed body is a different representation than the identity body, so its ETag carries a
+ * suffix naming the content coding, which is ignored when If-None-Match is checked.
+ */
+public final class ETagUtility {
+
+  // Not cryptographic, but fast and wide enough that distinct responses do not collide in practice
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  // Content codings whose suffix is added to the ETag of a compressed body
+  private static final ImmutableList<String> CONTENT_CODINGS = ImmutableList.of("gzip", "deflate");
+
+  /** Prevent instances of this class. */
+  private ETagUtility() {}
+
+  /**
+   * Computes an ETag from the JSON of a response. The JSON is hashed as it is serialized, so it is
+   * never built in memory as a whole.
+   *
+   * @param object Contains the data that is to be sent.
+   * @return A quoted strong ETag.
+   */
+  public static String contentETag(Object object) {
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    try (Writer writer =
+        new OutputStreamWriter(Funnels.asOutputStream(hasher), StandardCharsets.UTF_8)) {
+      JsonUtility.getGson().toJson(object, writer);
+    } catch (IOException e) {
+      // Hashers do not throw
+      throw new IllegalStateException(e);
+    }
+    return quote(hasher.hash().toString());
+  }
+
+  /**
+   * Computes an ETag from the values a response depends on, such as an upstream version token and
+   * the request parameters, so a response can be validated without being computed.
+   *
+   * @param values The values the response is determined by. Null values are allowed.
+   * @return A quoted strong ETag.
+   */
+  public static String versionETag(Object... values) {
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    for (Object value : values) {
+      String string = String.valueOf(value);
+      // Prefix each value with its length, so values cannot run into each other
+      hasher.putInt(string.length()).putString(string, StandardCharsets.UTF_8);
+    }
+    return quote(hasher.hash().toString());
+  }
+
+  /**
+   * Computes the ETag of a body sent with a content coding, so that caches do not mistake the
+   * compressed and the identity bodies for the same bytes. Weak ETags are shared by both bodies.
+   *
+   * @param eTag the quoted ETag of the identity body
+   * @param contentCoding the content coding of the body, such as gzip
+   * @return The ETag with a suffix naming the content coding, or the ETag itself if it is weak.
+   */
+  public static String encodedETag(String eTag, String contentCoding) {
+    if (eTag.startsWith("W/") || !eTag.endsWith("\"")) {
+      return eTag;
+    }
+    return eTag.substring(0, eTag.length() - 1) + "-" + contentCoding + "\"";
+  }
+
+  /**
+   * Tags the response with an ETag, and answers with 304 Not Modified if the client already holds
+   * the tagged response. Responses must be revalidated before a cached copy is reused.
+   *
+   * @param request HTTP request from the client
+   * @param response HTTP response to be sent to the client
+   * @param eTag the quoted ETag of the current response
+   * @return true if 304 was sent and the body must not be written, false otherwise
+   */
+  public static boolean sendNotModifiedIfMatches(
+      HttpServletRequest request, HttpServletResponse response, String eTag) {
+    response.setHeader("ETag", eTag);
+    response.setHeader("Cache-Control", "private, no-cache");
+    Optional<String> matchingETag = findMatch(request.getHeader("If-None-Match"), eTag);
+    if (!matchingETag.isPresent()) {
+      return false;
+    }
+    // The 304 carries the ETag of the body the client holds, which may have been compressed
+    response.setHeader("ETag", matchingETag.get());
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    return true;
+  }
+
+  /**
+   * Sends data to a HTTP Servlet Response tagged with an ETag of its content, or 304 Not Modified
+   * if the client already holds the same data.
+   *
+   * @param request HTTP request from the client
+   * @param response HTTP Servlet Response that data is sent to.
+   * @param object Contains the data that is to be sent.
+   * @throws IOException
+   */
+  public static void sendJsonWithETag(
+      HttpServletRequest request, HttpServletResponse response, Object object)
+      throws IOException {
+    if (!sendNotModifiedIfMatches(request, response, contentETag(object))) {
+      JsonUtility.sendJson(response, object);
+    }
+  }
+
+  /**
+   * Checks an If-None-Match header against an ETag. If-None-Match uses the weak comparison, so the
+   * W/ prefix is ignored, and the ETags of the compressed bodies match as well.
+   *
+   * @param ifNoneMatch value of the If-None-Match header, or null if absent
+   * @param eTag the quoted ETag of the current response
+   * @return An optional containing the matching ETag, or the ETag itself for a wildcard, or an
+   *     empty optional if the header does not list the ETag.
+   */
+  private static Optional<String> findMatch(String ifNoneMatch, String eTag) {
+    if (ifNoneMatch == null) {
+      return Optional.empty();
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*")) {
+        return Optional.of(eTag);
+      }
+      if (tag.equals(eTag)) {
+        return Optional.of(tag);
+      }
+      for (String contentCoding : CONTENT_CODINGS) {
+        if (tag.equals(encodedETag(eTag, contentCoding))) {
+          return Optional.of(tag);
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static String quote(String value) {
+    return "\"" + value + "\"";
+  }
+}
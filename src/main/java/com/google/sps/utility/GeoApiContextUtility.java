@@ -0,0 +1,82 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.utility;
+
+import com.google.maps.GeoApiContext;
+import com.google.maps.OkHttpRequestHandler;
+import java.util.Optional;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+
+/**
+ * Utility class to create GeoApiContext instances for the Maps web services. Contexts can be
+ * pointed at a different server than maps.googleapis.com, such as a local stand-in used for load
+ * tests, either explicitly or through the maps.api.baseUrl system property. A context is shared by
+ * every call of the client holding it, but a request built from it can only be sent once, so
+ * clients build a new request from the context on each call.
+ */
+public final class GeoApiContextUtility {
+
+  /** System property holding a base URL to send Maps API requests to instead of Google's. */
+  public static final String BASE_URL_PROPERTY = "maps.api.baseUrl";
+
+  private GeoApiContextUtility() {}
+
+  /**
+   * Gets the base URL configured through the maps.api.baseUrl system property.
+   *
+   * @return An optional containing the configured base URL, or an empty optional if requests should
+   *     go to maps.googleapis.com.
+   */
+  public static Optional<String> getConfiguredBaseUrl() {
+    return Optional.ofNullable(System.getProperty(BASE_URL_PROPERTY));
+  }
+
+  /**
+   * Creates a context for the given API key which sends every request to the given base URL.
+   *
+   * @param apiKey A string representing the API key to authenticate Maps API calls.
+   * @param baseUrl An optional URL (e.g. http://localhost:8089) replacing the scheme, host and port
+   *     of every request. If empty, requests go to maps.googleapis.com.
+   * @return A GeoApiContext which executes against the given API key.
+   * @throws IllegalArgumentException if the base URL cannot be parsed.
+   */
+  public static GeoApiContext getContext(String apiKey, Optional<String> baseUrl) {
+    if (!baseUrl.isPresent()) {
+      return new GeoApiContext.Builder().apiKey(apiKey).build();
+    }
+    HttpUrl overrideUrl = HttpUrl.parse(baseUrl.get());
+    if (overrideUrl == null) {
+      throw new IllegalArgumentException("Invalid Maps API base URL: " + baseUrl.get());
+    }
+    OkHttpRequestHandler.Builder requestHandlerBuilder = new OkHttpRequestHandler.Builder();
+    requestHandlerBuilder
+        .okHttpClientBuilder()
+        .addInterceptor(
+            chain -> {
+              Request request = chain.request();
+              HttpUrl redirectedUrl =
+                  request
+                      .url()
+                      .newBuilder()
+                      .scheme(overrideUrl.scheme())
+                      .host(overrideUrl.host())
+                      .port(overrideUrl.port())
+                      .build();
+              return chain.proceed(request.newBuilder().url(redirectedUrl).build());
+            });
+    return new GeoApiContext.Builder(requestHandlerBuilder).apiKey(apiKey).build();
+  }
+}
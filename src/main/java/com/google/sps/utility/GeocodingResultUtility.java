@@ -14,17 +14,40 @@
 
 package com.google.sps.utility;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.maps.model.AddressType;
 import com.google.maps.model.GeocodingResult;
 import com.google.maps.model.LatLng;
 import com.google.maps.model.PlaceType;
 import com.google.sps.exceptions.GeocodingException;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 /** Utility class to extract data from GeocodingResult objects. */
 public class GeocodingResultUtility {
+  // Every PlaceType keyed by its lower case name, built once so lookups do not scan the enum
+  private static final ImmutableMap<String, PlaceType> PLACE_TYPES_BY_NAME;
+  // Every AddressType which has a PlaceType of the same name, mapped to that PlaceType
+  private static final ImmutableMap<AddressType, PlaceType> PLACE_TYPES_BY_ADDRESS_TYPE;
+
+  static {
+    ImmutableMap.Builder<String, PlaceType> placeTypesByName = ImmutableMap.builder();
+    for (PlaceType placeType : PlaceType.values()) {
+      placeTypesByName.put(normalizeName(placeType.name()), placeType);
+    }
+    PLACE_TYPES_BY_NAME = placeTypesByName.build();
+
+    ImmutableMap.Builder<AddressType, PlaceType> placeTypesByAddressType = ImmutableMap.builder();
+    for (AddressType addressType : AddressType.values()) {
+      PlaceType placeType = PLACE_TYPES_BY_NAME.get(normalizeName(addressType.name()));
+      if (placeType != null) {
+        placeTypesByAddressType.put(addressType, placeType);
+      }
+    }
+    PLACE_TYPES_BY_ADDRESS_TYPE = placeTypesByAddressType.build();
+  }
+
   /**
    * Parses for the first coordinate which is of a street address type in a result from the
    * Geocoding API. If no street address type results are found, the coordinates of the first result
@@ -55,9 +78,11 @@ public class GeocodingResultUtility {
    *     specified, an empty optional otherwise.
    */
   public static Optional<PlaceType> convertToPlaceType(String location) {
-    return Arrays.asList(PlaceType.values()).stream()
-        .filter(placeType -> placeType.name().equalsIgnoreCase(location.replace(" ", "_")))
-        .findFirst();
+    return Optional.ofNullable(PLACE_TYPES_BY_NAME.get(normalizeName(location.replace(" ", "_"))));
+  }
+
+  private static String normalizeName(String name) {
+    return name.toLowerCase(Locale.ROOT);
   }
 
   /**
@@ -68,8 +93,10 @@ public class GeocodingResultUtility {
    */
   public static boolean hasStreetAddress(List<GeocodingResult> results) {
     for (GeocodingResult result : results) {
-      if (Arrays.asList(result.types).contains(AddressType.STREET_ADDRESS)) {
-        return true;
+      for (AddressType type : result.types) {
+        if (type == AddressType.STREET_ADDRESS) {
+          return true;
+        }
       }
     }
     return false;
@@ -89,9 +116,6 @@ public class GeocodingResultUtility {
     if (result.types.length == 0) {
       throw new GeocodingException("No place types in geocoding result");
     }
-    AddressType addressType = result.types[0];
-    return Arrays.asList(PlaceType.values()).stream()
-        .filter(placeType -> placeType.name().equals(addressType.name()))
-        .findFirst();
+    return Optional.ofNullable(PLACE_TYPES_BY_ADDRESS_TYPE.get(result.types[0]));
   }
 }
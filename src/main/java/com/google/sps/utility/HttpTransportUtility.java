@@ -0,0 +1,109 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.utility;
+
+import com.google.common.base.Suppliers;
+import com.google.sps.model.HttpTransportProvider;
+import com.google.sps.model.PooledHttpTransportProvider;
+import com.google.sps.model.UrlFetchTransportProvider;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Utility class to choose the HTTP transport used by the Google API clients. By default requests go
+ * through a pool of kept-alive connections. The transport is configured through system properties,
+ * which can also point every request at a local stand-in server for load tests.
+ */
+public final class HttpTransportUtility {
+
+  /** System property selecting the transport, either "pooled" (the default) or "urlfetch". */
+  public static final String TRANSPORT_PROPERTY = "google.api.transport";
+
+  /** System property holding a base URL to send Google API requests to instead of Google's. */
+  public static final String BASE_URL_PROPERTY = "google.api.baseUrl";
+
+  /** System property holding the maximum number of pooled connections across all hosts. */
+  public static final String MAX_CONNECTIONS_PROPERTY = "google.api.maxConnections";
+
+  /** System property holding the maximum number of pooled connections to one host. */
+  public static final String MAX_CONNECTIONS_PER_HOST_PROPERTY =
+      "google.api.maxConnectionsPerHost";
+
+  /** System property holding the number of seconds an idle pooled connection is kept open. */
+  public static final String KEEP_ALIVE_SECONDS_PROPERTY = "google.api.keepAliveSeconds";
+
+  public static final String URLFETCH_TRANSPORT = "urlfetch";
+  public static final String POOLED_TRANSPORT = "pooled";
+
+  private static final int DEFAULT_MAX_CONNECTIONS = 100;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+  private static final int DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+  // Created on first use so every client shares one pool
+  private static final Supplier<HttpTransportProvider> defaultProvider =
+      Suppliers.memoize(HttpTransportUtility::createConfiguredProvider)::get;
+
+  private HttpTransportUtility() {}
+
+  /**
+   * Gets the provider shared by every Google API client, configured through system properties.
+   *
+   * @return the default HttpTransportProvider
+   * @throws IllegalArgumentException if a transport property holds an invalid value.
+   */
+  public static HttpTransportProvider getDefaultProvider() {
+    return defaultProvider.get();
+  }
+
+  /**
+   * Creates a provider from the google.api.* system properties. Configuring a base URL implies the
+   * pooled transport, since URL Fetch cannot be redirected.
+   *
+   * @return a new HttpTransportProvider
+   * @throws IllegalArgumentException if a transport property holds an invalid value.
+   */
+  public static HttpTransportProvider createConfiguredProvider() {
+    Optional<String> baseUrl = Optional.ofNullable(System.getProperty(BASE_URL_PROPERTY));
+    String transport = System.getProperty(TRANSPORT_PROPERTY, POOLED_TRANSPORT);
+    if (!baseUrl.isPresent() && transport.equals(URLFETCH_TRANSPORT)) {
+      return new UrlFetchTransportProvider();
+    }
+    if (!baseUrl.isPresent() && !transport.equals(POOLED_TRANSPORT)) {
+      throw new IllegalArgumentException("Unknown Google API transport: " + transport);
+    }
+    return new PooledHttpTransportProvider(
+        getIntProperty(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS),
+        getIntProperty(MAX_CONNECTIONS_PER_HOST_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_HOST),
+        Duration.ofSeconds(getIntProperty(KEEP_ALIVE_SECONDS_PROPERTY, DEFAULT_KEEP_ALIVE_SECONDS)),
+        baseUrl);
+  }
+
+  private static int getIntProperty(String property, int defaultValue) {
+    String value = System.getProperty(property);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      int parsed = Integer.parseInt(value);
+      if (parsed < 1) {
+        throw new IllegalArgumentException(property + " must be positive: " + value);
+      }
+      return parsed;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(property + " is not a number: " + value, e);
+    }
+  }
+}
@@ -15,27 +15,59 @@
 package com.google.sps.utility;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Type;
 import javax.servlet.http.HttpServletResponse;
 
 /** Utility class for JSON operations. */
 public final class JsonUtility {
 
+  // Gson instances are thread-safe, so one instance and its adapters are shared by every request
+  private static final Gson GSON = ResponseTypeAdapters.registerAll(new GsonBuilder()).create();
+
   /** Prevent instances of this class. */
   private JsonUtility() {}
 
   /**
-   * Sends data to a HTTP Servlet Response. TODO: overload method to access JsonObject objects
-   * (Issue #107)
+   * Gets the shared Gson instance, with adapters registered for the response types.
+   *
+   * @return A thread-safe Gson instance.
+   */
+  public static Gson getGson() {
+    return GSON;
+  }
+
+  /**
+   * Sends data to a HTTP Servlet Response. The JSON is streamed to the response writer, so it is
+   * never built in memory as a whole.
    *
    * @param response HTTP Servlet Response that data is sent to.
-   * @param object Contains the data that is to be sent. JsonObject instances behave unexpectedly.
+   * @param object Contains the data that is to be sent. Its runtime type decides how it is written.
    * @throws IOException
    */
   public static void sendJson(HttpServletResponse response, Object object) throws IOException {
-    Gson gson = new Gson();
-    String json = gson.toJson(object);
+    sendJson(response, object, object == null ? Object.class : object.getClass());
+  }
+
+  /**
+   * Sends data of a generic type to a HTTP Servlet Response. The JSON is streamed to the response
+   * writer, so it is never built in memory as a whole.
+   *
+   * @param response HTTP Servlet Response that data is sent to.
+   * @param object Contains the data that is to be sent.
+   * @param type The type to write the data as, such as a TypeToken type of a generic collection.
+   * @throws IOException
+   */
+  public static void sendJson(HttpServletResponse response, Object object, Type type)
+      throws IOException {
     response.setContentType("application/json");
-    response.getWriter().println(json);
+    PrintWriter writer = response.getWriter();
+    // The JsonWriter is not closed, since that would close the response writer
+    JsonWriter jsonWriter = GSON.newJsonWriter(writer);
+    GSON.toJson(object, type, jsonWriter);
+    writer.println();
   }
 }
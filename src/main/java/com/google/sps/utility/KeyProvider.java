@@ -14,55 +14,117 @@
 
 package com.google.sps.utility;
 
-import com.google.appengine.repackaged.com.google.gson.Gson;
-import com.google.appengine.repackaged.com.google.gson.reflect.TypeToken;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.io.IOUtils;
 
+/**
+ * Immutable set of keys parsed once from a json object of string values. The keys stored in
+ * src/main/resources/KEYS.json are loaded once per process and shared through getDefault, and can
+ * be reloaded on demand when the file changes.
+ */
 public final class KeyProvider {
-  private String rawJson;
+  private static final String KEYS_RESOURCE = "KEYS.json";
+  private static final Type KEYS_TYPE = new TypeToken<Map<String, String>>() {}.getType();
+
+  // Keys from KEYS.json, loaded on first use
+  private static final AtomicReference<KeyProvider> defaultProvider = new AtomicReference<>();
+
+  private final ImmutableMap<String, String> keys;
 
   /**
-   * Constructor to create a KeyProvider instance to get keys from src/main/resources/KEYS.json
+   * Constructor to create a KeyProvider instance to get keys from src/main/resources/KEYS.json.
+   * Prefer getDefault, which reads the file only once.
    *
-   * @throws IOException
+   * @throws IOException if the file cannot be read or parsed
    */
   public KeyProvider() throws IOException {
-    ClassLoader loader = Thread.currentThread().getContextClassLoader();
-    InputStream stream = loader.getResourceAsStream("KEYS.json");
-    if (stream == null) {
-      throw new FileNotFoundException(
-          "make sure your local keys are stored under src/main/resources/KEYS.json");
-    }
-    this.rawJson = IOUtils.toString(stream, StandardCharsets.UTF_8);
-    stream.close();
+    this(readKeysResource());
   }
 
   /**
    * Constructor to create a mock KeyProvider instance for testing purposes
    *
    * @param rawJson represents the json content in a json file
+   * @throws IOException if the json cannot be parsed
+   */
+  public KeyProvider(String rawJson) throws IOException {
+    Map<String, String> parsedKeys;
+    try {
+      parsedKeys = new Gson().fromJson(rawJson, KEYS_TYPE);
+    } catch (JsonParseException e) {
+      throw new IOException("Keys are not a json object of strings", e);
+    }
+    ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+    if (parsedKeys != null) {
+      parsedKeys.entrySet().stream()
+          .filter(entry -> entry.getValue() != null)
+          .forEach(builder::put);
+    }
+    this.keys = builder.build();
+  }
+
+  /**
+   * Gets the keys stored in src/main/resources/KEYS.json, reading the file on the first call only
+   *
+   * @return KeyProvider shared by the whole process
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public static KeyProvider getDefault() throws IOException {
+    KeyProvider provider = defaultProvider.get();
+    return provider != null ? provider : reload();
+  }
+
+  /**
+   * Reads src/main/resources/KEYS.json again and replaces the keys returned by getDefault. If the
+   * file cannot be read, the keys loaded before are kept.
+   *
+   * @return KeyProvider with the reloaded keys
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public static KeyProvider reload() throws IOException {
+    KeyProvider provider = new KeyProvider();
+    defaultProvider.set(provider);
+    return provider;
+  }
+
+  /**
+   * Forgets the keys returned by getDefault, so the next call reads the file again. Lets tests
+   * that reload keys from elsewhere leave the process-wide default as they found it.
    */
-  public KeyProvider(String rawJson) {
-    this.rawJson = rawJson;
+  @VisibleForTesting
+  public static void resetDefault() {
+    defaultProvider.set(null);
+  }
+
+  private static String readKeysResource() throws IOException {
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    try (InputStream stream = loader.getResourceAsStream(KEYS_RESOURCE)) {
+      if (stream == null) {
+        throw new FileNotFoundException(
+            "make sure your local keys are stored under src/main/resources/KEYS.json");
+      }
+      return IOUtils.toString(stream, StandardCharsets.UTF_8);
+    }
   }
 
   /**
    * Obtains the value of a key from a json string
    *
    * @param key represents the identifier to obtain the corresponding value from
-   * @return corresponding value of key
-   * @throws IOException
+   * @return corresponding value of key, or null if the key is not present
    */
-  public String getKey(String key) throws IOException {
-    Gson gson = new Gson();
-    Type mapType = new TypeToken<Map<String, String>>() {}.getType();
-    Map<String, String> keys = gson.fromJson(rawJson, mapType);
+  public String getKey(String key) {
     return keys.get(key);
   }
 }
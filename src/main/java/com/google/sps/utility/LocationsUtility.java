@@ -15,17 +15,33 @@
 package com.google.sps.utility;
 
 import com.google.api.services.tasks.model.Task;
-import java.util.ArrayList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.sps.data.TaskAttributes;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public final class LocationsUtility {
 
   private LocationsUtility() {}
 
+  /** Prefix of the tag holding the location of a task, as in [Location: Google Kitchener]. */
+  public static final String LOCATION_PREFIX = "Location";
+
+  // Compiled patterns of every set of prefixes extracted so far. Patterns are immutable and safe
+  // to share between threads.
+  private static final Map<Set<String>, Pattern> patternCache = new ConcurrentHashMap<>();
+
   /**
    * Parses for locations in Tasks. Missing, empty and duplicate locations are ignored.
    *
@@ -35,65 +51,100 @@ public final class LocationsUtility {
    * @return List of strings representing the locations.
    */
   public static List<String> getLocations(String prefix, List<Task> tasks) {
-    // Regular expression matches the characters [prefix: and ] literally, (.*?) signifies the 1st
-    // capturing group which matches any character except for line terminators
-    String regex = "\\[" + prefix + ": (.*?)\\]";
-    Pattern pattern = Pattern.compile(regex);
-    return tasks.stream()
-        .map(task -> task.getNotes())
-        .filter(Objects::nonNull)
-        .map(notes -> getLocation(pattern, prefix, notes))
+    return getTaskAttributes(ImmutableSet.of(prefix), tasks).stream()
+        .map(taskAttributes -> taskAttributes.getAttribute(prefix))
+        .filter(Optional::isPresent)
+        .map(Optional::get)
         .filter(place -> !place.equals(""))
         .distinct()
         .collect(Collectors.toList());
   }
 
   /**
-   * Parses for string enclosed in [prefix: ] in notes of a task. Only the 1st match is returned.
-   * All other matches are ignored.
+   * Parses for every tag with one of the prefixes in the notes of each task, scanning the notes of
+   * each task once however many prefixes are looked for. Only the 1st match of each prefix is kept.
    *
-   * @param prefix String to look for in the square brackets
-   * @param taskNotes String to parse from, usually in the form "... [prefix: ... ] ..."
-   * @return String enclosed in [prefix: ] or an empty string if no enclosure found
+   * @param prefixes Strings which represent the prefixes wrapped in square brackets to look for.
+   *     (e.g. Location if looking for [Location: ])
+   * @param tasks List of tasks to parse for tags from.
+   * @return The tags found in each task, in the same order as the tasks. Tasks without notes have
+   *     no tags.
+   */
+  public static List<TaskAttributes> getTaskAttributes(Set<String> prefixes, List<Task> tasks) {
+    Pattern pattern = getPattern(prefixes);
+    return tasks.stream()
+        .map(task -> new TaskAttributes(task, getAttributes(pattern, task.getNotes())))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Gets the compiled pattern matching a tag with any of the prefixes. Each set of prefixes is only
+   * compiled once.
    */
-  private static String getLocation(Pattern pattern, String prefix, String taskNotes) {
+  private static Pattern getPattern(Set<String> prefixes) {
+    return patternCache.computeIfAbsent(
+        ImmutableSet.copyOf(prefixes),
+        key -> {
+          // Regular expression matches the characters [prefix: and ] literally, where the 1st
+          // capturing group is any of the prefixes and the 2nd capturing group matches any
+          // character except for line terminators
+          String alternatives =
+              key.stream().map(Pattern::quote).collect(Collectors.joining("|"));
+          return Pattern.compile("\\[(" + alternatives + "): (.*?)\\]");
+        });
+  }
+
+  /**
+   * Parses for strings enclosed in [prefix: ] in notes of a task. Only the 1st match of each prefix
+   * is kept. All other matches are ignored.
+   *
+   * @param pattern Compiled pattern matching a tag with any of the prefixes looked for
+   * @param taskNotes String to parse from, usually in the form "... [prefix: ... ] ...", or null
+   * @return Strings enclosed in [prefix: ] keyed by prefix
+   */
+  private static Map<String, String> getAttributes(Pattern pattern, String taskNotes) {
+    if (taskNotes == null) {
+      return ImmutableMap.of();
+    }
+    Map<String, String> attributes = new HashMap<>();
     Matcher matcher = pattern.matcher(taskNotes);
-    if (matcher.find()) {
-      // Return the 1st captured group obtained from executing the regular expression
-      return matcher.group(1);
+    while (matcher.find()) {
+      attributes.putIfAbsent(matcher.group(1), matcher.group(2));
     }
-    return "";
+    return attributes;
   }
 
   /**
-   * Generates combinations of the lists and appends them to the result parameter.
+   * Lazily streams all combinations of the lists. Combinations are only built as the stream is
+   * consumed, so short-circuiting operations stop the enumeration early.
    *
    * @param lists A list of lists to generate combinations for.
-   * @param result A pointer to a list to contain the generated combinations.
-   * @param current A list containing the combination built so far at the recursive call.
+   * @param parallel Whether the returned stream should split the combinations across threads.
+   * @return A stream of combinations, with the last list varying fastest.
    */
-  private static void generateCombinationsHelper(
-      List<List<String>> lists, List<List<String>> result, List<String> current) {
-    int depth = current.size();
-    if (depth == lists.size()) {
-      result.add(new ArrayList<>(current));
-      return;
-    }
-    for (int i = 0; i < lists.get(depth).size(); i++) {
-      current.add(lists.get(depth).get(i));
-      generateCombinationsHelper(lists, result, current);
-      current.remove(depth);
-    }
+  public static Stream<List<String>> streamCombinations(
+      List<List<String>> lists, boolean parallel) {
+    return StreamSupport.stream(new CombinationSpliterator<>(lists), parallel);
+  }
+
+  /**
+   * Lazily iterates over all combinations of the lists. Each call to iterator() starts a new
+   * enumeration.
+   *
+   * @param lists A list of lists to generate combinations for.
+   * @return An iterable over the combinations, with the last list varying fastest.
+   */
+  public static Iterable<List<String>> iterateCombinations(List<List<String>> lists) {
+    return () -> Spliterators.iterator(new CombinationSpliterator<>(lists));
   }
 
   /**
-   * Generates all combinations of the lists recursively.
+   * Generates all combinations of the lists. Prefer streamCombinations or iterateCombinations when
+   * the combinations do not all need to be held in memory at once.
    *
    * @param lists A list of lists to generate combinations for.
    */
   public static List<List<String>> generateCombinations(List<List<String>> lists) {
-    List<List<String>> combinations = new ArrayList<>();
-    generateCombinationsHelper(lists, combinations, new ArrayList<>());
-    return combinations;
+    return streamCombinations(lists, false).collect(Collectors.toList());
   }
 }
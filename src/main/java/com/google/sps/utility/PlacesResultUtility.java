@@ -15,6 +15,8 @@
 package com.google.sps.utility;
 
 import com.google.maps.model.PlacesSearchResponse;
+import com.google.maps.model.PlacesSearchResult;
+import java.util.Optional;
 
 public class PlacesResultUtility {
   /**
@@ -29,4 +31,17 @@ public class PlacesResultUtility {
     }
     return "";
   }
+
+  /**
+   * Gets the first result from the response from the Google Places API.
+   *
+   * @param response The PlacesSearchResponse object to get the first result from
+   * @return An optional containing the first result, or an empty optional if there are no results.
+   */
+  public static Optional<PlacesSearchResult> getFirstResult(PlacesSearchResponse response) {
+    if (response.results.length != 0) {
+      return Optional.ofNullable(response.results[0]);
+    }
+    return Optional.empty();
+  }
 }
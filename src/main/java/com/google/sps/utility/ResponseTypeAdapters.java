@@ -0,0 +1,153 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.utility;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.PlanMailResponse;
+import com.google.sps.model.ActionableMessage;
+import com.google.sps.model.GmailResponse;
+import com.google.sps.model.TasksResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Type adapters which write the response types sent to the client field by field, instead of
+ * through reflection. The JSON written is the same as the reflective output, and reading falls back
+ * to Gson's reflective adapters.
+ */
+final class ResponseTypeAdapters {
+
+  /** Prevent instances of this class. */
+  private ResponseTypeAdapters() {}
+
+  /**
+   * Registers the adapter of every response type.
+   *
+   * @param gsonBuilder the builder of the Gson instance the adapters are used by
+   * @return the given builder
+   */
+  static GsonBuilder registerAll(GsonBuilder gsonBuilder) {
+    return gsonBuilder
+        .registerTypeAdapterFactory(
+            writtenBy(TasksResponse.class, ResponseTypeAdapters::writeTasksResponse))
+        .registerTypeAdapterFactory(
+            writtenBy(GmailResponse.class, ResponseTypeAdapters::writeGmailResponse))
+        .registerTypeAdapterFactory(
+            writtenBy(ActionableMessage.class, ResponseTypeAdapters::writeActionableMessage))
+        .registerTypeAdapterFactory(
+            writtenBy(PlanMailResponse.class, ResponseTypeAdapters::writePlanMailResponse));
+  }
+
+  private static void writeTasksResponse(Gson gson, JsonWriter out, TasksResponse tasksResponse)
+      throws IOException {
+    out.beginObject();
+    out.name("taskListIdsToTitles");
+    out.beginObject();
+    for (Map.Entry<String, String> entry : tasksResponse.getTaskListIdsToTitles().entrySet()) {
+      out.name(entry.getKey()).value(entry.getValue());
+    }
+    out.endObject();
+    out.name("tasksToCompleteCount").value(tasksResponse.getTasksToCompleteCount());
+    out.name("tasksDueTodayCount").value(tasksResponse.getTasksDueTodayCount());
+    out.name("tasksCompletedTodayCount").value(tasksResponse.getTasksCompletedTodayCount());
+    out.name("tasksOverdueCount").value(tasksResponse.getTasksOverdueCount());
+    out.endObject();
+  }
+
+  private static void writeGmailResponse(Gson gson, JsonWriter out, GmailResponse gmailResponse)
+      throws IOException {
+    out.beginObject();
+    out.name("unreadEmailsDays").value(gmailResponse.getUnreadEmailsDays());
+    out.name("unreadEmailsHours").value(gmailResponse.getUnreadEmailsHours());
+    out.name("unreadImportantEmails").value(gmailResponse.getUnreadImportantEmails());
+    out.name("sender").value(gmailResponse.getSender());
+    out.endObject();
+  }
+
+  private static void writeActionableMessage(
+      Gson gson, JsonWriter out, ActionableMessage actionableMessage) throws IOException {
+    ActionableMessage.MessagePriority priority = actionableMessage.getPriority();
+    out.beginObject();
+    out.name("id").value(actionableMessage.getId());
+    out.name("subject").value(actionableMessage.getSubject());
+    out.name("internalDate").value(actionableMessage.getInternalDate());
+    out.name("priority").value(priority == null ? null : priority.name());
+    out.name("sender").value(actionableMessage.getSender());
+    out.endObject();
+  }
+
+  private static void writePlanMailResponse(
+      Gson gson, JsonWriter out, PlanMailResponse planMailResponse) throws IOException {
+    out.beginObject();
+    out.name("wordCount").value(planMailResponse.getWordCount());
+    out.name("averageReadingSpeed").value(planMailResponse.getAverageReadingSpeed());
+    out.name("minutesToRead").value(planMailResponse.getMinutesToRead());
+    out.name("potentialEventTimes");
+    if (planMailResponse.getPotentialEventTimes() == null) {
+      out.nullValue();
+    } else {
+      // Dates keep Gson's default format, which the client parses
+      TypeAdapter<DateInterval> intervalAdapter = gson.getAdapter(DateInterval.class);
+      out.beginArray();
+      for (DateInterval interval : planMailResponse.getPotentialEventTimes()) {
+        intervalAdapter.write(out, interval);
+      }
+      out.endArray();
+    }
+    out.endObject();
+  }
+
+  /**
+   * Creates a factory whose adapter writes values of the given type with the given writer, and
+   * reads them reflectively.
+   *
+   * @param type the type written by the writer
+   * @param writer writes a non-null value of the type
+   * @return a factory creating the adapter of the given type
+   */
+  private static <T> TypeAdapterFactory writtenBy(Class<T> type, ValueWriter<T> writer) {
+    return new TypeAdapterFactory() {
+      @Override
+      public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> typeToken) {
+        if (typeToken.getRawType() != type) {
+          return null;
+        }
+        TypeAdapter<R> reflectiveAdapter = gson.getDelegateAdapter(this, typeToken);
+        return new TypeAdapter<R>() {
+          @Override
+          public void write(JsonWriter out, R value) throws IOException {
+            writer.write(gson, out, type.cast(value));
+          }
+
+          @Override
+          public R read(JsonReader in) throws IOException {
+            return reflectiveAdapter.read(in);
+          }
+        }.nullSafe();
+      }
+    };
+  }
+
+  /** Writes a non-null value of a response type. */
+  private interface ValueWriter<T> {
+    void write(Gson gson, JsonWriter out, T value) throws IOException;
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.utility;
+
+import com.google.maps.model.LatLng;
+import java.util.Collection;
+
+/**
+ * Utility class to compute great-circle lower bounds on travel time. A route can never be shorter
+ * than the great-circle distance it covers, so these bounds can discard routes before asking the
+ * Directions API for their real travel time.
+ */
+public final class RouteBoundUtility {
+
+  /** Mean radius of the Earth in meters. */
+  public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+  /**
+   * Fastest speed assumed for any leg of a route, in meters per second (200 km/h). Chosen well
+   * above highway speeds so the resulting travel times are always lower bounds.
+   */
+  public static final double MAX_TRAVEL_SPEED_METERS_PER_SECOND = 200_000.0 / 3600.0;
+
+  private RouteBoundUtility() {}
+
+  /**
+   * Computes the great-circle distance between two coordinates using the haversine formula.
+   *
+   * @param from The first coordinate.
+   * @param to The second coordinate.
+   * @return The distance between the coordinates in meters.
+   */
+  public static double haversineDistance(LatLng from, LatLng to) {
+    double fromLatitude = Math.toRadians(from.lat);
+    double toLatitude = Math.toRadians(to.lat);
+    double sinHalfLatitudeDelta = Math.sin((toLatitude - fromLatitude) / 2);
+    double sinHalfLongitudeDelta = Math.sin(Math.toRadians(to.lng - from.lng) / 2);
+    double haversine =
+        sinHalfLatitudeDelta * sinHalfLatitudeDelta
+            + Math.cos(fromLatitude)
+                * Math.cos(toLatitude)
+                * sinHalfLongitudeDelta
+                * sinHalfLongitudeDelta;
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(haversine)));
+  }
+
+  /**
+   * Computes a lower bound on the travel time of a route from origin to destination which passes
+   * through the waypoint. Whatever order the waypoints of a route are visited in, the route is at
+   * least as long as the detour through any single one of them.
+   *
+   * @param origin The starting point of travel.
+   * @param destination The ending point of travel.
+   * @param waypoint A point that must be visited between origin and destination.
+   * @return A lower bound on the travel time in seconds.
+   */
+  public static long travelTimeLowerBound(LatLng origin, LatLng destination, LatLng waypoint) {
+    double detourDistance =
+        haversineDistance(origin, waypoint) + haversineDistance(waypoint, destination);
+    return (long) Math.floor(detourDistance / MAX_TRAVEL_SPEED_METERS_PER_SECOND);
+  }
+
+  /**
+   * Computes a lower bound on the travel time of a route from origin to destination which passes
+   * through every waypoint.
+   *
+   * @param origin The starting point of travel.
+   * @param destination The ending point of travel.
+   * @param waypoints The points that must be visited between origin and destination.
+   * @return A lower bound on the travel time in seconds.
+   */
+  public static long travelTimeLowerBound(
+      LatLng origin, LatLng destination, Collection<LatLng> waypoints) {
+    double directDistance = haversineDistance(origin, destination);
+    long lowerBound = (long) Math.floor(directDistance / MAX_TRAVEL_SPEED_METERS_PER_SECOND);
+    for (LatLng waypoint : waypoints) {
+      lowerBound = Math.max(lowerBound, travelTimeLowerBound(origin, destination, waypoint));
+    }
+    return lowerBound;
+  }
+}
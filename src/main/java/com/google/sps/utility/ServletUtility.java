@@ -14,11 +14,12 @@
 
 package com.google.sps.utility;
 
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.sps.exceptions.CookieParseException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 
@@ -26,6 +27,9 @@ import javax.servlet.http.HttpServletRequest;
 public final class ServletUtility {
   public static final String APPLICATION_NAME = "PUT NAME HERE";
 
+  // Request attribute holding the parsed cookies of the request
+  private static final String COOKIE_INDEX_ATTRIBUTE = ServletUtility.class.getName() + ".cookies";
+
   private ServletUtility() {}
 
   /**
@@ -39,10 +43,7 @@ public final class ServletUtility {
    */
   public static Cookie getCookie(HttpServletRequest request, String cookieName)
       throws CookieParseException {
-    List<Cookie> cookies =
-        Arrays.stream(request.getCookies())
-            .filter((Cookie c) -> c.getName().equals(cookieName))
-            .collect(Collectors.toList());
+    List<Cookie> cookies = getCookieIndex(request).get(cookieName);
 
     if (cookies.isEmpty()) {
       throw new CookieParseException("Cookie not found");
@@ -69,12 +70,32 @@ public final class ServletUtility {
    * @return true if present (duplicates will also return true), false otherwise
    */
   public static boolean hasCookie(HttpServletRequest request, String cookieName) {
-    List<Cookie> cookies =
-        Arrays.stream(request.getCookies())
-            .filter((Cookie c) -> c.getName().equals(cookieName))
-            .collect(Collectors.toList());
+    return getCookieIndex(request).containsKey(cookieName);
+  }
 
-    return !cookies.isEmpty();
+  /**
+   * Gets the request's cookies grouped by name, in the order they were sent. The index is built on
+   * the first call and kept as a request attribute, so later lookups on the same request do not
+   * scan every cookie again.
+   *
+   * @param request HTTP request from client
+   * @return the request's cookies by name. Duplicate cookies are all kept under their name
+   */
+  private static ListMultimap<String, Cookie> getCookieIndex(HttpServletRequest request) {
+    Object attribute = request.getAttribute(COOKIE_INDEX_ATTRIBUTE);
+    if (attribute instanceof CookieIndex) {
+      return ((CookieIndex) attribute).cookiesByName;
+    }
+    ImmutableListMultimap.Builder<String, Cookie> cookiesByName = ImmutableListMultimap.builder();
+    Cookie[] cookies = request.getCookies();
+    if (cookies != null) {
+      for (Cookie cookie : cookies) {
+        cookiesByName.put(cookie.getName(), cookie);
+      }
+    }
+    CookieIndex index = new CookieIndex(cookiesByName.build());
+    request.setAttribute(COOKIE_INDEX_ATTRIBUTE, index);
+    return index.cookiesByName;
   }
 
   /**
@@ -115,4 +136,13 @@ public final class ServletUtility {
         ? Arrays.asList(listAsString.split(","))
         : Collections.emptyList();
   }
+
+  /** Cookies of one request grouped by name, wrapped so no other attribute is mistaken for it. */
+  private static final class CookieIndex {
+    private final ListMultimap<String, Cookie> cookiesByName;
+
+    CookieIndex(ListMultimap<String, Cookie> cookiesByName) {
+      this.cookiesByName = cookiesByName;
+    }
+  }
 }
@@ -42,17 +42,20 @@ const emailIdPrefix = 'emailId:';
 /**
  * Process for initializing the assign panel after login or a change in settings
  *
+ * @param {Promise<Object>} actionableEmailsPromise promise that returns the
+ *     actionable emails for the current settings, fetched on their own or as
+ *     part of the dashboard
  * @return {Promise<null>} promise that resolves when all assign global
  *     variables are initialized
  */
-function initializeAssignFeatures() {
+function initializeAssignFeatures(actionableEmailsPromise) {
   const actionItemsCountElement =
       document.getElementById('assign-suspected-action-items');
 
   return Promise.all(
       [
         getAssignPanelTasks(),
-        fetchActionableEmails(subjectLinePhrases, unreadOnly, nDays),
+        actionableEmailsPromise,
       ]
   ).then((values) => {
     // Parse values from server
@@ -133,9 +136,22 @@ function getAssignPanelTasks() {
 
 /**
  * Sets the values of the settings for the assign panel based on what is
- * present in the panel (will be the default values on sign-in)
+ * present in the panel (will be the default values on sign-in), and
+ * initializes the panel with them
  */
 function setUpAssign() {
+  readAssignSettings();
+
+  initializeAssignFeatures(
+      fetchActionableEmails(subjectLinePhrases, unreadOnly, nDays))
+      .then(() => enableAssignStartResetButton());
+}
+
+/**
+ * Sets the values of the settings for the assign panel based on what is
+ * present in the panel
+ */
+function readAssignSettings() {
   const nDaysElement = document.getElementById('assign-n-days');
   nDays = parseInt(nDaysElement.innerText);
 
@@ -152,9 +168,6 @@ function setUpAssign() {
   subjectLinePhrases = [];
   listElements
       .forEach((element) => subjectLinePhrases.push(element.innerText));
-
-  initializeAssignFeatures()
-      .then(() => enableAssignStartResetButton());
 }
 
 /**
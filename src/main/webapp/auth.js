@@ -37,8 +37,7 @@
 
 /* eslint-disable no-unused-vars */
 /* global gapi, addCookie, isCookiePresent,
-deleteCookie, populateGmail, populateTasks, populateCalendar,
-postAndGetTaskList, populateGo, populatePlanMail,setUpAssign*/
+deleteCookie, populateDashboard, postAndGetTaskList, populateGo*/
 // TODO: Handle CommonJS (Issue #31)
 
 /**
@@ -76,17 +75,12 @@ function handleAuthenticationState() {
     signInButton.setAttribute('hidden', '');
     featureContainer.removeAttribute('hidden');
 
-    // Populate information panels at top of dashboard
-    populateGmail();
-    populateTasks();
-    populateCalendar();
+    // Populate the information panels at the top of the dashboard and the
+    // magic feature panels at the bottom with a single request
+    populateDashboard();
     // TEMPORARY: Commenting this out since it adds tasks to user's
     // Tasks account on every run.
     // postAndGetTaskList();
-
-    // Populate magic feature panels at the bottom of the dashboard
-    populatePlanMail();
-    setUpAssign();
   } else {
     // User is not logged in.
     // Show sign in button, hide features
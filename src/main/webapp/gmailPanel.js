@@ -24,6 +24,35 @@ let gmailMHours;
  * Populate Gmail container with user information
  */
 function populateGmail() {
+  readGmailSettings();
+
+  // Get GmailResponse object that reflects user's gmail account
+  // Should contain a field for each datapoint in the Gmail panel
+  fetch(`/gmail?nDays=${gmailNDays}&mHours=${gmailMHours}`)
+      .then((response) => {
+        switch (response.status) {
+          case 200:
+            return response.json();
+          case 403:
+            throw new AuthenticationError();
+          default:
+            throw new Error(response.status + ' ' + response.statusText);
+        }
+      })
+      .then((gmailResponse) => displayGmail(gmailResponse))
+      .catch((e) => {
+        console.log(e);
+        if (e instanceof AuthenticationError) {
+          signOut();
+        }
+      });
+}
+
+/**
+ * Read the values for nDays and mHours from the settings panel, and set
+ * placeholders in the Gmail panel while loading
+ */
+function readGmailSettings() {
   // Get values for nDays and mHours
   const nDaysSettingsContainer =
       document.querySelector('#gmail-settings-n-days');
@@ -54,43 +83,32 @@ function populateGmail() {
   importantEmailsContainer.innerText = '...';
   senderInitialContainer.innerText = '...';
   senderContainer.innerText = '...';
+}
 
-  // Get GmailResponse object that reflects user's gmail account
-  // Should contain a field for each datapoint in the Gmail panel
-  fetch(`/gmail?nDays=${gmailNDays}&mHours=${gmailMHours}`)
-      .then((response) => {
-        switch (response.status) {
-          case 200:
-            return response.json();
-          case 403:
-            throw new AuthenticationError();
-          default:
-            throw new Error(response.status + ' ' + response.statusText);
-        }
-      })
-      .then((gmailResponse) => {
-        unreadEmailsContainer.innerText =
-            gmailResponse['unreadEmailsDays'];
-        unreadEmailsThreeHrsContainer.innerText =
-            gmailResponse['unreadEmailsHours'];
-        importantEmailsContainer.innerText =
-            gmailResponse['unreadImportantEmails'];
-        if (parseInt(gmailResponse['unreadEmailsDays']) !== 0) {
-          senderContainer.innerText =
-              gmailResponse['sender'];
-          senderInitialContainer.innerText =
-              gmailResponse['sender'][0].toUpperCase();
-        } else {
-          senderContainer.innerText = 'N/A';
-          senderInitialContainer.innerText = '-';
-        }
-      })
-      .catch((e) => {
-        console.log(e);
-        if (e instanceof AuthenticationError) {
-          signOut();
-        }
-      });
+/**
+ * Display a GmailResponse in the Gmail panel
+ *
+ * @param {Object} gmailResponse GmailResponse from the server
+ */
+function displayGmail(gmailResponse) {
+  document.querySelector('#gmail-unread-emails-days').innerText =
+      gmailResponse['unreadEmailsDays'];
+  document.querySelector('#gmail-unread-emails-hours').innerText =
+      gmailResponse['unreadEmailsHours'];
+  document.querySelector('#gmail-unread-important-emails').innerText =
+      gmailResponse['unreadImportantEmails'];
+  const senderInitialContainer =
+      document.querySelector('#gmail-sender-initial');
+  const senderContainer = document.querySelector('#gmail-sender');
+  if (parseInt(gmailResponse['unreadEmailsDays']) !== 0) {
+    senderContainer.innerText =
+        gmailResponse['sender'];
+    senderInitialContainer.innerText =
+        gmailResponse['sender'][0].toUpperCase();
+  } else {
+    senderContainer.innerText = 'N/A';
+    senderInitialContainer.innerText = '-';
+  }
 }
 
 /**
@@ -16,40 +16,71 @@
 
 /* eslint-disable no-unused-vars */
 /* global signOut, AuthenticationError, Task, getDateInLocalTimeZone,
- encodeListForUrl */
+ encodeListForUrl, readGmailSettings, displayGmail, gmailNDays, gmailMHours,
+ readAssignSettings, initializeAssignFeatures, enableAssignStartResetButton,
+ subjectLinePhrases, unreadOnly, nDays */
 
 /**
- * Populate Tasks container with user information
+ * Populate every panel of the dashboard from a single /dashboard request. The
+ * user is authenticated once, and data needed by several panels is fetched
+ * once. The panels are refreshed individually when their settings change
  */
-function populateTasks() {
-  let fetchFrom;
-  const tasksSelect = document.querySelector('#tasks-select');
-  const goSelect = document.querySelector('#go-select');
-  // Cast from HTMLOptionsCollection to Array
-  const options = Array(...tasksSelect.options);
+function populateDashboard() {
+  readGmailSettings();
+  readAssignSettings();
+  setTasksPlaceholders();
 
-  if (options.length === 0) {
-    fetchFrom = '/tasks';
-  } else {
-    const selectedOptions = [];
-    options.forEach((option) => {
-      if (option.selected) {
-        selectedOptions.push(option.value);
-      }
-    });
-    fetchFrom = '/tasks?taskLists=' + selectedOptions.join();
+  let fetchFrom =
+      `/dashboard?nDays=${gmailNDays}&mHours=${gmailMHours}` +
+      '&summary=Read emails' +
+      `&subjectLinePhrases=${encodeListForUrl(subjectLinePhrases)}` +
+      `&unreadOnly=${unreadOnly.toString()}&actionableNDays=${nDays}`;
+  const selectedTaskLists = getSelectedTaskLists();
+  if (selectedTaskLists !== null) {
+    fetchFrom += '&taskLists=' + selectedTaskLists.join();
   }
 
-  // Set default values while loading
-  const tasksToCompleteElement = document.getElementById('tasks-to-complete');
-  const tasksDueTodayElement = document.getElementById('tasks-due-today');
-  const tasksCompletedTodayElement =
-      document.getElementById('tasks-completed-today');
-  const tasksOverdueElement = document.getElementById('tasks-overdue');
-  tasksToCompleteElement.innerText = '...';
-  tasksDueTodayElement.innerText = '...';
-  tasksCompletedTodayElement.innerText = '...';
-  tasksOverdueElement.innerText = '...';
+  const dashboard = fetch(fetchFrom)
+      .then((response) => {
+        switch (response.status) {
+          case 200:
+            return response.json();
+          case 403:
+            throw new AuthenticationError();
+          default:
+            throw new Error(response.status + ' ' + response.statusText);
+        }
+      });
+
+  dashboard
+      .then((dashboardResponse) => {
+        displayGmail(dashboardResponse.gmail);
+        displayTasks(dashboardResponse.tasks);
+        displayCalendar(dashboardResponse.calendar);
+        displayPlanMail(dashboardResponse.planMail);
+      })
+      .catch((e) => {
+        console.log(e);
+        if (e instanceof AuthenticationError) {
+          signOut();
+        }
+      });
+
+  initializeAssignFeatures(
+      dashboard.then((dashboardResponse) => dashboardResponse.actionableEmails))
+      .then(() => enableAssignStartResetButton());
+}
+
+/**
+ * Populate Tasks container with user information
+ */
+function populateTasks() {
+  const selectedTaskLists = getSelectedTaskLists();
+  const fetchFrom = selectedTaskLists === null ?
+      '/tasks' :
+      '/tasks?taskLists=' + selectedTaskLists.join();
+
+  setTasksPlaceholders();
 
   fetch(fetchFrom)
       .then((response) => {
@@ -59,35 +90,7 @@ function populateTasks() {
         }
         return response.json();
       })
-      .then((tasksResponse) => {
-        if (options.length === 0) {
-          const taskListIdsToTitles = tasksResponse['taskListIdsToTitles'];
-          tasksSelect.innerText = '';
-          goSelect.innerText = '';
-          for (const taskListId in taskListIdsToTitles) {
-            if (Object.prototype
-                .hasOwnProperty
-                .call(taskListIdsToTitles, taskListId)) {
-              let option = document.createElement('option');
-              option.value = taskListId;
-              option.innerText = taskListIdsToTitles[taskListId];
-              tasksSelect.append(option);
-              option = document.createElement('option');
-              option.value = taskListId;
-              option.innerText = taskListIdsToTitles[taskListId];
-              goSelect.append(option);
-            }
-          }
-        }
-        tasksToCompleteElement
-            .innerText = tasksResponse['tasksToCompleteCount'];
-        tasksDueTodayElement
-            .innerText = tasksResponse['tasksDueTodayCount'];
-        tasksCompletedTodayElement
-            .innerText = tasksResponse['tasksCompletedTodayCount'];
-        tasksOverdueElement
-            .innerText = tasksResponse['tasksOverdueCount'];
-      })
+      .then((tasksResponse) => displayTasks(tasksResponse))
       .catch((e) => {
         console.log(e);
         if (e instanceof AuthenticationError) {
@@ -96,6 +99,71 @@ function populateTasks() {
       });
 }
 
+/**
+ * Get the task lists selected in the Tasks panel
+ *
+ * @return {string[]|null} ids of the selected task lists, or null if the
+ *     task lists have not been loaded yet
+ */
+function getSelectedTaskLists() {
+  // Cast from HTMLOptionsCollection to Array
+  const options = Array(...document.querySelector('#tasks-select').options);
+  if (options.length === 0) {
+    return null;
+  }
+  return options
+      .filter((option) => option.selected)
+      .map((option) => option.value);
+}
+
+/**
+ * Set default values in the Tasks panel while loading
+ */
+function setTasksPlaceholders() {
+  document.getElementById('tasks-to-complete').innerText = '...';
+  document.getElementById('tasks-due-today').innerText = '...';
+  document.getElementById('tasks-completed-today').innerText = '...';
+  document.getElementById('tasks-overdue').innerText = '...';
+}
+
+/**
+ * Display a TasksResponse in the Tasks panel, filling the task list selectors
+ * if they have not been loaded yet
+ *
+ * @param {Object} tasksResponse TasksResponse from the server
+ */
+function displayTasks(tasksResponse) {
+  const tasksSelect = document.querySelector('#tasks-select');
+  const goSelect = document.querySelector('#go-select');
+  if (tasksSelect.options.length === 0) {
+    const taskListIdsToTitles = tasksResponse['taskListIdsToTitles'];
+    tasksSelect.innerText = '';
+    goSelect.innerText = '';
+    for (const taskListId in taskListIdsToTitles) {
+      if (Object.prototype
+          .hasOwnProperty
+          .call(taskListIdsToTitles, taskListId)) {
+        let option = document.createElement('option');
+        option.value = taskListId;
+        option.innerText = taskListIdsToTitles[taskListId];
+        tasksSelect.append(option);
+        option = document.createElement('option');
+        option.value = taskListId;
+        option.innerText = taskListIdsToTitles[taskListId];
+        goSelect.append(option);
+      }
+    }
+  }
+  document.getElementById('tasks-to-complete')
+      .innerText = tasksResponse['tasksToCompleteCount'];
+  document.getElementById('tasks-due-today')
+      .innerText = tasksResponse['tasksDueTodayCount'];
+  document.getElementById('tasks-completed-today')
+      .innerText = tasksResponse['tasksCompletedTodayCount'];
+  document.getElementById('tasks-overdue')
+      .innerText = tasksResponse['tasksOverdueCount'];
+}
+
 /**
  * Will reset the tasklists selector and populate the panel again,
  * giving the system the chance to add new tasklists to the tasklists options.
@@ -109,7 +177,6 @@ function resetTasks() {
  * Populate Calendar container with user's events
  */
 function populateCalendar() {
-  const calendarContainer = document.querySelector('#calendar');
   fetch('/calendar')
       .then((response) => {
         // If response is a 403, user is not authenticated
@@ -118,41 +185,7 @@ function populateCalendar() {
         }
         return response.json();
       })
-      .then((hoursJson) => {
-        // Display the days and the free hours for each one of them
-        const days = ['Su', 'Mo', 'Tu', 'We', 'Th', 'Fr', 'Sa'];
-        const panelContent = document.querySelector('#panel-content');
-        panelContent.innerHTML = '';
-        for (const day in hoursJson.workTimeFree) {
-          if (Object.prototype.hasOwnProperty
-              .call(hoursJson.workTimeFree, day)) {
-            const panelContentEntry = document.createElement('div');
-            panelContentEntry.className = 'panel__content-entry';
-            const dayContainer = document.createElement('p');
-            dayContainer.className = 'panel__text-icon u-text-calendar';
-            dayContainer.innerText =
-                days[(hoursJson.startDay + parseInt(day)) % 7];
-            const timeContainer = document.createElement('div');
-            const workContainer = document.createElement('p');
-            workContainer.className = 'u-block';
-            workContainer.innerText =
-                hoursJson.workTimeFree[day].hours +
-                'h ' + hoursJson.workTimeFree[day].minutes +
-                'm free (working)';
-            const personalContainer = document.createElement('p');
-            personalContainer.className = 'u-block';
-            personalContainer.innerText =
-                hoursJson.personalTimeFree[day].hours +
-                'h ' + hoursJson.personalTimeFree[day].minutes +
-                'm free (personal)';
-            timeContainer.appendChild(workContainer);
-            timeContainer.appendChild(personalContainer);
-            panelContentEntry.appendChild(dayContainer);
-            panelContentEntry.appendChild(timeContainer);
-            panelContent.appendChild(panelContentEntry);
-          }
-        }
-      })
+      .then((hoursJson) => displayCalendar(hoursJson))
       .catch((e) => {
         console.log(e);
         if (e instanceof AuthenticationError) {
@@ -161,6 +194,47 @@ function populateCalendar() {
       });
 }
 
+/**
+ * Display the free hours of each day in the Calendar panel
+ *
+ * @param {Object} hoursJson CalendarSummaryResponse from the server
+ */
+function displayCalendar(hoursJson) {
+  // Display the days and the free hours for each one of them
+  const days = ['Su', 'Mo', 'Tu', 'We', 'Th', 'Fr', 'Sa'];
+  const panelContent = document.querySelector('#panel-content');
+  panelContent.innerHTML = '';
+  for (const day in hoursJson.workTimeFree) {
+    if (Object.prototype.hasOwnProperty
+        .call(hoursJson.workTimeFree, day)) {
+      const panelContentEntry = document.createElement('div');
+      panelContentEntry.className = 'panel__content-entry';
+      const dayContainer = document.createElement('p');
+      dayContainer.className = 'panel__text-icon u-text-calendar';
+      dayContainer.innerText =
+          days[(hoursJson.startDay + parseInt(day)) % 7];
+      const timeContainer = document.createElement('div');
+      const workContainer = document.createElement('p');
+      workContainer.className = 'u-block';
+      workContainer.innerText =
+          hoursJson.workTimeFree[day].hours +
+          'h ' + hoursJson.workTimeFree[day].minutes +
+          'm free (working)';
+      const personalContainer = document.createElement('p');
+      personalContainer.className = 'u-block';
+      personalContainer.innerText =
+          hoursJson.personalTimeFree[day].hours +
+          'h ' + hoursJson.personalTimeFree[day].minutes +
+          'm free (personal)';
+      timeContainer.appendChild(workContainer);
+      timeContainer.appendChild(personalContainer);
+      panelContentEntry.appendChild(dayContainer);
+      panelContentEntry.appendChild(timeContainer);
+      panelContent.appendChild(panelContentEntry);
+    }
+  }
+}
+
 /**
  * Post a new task to a given taskList
  *
@@ -269,23 +343,48 @@ function populateGo() {
 
   goContainer.innerText = '• • •';
 
+  // Replace the displayed route with the legs of a newer route
+  const displayLegs = (legs) => {
+    goContainer.innerText = '';
+    legs.forEach((leg) => {
+      const li = document.createElement('li');
+      li.innerText = leg;
+      goContainer.append(li);
+    });
+  };
+
+  // Routes are streamed as newline-delimited JSON, from a quick baseline route
+  // through to the optimal route, and each one is displayed as it arrives
   fetch('/go?taskLists=' + selectedOptions.join() +
           '&origin=' + origin +
-          '&destination=' + destination)
+          '&destination=' + destination +
+          '&stream=true')
       .then((response) => {
         // If response is a 403, user is not authenticated
         if (response.status === 403) {
           throw new AuthenticationError();
         }
-        return response.json();
-      })
-      .then((legs) => {
-        goContainer.innerText = '';
-        legs.forEach((leg) => {
-          const li = document.createElement('li');
-          li.innerText = leg;
-          goContainer.append(li);
-        });
+        // Any other error is not a stream of routes
+        if (!response.ok) {
+          throw new Error(response.status + ' ' + response.statusText);
+        }
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffered = '';
+        const readRoutes = () => {
+          return reader.read().then(({done, value}) => {
+            const chunk = value || new Uint8Array();
+            buffered += decoder.decode(chunk, {stream: !done});
+            const lines = buffered.split('\n');
+            buffered = lines.pop();
+            lines.filter((line) => line.trim() !== '')
+                .forEach((line) => displayLegs(JSON.parse(line).route));
+            if (!done) {
+              return readRoutes();
+            }
+          });
+        };
+        return readRoutes();
       })
       .catch((e) => {
         console.log(e);
@@ -299,7 +398,6 @@ function populateGo() {
  * Populate Plan-mail panel with potential times to read the emails
  */
 function populatePlanMail() {
-  const planContainer = document.querySelector('#plan');
   fetch('/plan-mail?summary=Read emails')
       .then((response) => {
         // If response is a 403, user is not authenticated
@@ -308,43 +406,7 @@ function populatePlanMail() {
         }
         return response.json();
       })
-      .then((planMailResponse) => {
-        // Display the potential times to create events
-        document.querySelector('#word-count').innerText =
-            planMailResponse.wordCount;
-        document.querySelector('#average-reply').innerText =
-            planMailResponse.averageReadingSpeed;
-        document.querySelector('#time-needed').innerText =
-            planMailResponse.minutesToRead;
-        const messageEventContainer = document.querySelector('#message-event');
-        messageEventContainer.innerHTML = '';
-        const intervalContainer = document.querySelector('#free-interval');
-        intervalContainer.innerHTML = '';
-        if (planMailResponse.potentialEventTimes.length === 0) {
-          messageEventContainer.innerText = 'No new events needed';
-        } else {
-          messageEventContainer.innerText = 'Click to schedule';
-          for (const index in planMailResponse.potentialEventTimes) {
-            if (Object.prototype.hasOwnProperty
-                .call(planMailResponse.potentialEventTimes, index)) {
-              const buttonElement = document.createElement('button');
-              buttonElement.className = 'button plan__button';
-              buttonElement.innerText =
-                `${planMailResponse.potentialEventTimes[index].start} to \
-                ${planMailResponse.potentialEventTimes[index].end}`;
-              buttonElement.setAttribute('start',
-                  planMailResponse.potentialEventTimes[index].start);
-              buttonElement.setAttribute('end',
-                  planMailResponse.potentialEventTimes[index].end);
-              buttonElement.addEventListener('click', () => {
-                createEvent(buttonElement.getAttribute('start'),
-                    buttonElement.getAttribute('end'));
-              });
-              intervalContainer.appendChild(buttonElement);
-            }
-          }
-        }
-      })
+      .then((planMailResponse) => displayPlanMail(planMailResponse))
       .catch((e) => {
         console.log(e);
         if (e instanceof AuthenticationError) {
@@ -353,6 +415,49 @@ function populatePlanMail() {
       });
 }
 
+/**
+ * Display the potential times to read the emails in the Plan-mail panel
+ *
+ * @param {Object} planMailResponse PlanMailResponse from the server
+ */
+function displayPlanMail(planMailResponse) {
+  // Display the potential times to create events
+  document.querySelector('#word-count').innerText =
+      planMailResponse.wordCount;
+  document.querySelector('#average-reply').innerText =
+      planMailResponse.averageReadingSpeed;
+  document.querySelector('#time-needed').innerText =
+      planMailResponse.minutesToRead;
+  const messageEventContainer = document.querySelector('#message-event');
+  messageEventContainer.innerHTML = '';
+  const intervalContainer = document.querySelector('#free-interval');
+  intervalContainer.innerHTML = '';
+  if (planMailResponse.potentialEventTimes.length === 0) {
+    messageEventContainer.innerText = 'No new events needed';
+  } else {
+    messageEventContainer.innerText = 'Click to schedule';
+    for (const index in planMailResponse.potentialEventTimes) {
+      if (Object.prototype.hasOwnProperty
+          .call(planMailResponse.potentialEventTimes, index)) {
+        const buttonElement = document.createElement('button');
+        buttonElement.className = 'button plan__button';
+        buttonElement.innerText =
+          `${planMailResponse.potentialEventTimes[index].start} to \
+          ${planMailResponse.potentialEventTimes[index].end}`;
+        buttonElement.setAttribute('start',
+            planMailResponse.potentialEventTimes[index].start);
+        buttonElement.setAttribute('end',
+            planMailResponse.potentialEventTimes[index].end);
+        buttonElement.addEventListener('click', () => {
+          createEvent(buttonElement.getAttribute('start'),
+              buttonElement.getAttribute('end'));
+        });
+        intervalContainer.appendChild(buttonElement);
+      }
+    }
+  }
+}
+
 /**
  * Call a post request to create a new event in the calendar, then display the
  * updated information in calendar and plan panels
@@ -0,0 +1,199 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.common.base.Ticker;
+import com.google.sps.model.ApiMetrics;
+import com.google.sps.model.AuthenticationVerifier;
+import com.google.sps.model.GmailClient;
+import com.google.sps.model.InstrumentedAuthenticationVerifier;
+import com.google.sps.model.InstrumentedGmailClient;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Test that ApiMetrics and the clients instrumented with it count calls, errors and latency. */
+@RunWith(JUnit4.class)
+public class ApiMetricsTest {
+
+  private AtomicLong nanos;
+  private ApiMetrics metrics;
+
+  @Before
+  public void setUp() {
+    nanos = new AtomicLong();
+    Ticker ticker =
+        new Ticker() {
+          @Override
+          public long read() {
+            return nanos.get();
+          }
+        };
+    metrics = new ApiMetrics(ticker);
+  }
+
+  private String elapse(long millis, String result) {
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    return result;
+  }
+
+  private String writePrometheus() {
+    StringWriter stringWriter = new StringWriter();
+    PrintWriter writer = new PrintWriter(stringWriter);
+    metrics.writePrometheus(writer);
+    writer.flush();
+    return stringWriter.toString();
+  }
+
+  @Test
+  public void recordReturnsResultAndCountsCall() {
+    String result = metrics.record("gmail", "getHistoryId", () -> "result");
+
+    Assert.assertEquals("result", result);
+    Assert.assertEquals(1, metrics.getCallCount("gmail", "getHistoryId"));
+    Assert.assertEquals(0, metrics.getErrorCount("gmail", "getHistoryId"));
+    Assert.assertEquals(0, metrics.getCallCount("gmail", "listUserMessages"));
+  }
+
+  @Test
+  public void recordCountsErrorAndRethrows() {
+    IOException exception = new IOException("failed");
+    try {
+      metrics.record(
+          "gmail",
+          "getHistoryId",
+          () -> {
+            throw exception;
+          });
+      Assert.fail("Expected the call's exception");
+    } catch (IOException e) {
+      Assert.assertSame(exception, e);
+    }
+
+    Assert.assertEquals(1, metrics.getCallCount("gmail", "getHistoryId"));
+    Assert.assertEquals(1, metrics.getErrorCount("gmail", "getHistoryId"));
+  }
+
+  @Test
+  public void histogramIsCumulative() {
+    metrics.record("places", "searchNearby", () -> elapse(3, "fast"));
+    metrics.record("places", "searchNearby", () -> elapse(200, "slow"));
+    metrics.record("places", "searchNearby", () -> elapse(20_000, "timed out"));
+
+    String output = writePrometheus();
+    String labels = "api=\"places\",method=\"searchNearby\"";
+    Assert.assertTrue(
+        output.contains("upstream_api_latency_seconds_bucket{" + labels + ",le=\"0.005\"} 1\n"));
+    Assert.assertTrue(
+        output.contains("upstream_api_latency_seconds_bucket{" + labels + ",le=\"0.1\"} 1\n"));
+    Assert.assertTrue(
+        output.contains("upstream_api_latency_seconds_bucket{" + labels + ",le=\"0.25\"} 2\n"));
+    Assert.assertTrue(
+        output.contains("upstream_api_latency_seconds_bucket{" + labels + ",le=\"10.0\"} 2\n"));
+    Assert.assertTrue(
+        output.contains("upstream_api_latency_seconds_bucket{" + labels + ",le=\"+Inf\"} 3\n"));
+    Assert.assertTrue(output.contains("upstream_api_latency_seconds_sum{" + labels + "} 20.203\n"));
+    Assert.assertTrue(output.contains("upstream_api_latency_seconds_count{" + labels + "} 3\n"));
+    Assert.assertTrue(output.contains("upstream_api_calls_total{" + labels + "} 3\n"));
+    Assert.assertTrue(output.contains("upstream_api_errors_total{" + labels + "} 0\n"));
+  }
+
+  @Test
+  public void retriesAreCountedSeparatelyFromCalls() {
+    metrics.recordRetries("gmail", "batchGetMessage", 3);
+    metrics.recordRetries("gmail", "batchGetMessage", 2);
+
+    String output = writePrometheus();
+    String labels = "api=\"gmail\",method=\"batchGetMessage\"";
+    Assert.assertEquals(5, metrics.getRetryCount("gmail", "batchGetMessage"));
+    Assert.assertTrue(output.contains("upstream_api_retries_total{" + labels + "} 5\n"));
+    Assert.assertFalse(output.contains("upstream_api_calls_total{" + labels + "}"));
+  }
+
+  @Test
+  public void methodsAreWrittenInOrder() {
+    metrics.record("tasks", "listTasks", () -> "");
+    metrics.record("calendar", "getCalendarList", () -> "");
+    metrics.record("calendar", "getCalendarEvents", () -> "");
+
+    String output = writePrometheus();
+    int calendarEvents =
+        output.indexOf("calls_total{api=\"calendar\",method=\"getCalendarEvents\"}");
+    int calendarList = output.indexOf("calls_total{api=\"calendar\",method=\"getCalendarList\"}");
+    int tasks = output.indexOf("calls_total{api=\"tasks\",method=\"listTasks\"}");
+    Assert.assertTrue(calendarEvents >= 0);
+    Assert.assertTrue(calendarEvents < calendarList);
+    Assert.assertTrue(calendarList < tasks);
+  }
+
+  @Test
+  public void instrumentedClientRecordsEachMethod() throws Exception {
+    GmailClient gmailClient = Mockito.mock(GmailClient.class);
+    Mockito.when(gmailClient.getHistoryId()).thenReturn(BigInteger.ONE);
+    Mockito.when(gmailClient.listUserMessages(Mockito.anyString()))
+        .thenThrow(new IOException("failed"));
+    GmailClient instrumentedClient = new InstrumentedGmailClient(gmailClient, metrics);
+
+    Assert.assertEquals(BigInteger.ONE, instrumentedClient.getHistoryId());
+    try {
+      instrumentedClient.listUserMessages("");
+      Assert.fail("Expected the client's exception");
+    } catch (IOException e) {
+      // Expected
+    }
+
+    Assert.assertEquals(1, metrics.getCallCount("gmail", "getHistoryId"));
+    Assert.assertEquals(0, metrics.getErrorCount("gmail", "getHistoryId"));
+    Assert.assertEquals(1, metrics.getCallCount("gmail", "listUserMessages"));
+    Assert.assertEquals(1, metrics.getErrorCount("gmail", "listUserMessages"));
+  }
+
+  @Test
+  public void instrumentedVerifierRecordsBothExceptionTypes() throws Exception {
+    AuthenticationVerifier verifier = Mockito.mock(AuthenticationVerifier.class);
+    Mockito.when(verifier.getUserEmail("valid")).thenReturn(Optional.of("user@example.com"));
+    Mockito.when(verifier.getUserEmail("insecure")).thenThrow(new GeneralSecurityException());
+    Mockito.when(verifier.getUserEmail("unreachable")).thenThrow(new IOException());
+    AuthenticationVerifier instrumentedVerifier =
+        new InstrumentedAuthenticationVerifier(verifier, metrics);
+
+    Assert.assertEquals(
+        Optional.of("user@example.com"), instrumentedVerifier.getUserEmail("valid"));
+    try {
+      instrumentedVerifier.getUserEmail("insecure");
+      Assert.fail("Expected the verifier's exception");
+    } catch (GeneralSecurityException e) {
+      // Expected
+    }
+    try {
+      instrumentedVerifier.getUserEmail("unreachable");
+      Assert.fail("Expected the verifier's exception");
+    } catch (IOException e) {
+      // Expected
+    }
+
+    Assert.assertEquals(3, metrics.getCallCount("idToken", "getUserEmail"));
+    Assert.assertEquals(2, metrics.getErrorCount("idToken", "getUserEmail"));
+  }
+}
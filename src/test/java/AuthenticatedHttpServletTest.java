@@ -12,15 +12,25 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
+import com.google.api.client.auth.oauth2.Credential;
 import com.google.sps.model.AuthenticatedHttpServlet;
 import com.google.sps.model.AuthenticationVerifier;
+import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 /** Tests the AuthenticatedHttpServlet abstract class */
@@ -136,4 +146,133 @@ public class AuthenticatedHttpServletTest extends ServletTestBase {
     // supported.
     Assert.assertEquals(400, response.getStatus());
   }
+
+  @Test
+  public void getRequestSendsServerTiming() throws Exception {
+    Mockito.when(authVerifier.getUserEmail(ID_TOKEN_VALUE)).thenReturn(Optional.of(USER_EMAIL));
+    Mockito.when(request.getCookies()).thenReturn(validCookies);
+    servlet.doGet(request, response);
+
+    // The header is set before the 400 error of the default implementation is sent
+    String serverTiming = response.getHeader("Server-Timing");
+    Assert.assertNotNull(serverTiming);
+    Assert.assertTrue(serverTiming.startsWith("cookies;dur="));
+    Assert.assertTrue(serverTiming.contains(", verify;dur="));
+    Assert.assertTrue(serverTiming.contains(", compute;dur="));
+  }
+
+  @Test
+  public void unauthenticatedRequestSendsCookieTiming() throws Exception {
+    Mockito.when(request.getCookies()).thenReturn(noCookies);
+    servlet.doGet(request, response);
+
+    Assert.assertTrue(response.getHeader("Server-Timing").matches("cookies;dur=[0-9.]+"));
+  }
+
+  /** Servlet whose GET requests complete when the test completes its future. */
+  private static class AsyncServlet extends AuthenticatedHttpServlet {
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    AsyncServlet() {
+      super(authVerifier);
+    }
+
+    @Override
+    public CompletionStage<Void> doGetAsync(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        Credential googleCredential,
+        String userEmail) {
+      return future;
+    }
+  }
+
+  @Test
+  public void asyncGetRequestReleasesContainerThread() throws Exception {
+    // The request is suspended until the handler completes, then the async context is completed
+    AsyncServlet asyncServlet = new AsyncServlet();
+    AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+    Mockito.when(authVerifier.getUserEmail(ID_TOKEN_VALUE)).thenReturn(Optional.of(USER_EMAIL));
+    Mockito.when(request.getCookies()).thenReturn(validCookies);
+    Mockito.when(request.isAsyncSupported()).thenReturn(true);
+    Mockito.when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+    asyncServlet.doGet(request, response);
+    Mockito.verify(asyncContext, Mockito.never()).complete();
+    asyncServlet.future.complete(null);
+
+    Mockito.verify(asyncContext).complete();
+    Assert.assertEquals(200, response.getStatus());
+  }
+
+  @Test
+  public void asyncGetRequestFailure() throws Exception {
+    // A handler failing after the request is suspended sends a 500 error
+    AsyncServlet asyncServlet = new AsyncServlet();
+    AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+    Mockito.when(authVerifier.getUserEmail(ID_TOKEN_VALUE)).thenReturn(Optional.of(USER_EMAIL));
+    Mockito.when(request.getCookies()).thenReturn(validCookies);
+    Mockito.when(request.isAsyncSupported()).thenReturn(true);
+    Mockito.when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+    asyncServlet.doGet(request, response);
+    asyncServlet.future.completeExceptionally(new IOException("upstream failure"));
+
+    Mockito.verify(asyncContext).complete();
+    Assert.assertEquals(500, response.getStatus());
+  }
+
+  @Test
+  public void asyncGetRequestTimesOut() throws Exception {
+    // A request which times out is sent a 500 error, and the handler completing later is ignored
+    AsyncServlet asyncServlet = new AsyncServlet();
+    AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+    Mockito.when(authVerifier.getUserEmail(ID_TOKEN_VALUE)).thenReturn(Optional.of(USER_EMAIL));
+    Mockito.when(request.getCookies()).thenReturn(validCookies);
+    Mockito.when(request.isAsyncSupported()).thenReturn(true);
+    Mockito.when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+    asyncServlet.doGet(request, response);
+    Mockito.verify(asyncContext).setTimeout(AuthenticatedHttpServlet.ASYNC_TIMEOUT.toMillis());
+    ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+    Mockito.verify(asyncContext).addListener(listener.capture());
+    listener.getValue().onTimeout(new AsyncEvent(asyncContext));
+    Mockito.verify(asyncContext).complete();
+    Assert.assertEquals(500, response.getStatus());
+
+    asyncServlet.future.complete(null);
+    Mockito.verify(asyncContext).complete();
+  }
+
+  @Test
+  public void asyncGetRequestCompletesBeforeTimeout() throws Exception {
+    // A timeout firing after the handler completed does not touch the response
+    AsyncServlet asyncServlet = new AsyncServlet();
+    AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+    Mockito.when(authVerifier.getUserEmail(ID_TOKEN_VALUE)).thenReturn(Optional.of(USER_EMAIL));
+    Mockito.when(request.getCookies()).thenReturn(validCookies);
+    Mockito.when(request.isAsyncSupported()).thenReturn(true);
+    Mockito.when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+    asyncServlet.doGet(request, response);
+    ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+    Mockito.verify(asyncContext).addListener(listener.capture());
+    asyncServlet.future.complete(null);
+    listener.getValue().onTimeout(new AsyncEvent(asyncContext));
+
+    Mockito.verify(asyncContext).complete();
+    Assert.assertEquals(200, response.getStatus());
+  }
+
+  @Test(expected = IOException.class)
+  public void asyncGetRequestWithoutAsyncSupport() throws Exception {
+    // Requests which cannot be suspended wait for the handler, and its failure propagates
+    AsyncServlet asyncServlet = new AsyncServlet();
+    Mockito.when(authVerifier.getUserEmail(ID_TOKEN_VALUE)).thenReturn(Optional.of(USER_EMAIL));
+    Mockito.when(request.getCookies()).thenReturn(validCookies);
+    Mockito.when(request.isAsyncSupported()).thenReturn(false);
+    asyncServlet.future.completeExceptionally(new IOException("upstream failure"));
+
+    asyncServlet.doGet(request, response);
+  }
 }
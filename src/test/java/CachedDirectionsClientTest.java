@@ -0,0 +1,153 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.maps.model.DirectionsResult;
+import com.google.sps.exceptions.DirectionsException;
+import com.google.sps.model.CachedDirectionsClient;
+import com.google.sps.model.DirectionsClient;
+import com.google.sps.model.DirectionsClientFactory;
+import com.google.sps.model.QpsGovernor;
+import com.google.sps.model.RateLimitedDirectionsClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Test that CachedDirectionsClient only calls the Directions API on a cache miss. */
+@RunWith(JUnit4.class)
+public class CachedDirectionsClientTest {
+
+  private static final String API_KEY = "fake api key";
+  private static final String ORIGIN = "A";
+  private static final String DESTINATION = "B";
+  private static final List<String> WAYPOINTS = ImmutableList.of("C", "D");
+  private static final List<String> REORDERED_WAYPOINTS = ImmutableList.of("D", "C");
+  private static final List<String> OTHER_WAYPOINTS = ImmutableList.of("C", "E");
+  private static final Duration TIME_TO_LIVE = Duration.ofMinutes(10);
+  private static final long MAXIMUM_SIZE = 10;
+
+  private DirectionsClientFactory directionsClientFactory;
+  private DirectionsClient directionsClient;
+  private AtomicLong nanos;
+  private CachedDirectionsClient.Factory cachedFactory;
+  private DirectionsResult directionsResult;
+
+  @Before
+  public void setUp() throws Exception {
+    directionsClientFactory = Mockito.mock(DirectionsClientFactory.class);
+    directionsClient = Mockito.mock(DirectionsClient.class);
+    directionsResult = new DirectionsResult();
+    nanos = new AtomicLong();
+    Ticker ticker =
+        new Ticker() {
+          @Override
+          public long read() {
+            return nanos.get();
+          }
+        };
+    cachedFactory =
+        new CachedDirectionsClient.Factory(
+            directionsClientFactory, TIME_TO_LIVE, MAXIMUM_SIZE, ticker);
+
+    Mockito.when(directionsClientFactory.getDirectionsClient(API_KEY)).thenReturn(directionsClient);
+    Mockito.when(directionsClient.getDirections(Mockito.any(), Mockito.any(), Mockito.any()))
+        .thenReturn(directionsResult);
+  }
+
+  @Test
+  public void cacheHitsDoNotUseRateLimitPermits() throws Exception {
+    // The governor has a single permit and rejects callers at once, so only the miss may use it
+    QpsGovernor governor = new QpsGovernor("test", 1, 1, Duration.ZERO);
+    DirectionsClient rateLimitedClient =
+        new RateLimitedDirectionsClient(directionsClient, governor, "user@example.com");
+
+    cachedFactory.getCachingClient(rateLimitedClient).getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+    DirectionsResult actual =
+        cachedFactory
+            .getCachingClient(rateLimitedClient)
+            .getDirections(ORIGIN, DESTINATION, REORDERED_WAYPOINTS);
+
+    Assert.assertSame(directionsResult, actual);
+    Assert.assertEquals(1, governor.getGrantedCalls());
+    Assert.assertEquals(0, governor.getRejectedCalls());
+  }
+
+  @Test
+  public void repeatRequestHitsCache() throws Exception {
+    // The second request is served from the cache, even from a different client of the factory
+    cachedFactory.getDirectionsClient(API_KEY).getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+    DirectionsResult actual =
+        cachedFactory.getDirectionsClient(API_KEY).getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+
+    Assert.assertSame(directionsResult, actual);
+    Mockito.verify(directionsClient, Mockito.times(1))
+        .getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+  }
+
+  @Test
+  public void reorderedWaypointsHitCache() throws Exception {
+    DirectionsClient client = cachedFactory.getDirectionsClient(API_KEY);
+    client.getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+    client.getDirections(ORIGIN, DESTINATION, REORDERED_WAYPOINTS);
+
+    Mockito.verify(directionsClient, Mockito.times(1))
+        .getDirections(Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void differentRequestsMissCache() throws Exception {
+    DirectionsClient client = cachedFactory.getDirectionsClient(API_KEY);
+    client.getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+    client.getDirections(ORIGIN, DESTINATION, OTHER_WAYPOINTS);
+    client.getDirections(DESTINATION, ORIGIN, WAYPOINTS);
+
+    Mockito.verify(directionsClient, Mockito.times(3))
+        .getDirections(Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void expiredResultMissesCache() throws Exception {
+    DirectionsClient client = cachedFactory.getDirectionsClient(API_KEY);
+    client.getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+    nanos.addAndGet(TIME_TO_LIVE.toNanos());
+    client.getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+
+    Mockito.verify(directionsClient, Mockito.times(2))
+        .getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+  }
+
+  @Test
+  public void failuresAreNotCached() throws Exception {
+    DirectionsException failure = new DirectionsException("Failed to get directions");
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, WAYPOINTS))
+        .thenThrow(failure)
+        .thenReturn(directionsResult);
+    DirectionsClient client = cachedFactory.getDirectionsClient(API_KEY);
+
+    try {
+      client.getDirections(ORIGIN, DESTINATION, WAYPOINTS);
+      Assert.fail("Expected DirectionsException");
+    } catch (DirectionsException e) {
+      Assert.assertSame(failure, e);
+    }
+    Assert.assertSame(directionsResult, client.getDirections(ORIGIN, DESTINATION, WAYPOINTS));
+  }
+}
@@ -0,0 +1,274 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.sps.filters.CompressionFilter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.servlet.AsyncContext;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Tests the CompressionFilter negotiates, compresses and records responses */
+@RunWith(JUnit4.class)
+public final class CompressionFilterTest {
+  private static final int MIN_COMPRESS_SIZE = 64;
+  private static final String SMALL_BODY = "{\"small\":true}";
+  private static final String LARGE_BODY = "[" + Strings.repeat("{\"id\":\"message\"},", 100) + "]";
+
+  private CompressionFilter filter;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private ByteArrayOutputStream sentBytes;
+
+  @Before
+  public void setUp() throws Exception {
+    filter = new CompressionFilter(MIN_COMPRESS_SIZE);
+    request = Mockito.mock(HttpServletRequest.class);
+    response = Mockito.mock(HttpServletResponse.class);
+    sentBytes = new ByteArrayOutputStream();
+    Mockito.when(request.getMethod()).thenReturn("GET");
+    Mockito.when(response.getCharacterEncoding()).thenReturn("UTF-8");
+    Mockito.when(response.getOutputStream()).thenReturn(new CapturingOutputStream(sentBytes));
+  }
+
+  @Test
+  public void compressLargeResponseWithGzip() throws Exception {
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate, br");
+    long bytesSavedBefore = CompressionFilter.getBytesSaved();
+
+    filter.doFilter(request, response, writing(LARGE_BODY));
+
+    Mockito.verify(response).setHeader("Content-Encoding", "gzip");
+    Mockito.verify(response).addHeader("Vary", "Accept-Encoding");
+    Assert.assertEquals(LARGE_BODY, decompress(new GZIPInputStream(sentStream())));
+    Assert.assertTrue(sentBytes.size() < LARGE_BODY.length());
+    Assert.assertEquals(
+        LARGE_BODY.length() - sentBytes.size(),
+        CompressionFilter.getBytesSaved() - bytesSavedBefore);
+  }
+
+  @Test
+  public void compressWithPreferredDeflate() throws Exception {
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip;q=0.5, deflate");
+
+    filter.doFilter(request, response, writing(LARGE_BODY));
+
+    Mockito.verify(response).setHeader("Content-Encoding", "deflate");
+    Assert.assertEquals(LARGE_BODY, decompress(new InflaterInputStream(sentStream())));
+  }
+
+  @Test
+  public void compressWithWildcard() throws Exception {
+    // gzip is refused explicitly, so the wildcard allows deflate only
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip;q=0, *");
+
+    filter.doFilter(request, response, writing(LARGE_BODY));
+
+    Mockito.verify(response).setHeader("Content-Encoding", "deflate");
+  }
+
+  @Test
+  public void sendSmallResponseUncompressed() throws Exception {
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+    filter.doFilter(request, response, writing(SMALL_BODY));
+
+    Mockito.verify(response, Mockito.never())
+        .setHeader(Mockito.eq("Content-Encoding"), Mockito.anyString());
+    Mockito.verify(response).setContentLengthLong(SMALL_BODY.length());
+    Assert.assertEquals(SMALL_BODY, new String(sentBytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void sendUncompressedWithoutAcceptEncoding() throws Exception {
+    FilterChain chain = Mockito.mock(FilterChain.class);
+
+    filter.doFilter(request, response, chain);
+
+    // The servlet writes to the original response
+    Mockito.verify(chain).doFilter(request, response);
+    Mockito.verify(response).addHeader("Vary", "Accept-Encoding");
+  }
+
+  @Test
+  public void sendUncompressedWhenRefused() throws Exception {
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("identity, gzip;q=0");
+    FilterChain chain = Mockito.mock(FilterChain.class);
+
+    filter.doFilter(request, response, chain);
+
+    Mockito.verify(chain).doFilter(request, response);
+  }
+
+  @Test
+  public void compressFlushedResponseAsItStreams() throws Exception {
+    // A flushed line is sent compressed right away, even though it is below the threshold
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+    filter.doFilter(
+        request,
+        response,
+        (servletRequest, servletResponse) -> {
+          PrintWriter writer = servletResponse.getWriter();
+          writer.println(SMALL_BODY);
+          writer.flush();
+          Assert.assertTrue(sentBytes.size() > 0);
+          writer.println(SMALL_BODY);
+        });
+
+    Mockito.verify(response).setHeader("Content-Encoding", "gzip");
+    Assert.assertEquals(
+        SMALL_BODY + System.lineSeparator() + SMALL_BODY + System.lineSeparator(),
+        decompress(new GZIPInputStream(sentStream())));
+  }
+
+  @Test
+  public void finishAsyncResponseOnComplete() throws Exception {
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+    AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+    Mockito.when(request.startAsync(Mockito.any(), Mockito.any())).thenReturn(asyncContext);
+    AsyncContext[] filteredContext = new AsyncContext[1];
+
+    filter.doFilter(
+        request,
+        response,
+        (servletRequest, servletResponse) -> {
+          Mockito.when(request.isAsyncStarted()).thenReturn(true);
+          filteredContext[0] = servletRequest.startAsync(servletRequest, servletResponse);
+          servletResponse.getWriter().print(LARGE_BODY);
+        });
+
+    // Nothing is finished until the asynchronous handler completes
+    Mockito.verify(asyncContext, Mockito.never()).complete();
+    filteredContext[0].complete();
+
+    Mockito.verify(asyncContext).complete();
+    Assert.assertEquals(LARGE_BODY, decompress(new GZIPInputStream(sentStream())));
+  }
+
+  @Test
+  public void getAsyncContextReturnsStartedContext() throws Exception {
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+    AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+    Mockito.when(request.startAsync()).thenReturn(asyncContext);
+    Mockito.when(request.getAsyncContext()).thenReturn(asyncContext);
+
+    filter.doFilter(
+        request,
+        response,
+        (servletRequest, servletResponse) -> {
+          Mockito.when(request.isAsyncStarted()).thenReturn(true);
+          AsyncContext startedContext = servletRequest.startAsync();
+          Assert.assertSame(startedContext, servletRequest.getAsyncContext());
+          Assert.assertSame(startedContext, servletRequest.getAsyncContext());
+          servletResponse.getWriter().print(LARGE_BODY);
+          servletRequest.getAsyncContext().complete();
+        });
+
+    Mockito.verify(asyncContext).complete();
+    Assert.assertEquals(LARGE_BODY, decompress(new GZIPInputStream(sentStream())));
+  }
+
+  @Test
+  public void sendNonBlockingResponseUncompressed() throws Exception {
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+    CapturingOutputStream responseStream = new CapturingOutputStream(sentBytes);
+    Mockito.when(response.getOutputStream()).thenReturn(responseStream);
+    WriteListener writeListener = Mockito.mock(WriteListener.class);
+
+    filter.doFilter(
+        request,
+        response,
+        (servletRequest, servletResponse) -> {
+          ServletOutputStream outputStream = servletResponse.getOutputStream();
+          outputStream.print(SMALL_BODY);
+          outputStream.setWriteListener(writeListener);
+          Assert.assertTrue(outputStream.isReady());
+          outputStream.print(LARGE_BODY);
+        });
+
+    Assert.assertSame(writeListener, responseStream.writeListener);
+    Mockito.verify(response, Mockito.never())
+        .setHeader(Mockito.eq("Content-Encoding"), Mockito.anyString());
+    Assert.assertEquals(
+        SMALL_BODY + LARGE_BODY, new String(sentBytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectWriteListenerOnceCompressed() throws Exception {
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+    filter.doFilter(
+        request,
+        response,
+        (servletRequest, servletResponse) -> {
+          ServletOutputStream outputStream = servletResponse.getOutputStream();
+          outputStream.print(LARGE_BODY);
+          outputStream.setWriteListener(Mockito.mock(WriteListener.class));
+        });
+  }
+
+  private static FilterChain writing(String body) {
+    return (servletRequest, servletResponse) -> servletResponse.getWriter().print(body);
+  }
+
+  private InputStream sentStream() {
+    return new ByteArrayInputStream(sentBytes.toByteArray());
+  }
+
+  private static String decompress(InputStream inputStream) throws Exception {
+    return new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8);
+  }
+
+  /** ServletOutputStream capturing the bytes sent to the client */
+  private static final class CapturingOutputStream extends ServletOutputStream {
+    private final ByteArrayOutputStream bytes;
+    private WriteListener writeListener;
+
+    CapturingOutputStream(ByteArrayOutputStream bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public void write(int b) {
+      bytes.write(b);
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      this.writeListener = writeListener;
+    }
+  }
+}
@@ -0,0 +1,386 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import com.google.sps.loadtest.MapsApiStandInServer;
+import com.google.sps.model.ActionableMessageHelperImpl;
+import com.google.sps.model.AuthenticationVerifier;
+import com.google.sps.model.CalendarClient;
+import com.google.sps.model.DirectionsClientImpl;
+import com.google.sps.model.GeocodingClientImpl;
+import com.google.sps.model.GmailClient;
+import com.google.sps.model.GmailResponseHelperImpl;
+import com.google.sps.model.PlacesClientImpl;
+import com.google.sps.model.TasksClient;
+import com.google.sps.servlets.CalendarServlet;
+import com.google.sps.servlets.DashboardServlet;
+import com.google.sps.servlets.GmailActionableEmailsServlet;
+import com.google.sps.servlets.GmailServlet;
+import com.google.sps.servlets.GoServlet;
+import com.google.sps.servlets.PlanMailServlet;
+import com.google.sps.servlets.TaskListServlet;
+import com.google.sps.servlets.TasksServlet;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+
+/**
+ * Stress test for serving requests concurrently, as App Engine does with threadsafe enabled. Every
+ * servlet is shared by many threads serving several users at once, with each user's data served by
+ * fake clients. Every concurrent response must match the response to the same request served
+ * alone, so any state leaking between requests or users shows up as a mismatch. The load can be
+ * raised with the stressTest.threads and stressTest.rounds system properties.
+ */
+@RunWith(JUnit4.class)
+public class ConcurrentServletStressTest {
+
+  private static final int USERS = 6;
+  private static final int THREADS = Integer.getInteger("stressTest.threads", 16);
+  private static final int ROUNDS = Integer.getInteger("stressTest.rounds", 10);
+  private static final long SEED = 42;
+
+  // The client library rejects API keys which do not look like Google API keys
+  private static final String API_KEY = "AIzaStandInApiKey";
+  private static final String ORIGIN = "Google Kitchener";
+  private static final String DESTINATION = "University of Waterloo";
+  private static final Date CURRENT_TIME = Date.from(Instant.parse("2020-05-19T13:00:00Z"));
+  private static final Date END_TIME = Date.from(CURRENT_TIME.toInstant().plus(Duration.ofDays(5)));
+  private static final CalendarListEntry PRIMARY = new CalendarListEntry().setId("primary");
+
+  private final Map<String, GmailClient> gmailClients = new HashMap<>();
+  private final Map<String, CalendarClient> calendarClients = new HashMap<>();
+  private final Map<String, TasksClient> tasksClients = new HashMap<>();
+  private final Map<String, EndpointCall> endpoints = new HashMap<>();
+  private MapsApiStandInServer mapsServer;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    AuthenticationVerifier authenticationVerifier = Mockito.mock(AuthenticationVerifier.class);
+    for (int user = 0; user < USERS; user++) {
+      Mockito.when(authenticationVerifier.getUserEmail(idToken(user)))
+          .thenReturn(Optional.of(email(user)));
+      gmailClients.put(accessToken(user), createGmailClient(user));
+      calendarClients.put(accessToken(user), createCalendarClient(user));
+      tasksClients.put(accessToken(user), createTasksClient(user));
+    }
+    mapsServer = MapsApiStandInServer.withCannedGeodata();
+    mapsServer.start();
+    executor = Executors.newFixedThreadPool(THREADS);
+
+    // Clients are looked up by the access token of the request, as the pooled factory does
+    TasksServlet tasksServlet = new TasksServlet(authenticationVerifier, this::getTasksClient);
+    TaskListServlet taskListServlet =
+        new TaskListServlet(authenticationVerifier, this::getTasksClient);
+    GmailServlet gmailServlet =
+        new GmailServlet(
+            authenticationVerifier, this::getGmailClient, new GmailResponseHelperImpl());
+    GmailActionableEmailsServlet actionableEmailsServlet =
+        new GmailActionableEmailsServlet(
+            authenticationVerifier, this::getGmailClient, new ActionableMessageHelperImpl());
+    CalendarServlet calendarServlet =
+        new CalendarServlet(authenticationVerifier, this::getCalendarClient);
+    PlanMailServlet planMailServlet =
+        new PlanMailServlet(authenticationVerifier, this::getCalendarClient, this::getGmailClient);
+    DashboardServlet dashboardServlet =
+        new DashboardServlet(
+            authenticationVerifier,
+            this::getGmailClient,
+            this::getCalendarClient,
+            this::getTasksClient,
+            new GmailResponseHelperImpl(),
+            new ActionableMessageHelperImpl());
+    String baseUrl = mapsServer.getBaseUrl();
+    GoServlet goServlet =
+        new GoServlet(
+            new DirectionsClientImpl.Factory(baseUrl),
+            new PlacesClientImpl.Factory(baseUrl),
+            this::getTasksClient,
+            new GeocodingClientImpl.Factory(baseUrl),
+            API_KEY);
+
+    endpoints.put("/tasks", (request, response, user) -> tasksServlet.doGet(request, response));
+    endpoints.put(
+        "/taskLists", (request, response, user) -> taskListServlet.doGet(request, response));
+    endpoints.put("/gmail", (request, response, user) -> gmailServlet.doGet(request, response));
+    endpoints.put(
+        "/gmail-actionable-emails",
+        (request, response, user) -> actionableEmailsServlet.doGet(request, response));
+    endpoints.put(
+        "/calendar", (request, response, user) -> calendarServlet.doGet(request, response));
+    endpoints.put(
+        "/plan-mail", (request, response, user) -> planMailServlet.doGet(request, response));
+    endpoints.put(
+        "/dashboard", (request, response, user) -> dashboardServlet.doGet(request, response));
+    // GoServlet verifies ID tokens with Google, so it is called past authentication
+    endpoints.put(
+        "/go",
+        (request, response, user) ->
+            goServlet.doGet(request, response, credential(accessToken(user)), email(user)));
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    mapsServer.close();
+  }
+
+  private static String email(int user) {
+    return "user" + user + "@example.com";
+  }
+
+  private static String idToken(int user) {
+    return "idToken" + user;
+  }
+
+  private static String accessToken(int user) {
+    return "accessToken" + user;
+  }
+
+  private static Credential credential(String accessToken) {
+    Credential credential =
+        new Credential.Builder(BearerToken.authorizationHeaderAccessMethod()).build();
+    credential.setAccessToken(accessToken);
+    return credential;
+  }
+
+  private GmailClient getGmailClient(Credential credential) {
+    return gmailClients.get(credential.getAccessToken());
+  }
+
+  private CalendarClient getCalendarClient(Credential credential) {
+    return calendarClients.get(credential.getAccessToken());
+  }
+
+  private TasksClient getTasksClient(Credential credential) {
+    return tasksClients.get(credential.getAccessToken());
+  }
+
+  /** Each user has a different number of tasks, some of which are at a location for /go. */
+  private static TasksClient createTasksClient(int user) throws Exception {
+    TaskList taskList = new TaskList().setId("taskList" + user).setTitle("Tasks of user " + user);
+    List<Task> tasks = new ArrayList<>();
+    for (int task = 0; task <= user; task++) {
+      tasks.add(new Task().setId(user + "." + task).setTitle("Task " + task + " of user " + user));
+    }
+    if (user % 2 == 0) {
+      tasks.add(new Task().setTitle("Shopping").setNotes("[Location: Kitchener Market]"));
+    }
+    TasksClient tasksClient = Mockito.mock(TasksClient.class);
+    Mockito.when(tasksClient.listTaskLists()).thenReturn(ImmutableList.of(taskList));
+    Mockito.when(tasksClient.listTasks(taskList)).thenReturn(tasks);
+    return tasksClient;
+  }
+
+  /** Each user has a different number of unread emails from their own sender. */
+  private static GmailClient createGmailClient(int user) throws Exception {
+    List<Message> messages = new ArrayList<>();
+    for (int message = 0; message <= user; message++) {
+      messages.add(
+          createMessage(
+              user + "." + message, user, Duration.ofMinutes(10 + message), "Action " + user));
+    }
+    GmailClient gmailClient = Mockito.mock(GmailClient.class);
+    Mockito.when(gmailClient.getHistoryId()).thenReturn(BigInteger.valueOf(user));
+    Mockito.when(gmailClient.getUnreadEmailsFromNDays(Mockito.any(), Mockito.anyInt()))
+        .thenReturn(messages);
+    Mockito.when(
+            gmailClient.getActionableEmails(
+                Mockito.anyList(), Mockito.anyBoolean(), Mockito.anyInt(), Mockito.anyList()))
+        .thenReturn(messages);
+    return gmailClient;
+  }
+
+  /** Each user has a meeting of a different length at the current time. */
+  private static CalendarClient createCalendarClient(int user) throws Exception {
+    Date meetingEnd = Date.from(CURRENT_TIME.toInstant().plus(Duration.ofHours(user + 1)));
+    Event meeting =
+        new Event()
+            .setSummary("Meeting of user " + user)
+            .setStart(new EventDateTime().setDateTime(new DateTime(CURRENT_TIME)))
+            .setEnd(new EventDateTime().setDateTime(new DateTime(meetingEnd)));
+    CalendarClient calendarClient = Mockito.mock(CalendarClient.class);
+    Mockito.when(calendarClient.getCurrentTime()).thenReturn(CURRENT_TIME);
+    Mockito.when(calendarClient.getCalendarList()).thenReturn(ImmutableList.of(PRIMARY));
+    Mockito.when(calendarClient.getUpcomingEvents(PRIMARY, CURRENT_TIME, END_TIME))
+        .thenReturn(ImmutableList.of(meeting));
+    return calendarClient;
+  }
+
+  private static Message createMessage(String id, int user, Duration age, String body) {
+    List<MessagePartHeader> headers =
+        ImmutableList.of(
+            new MessagePartHeader().setName("Subject").setValue(body),
+            new MessagePartHeader()
+                .setName("From")
+                .setValue("Sender " + user + " <sender" + user + "@example.com>"),
+            new MessagePartHeader().setName("To").setValue(email(user)));
+    MessagePart textPart =
+        new MessagePart()
+            .setMimeType("text/plain")
+            .setBody(
+                new MessagePartBody()
+                    .setData(
+                        BaseEncoding.base64Url()
+                            .encode(body.getBytes(StandardCharsets.UTF_8))));
+    return new Message()
+        .setId(id)
+        .setInternalDate(Instant.now().minus(age).toEpochMilli())
+        .setPayload(new MessagePart().setHeaders(headers).setParts(ImmutableList.of(textPart)));
+  }
+
+  private static Map<String, String> getParameters(String endpoint, int user) {
+    switch (endpoint) {
+      case "/tasks":
+        return ImmutableMap.of("taskLists", "taskList" + user);
+      case "/gmail":
+        return ImmutableMap.of("nDays", "1", "mHours", "1");
+      case "/gmail-actionable-emails":
+        return ImmutableMap.of("subjectLinePhrases", "Action", "nDays", "3");
+      case "/plan-mail":
+        return ImmutableMap.of("summary", "Read emails of user " + user);
+      case "/dashboard":
+        return ImmutableMap.of(
+            "nDays", "1", "mHours", "1", "subjectLinePhrases", "Action", "actionableNDays", "3");
+      case "/go":
+        return ImmutableMap.of("origin", ORIGIN, "destination", DESTINATION);
+      default:
+        return ImmutableMap.of();
+    }
+  }
+
+  /**
+   * Serves one request for the user, with mocks created by the calling thread.
+   *
+   * @return the status and body of the response
+   */
+  private String serve(String endpoint, int user) throws Exception {
+    HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+    Mockito.when(request.getCookies())
+        .thenReturn(
+            new Cookie[] {
+              new Cookie("idToken", idToken(user)), new Cookie("accessToken", accessToken(user))
+            });
+    getParameters(endpoint, user)
+        .forEach((name, value) -> Mockito.when(request.getParameter(name)).thenReturn(value));
+    StringWriter body = new StringWriter();
+    HttpServletResponseFake responseFake = new HttpServletResponseFake(body);
+    HttpServletResponse response =
+        Mockito.mock(HttpServletResponse.class, AdditionalAnswers.delegatesTo(responseFake));
+    endpoints.get(endpoint).serve(request, response, user);
+    return responseFake.getStatus() + " " + body;
+  }
+
+  @Test
+  public void concurrentResponsesMatchIsolatedResponses() throws Exception {
+    // Serve every request alone first
+    Map<String, String> expectedResponses = new HashMap<>();
+    for (String endpoint : endpoints.keySet()) {
+      for (int user = 0; user < USERS; user++) {
+        expectedResponses.put(endpoint + " " + user, serve(endpoint, user));
+      }
+    }
+
+    // Then serve every request many times over, shuffled and released at once
+    List<String> calls = new ArrayList<>();
+    for (int round = 0; round < ROUNDS; round++) {
+      calls.addAll(expectedResponses.keySet());
+    }
+    Collections.shuffle(calls, new Random(SEED));
+    CountDownLatch startGate = new CountDownLatch(1);
+    List<Future<String>> responses = new ArrayList<>();
+    for (String call : calls) {
+      String endpoint = call.split(" ")[0];
+      int user = Integer.parseInt(call.split(" ")[1]);
+      responses.add(
+          executor.submit(
+              () -> {
+                startGate.await();
+                return serve(endpoint, user);
+              }));
+    }
+    startGate.countDown();
+
+    for (int i = 0; i < calls.size(); i++) {
+      Assert.assertEquals(
+          calls.get(i),
+          expectedResponses.get(calls.get(i)),
+          responses.get(i).get(1, TimeUnit.MINUTES));
+    }
+  }
+
+  @Test
+  public void isolatedResponsesDifferBetweenUsers() throws Exception {
+    // Otherwise a response served to the wrong user could not be told apart
+    for (String endpoint : endpoints.keySet()) {
+      if (endpoint.equals("/go")) {
+        // Routes only differ by whether the user has a task at a location
+        continue;
+      }
+      List<String> responses = new ArrayList<>();
+      for (int user = 0; user < USERS; user++) {
+        responses.add(serve(endpoint, user));
+      }
+      Assert.assertEquals(endpoint, USERS, new HashSet<>(responses).size());
+      Assert.assertTrue(endpoint, responses.stream().allMatch(r -> r.startsWith("200 ")));
+    }
+  }
+
+  /** Serves a request to one endpoint on behalf of a user. */
+  private interface EndpointCall {
+    void serve(HttpServletRequest request, HttpServletResponse response, int user)
+        throws Exception;
+  }
+}
@@ -0,0 +1,267 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import com.google.gson.Gson;
+import com.google.sps.data.DashboardResponse;
+import com.google.sps.model.ActionableMessageHelperImpl;
+import com.google.sps.model.CalendarClient;
+import com.google.sps.model.CalendarClientFactory;
+import com.google.sps.model.GmailClient;
+import com.google.sps.model.GmailClientFactory;
+import com.google.sps.model.GmailResponseHelperImpl;
+import com.google.sps.model.TasksClient;
+import com.google.sps.model.TasksClientFactory;
+import com.google.sps.model.TasksResponse;
+import com.google.sps.servlets.DashboardServlet;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Tests the DashboardServlet assembles every panel from shared upstream data */
+@RunWith(JUnit4.class)
+public final class DashboardServletTest extends AuthenticatedServletTestBase {
+  private GmailClient gmailClient;
+  private CalendarClient calendarClient;
+  private TasksClient tasksClient;
+  private DashboardServlet servlet;
+
+  private static final Gson gson = new Gson();
+
+  private static final String N_DAYS = "1";
+  private static final String M_HOURS = "1";
+  private static final String EVENT_SUMMARY = "Read emails";
+  private static final String SUBJECT_LINE_PHRASES = "Action";
+
+  private static final CalendarListEntry PRIMARY = new CalendarListEntry().setId("primary");
+  private static final Date CURRENT_TIME = Date.from(Instant.parse("2020-05-19T13:00:00Z"));
+  private static final Date END_TIME = Date.from(CURRENT_TIME.toInstant().plus(Duration.ofDays(5)));
+  private static final Date EVENT_END =
+      Date.from(CURRENT_TIME.toInstant().plus(Duration.ofHours(1)));
+  private static final Event EVENT =
+      new Event()
+          .setSummary("Meeting")
+          .setStart(new EventDateTime().setDateTime(new DateTime(CURRENT_TIME)))
+          .setEnd(new EventDateTime().setDateTime(new DateTime(EVENT_END)));
+
+  private static final TaskList TASK_LIST = new TaskList().setId("taskListId").setTitle("Title");
+  private static final Task TASK = new Task().setTitle("Task");
+
+  private static final Message RECENT_MESSAGE =
+      createMessage("recent", Duration.ofMinutes(10), "three words here");
+  private static final Message OLD_MESSAGE =
+      createMessage("old", Duration.ofDays(6), "two words");
+  private static final Message ACTIONABLE_MESSAGE =
+      createMessage("actionable", Duration.ofDays(2), "Action required");
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    GmailClientFactory gmailClientFactory = Mockito.mock(GmailClientFactory.class);
+    CalendarClientFactory calendarClientFactory = Mockito.mock(CalendarClientFactory.class);
+    TasksClientFactory tasksClientFactory = Mockito.mock(TasksClientFactory.class);
+    gmailClient = Mockito.mock(GmailClient.class);
+    calendarClient = Mockito.mock(CalendarClient.class);
+    tasksClient = Mockito.mock(TasksClient.class);
+    Mockito.when(gmailClientFactory.getGmailClient(Mockito.any())).thenReturn(gmailClient);
+    Mockito.when(calendarClientFactory.getCalendarClient(Mockito.any())).thenReturn(calendarClient);
+    Mockito.when(tasksClientFactory.getTasksClient(Mockito.any())).thenReturn(tasksClient);
+    servlet =
+        new DashboardServlet(
+            authenticationVerifier,
+            gmailClientFactory,
+            calendarClientFactory,
+            tasksClientFactory,
+            new GmailResponseHelperImpl(),
+            new ActionableMessageHelperImpl());
+
+    Mockito.when(request.getParameter("nDays")).thenReturn(N_DAYS);
+    Mockito.when(request.getParameter("mHours")).thenReturn(M_HOURS);
+    Mockito.when(request.getParameter("summary")).thenReturn(EVENT_SUMMARY);
+
+    Mockito.when(calendarClient.getCurrentTime()).thenReturn(CURRENT_TIME);
+    Mockito.when(calendarClient.getCalendarList()).thenReturn(ImmutableList.of(PRIMARY));
+    Mockito.when(calendarClient.getUpcomingEvents(PRIMARY, CURRENT_TIME, END_TIME))
+        .thenReturn(ImmutableList.of(EVENT));
+    Mockito.when(tasksClient.listTaskLists()).thenReturn(ImmutableList.of(TASK_LIST));
+    Mockito.when(tasksClient.listTasks(TASK_LIST)).thenReturn(ImmutableList.of(TASK));
+    Mockito.when(gmailClient.getUnreadEmailsFromNDays(GmailClient.MessageFormat.METADATA, 1))
+        .thenReturn(ImmutableList.of(RECENT_MESSAGE));
+    Mockito.when(gmailClient.getUnreadEmailsFromNDays(GmailClient.MessageFormat.FULL, 7))
+        .thenReturn(ImmutableList.of(RECENT_MESSAGE, OLD_MESSAGE));
+  }
+
+  @Test
+  public void assemblesEveryPanel() throws Exception {
+    servlet.doGet(request, response);
+
+    DashboardResponse actual = gson.fromJson(stringWriter.toString(), DashboardResponse.class);
+    TasksResponse expectedTasks =
+        TasksResponse.builder()
+            .taskListIdsToTitles(ImmutableMap.of(TASK_LIST.getId(), TASK_LIST.getTitle()))
+            .tasksToCompleteCount(1)
+            .build();
+    Assert.assertEquals(expectedTasks, actual.getTasks());
+    Assert.assertEquals(1, actual.getGmail().getUnreadEmailsDays());
+    Assert.assertEquals(1, actual.getGmail().getUnreadEmailsHours());
+    Assert.assertEquals(5, actual.getCalendar().getWorkTimeFree().size());
+    Assert.assertEquals(5, actual.getPlanMail().getWordCount());
+    Assert.assertNull(actual.getActionableEmails());
+  }
+
+  @Test
+  public void sharesUpstreamDataBetweenPanels() throws Exception {
+    servlet.doGet(request, response);
+
+    // The Calendar and Plan Mail panels share one event fetch
+    Mockito.verify(calendarClient, Mockito.times(1))
+        .getUpcomingEvents(Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void fetchesOnlyPlanMailEmailsInFullFormat() throws Exception {
+    servlet.doGet(request, response);
+
+    // The Gmail panel's emails are fetched without bodies, over its own period only
+    Mockito.verify(gmailClient)
+        .getUnreadEmailsFromNDays(GmailClient.MessageFormat.METADATA, Integer.parseInt(N_DAYS));
+    Mockito.verify(gmailClient).getUnreadEmailsFromNDays(GmailClient.MessageFormat.FULL, 7);
+    Mockito.verify(gmailClient, Mockito.times(2))
+        .getUnreadEmailsFromNDays(Mockito.any(), Mockito.anyInt());
+  }
+
+  @Test
+  public void sharesExecutorBetweenRequests() throws Exception {
+    Set<String> fetchThreads = ConcurrentHashMap.newKeySet();
+    Mockito.when(tasksClient.listTaskLists())
+        .thenAnswer(
+            invocation -> {
+              fetchThreads.add(Thread.currentThread().getName());
+              return ImmutableList.of(TASK_LIST);
+            });
+
+    servlet.doGet(request, response);
+    servlet.doGet(request, response);
+
+    Assert.assertFalse(fetchThreads.isEmpty());
+    for (String fetchThread : fetchThreads) {
+      Assert.assertTrue(fetchThread.startsWith("dashboard-fetch-"));
+    }
+  }
+
+  @Test
+  public void includesActionableEmailsWhenRequested() throws Exception {
+    Mockito.when(request.getParameter("subjectLinePhrases")).thenReturn(SUBJECT_LINE_PHRASES);
+    Mockito.when(request.getParameter("actionableNDays")).thenReturn("3");
+    Mockito.when(
+            gmailClient.getActionableEmails(
+                Mockito.eq(ImmutableList.of(SUBJECT_LINE_PHRASES)),
+                Mockito.eq(false),
+                Mockito.eq(3),
+                Mockito.anyList()))
+        .thenReturn(ImmutableList.of(ACTIONABLE_MESSAGE));
+
+    servlet.doGet(request, response);
+
+    DashboardResponse actual = gson.fromJson(stringWriter.toString(), DashboardResponse.class);
+    Assert.assertEquals(1, actual.getActionableEmails().size());
+    Assert.assertEquals("actionable", actual.getActionableEmails().get(0).getId());
+  }
+
+  @Test
+  public void unchangedDashboardNotModified() throws Exception {
+    servlet.doGet(request, response);
+    String eTag = response.getHeader("ETag");
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn(eTag);
+    int sentLength = stringWriter.toString().length();
+
+    servlet.doGet(request, response);
+
+    Assert.assertNotNull(eTag);
+    Assert.assertEquals(304, response.getStatus());
+    Assert.assertEquals(sentLength, stringWriter.toString().length());
+  }
+
+  @Test
+  public void invalidParameters() throws Exception {
+    Mockito.when(request.getParameter("mHours")).thenReturn("48");
+
+    servlet.doGet(request, response);
+
+    Mockito.verify(response).sendError(Mockito.eq(400), Mockito.anyString());
+    Mockito.verifyZeroInteractions(gmailClient, calendarClient, tasksClient);
+  }
+
+  @Test
+  public void actionableEmailsWithoutNDays() throws Exception {
+    Mockito.when(request.getParameter("subjectLinePhrases")).thenReturn(SUBJECT_LINE_PHRASES);
+
+    servlet.doGet(request, response);
+
+    Mockito.verify(response).sendError(Mockito.eq(400), Mockito.anyString());
+  }
+
+  @Test(expected = IOException.class)
+  public void upstreamFailure() throws Exception {
+    Mockito.when(tasksClient.listTaskLists()).thenThrow(new IOException("Tasks unavailable"));
+
+    servlet.doGet(request, response);
+  }
+
+  private static Message createMessage(String id, Duration age, String body) {
+    MessagePartHeader subjectHeader = new MessagePartHeader().setName("Subject").setValue(body);
+    MessagePartHeader fromHeader =
+        new MessagePartHeader().setName("From").setValue("Sender <sender@example.com>");
+    MessagePartHeader toHeader = new MessagePartHeader().setName("To").setValue(USER_EMAIL);
+    MessagePart textPart =
+        new MessagePart()
+            .setMimeType("text/plain")
+            .setBody(
+                new MessagePartBody()
+                    .setData(
+                        BaseEncoding.base64Url()
+                            .encode(body.getBytes(StandardCharsets.UTF_8))));
+    return new Message()
+        .setId(id)
+        .setInternalDate(Instant.now().minus(age).toEpochMilli())
+        .setPayload(
+            new MessagePart()
+                .setHeaders(ImmutableList.of(subjectHeader, fromHeader, toHeader))
+                .setParts(ImmutableList.of(textPart)));
+  }
+}
@@ -0,0 +1,168 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.sps.filters.CompressionFilter;
+import com.google.sps.utility.ETagUtility;
+import java.io.StringWriter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+
+/** Test ETagUtility methods */
+@RunWith(JUnit4.class)
+public final class ETagUtilityTest {
+  private static final Object CONTENT = ImmutableMap.of("unreadEmailsDays", 3);
+  private static final Object OTHER_CONTENT = ImmutableMap.of("unreadEmailsDays", 4);
+
+  private static final Object LARGE_CONTENT =
+      ImmutableMap.of("sender", Strings.repeat("sender@example.com ", 100));
+
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private HttpServletResponseFake responseFake;
+  private StringWriter stringWriter;
+
+  @Before
+  public void setUp() {
+    request = Mockito.mock(HttpServletRequest.class);
+    stringWriter = new StringWriter();
+    responseFake = new HttpServletResponseFake(stringWriter);
+    response =
+        Mockito.mock(HttpServletResponse.class, AdditionalAnswers.delegatesTo(responseFake));
+  }
+
+  @Test
+  public void contentETagDependsOnContent() {
+    String eTag = ETagUtility.contentETag(CONTENT);
+
+    Assert.assertEquals(eTag, ETagUtility.contentETag(ImmutableMap.of("unreadEmailsDays", 3)));
+    Assert.assertNotEquals(eTag, ETagUtility.contentETag(OTHER_CONTENT));
+    Assert.assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""));
+  }
+
+  @Test
+  public void versionETagSeparatesValues() {
+    // Values are not simply concatenated
+    Assert.assertNotEquals(ETagUtility.versionETag("ab", "c"), ETagUtility.versionETag("a", "bc"));
+    Assert.assertEquals(ETagUtility.versionETag("a", null), ETagUtility.versionETag("a", null));
+  }
+
+  @Test
+  public void sendJsonWithoutIfNoneMatch() throws Exception {
+    ETagUtility.sendJsonWithETag(request, response, CONTENT);
+
+    Assert.assertEquals(200, response.getStatus());
+    Assert.assertEquals(ETagUtility.contentETag(CONTENT), response.getHeader("ETag"));
+    Assert.assertFalse(stringWriter.toString().isEmpty());
+  }
+
+  @Test
+  public void sendNotModifiedForMatchingETag() throws Exception {
+    // The current ETag may be one of several, and weak tags compare equal to strong ones
+    String eTag = ETagUtility.contentETag(CONTENT);
+    Mockito.when(request.getHeader("If-None-Match"))
+        .thenReturn(ETagUtility.contentETag(OTHER_CONTENT) + ", W/" + eTag);
+
+    ETagUtility.sendJsonWithETag(request, response, CONTENT);
+
+    Assert.assertEquals(304, response.getStatus());
+    Assert.assertEquals(eTag, response.getHeader("ETag"));
+    Assert.assertTrue(stringWriter.toString().isEmpty());
+  }
+
+  @Test
+  public void sendNotModifiedForWildcard() throws Exception {
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn("*");
+
+    ETagUtility.sendJsonWithETag(request, response, CONTENT);
+
+    Assert.assertEquals(304, response.getStatus());
+  }
+
+  @Test
+  public void sendJsonForStaleETag() throws Exception {
+    Mockito.when(request.getHeader("If-None-Match"))
+        .thenReturn(ETagUtility.contentETag(OTHER_CONTENT));
+
+    ETagUtility.sendJsonWithETag(request, response, CONTENT);
+
+    Assert.assertEquals(200, response.getStatus());
+    Assert.assertFalse(stringWriter.toString().isEmpty());
+  }
+
+  @Test
+  public void encodedETagNamesContentCoding() {
+    String eTag = ETagUtility.contentETag(CONTENT);
+
+    Assert.assertEquals(
+        eTag.substring(0, eTag.length() - 1) + "-gzip\"", ETagUtility.encodedETag(eTag, "gzip"));
+    // Weak ETags are shared by every content coding
+    Assert.assertEquals("W/" + eTag, ETagUtility.encodedETag("W/" + eTag, "gzip"));
+  }
+
+  @Test
+  public void compressedResponseHasEncodedETag() throws Exception {
+    Mockito.when(request.getMethod()).thenReturn("GET");
+    Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+    new CompressionFilter()
+        .doFilter(
+            request,
+            response,
+            (servletRequest, servletResponse) ->
+                ETagUtility.sendJsonWithETag(
+                    (HttpServletRequest) servletRequest,
+                    (HttpServletResponse) servletResponse,
+                    LARGE_CONTENT));
+
+    Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+    Assert.assertEquals(
+        ETagUtility.encodedETag(ETagUtility.contentETag(LARGE_CONTENT), "gzip"),
+        response.getHeader("ETag"));
+    Assert.assertTrue(responseFake.getOutputBytes().length > 0);
+  }
+
+  @Test
+  public void sendNotModifiedForCompressedETag() throws Exception {
+    // A client holding the compressed body revalidates it with the encoded ETag
+    String eTag = ETagUtility.encodedETag(ETagUtility.contentETag(CONTENT), "gzip");
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn(eTag);
+
+    ETagUtility.sendJsonWithETag(request, response, CONTENT);
+
+    Assert.assertEquals(304, response.getStatus());
+    Assert.assertEquals(eTag, response.getHeader("ETag"));
+    Assert.assertTrue(stringWriter.toString().isEmpty());
+  }
+
+  @Test
+  public void sendJsonForETagOfOtherEncoding() throws Exception {
+    // An encoded ETag of other content does not match, whatever the coding
+    Mockito.when(request.getHeader("If-None-Match"))
+        .thenReturn(ETagUtility.encodedETag(ETagUtility.contentETag(OTHER_CONTENT), "deflate"));
+
+    ETagUtility.sendJsonWithETag(request, response, CONTENT);
+
+    Assert.assertEquals(200, response.getStatus());
+    Assert.assertFalse(stringWriter.toString().isEmpty());
+  }
+}
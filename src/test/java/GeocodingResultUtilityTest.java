@@ -70,6 +70,28 @@ public class GeocodingResultUtilityTest {
     Assert.assertEquals(Optional.empty(), actualPlaceType);
   }
 
+  @Test
+  public void convertMultiWordPlaceTypeIgnoringCase() {
+    // Spaces stand in for underscores and case is ignored.
+    Optional<PlaceType> actualPlaceType = GeocodingResultUtility.convertToPlaceType("Gas Station");
+    Assert.assertEquals(PlaceType.GAS_STATION, actualPlaceType.get());
+  }
+
+  @Test
+  public void getPlaceTypeOfAddressTypeWithoutEquivalent() throws Exception {
+    // STREET_ADDRESS has no PlaceType of the same name, hence empty optional is expected.
+    GeocodingResult result = new GeocodingResult();
+    result.types = new AddressType[] {AddressType.STREET_ADDRESS, AddressType.RESTAURANT};
+    Assert.assertEquals(Optional.empty(), GeocodingResultUtility.getPlaceType(result));
+  }
+
+  @Test
+  public void hasNoStreetAddress() {
+    GeocodingResult result = new GeocodingResult();
+    result.types = new AddressType[] {AddressType.RESTAURANT, AddressType.POINT_OF_INTEREST};
+    Assert.assertFalse(GeocodingResultUtility.hasStreetAddress(ImmutableList.of(result)));
+  }
+
   @Test
   public void hasStreetAddress() {
     GeocodingResult result = new GeocodingResult();
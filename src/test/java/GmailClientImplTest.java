@@ -0,0 +1,268 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Sleeper;
+import com.google.api.services.gmail.model.Message;
+import com.google.common.base.Ticker;
+import com.google.sps.exceptions.GmailException;
+import com.google.sps.model.ApiMetrics;
+import com.google.sps.model.GmailClient;
+import com.google.sps.model.GmailClientImpl;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test that GmailClientImpl retries the messages of a batch request which fail with rate limit or
+ * server errors, keeping the messages which were already retrieved.
+ */
+@RunWith(JUnit4.class)
+public final class GmailClientImplTest {
+  private static final int N_DAYS = 7;
+  private static final String BOUNDARY = "batch_boundary";
+  private static final Pattern MESSAGE_ID_PATTERN =
+      Pattern.compile("/users/me/messages/([^?\\s/]+)");
+
+  private static final String RATE_LIMIT_ERROR =
+      errorJson(429, "Too many concurrent requests for user", "rateLimitExceeded");
+  private static final String FORBIDDEN_RATE_LIMIT_ERROR =
+      errorJson(403, "User Rate Limit Exceeded", "userRateLimitExceeded");
+  private static final String UNAVAILABLE_ERROR =
+      errorJson(503, "Backend Error", "backendError");
+  private static final String NOT_FOUND_ERROR = errorJson(404, "Not Found", "notFound");
+
+  private FakeGmailTransport transport;
+  private List<Long> sleeps;
+  private ApiMetrics metrics;
+  private GmailClient gmailClient;
+
+  @Before
+  public void setUp() {
+    transport = new FakeGmailTransport();
+    sleeps = new ArrayList<>();
+    Sleeper sleeper = sleeps::add;
+    metrics = new ApiMetrics(Ticker.systemTicker());
+    gmailClient =
+        new GmailClientImpl.Factory(() -> transport, sleeper, metrics).getGmailClient(null);
+  }
+
+  @Test
+  public void getsEveryMessageWithoutRetries() throws IOException {
+    transport.setListedIds(ids(3));
+
+    List<Message> messages =
+        gmailClient.getUnreadEmailsFromNDays(GmailClient.MessageFormat.METADATA, N_DAYS);
+
+    Assert.assertEquals(ids(3), messageIds(messages));
+    Assert.assertEquals(Collections.singletonList(ids(3)), transport.getBatches());
+    Assert.assertTrue(sleeps.isEmpty());
+    Assert.assertEquals(0, metrics.getRetryCount("gmail", "batchGetMessage"));
+  }
+
+  @Test
+  public void retriesRateLimitedMessagesAndKeepsOrder() throws IOException {
+    transport.setListedIds(ids(4));
+    transport.failNext("message1", RATE_LIMIT_ERROR);
+    transport.failNext("message3", FORBIDDEN_RATE_LIMIT_ERROR);
+
+    List<Message> messages =
+        gmailClient.getUnreadEmailsFromNDays(GmailClient.MessageFormat.METADATA, N_DAYS);
+
+    Assert.assertEquals(ids(4), messageIds(messages));
+    List<List<String>> expectedBatches = new ArrayList<>();
+    expectedBatches.add(ids(4));
+    expectedBatches.add(listOf("message1", "message3"));
+    Assert.assertEquals(expectedBatches, transport.getBatches());
+    Assert.assertEquals(1, sleeps.size());
+    Assert.assertEquals(2, metrics.getRetryCount("gmail", "batchGetMessage"));
+  }
+
+  @Test
+  public void retriesFailedMessagesOfLaterBatches() throws IOException {
+    transport.setListedIds(ids(150));
+    transport.failNext("message120", UNAVAILABLE_ERROR);
+
+    List<Message> messages =
+        gmailClient.getUnreadEmailsFromNDays(GmailClient.MessageFormat.METADATA, N_DAYS);
+
+    Assert.assertEquals(ids(150), messageIds(messages));
+    List<List<String>> batches = transport.getBatches();
+    Assert.assertEquals(3, batches.size());
+    Assert.assertEquals(100, batches.get(0).size());
+    Assert.assertEquals(50, batches.get(1).size());
+    Assert.assertEquals(listOf("message120"), batches.get(2));
+    Assert.assertEquals(1, metrics.getRetryCount("gmail", "batchGetMessage"));
+  }
+
+  @Test
+  public void backsOffExponentiallyWithJitterUntilAttemptsRunOut() throws IOException {
+    transport.setListedIds(ids(2));
+    for (int attempt = 0; attempt < 10; attempt++) {
+      transport.failNext("message1", RATE_LIMIT_ERROR);
+    }
+
+    try {
+      gmailClient.getUnreadEmailsFromNDays(GmailClient.MessageFormat.METADATA, N_DAYS);
+      Assert.fail("Expected GmailException");
+    } catch (GmailException e) {
+      Assert.assertTrue(e.getMessage().contains("1 of 2 messages after 5 attempts"));
+    }
+
+    // Delays start at half a second, double each time and are randomized by up to 50%
+    Assert.assertEquals(4, sleeps.size());
+    for (int retry = 0; retry < sleeps.size(); retry++) {
+      long interval = 500L << retry;
+      Assert.assertTrue(sleeps.get(retry) >= interval / 2);
+      Assert.assertTrue(sleeps.get(retry) <= interval * 3 / 2);
+    }
+    Assert.assertEquals(5, transport.getBatches().size());
+    Assert.assertEquals(4, metrics.getRetryCount("gmail", "batchGetMessage"));
+  }
+
+  @Test
+  public void doesNotRetryOtherErrors() throws IOException {
+    transport.setListedIds(ids(2));
+    transport.failNext("message0", NOT_FOUND_ERROR);
+
+    try {
+      gmailClient.getUnreadEmailsFromNDays(GmailClient.MessageFormat.METADATA, N_DAYS);
+      Assert.fail("Expected GmailException");
+    } catch (GmailException e) {
+      Assert.assertEquals("Not Found", e.getMessage());
+    }
+
+    Assert.assertTrue(sleeps.isEmpty());
+    Assert.assertEquals(0, metrics.getRetryCount("gmail", "batchGetMessage"));
+  }
+
+  private static List<String> ids(int count) {
+    return IntStream.range(0, count).mapToObj(i -> "message" + i).collect(Collectors.toList());
+  }
+
+  private static List<String> listOf(String... ids) {
+    List<String> list = new ArrayList<>();
+    Collections.addAll(list, ids);
+    return list;
+  }
+
+  private static List<String> messageIds(List<Message> messages) {
+    return messages.stream().map(Message::getId).collect(Collectors.toList());
+  }
+
+  private static String errorJson(int code, String message, String reason) {
+    return String.format(
+        "{\"error\":{\"code\":%d,\"message\":\"%s\",\"errors\":[{\"domain\":\"usageLimits\","
+            + "\"reason\":\"%s\",\"message\":\"%s\"}]}}",
+        code, message, reason, message);
+  }
+
+  /**
+   * Transport standing in for the Gmail API. It lists a fixed set of message IDs, and answers
+   * batch requests with one part per requested message, failing the messages it was told to.
+   */
+  private static final class FakeGmailTransport extends MockHttpTransport {
+    private List<String> listedIds = new ArrayList<>();
+    private final Map<String, Deque<String>> failures = new HashMap<>();
+    private final List<List<String>> batches = new ArrayList<>();
+
+    void setListedIds(List<String> listedIds) {
+      this.listedIds = listedIds;
+    }
+
+    /** Makes the next request for a message fail with the given error. */
+    void failNext(String id, String errorJson) {
+      failures.computeIfAbsent(id, key -> new ArrayDeque<>()).addLast(errorJson);
+    }
+
+    /** @return The IDs of the messages requested by each batch request, in order. */
+    List<List<String>> getBatches() {
+      return batches;
+    }
+
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          if (url.contains("/batch/")) {
+            return batchResponse(getContentAsString());
+          }
+          return jsonResponse(listResponse());
+        }
+      };
+    }
+
+    private String listResponse() {
+      return listedIds.stream()
+          .map(id -> String.format("{\"id\":\"%s\",\"threadId\":\"%s\"}", id, id))
+          .collect(Collectors.joining(",", "{\"messages\":[", "]}"));
+    }
+
+    private LowLevelHttpResponse batchResponse(String requestContent) {
+      List<String> ids = new ArrayList<>();
+      Matcher matcher = MESSAGE_ID_PATTERN.matcher(requestContent);
+      while (matcher.find()) {
+        ids.add(matcher.group(1));
+      }
+      batches.add(ids);
+
+      StringBuilder content = new StringBuilder();
+      for (String id : ids) {
+        Deque<String> idFailures = failures.get(id);
+        String error = idFailures == null ? null : idFailures.pollFirst();
+        String status = error == null ? "200 OK" : errorStatus(error);
+        String body = error == null ? String.format("{\"id\":\"%s\"}", id) : error;
+        content
+            .append("--" + BOUNDARY + "\r\n")
+            .append("Content-Type: application/http\r\n\r\n")
+            .append("HTTP/1.1 " + status + "\r\n")
+            .append("Content-Type: application/json; charset=UTF-8\r\n\r\n")
+            .append(body + "\r\n");
+      }
+      content.append("--" + BOUNDARY + "--\r\n");
+      return new MockLowLevelHttpResponse()
+          .setContentType("multipart/mixed; boundary=" + BOUNDARY)
+          .setContent(content.toString());
+    }
+
+    private static String errorStatus(String errorJson) {
+      Matcher matcher = Pattern.compile("\"code\":(\\d+)").matcher(errorJson);
+      matcher.find();
+      return matcher.group(1) + " Error";
+    }
+
+    private static LowLevelHttpResponse jsonResponse(String json) {
+      return new MockLowLevelHttpResponse().setContentType("application/json").setContent(json);
+    }
+  }
+}
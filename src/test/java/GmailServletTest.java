@@ -238,4 +238,43 @@ public final class GmailServletTest extends AuthenticatedServletTestBase {
     Assert.assertEquals(EXPECTED_IMPORTANT_EMAIL_COUNT, gmailResponse.getUnreadImportantEmails());
     Assert.assertEquals(SENDER_ONE_NAME, gmailResponse.getSender());
   }
+
+  @Test
+  public void unchangedStatisticsNotModified() throws Exception {
+    Mockito.when(request.getParameter("nDays")).thenReturn(String.valueOf(DEFAULT_N_DAYS));
+    Mockito.when(request.getParameter("mHours")).thenReturn(String.valueOf(DEFAULT_M_HOURS));
+    Mockito.when(gmailClient.getUnreadEmailsFromNDays(messageFormat, DEFAULT_N_DAYS))
+        .thenReturn(NO_MESSAGES);
+    Mockito.when(gmailResponseHelper.findMostFrequentSender(NO_MESSAGES))
+        .thenReturn(Optional.empty());
+    servlet.doGet(request, response);
+    String eTag = response.getHeader("ETag");
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn(eTag);
+
+    servlet.doGet(request, response);
+
+    Assert.assertEquals(304, response.getStatus());
+    Mockito.verify(gmailClient, Mockito.never()).getHistoryId();
+  }
+
+  @Test
+  public void changedStatisticsModified() throws Exception {
+    // A client holding earlier statistics gets the recomputed ones
+    Mockito.when(request.getParameter("nDays")).thenReturn(String.valueOf(DEFAULT_N_DAYS));
+    Mockito.when(request.getParameter("mHours")).thenReturn(String.valueOf(DEFAULT_M_HOURS));
+    Mockito.when(gmailClient.getUnreadEmailsFromNDays(messageFormat, DEFAULT_N_DAYS))
+        .thenReturn(NO_MESSAGES);
+    Mockito.when(gmailResponseHelper.findMostFrequentSender(NO_MESSAGES))
+        .thenReturn(Optional.empty());
+    servlet.doGet(request, response);
+    String eTag = response.getHeader("ETag");
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn(eTag);
+
+    Mockito.when(gmailResponseHelper.countEmailsFromNDays(NO_MESSAGES)).thenReturn(1);
+    servlet.doGet(request, response);
+
+    Assert.assertEquals(200, response.getStatus());
+    Mockito.verify(gmailClient, Mockito.times(2))
+        .getUnreadEmailsFromNDays(messageFormat, DEFAULT_N_DAYS);
+  }
 }
@@ -0,0 +1,124 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.common.collect.ImmutableList;
+import com.google.sps.loadtest.MapsApiStandInServer;
+import com.google.sps.model.DirectionsClientImpl;
+import com.google.sps.model.GeocodingClientImpl;
+import com.google.sps.model.PlacesClientImpl;
+import com.google.sps.model.TasksClient;
+import com.google.sps.model.TasksClientFactory;
+import com.google.sps.servlets.GoServlet;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/**
+ * Drives GoServlet end to end against MapsApiStandInServer, using the real Directions, Places and
+ * Geocoding clients. Throughput under concurrent requests is measured by GoLoadTest in the
+ * loadtest profile instead.
+ */
+@RunWith(JUnit4.class)
+public class GoServletLoadTest {
+
+  // The client library rejects API keys which do not look like Google API keys
+  private static final String API_KEY = "AIzaStandInApiKey";
+  private static final String ORIGIN = "Google Kitchener";
+  private static final String DESTINATION = "University of Waterloo";
+  private static final String USER_EMAIL = "user@example.com";
+  private static final Duration MAPS_LATENCY = Duration.ofMillis(5);
+
+  private static final TaskList TASK_LIST = new TaskList().setId("taskListId");
+  private static final List<Task> TASKS =
+      ImmutableList.of(
+          new Task().setNotes("Buy groceries [Location: supermarket]"),
+          new Task().setNotes("Dinner [Location: restaurant]"),
+          new Task().setNotes("Pick up produce [Location: Kitchener Market]"));
+
+  private MapsApiStandInServer mapsServer;
+  private GoServlet servlet;
+
+  @Before
+  public void setUp() throws Exception {
+    mapsServer =
+        MapsApiStandInServer.withCannedGeodata()
+            .setLatency(MapsApiStandInServer.DIRECTIONS_PATH, MAPS_LATENCY)
+            .setLatency(MapsApiStandInServer.PLACES_NEARBY_PATH, MAPS_LATENCY)
+            .setLatency(MapsApiStandInServer.GEOCODING_PATH, MAPS_LATENCY);
+    mapsServer.start();
+
+    TasksClient tasksClient = Mockito.mock(TasksClient.class);
+    TasksClientFactory tasksClientFactory = Mockito.mock(TasksClientFactory.class);
+    Mockito.when(tasksClientFactory.getTasksClient(Mockito.any())).thenReturn(tasksClient);
+    Mockito.when(tasksClient.listTaskLists()).thenReturn(ImmutableList.of(TASK_LIST));
+    Mockito.when(tasksClient.listTasks(TASK_LIST)).thenReturn(TASKS);
+
+    String baseUrl = mapsServer.getBaseUrl();
+    servlet =
+        new GoServlet(
+            new DirectionsClientImpl.Factory(baseUrl),
+            new PlacesClientImpl.Factory(baseUrl),
+            tasksClientFactory,
+            new GeocodingClientImpl.Factory(baseUrl),
+            API_KEY);
+  }
+
+  @After
+  public void tearDown() {
+    mapsServer.close();
+  }
+
+  private String go() throws Exception {
+    StringWriter stringWriter = new StringWriter();
+    HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+    HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+    Mockito.when(request.getParameter("origin")).thenReturn(ORIGIN);
+    Mockito.when(request.getParameter("destination")).thenReturn(DESTINATION);
+    Mockito.when(response.getWriter()).thenReturn(new PrintWriter(stringWriter));
+    servlet.doGet(request, response, Mockito.mock(Credential.class), USER_EMAIL);
+    return stringWriter.toString();
+  }
+
+  @Test
+  public void goRoutesThroughStandInServer() throws Exception {
+    // The route visits the market and one of each place type before reaching the destination
+    String actual = go();
+
+    Assert.assertTrue(actual.contains("to travel to Kitchener Market"));
+    Assert.assertTrue(actual.contains("to travel to supermarket_"));
+    Assert.assertTrue(actual.contains("to travel to restaurant_"));
+    Assert.assertTrue(actual.contains("to travel to " + DESTINATION));
+    Assert.assertTrue(mapsServer.getRequestCount(MapsApiStandInServer.DIRECTIONS_PATH) > 0);
+  }
+
+  @Test(expected = ServletException.class)
+  public void goFailsOnInjectedDirectionsErrors() throws Exception {
+    mapsServer.setErrorRate(MapsApiStandInServer.DIRECTIONS_PATH, 1, "INVALID_REQUEST");
+    go();
+  }
+}
@@ -12,7 +12,13 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.tasks.model.Task;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.maps.model.AddressType;
 import com.google.maps.model.DirectionsLeg;
 import com.google.maps.model.DirectionsResult;
@@ -22,19 +28,28 @@ import com.google.maps.model.GeocodingResult;
 import com.google.maps.model.Geometry;
 import com.google.maps.model.LatLng;
 import com.google.maps.model.PlaceType;
+import com.google.maps.model.PlacesSearchResult;
 import com.google.maps.model.RankBy;
+import com.google.sps.data.WaypointCombinationResult;
+import com.google.sps.exceptions.DirectionsException;
 import com.google.sps.model.DirectionsClient;
 import com.google.sps.model.DirectionsClientFactory;
 import com.google.sps.model.GeocodingClient;
 import com.google.sps.model.GeocodingClientFactory;
 import com.google.sps.model.PlacesClient;
 import com.google.sps.model.PlacesClientFactory;
+import com.google.sps.model.RequestTiming;
 import com.google.sps.model.TasksClient;
 import com.google.sps.model.TasksClientFactory;
 import com.google.sps.servlets.GoServlet;
 import com.google.sps.servlets.GoServlet.GoResponse;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -54,6 +69,7 @@ public class GoServletTest extends AuthenticatedServletTestBase {
   private static GeocodingClientFactory geocodingClientFactory;
   private static GeocodingClient geocodingClient;
   private static GoServlet servlet;
+  private static GoServlet sequentialServlet;
 
   private static GeocodingResult streetAddressGeocodingResult = new GeocodingResult();
   private static Geometry streetAddressGeometry = new Geometry();
@@ -70,10 +86,14 @@ public class GoServletTest extends AuthenticatedServletTestBase {
   private static DirectionsRoute shorterRoute = new DirectionsRoute();
   private static DirectionsResult shorterResult = new DirectionsResult();
 
+  private static DirectionsResult baselineResult = new DirectionsResult();
+
   private static final String API_KEY = "fake api key";
 
   private static final String ORIGIN = "A";
   private static final String DESTINATION = "B";
+  private static final String BASELINE_LEG = "1 sec to travel to " + DESTINATION;
+  private static final String SHORTER_LEG = "5 secs to travel to " + DESTINATION;
 
   private static final String RESTAURANT_ONE = "restaurant near coordinate one";
   private static final String RESTAURANT_TWO = "restaurant near coordinate two";
@@ -82,6 +102,8 @@ public class GoServletTest extends AuthenticatedServletTestBase {
 
   private static final long FIVE_SECONDS = 5;
   private static final long TEN_SECONDS = 10;
+  private static final java.time.Duration SHORT_DEADLINE = java.time.Duration.ofMillis(200);
+  private static final java.time.Duration LONG_DEADLINE = java.time.Duration.ofMinutes(1);
 
   private static final List<String> STREET_ADDRESS_AND_RESTAURANT_WAYPOINTS =
       ImmutableList.of("street address", "restaurant");
@@ -113,6 +135,17 @@ public class GoServletTest extends AuthenticatedServletTestBase {
     shorterLeg.duration = shorterDuration;
     shorterRoute.legs = new DirectionsLeg[] {shorterLeg};
     shorterResult.routes = new DirectionsRoute[] {shorterRoute};
+    shorterDuration.humanReadable = "5 secs";
+    shorterLeg.endAddress = DESTINATION;
+
+    Duration baselineDuration = new Duration();
+    baselineDuration.humanReadable = "1 sec";
+    DirectionsLeg baselineLeg = new DirectionsLeg();
+    baselineLeg.duration = baselineDuration;
+    baselineLeg.endAddress = DESTINATION;
+    DirectionsRoute baselineRoute = new DirectionsRoute();
+    baselineRoute.legs = new DirectionsLeg[] {baselineLeg};
+    baselineResult.routes = new DirectionsRoute[] {baselineRoute};
 
     servlet =
         new GoServlet(
@@ -121,6 +154,16 @@ public class GoServletTest extends AuthenticatedServletTestBase {
             tasksClientFactory,
             geocodingClientFactory,
             API_KEY);
+    // Scores one combination at a time so the order in which combinations are pruned is fixed
+    sequentialServlet =
+        new GoServlet(
+            directionsClientFactory,
+            placesClientFactory,
+            tasksClientFactory,
+            geocodingClientFactory,
+            API_KEY,
+            1,
+            LONG_DEADLINE);
 
     Mockito.when(directionsClientFactory.getDirectionsClient(API_KEY)).thenReturn(directionsClient);
     Mockito.when(placesClientFactory.getPlacesClient(API_KEY)).thenReturn(placesClient);
@@ -128,6 +171,12 @@ public class GoServletTest extends AuthenticatedServletTestBase {
     Mockito.when(geocodingClientFactory.getGeocodingClient(API_KEY)).thenReturn(geocodingClient);
   }
 
+  private static Optional<PlacesSearchResult> placeResult(String placeId) {
+    PlacesSearchResult result = new PlacesSearchResult();
+    result.placeId = placeId;
+    return Optional.of(result);
+  }
+
   @Test
   public void separateWaypoints() throws Exception {
     // Street address should be converted into coordinates, restaurant should be converted into
@@ -158,14 +207,16 @@ public class GoServletTest extends AuthenticatedServletTestBase {
     LatLng coordinateTwo = new LatLng(0, 10);
     List<LatLng> streetAddressesAsCoordinates = ImmutableList.of(coordinateOne, coordinateTwo);
 
-    Mockito.when(placesClient.searchNearby(coordinateOne, PlaceType.RESTAURANT, RankBy.DISTANCE))
-        .thenReturn(RESTAURANT_ONE);
-    Mockito.when(placesClient.searchNearby(coordinateTwo, PlaceType.RESTAURANT, RankBy.DISTANCE))
-        .thenReturn(RESTAURANT_TWO);
-    Mockito.when(placesClient.searchNearby(coordinateOne, PlaceType.BANK, RankBy.DISTANCE))
-        .thenReturn(BANK_ONE);
-    Mockito.when(placesClient.searchNearby(coordinateTwo, PlaceType.BANK, RankBy.DISTANCE))
-        .thenReturn(BANK_TWO);
+    Mockito.when(
+            placesClient.searchNearbyPlace(coordinateOne, PlaceType.RESTAURANT, RankBy.DISTANCE))
+        .thenReturn(placeResult(RESTAURANT_ONE));
+    Mockito.when(
+            placesClient.searchNearbyPlace(coordinateTwo, PlaceType.RESTAURANT, RankBy.DISTANCE))
+        .thenReturn(placeResult(RESTAURANT_TWO));
+    Mockito.when(placesClient.searchNearbyPlace(coordinateOne, PlaceType.BANK, RankBy.DISTANCE))
+        .thenReturn(placeResult(BANK_ONE));
+    Mockito.when(placesClient.searchNearbyPlace(coordinateTwo, PlaceType.BANK, RankBy.DISTANCE))
+        .thenReturn(placeResult(BANK_TWO));
 
     List<List<String>> actual =
         servlet.searchForPlacesNearLocations(
@@ -209,19 +260,151 @@ public class GoServletTest extends AuthenticatedServletTestBase {
   }
 
   @Test
-  public void optimizeSearchNearbyWaypoints() throws Exception {
-    // Optimize waypoints for one street address and one restaurant, street address is returned as
-    // it is, the nearest restaurant is found and returned
+  public void searchWaypointCombinationsPrunesByLowerBound() throws Exception {
+    // Once the shorter route is found, the longer combination's lower bound cannot beat it and the
+    // Directions API is never called for it
+    List<String> shorterTravelTimeWaypoints = ImmutableList.of("short");
+    List<String> longerTravelTimeWaypoints = ImmutableList.of("long");
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, shorterTravelTimeWaypoints))
+        .thenReturn(shorterResult);
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, longerTravelTimeWaypoints))
+        .thenReturn(longerResult);
+
+    WaypointCombinationResult actual =
+        sequentialServlet.searchWaypointCombinations(
+            ORIGIN,
+            DESTINATION,
+            ImmutableList.of(shorterTravelTimeWaypoints, longerTravelTimeWaypoints),
+            ImmutableList.of(),
+            waypointCombination -> waypointCombination.contains("long") ? TEN_SECONDS : 0);
+
+    Assert.assertEquals(shorterTravelTimeWaypoints, actual.getOptimalWaypoints());
+    Assert.assertEquals(OptionalLong.of(FIVE_SECONDS), actual.getTravelTime());
+    Assert.assertEquals(1, actual.getEvaluatedCombinations());
+    Assert.assertEquals(1, actual.getPrunedCombinations());
+    Mockito.verify(directionsClient, Mockito.never())
+        .getDirections(ORIGIN, DESTINATION, longerTravelTimeWaypoints);
+  }
+
+  @Test
+  public void searchWaypointCombinationsKeepsPromisingCombinations() throws Exception {
+    // A combination whose lower bound is below the shortest travel time so far is still evaluated
+    List<String> longerTravelTimeWaypoints = ImmutableList.of("long");
+    List<String> shorterTravelTimeWaypoints = ImmutableList.of("short");
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, longerTravelTimeWaypoints))
+        .thenReturn(longerResult);
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, shorterTravelTimeWaypoints))
+        .thenReturn(shorterResult);
+
+    WaypointCombinationResult actual =
+        servlet.searchWaypointCombinations(
+            ORIGIN,
+            DESTINATION,
+            ImmutableList.of(longerTravelTimeWaypoints, shorterTravelTimeWaypoints),
+            ImmutableList.of(),
+            waypointCombination -> FIVE_SECONDS);
+
+    Assert.assertEquals(shorterTravelTimeWaypoints, actual.getOptimalWaypoints());
+    Assert.assertEquals(2, actual.getEvaluatedCombinations());
+    Assert.assertEquals(0, actual.getPrunedCombinations());
+  }
+
+  @Test
+  public void searchWaypointCombinationsReturnsBestBeforeDeadline() throws Exception {
+    // The second combination is still being scored when the deadline passes, so its call is
+    // cancelled and the first combination is returned
+    GoServlet deadlineServlet =
+        new GoServlet(
+            directionsClientFactory,
+            placesClientFactory,
+            tasksClientFactory,
+            geocodingClientFactory,
+            API_KEY,
+            1,
+            SHORT_DEADLINE);
+    List<String> fastWaypoints = ImmutableList.of("fast");
+    List<String> slowWaypoints = ImmutableList.of("slow");
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, fastWaypoints))
+        .thenReturn(longerResult);
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, slowWaypoints))
+        .thenAnswer(
+            invocation -> {
+              try {
+                Thread.sleep(LONG_DEADLINE.toMillis());
+              } catch (InterruptedException e) {
+                throw new DirectionsException("Failed to get directions", e);
+              }
+              return shorterResult;
+            });
+
+    long start = System.nanoTime();
+    WaypointCombinationResult actual =
+        deadlineServlet.searchWaypointCombinations(
+            ORIGIN,
+            DESTINATION,
+            ImmutableList.of(fastWaypoints, slowWaypoints),
+            ImmutableList.of(),
+            waypointCombination -> 0);
+    long elapsed = System.nanoTime() - start;
+
+    Assert.assertEquals(fastWaypoints, actual.getOptimalWaypoints());
+    Assert.assertEquals(OptionalLong.of(TEN_SECONDS), actual.getTravelTime());
+    Assert.assertTrue(actual.isDeadlineExceeded());
+    Assert.assertTrue(elapsed < LONG_DEADLINE.toNanos());
+  }
+
+  @Test
+  public void searchWaypointCombinationsConcurrently() throws Exception {
+    // Combinations scored concurrently still resolve to the shortest travel time, ties going to the
+    // earlier combination
+    List<String> firstWaypoints = ImmutableList.of("first");
+    List<String> secondWaypoints = ImmutableList.of("second");
+    List<String> thirdWaypoints = ImmutableList.of("third");
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, firstWaypoints))
+        .thenReturn(longerResult);
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, secondWaypoints))
+        .thenReturn(shorterResult);
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, thirdWaypoints))
+        .thenReturn(shorterResult);
+
+    WaypointCombinationResult actual =
+        servlet.searchWaypointCombinations(
+            ORIGIN,
+            DESTINATION,
+            ImmutableList.of(firstWaypoints, secondWaypoints, thirdWaypoints),
+            ImmutableList.of(),
+            waypointCombination -> 0);
+
+    Assert.assertEquals(secondWaypoints, actual.getOptimalWaypoints());
+    Assert.assertEquals(3, actual.getEvaluatedCombinations());
+    Assert.assertFalse(actual.isDeadlineExceeded());
+  }
+
+  @Test(expected = DirectionsException.class)
+  public void searchWaypointCombinationsDirectionsFailure() throws Exception {
+    List<String> waypoints = ImmutableList.of("unreachable");
+    Mockito.when(directionsClient.getDirections(ORIGIN, DESTINATION, waypoints))
+        .thenThrow(new DirectionsException("Failed to get directions"));
+
+    servlet.searchWaypointCombinations(
+        ORIGIN, DESTINATION, ImmutableList.of(waypoints), ImmutableList.of(), combination -> 0);
+  }
+
+  /**
+   * Stubs the Maps APIs for a route with one street address and one restaurant waypoint, where the
+   * restaurant nearest to the destination gives the shorter route.
+   */
+  private void stubStreetAddressAndRestaurantRoute() throws Exception {
     GeocodingResult originResult = new GeocodingResult();
     Geometry originGeometry = new Geometry();
-    LatLng originCoordinates = new LatLng(-10, 10);
+    LatLng originCoordinates = new LatLng(-0.0001, 0.0001);
     originResult.geometry = originGeometry;
     originGeometry.location = originCoordinates;
     originResult.types = new AddressType[] {AddressType.STREET_ADDRESS};
 
     GeocodingResult destinationResult = new GeocodingResult();
     Geometry destinationGeometry = new Geometry();
-    LatLng destinationCoordinates = new LatLng(10, -10);
+    LatLng destinationCoordinates = new LatLng(0.0001, -0.0001);
     destinationResult.geometry = destinationGeometry;
     destinationGeometry.location = destinationCoordinates;
     destinationResult.types = new AddressType[] {AddressType.STREET_ADDRESS};
@@ -237,12 +420,13 @@ public class GoServletTest extends AuthenticatedServletTestBase {
         .thenReturn(ImmutableList.of(restaurantGeocodingResult));
 
     Mockito.when(
-            placesClient.searchNearby(originCoordinates, PlaceType.RESTAURANT, RankBy.DISTANCE))
-        .thenReturn(RESTAURANT_ONE);
+            placesClient.searchNearbyPlace(
+                originCoordinates, PlaceType.RESTAURANT, RankBy.DISTANCE))
+        .thenReturn(placeResult(RESTAURANT_ONE));
     Mockito.when(
-            placesClient.searchNearby(
+            placesClient.searchNearbyPlace(
                 destinationCoordinates, PlaceType.RESTAURANT, RankBy.DISTANCE))
-        .thenReturn(RESTAURANT_TWO);
+        .thenReturn(placeResult(RESTAURANT_TWO));
 
     Mockito.when(
             directionsClient.getDirections(
@@ -256,6 +440,13 @@ public class GoServletTest extends AuthenticatedServletTestBase {
                 DESTINATION,
                 ImmutableList.of("place_id:" + RESTAURANT_TWO, "street address")))
         .thenReturn(shorterResult);
+  }
+
+  @Test
+  public void optimizeSearchNearbyWaypoints() throws Exception {
+    // Optimize waypoints for one street address and one restaurant, street address is returned as
+    // it is, the nearest restaurant is found and returned
+    stubStreetAddressAndRestaurantRoute();
 
     List<String> actual =
         servlet.optimizeSearchNearbyWaypoints(
@@ -263,4 +454,66 @@ public class GoServletTest extends AuthenticatedServletTestBase {
 
     Assert.assertEquals(ImmutableList.of("place_id:" + RESTAURANT_TWO, "street address"), actual);
   }
+
+  private void stubStreamedRoute() throws Exception {
+    stubStreetAddressAndRestaurantRoute();
+    TaskList taskList = new TaskList().setId("taskListId");
+    Mockito.when(tasksClient.listTaskLists()).thenReturn(ImmutableList.of(taskList));
+    Mockito.when(tasksClient.listTasks(taskList))
+        .thenReturn(
+            ImmutableList.of(
+                new Task().setNotes("[Location: street address]"),
+                new Task().setNotes("[Location: restaurant]")));
+    Mockito.when(
+            directionsClient.getDirections(
+                ORIGIN, DESTINATION, ImmutableList.of("street address")))
+        .thenReturn(baselineResult);
+    Mockito.when(request.getParameter("origin")).thenReturn(ORIGIN);
+    Mockito.when(request.getParameter("destination")).thenReturn(DESTINATION);
+    Mockito.when(request.getParameter("stream")).thenReturn("true");
+  }
+
+  @Test
+  public void streamOptimizedRoutes() throws Exception {
+    // The baseline route through the street address is sent first and the optimal route last,
+    // with every improved route in between
+    stubStreamedRoute();
+
+    servlet.doGet(request, response, Mockito.mock(Credential.class), USER_EMAIL);
+
+    List<JsonObject> updates =
+        Arrays.stream(stringWriter.toString().split("\n"))
+            .map(line -> JsonParser.parseString(line).getAsJsonObject())
+            .collect(Collectors.toList());
+    JsonObject baseline = updates.get(0);
+    JsonObject improved = updates.get(updates.size() - 2);
+    JsonObject optimal = updates.get(updates.size() - 1);
+    Assert.assertEquals("baseline", baseline.get("stage").getAsString());
+    Assert.assertEquals(BASELINE_LEG, baseline.getAsJsonArray("route").get(0).getAsString());
+    Assert.assertEquals("improved", improved.get("stage").getAsString());
+    Assert.assertEquals(SHORTER_LEG, improved.getAsJsonArray("route").get(0).getAsString());
+    Assert.assertEquals("final", optimal.get("stage").getAsString());
+    Assert.assertEquals(SHORTER_LEG, optimal.getAsJsonArray("route").get(0).getAsString());
+  }
+
+  @Test
+  public void streamedRoutesAreTimed() throws Exception {
+    // The search and the final route are timed as they are for a single response
+    stubStreamedRoute();
+    AtomicLong nanos = new AtomicLong();
+    RequestTiming timing =
+        new RequestTiming(
+            new Ticker() {
+              @Override
+              public long read() {
+                return nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+              }
+            });
+    Mockito.when(request.getAttribute(RequestTiming.class.getName())).thenReturn(timing);
+
+    servlet.doGet(request, response, Mockito.mock(Credential.class), USER_EMAIL);
+
+    Assert.assertTrue(timing.getDuration("route").toNanos() > 0);
+    Assert.assertTrue(timing.getDuration(RequestTiming.FETCH).toNanos() > 0);
+  }
 }
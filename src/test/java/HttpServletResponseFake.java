@@ -12,8 +12,13 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 
 /** Fake version of HttpServletResponse used for testing */
 public class HttpServletResponseFake {
@@ -23,6 +28,12 @@ public class HttpServletResponseFake {
   // Used for storing and returning the passed JSON response
   private final PrintWriter printWriter;
 
+  // Stores the headers set on the response
+  private final Map<String, String> headers = new HashMap<>();
+
+  // Stores the bytes written to the output stream, such as a compressed body
+  private final ByteArrayOutputStream outputBytes = new ByteArrayOutputStream();
+
   public HttpServletResponseFake(StringWriter stringWriter) {
     this.printWriter = new PrintWriter(stringWriter, true);
   }
@@ -51,5 +62,52 @@ public class HttpServletResponseFake {
     return printWriter;
   }
 
+  public ServletOutputStream getOutputStream() {
+    return new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        outputBytes.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {}
+    };
+  }
+
+  public byte[] getOutputBytes() {
+    return outputBytes.toByteArray();
+  }
+
+  public String getCharacterEncoding() {
+    return "UTF-8";
+  }
+
   public void setContentType(String s) {}
+
+  public void setContentLengthLong(long length) {}
+
+  public void setHeader(String name, String value) {
+    headers.put(name, value);
+  }
+
+  public void addHeader(String name, String value) {
+    headers.merge(name, value, (first, second) -> first + ", " + second);
+  }
+
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  public boolean containsHeader(String name) {
+    return headers.containsKey(name);
+  }
+
+  public boolean isCommitted() {
+    return false;
+  }
 }
@@ -15,13 +15,20 @@
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.google.sps.data.PlanMailResponse;
+import com.google.sps.model.ActionableMessage;
+import com.google.sps.model.GmailResponse;
+import com.google.sps.model.TasksResponse;
+import com.google.sps.utility.DateInterval;
 import com.google.sps.utility.JsonUtility;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.http.HttpServletResponse;
 import org.junit.Assert;
 import org.junit.Before;
@@ -131,4 +138,64 @@ public class JsonUtilityTest {
 
     Assert.assertEquals(CUSTOM_OBJECT.revealSecret(), actual.revealSecret());
   }
+
+  @Test
+  public void responseTypesMatchReflectiveJson() throws Exception {
+    // The registered adapters write the same JSON as Gson's reflective serialization, which the
+    // client depends on
+    Date start = new Date(0);
+    Date end = new Date(TimeUnit.MINUTES.toMillis(2));
+    List<Object> responses =
+        Arrays.asList(
+            TasksResponse.builder()
+                .taskListIdsToTitles(ImmutableMap.of("taskListId", "Title"))
+                .tasksToCompleteCount(2)
+                .tasksOverdueCount(1)
+                .build(),
+            new GmailResponse(3, 1, 2, "Sender"),
+            new GmailResponse(0, 0, 0, null),
+            new ActionableMessage(
+                "messageId", "Subject", 1, ActionableMessage.MessagePriority.HIGH, "Sender"),
+            new PlanMailResponse(100, 50, 2, Arrays.asList(new DateInterval(start, end))),
+            new PlanMailResponse(0, 50, 0, null));
+
+    for (Object expected : responses) {
+      Assert.assertEquals(gson.toJson(expected), JsonUtility.getGson().toJson(expected));
+    }
+  }
+
+  @Test
+  public void readResponseTypes() throws Exception {
+    // Response types are read reflectively
+    ActionableMessage expected =
+        new ActionableMessage(
+            "messageId", "Subject", 1, ActionableMessage.MessagePriority.LOW, "Sender");
+
+    ActionableMessage actual =
+        JsonUtility.getGson().fromJson(gson.toJson(expected), ActionableMessage.class);
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void sendResponseTypesInCollection() throws Exception {
+    // Elements of collections are written by the adapter of their runtime type
+    List<GmailResponse> expected = Arrays.asList(new GmailResponse(3, 1, 2, "Sender"));
+
+    JsonUtility.sendJson(response, expected);
+    printWriter.flush();
+
+    Assert.assertEquals(gson.toJson(expected) + "\n", stringWriter.toString());
+  }
+
+  @Test
+  public void sendGenericTypeToResponse() throws Exception {
+    // Sends a list as the declared type, rather than its runtime type
+    Type type = new TypeToken<List<Integer>>() {}.getType();
+
+    JsonUtility.sendJson(response, LIST_OBJECT, type);
+    printWriter.flush();
+
+    Assert.assertEquals(gson.toJson(LIST_OBJECT, type) + "\n", stringWriter.toString());
+  }
 }
@@ -13,6 +13,13 @@
 // limitations under the License.
 
 import com.google.sps.utility.KeyProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -26,10 +33,31 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public class KeyProviderTest {
   private KeyProvider keyProvider;
+  private Path resourceFolder;
+  private ClassLoader originalClassLoader;
 
   @Before
   public void setUp() throws Exception {
     keyProvider = new KeyProvider("{\"sampleKey\" : \"sampleValue\"}");
+    // Serve KEYS.json from a temporary folder instead of src/main/resources
+    originalClassLoader = Thread.currentThread().getContextClassLoader();
+    resourceFolder = Files.createTempDirectory("keys");
+    URL resourceUrl = resourceFolder.toUri().toURL();
+    Thread.currentThread()
+        .setContextClassLoader(new URLClassLoader(new URL[] {resourceUrl}, null));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    // Later tests must not get the keys of the temporary folder from getDefault
+    KeyProvider.resetDefault();
+    Thread.currentThread().setContextClassLoader(originalClassLoader);
+    Files.deleteIfExists(resourceFolder.resolve("KEYS.json"));
+    Files.delete(resourceFolder);
+  }
+
+  private void writeKeysFile(String rawJson) throws IOException {
+    Files.write(resourceFolder.resolve("KEYS.json"), rawJson.getBytes(StandardCharsets.UTF_8));
   }
 
   @Test
@@ -52,4 +80,55 @@ public class KeyProviderTest {
     String actual = keyProvider.getKey("invalidKey");
     Assert.assertNull(actual);
   }
+
+  @Test
+  public void nullValueIgnored() throws Exception {
+    KeyProvider provider = new KeyProvider("{\"sampleKey\" : null}");
+    Assert.assertNull(provider.getKey("sampleKey"));
+  }
+
+  @Test(expected = IOException.class)
+  public void invalidJsonRejected() throws Exception {
+    new KeyProvider("[\"sampleValue\"]");
+  }
+
+  @Test
+  public void defaultKeysReadOnce() throws Exception {
+    // Changes to the file are not seen until the keys are reloaded
+    writeKeysFile("{\"clientId\" : \"first\"}");
+    KeyProvider first = KeyProvider.reload();
+    writeKeysFile("{\"clientId\" : \"second\"}");
+
+    Assert.assertSame(first, KeyProvider.getDefault());
+    Assert.assertEquals("first", KeyProvider.getDefault().getKey("clientId"));
+
+    KeyProvider.reload();
+    Assert.assertEquals("second", KeyProvider.getDefault().getKey("clientId"));
+  }
+
+  @Test
+  public void resetDefaultReadsFileAgain() throws Exception {
+    writeKeysFile("{\"clientId\" : \"first\"}");
+    KeyProvider first = KeyProvider.getDefault();
+    writeKeysFile("{\"clientId\" : \"second\"}");
+
+    KeyProvider.resetDefault();
+
+    Assert.assertNotSame(first, KeyProvider.getDefault());
+    Assert.assertEquals("second", KeyProvider.getDefault().getKey("clientId"));
+  }
+
+  @Test
+  public void failedReloadKeepsKeys() throws Exception {
+    writeKeysFile("{\"clientId\" : \"first\"}");
+    KeyProvider first = KeyProvider.reload();
+    writeKeysFile("not json");
+
+    try {
+      KeyProvider.reload();
+      Assert.fail("Invalid keys should not be loaded");
+    } catch (IOException e) {
+      Assert.assertSame(first, KeyProvider.getDefault());
+    }
+  }
 }
@@ -14,8 +14,13 @@
 
 import com.google.api.services.tasks.model.Task;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.sps.data.TaskAttributes;
 import com.google.sps.utility.LocationsUtility;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,6 +32,7 @@ public class LocationsUtilityTest {
   private static final String LOCATION_ONE = "Google Kitchener";
   private static final String LOCATION_TWO = "Google Montreal";
   private static final String PREFIX = "Location";
+  private static final String TIME_PREFIX = "Time";
 
   private static final Task TASK_WITH_NO_NOTES = new Task();
   private static final Task TASK_WITH_NO_LOCATION = new Task().setNotes("sample notes");
@@ -39,6 +45,9 @@ public class LocationsUtilityTest {
   private static final Task TASK_WITH_ONE_LOCATION_ENCLOSED_INCORRECTLY =
       new Task().setNotes("(Location: Google Kitchener)");
   private static final Task TASK_WITH_EMPTY_LOCATION = new Task().setNotes("[Location: ]");
+  private static final Task TASK_WITH_LOCATION_AND_TIME =
+      new Task()
+          .setNotes("[Time: 10:00] sample notes [Location: Google Kitchener] [Time: 11:00]");
 
   @Test
   public void getLocationNoTasks() {
@@ -107,6 +116,42 @@ public class LocationsUtilityTest {
             PREFIX, ImmutableList.of(TASK_WITH_LOCATION_ONE, TASK_WITH_LOCATION_TWO)));
   }
 
+  @Test
+  public void getTaskAttributesForMultiplePrefixes() {
+    // Obtain the first value of every prefix in one scan of the task notes.
+    List<TaskAttributes> actual =
+        LocationsUtility.getTaskAttributes(
+            ImmutableSet.of(PREFIX, TIME_PREFIX),
+            ImmutableList.of(TASK_WITH_LOCATION_AND_TIME, TASK_WITH_NO_NOTES));
+
+    Assert.assertEquals(2, actual.size());
+    Assert.assertSame(TASK_WITH_LOCATION_AND_TIME, actual.get(0).getTask());
+    Assert.assertEquals(
+        ImmutableMap.of(PREFIX, LOCATION_ONE, TIME_PREFIX, "10:00"),
+        actual.get(0).getAttributes());
+    Assert.assertEquals(Optional.empty(), actual.get(1).getAttribute(PREFIX));
+  }
+
+  @Test
+  public void getTaskAttributesIgnoresOtherPrefixes() {
+    // Tags with prefixes which are not looked for are skipped.
+    List<TaskAttributes> actual =
+        LocationsUtility.getTaskAttributes(
+            ImmutableSet.of(TIME_PREFIX), ImmutableList.of(TASK_WITH_LOCATION_ONE));
+
+    Assert.assertTrue(actual.get(0).getAttributes().isEmpty());
+  }
+
+  @Test
+  public void getTaskAttributesQuotesPrefixes() {
+    // Prefixes are matched literally rather than as regular expressions.
+    Task task = new Task().setNotes("[Location: Google Kitchener] [L.cation: Google Montreal]");
+    List<TaskAttributes> actual =
+        LocationsUtility.getTaskAttributes(ImmutableSet.of("L.cation"), ImmutableList.of(task));
+
+    Assert.assertEquals(ImmutableMap.of("L.cation", LOCATION_TWO), actual.get(0).getAttributes());
+  }
+
   @Test
   public void getCombinationsNoLists() {
     List<List<String>> noLists = ImmutableList.of();
@@ -131,4 +176,52 @@ public class LocationsUtilityTest {
     Assert.assertEquals(
         ImmutableList.of(ImmutableList.of("1", "3"), ImmutableList.of("2", "3")), actual);
   }
+
+  @Test
+  public void getCombinationsWithEmptyList() {
+    List<List<String>> listsWithEmptyList =
+        ImmutableList.of(ImmutableList.of("1", "2"), ImmutableList.of());
+    Assert.assertTrue(LocationsUtility.generateCombinations(listsWithEmptyList).isEmpty());
+  }
+
+  @Test
+  public void streamCombinationsTerminatesEarly() {
+    List<List<String>> threeLists =
+        ImmutableList.of(
+            ImmutableList.of("1", "2"), ImmutableList.of("3", "4"), ImmutableList.of("5", "6"));
+    List<List<String>> actual =
+        LocationsUtility.streamCombinations(threeLists, false)
+            .limit(3)
+            .collect(Collectors.toList());
+    Assert.assertEquals(
+        ImmutableList.of(
+            ImmutableList.of("1", "3", "5"),
+            ImmutableList.of("1", "3", "6"),
+            ImmutableList.of("1", "4", "5")),
+        actual);
+  }
+
+  @Test
+  public void streamCombinationsInParallel() {
+    // Splitting the combinations across threads must not change their order or count.
+    List<List<String>> threeLists =
+        ImmutableList.of(
+            ImmutableList.of("1", "2", "3"),
+            ImmutableList.of("4", "5"),
+            ImmutableList.of("6", "7", "8", "9"));
+    Assert.assertEquals(
+        LocationsUtility.generateCombinations(threeLists),
+        LocationsUtility.streamCombinations(threeLists, true).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void iterateCombinationsRepeatedly() {
+    List<List<String>> twoLists =
+        ImmutableList.of(ImmutableList.of("1", "2"), ImmutableList.of("3"));
+    Iterable<List<String>> combinations = LocationsUtility.iterateCombinations(twoLists);
+    List<List<String>> expected =
+        ImmutableList.of(ImmutableList.of("1", "3"), ImmutableList.of("2", "3"));
+    Assert.assertEquals(expected, ImmutableList.copyOf(combinations));
+    Assert.assertEquals(expected, ImmutableList.copyOf(combinations));
+  }
 }
@@ -0,0 +1,62 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.common.base.Ticker;
+import com.google.sps.model.ApiMetrics;
+import com.google.sps.model.UrlFetchTransportProvider;
+import com.google.sps.servlets.MetricsServlet;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Test that MetricsServlet serves Prometheus metrics to administrators only */
+@RunWith(JUnit4.class)
+public final class MetricsServletTest extends ServletTestBase {
+
+  private static MetricsServlet createServlet(ApiMetrics metrics, boolean isAdmin) {
+    return new MetricsServlet(metrics, new UrlFetchTransportProvider(), request -> isAdmin);
+  }
+
+  @Test
+  public void nonAdministratorIsForbidden() throws Exception {
+    createServlet(ApiMetrics.getDefault(), false).doGet(request, response);
+
+    Mockito.verify(response).sendError(HttpServletResponse.SC_FORBIDDEN);
+    Assert.assertFalse(stringWriter.toString().contains("upstream_api_calls_total"));
+  }
+
+  @Test
+  public void administratorGetsEveryMetric() throws Exception {
+    ApiMetrics metrics = new ApiMetrics(Ticker.systemTicker());
+    metrics.record("directions", "getDirections", () -> "");
+
+    createServlet(metrics, true).doGet(request, response);
+
+    String output = stringWriter.toString();
+    Assert.assertEquals(200, response.getStatus());
+    Mockito.verify(response).setContentType("text/plain; version=0.0.4; charset=utf-8");
+    Assert.assertTrue(
+        output.contains(
+            "upstream_api_calls_total{api=\"directions\",method=\"getDirections\"} 1\n"));
+    Assert.assertTrue(output.contains("# TYPE upstream_api_latency_seconds histogram\n"));
+    Assert.assertTrue(output.contains("qps_governor_queue_depth{api=\"directions\"} "));
+    Assert.assertTrue(output.contains("qps_governor_rejected_total{api=\"geocoding\"} "));
+    Assert.assertTrue(output.contains("compression_responses_total "));
+    // URL Fetch keeps no connection pool to report on
+    Assert.assertFalse(output.contains("http_transport_requests_total"));
+  }
+}
@@ -15,6 +15,7 @@
 import com.google.maps.model.PlacesSearchResponse;
 import com.google.maps.model.PlacesSearchResult;
 import com.google.sps.utility.PlacesResultUtility;
+import java.util.Optional;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -69,4 +70,19 @@ public class PlacesResultUtilityTest {
     String actual = PlacesResultUtility.getPlaceId(response);
     Assert.assertEquals(GOOGLE_KITCHENER_PLACE_ID, actual);
   }
+
+  @Test
+  public void noFirstResult() throws Exception {
+    PlacesSearchResponse response = new PlacesSearchResponse();
+    response.results = new PlacesSearchResult[] {};
+    Assert.assertEquals(Optional.empty(), PlacesResultUtility.getFirstResult(response));
+  }
+
+  @Test
+  public void firstOfMultipleResults() throws Exception {
+    // Only the first result is returned, second result is ignored
+    PlacesSearchResponse response = new PlacesSearchResponse();
+    response.results = new PlacesSearchResult[] {googleKitchener, googleMontreal};
+    Assert.assertEquals(Optional.of(googleKitchener), PlacesResultUtility.getFirstResult(response));
+  }
 }
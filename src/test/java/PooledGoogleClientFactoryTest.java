@@ -0,0 +1,140 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.common.base.Ticker;
+import com.google.sps.model.CalendarClient;
+import com.google.sps.model.CalendarClientFactory;
+import com.google.sps.model.GmailClient;
+import com.google.sps.model.GmailClientFactory;
+import com.google.sps.model.PooledGoogleClientFactory;
+import com.google.sps.model.TasksClient;
+import com.google.sps.model.TasksClientFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Test that PooledGoogleClientFactory reuses clients until their access token expires. */
+@RunWith(JUnit4.class)
+public class PooledGoogleClientFactoryTest {
+
+  private static final Duration MAX_TOKEN_LIFETIME = Duration.ofHours(1);
+  private static final long MAXIMUM_SIZE = 10;
+
+  private GmailClientFactory gmailClientFactory;
+  private CalendarClientFactory calendarClientFactory;
+  private TasksClientFactory tasksClientFactory;
+  private AtomicLong nanos;
+  private PooledGoogleClientFactory pooledFactory;
+
+  @Before
+  public void setUp() {
+    gmailClientFactory = Mockito.mock(GmailClientFactory.class);
+    calendarClientFactory = Mockito.mock(CalendarClientFactory.class);
+    tasksClientFactory = Mockito.mock(TasksClientFactory.class);
+    Mockito.when(gmailClientFactory.getGmailClient(Mockito.any()))
+        .thenAnswer(invocation -> Mockito.mock(GmailClient.class));
+    Mockito.when(calendarClientFactory.getCalendarClient(Mockito.any()))
+        .thenAnswer(invocation -> Mockito.mock(CalendarClient.class));
+    Mockito.when(tasksClientFactory.getTasksClient(Mockito.any()))
+        .thenAnswer(invocation -> Mockito.mock(TasksClient.class));
+    nanos = new AtomicLong();
+    Ticker ticker =
+        new Ticker() {
+          @Override
+          public long read() {
+            return nanos.get();
+          }
+        };
+    pooledFactory =
+        new PooledGoogleClientFactory(
+            gmailClientFactory,
+            calendarClientFactory,
+            tasksClientFactory,
+            MAX_TOKEN_LIFETIME,
+            MAXIMUM_SIZE,
+            ticker);
+  }
+
+  private static Credential credential(String accessToken) {
+    Credential credential =
+        new Credential.Builder(BearerToken.authorizationHeaderAccessMethod()).build();
+    credential.setAccessToken(accessToken);
+    return credential;
+  }
+
+  private void advance(Duration duration) {
+    nanos.addAndGet(duration.toNanos());
+  }
+
+  @Test
+  public void sameTokenReusesClients() {
+    GmailClient gmailClient = pooledFactory.getGmailClient(credential("token"));
+    CalendarClient calendarClient = pooledFactory.getCalendarClient(credential("token"));
+    TasksClient tasksClient = pooledFactory.getTasksClient(credential("token"));
+
+    Assert.assertSame(gmailClient, pooledFactory.getGmailClient(credential("token")));
+    Assert.assertSame(calendarClient, pooledFactory.getCalendarClient(credential("token")));
+    Assert.assertSame(tasksClient, pooledFactory.getTasksClient(credential("token")));
+    Mockito.verify(gmailClientFactory, Mockito.times(1)).getGmailClient(Mockito.any());
+    Mockito.verify(calendarClientFactory, Mockito.times(1)).getCalendarClient(Mockito.any());
+    Mockito.verify(tasksClientFactory, Mockito.times(1)).getTasksClient(Mockito.any());
+  }
+
+  @Test
+  public void differentTokensGetDifferentClients() {
+    GmailClient first = pooledFactory.getGmailClient(credential("first"));
+    GmailClient second = pooledFactory.getGmailClient(credential("second"));
+
+    Assert.assertNotSame(first, second);
+  }
+
+  @Test
+  public void clientRebuiltAfterMaxTokenLifetime() {
+    GmailClient first = pooledFactory.getGmailClient(credential("token"));
+    advance(MAX_TOKEN_LIFETIME.minusMinutes(1));
+    Assert.assertSame(first, pooledFactory.getGmailClient(credential("token")));
+
+    advance(Duration.ofMinutes(1));
+    Assert.assertNotSame(first, pooledFactory.getGmailClient(credential("token")));
+  }
+
+  @Test
+  public void clientRebuiltWhenCredentialExpires() {
+    Credential expiring = credential("token");
+    expiring.setExpiresInSeconds(TimeUnit.MINUTES.toSeconds(5));
+    TasksClient first = pooledFactory.getTasksClient(expiring);
+
+    advance(Duration.ofMinutes(5));
+    Assert.assertNotSame(first, pooledFactory.getTasksClient(credential("token")));
+  }
+
+  @Test
+  public void credentialWithoutTokenNotPooled() {
+    Credential noToken =
+        new Credential.Builder(BearerToken.authorizationHeaderAccessMethod()).build();
+
+    pooledFactory.getCalendarClient(noToken);
+    pooledFactory.getCalendarClient(noToken);
+
+    Mockito.verify(calendarClientFactory, Mockito.times(2)).getCalendarClient(noToken);
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.sps.model.PooledHttpTransportProvider;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test that PooledHttpTransportProvider reuses connections and redirects to a stand-in. */
+@RunWith(JUnit4.class)
+public class PooledHttpTransportProviderTest {
+
+  private static final String BODY = "{\"ok\":true}";
+  private static final Duration KEEP_ALIVE = Duration.ofSeconds(30);
+
+  private HttpServer server;
+  private String baseUrl;
+  private final List<String> requestedPaths = Collections.synchronizedList(new ArrayList<>());
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          requestedPaths.add(exchange.getRequestURI().getPath());
+          byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.start();
+    baseUrl = "http://localhost:" + server.getAddress().getPort();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private static String get(PooledHttpTransportProvider provider, String url) throws IOException {
+    HttpRequest request =
+        provider.getTransport().createRequestFactory().buildGetRequest(new GenericUrl(url));
+    HttpResponse response = request.execute();
+    try {
+      return response.parseAsString();
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  @Test
+  public void sequentialRequestsReuseConnection() throws IOException {
+    PooledHttpTransportProvider provider =
+        new PooledHttpTransportProvider(10, 5, KEEP_ALIVE, Optional.empty());
+
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(BODY, get(provider, baseUrl + "/tasks/v1/users/@me/lists"));
+    }
+
+    Assert.assertEquals(5, provider.getRequests());
+    Assert.assertEquals(1, provider.getOpenedConnections());
+    Assert.assertEquals(4, provider.getReusedConnections());
+    Assert.assertEquals(0, provider.getLeasedConnections());
+    Assert.assertEquals(1, provider.getIdleConnections());
+  }
+
+  @Test
+  public void closedIdleConnectionsAreReopened() throws IOException {
+    PooledHttpTransportProvider provider =
+        new PooledHttpTransportProvider(10, 5, KEEP_ALIVE, Optional.empty());
+
+    get(provider, baseUrl + "/first");
+    provider.closeIdleConnections(Duration.ZERO);
+    get(provider, baseUrl + "/second");
+
+    Assert.assertEquals(2, provider.getOpenedConnections());
+    Assert.assertEquals(0, provider.getReusedConnections());
+  }
+
+  @Test
+  public void baseUrlRedirectsGoogleRequests() throws IOException {
+    PooledHttpTransportProvider provider =
+        new PooledHttpTransportProvider(10, 5, KEEP_ALIVE, Optional.of(baseUrl));
+
+    get(provider, "https://www.googleapis.com/gmail/v1/users/me/profile");
+    get(provider, "https://tasks.googleapis.com/tasks/v1/users/@me/lists");
+
+    Assert.assertEquals(
+        Arrays.asList("/gmail/v1/users/me/profile", "/tasks/v1/users/@me/lists"), requestedPaths);
+    Assert.assertEquals(1, provider.getReusedConnections());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidBaseUrlRejected() {
+    new PooledHttpTransportProvider(10, 5, KEEP_ALIVE, Optional.of("not a url"));
+  }
+}
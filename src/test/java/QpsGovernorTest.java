@@ -0,0 +1,194 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.sps.exceptions.DirectionsException;
+import com.google.sps.exceptions.RateLimitException;
+import com.google.sps.model.DirectionsClient;
+import com.google.sps.model.QpsGovernor;
+import com.google.sps.model.RateLimitedDirectionsClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Test that QpsGovernor limits the rate of calls and serves users in turn. */
+@RunWith(JUnit4.class)
+public class QpsGovernorTest {
+
+  private static final String USER_A = "a@example.com";
+  private static final String USER_B = "b@example.com";
+  // One permit every 100 milliseconds
+  private static final double PERMITS_PER_SECOND = 10;
+  private static final Duration LONG_WAIT = Duration.ofSeconds(10);
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void burstIsGrantedImmediately() throws Exception {
+    QpsGovernor governor = new QpsGovernor("test", PERMITS_PER_SECOND, 3, Duration.ZERO);
+
+    governor.acquire(USER_A);
+    governor.acquire(USER_A);
+    governor.acquire(USER_B);
+
+    Assert.assertEquals(3, governor.getGrantedCalls());
+    Assert.assertEquals(0, governor.getRejectedCalls());
+  }
+
+  @Test
+  public void configuredGovernorReadsSystemProperties() throws Exception {
+    System.setProperty("maps.api.configuredTest.qps", "2");
+    System.setProperty("maps.api.configuredTest.maxWaitMillis", "0");
+    try {
+      QpsGovernor governor = QpsGovernor.createConfigured("configuredTest");
+
+      // The burst defaults to one second's worth of permits
+      governor.acquire(USER_A);
+      governor.acquire(USER_A);
+      try {
+        governor.acquire(USER_A);
+        Assert.fail("Expected the call to be rejected");
+      } catch (RateLimitException e) {
+        Assert.assertEquals(2, governor.getGrantedCalls());
+      }
+    } finally {
+      System.clearProperty("maps.api.configuredTest.qps");
+      System.clearProperty("maps.api.configuredTest.maxWaitMillis");
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void configuredGovernorRejectsInvalidProperty() {
+    System.setProperty("maps.api.invalidTest.burst", "many");
+    try {
+      QpsGovernor.createConfigured("invalidTest");
+    } finally {
+      System.clearProperty("maps.api.invalidTest.burst");
+    }
+  }
+
+  @Test
+  public void callIsRejectedAfterMaxWait() throws Exception {
+    QpsGovernor governor = new QpsGovernor("test", PERMITS_PER_SECOND, 1, Duration.ofMillis(10));
+    governor.acquire(USER_A);
+
+    try {
+      governor.acquire(USER_A);
+      Assert.fail("Expected the call to be rejected");
+    } catch (RateLimitException e) {
+      Assert.assertEquals(1, governor.getRejectedCalls());
+      Assert.assertEquals(0, governor.getQueueDepth());
+    }
+  }
+
+  @Test
+  public void callWaitsForRefill() throws Exception {
+    QpsGovernor governor = new QpsGovernor("test", PERMITS_PER_SECOND, 1, LONG_WAIT);
+    governor.acquire(USER_A);
+
+    long start = System.nanoTime();
+    governor.acquire(USER_A);
+    long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    Assert.assertTrue(waitedMillis >= 50);
+    Assert.assertEquals(2, governor.getGrantedCalls());
+  }
+
+  @Test
+  public void usersAreServedInTurn() throws Exception {
+    // User A queues three calls before user B queues one, but B only waits behind A's first call.
+    // Permits are slow enough for every call to be queued before the first one is granted.
+    QpsGovernor governor = new QpsGovernor("test", PERMITS_PER_SECOND / 5, 1, LONG_WAIT);
+    governor.acquire(USER_A);
+    List<String> grantOrder = Collections.synchronizedList(new ArrayList<>());
+    List<Future<?>> calls = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      calls.add(executor.submit(() -> acquireAndRecord(governor, USER_A, grantOrder)));
+    }
+    awaitQueueDepth(governor, 3);
+    calls.add(executor.submit(() -> acquireAndRecord(governor, USER_B, grantOrder)));
+    awaitQueueDepth(governor, 4);
+    for (Future<?> call : calls) {
+      call.get();
+    }
+
+    Assert.assertEquals(4, grantOrder.size());
+    Assert.assertEquals(USER_B, grantOrder.get(1));
+  }
+
+  @Test
+  public void interruptedCallLeavesQueue() throws Exception {
+    QpsGovernor governor = new QpsGovernor("test", PERMITS_PER_SECOND / 100, 1, LONG_WAIT);
+    governor.acquire(USER_A);
+    Future<?> call = executor.submit(() -> acquireAndRecord(governor, USER_A, new ArrayList<>()));
+    awaitQueueDepth(governor, 1);
+
+    call.cancel(true);
+    awaitQueueDepth(governor, 0);
+
+    Assert.assertEquals(1, governor.getGrantedCalls());
+  }
+
+  @Test(expected = DirectionsException.class)
+  public void rateLimitedClientReportsRejection() throws Exception {
+    QpsGovernor governor = new QpsGovernor("test", PERMITS_PER_SECOND, 1, Duration.ZERO);
+    DirectionsClient directionsClient = Mockito.mock(DirectionsClient.class);
+    DirectionsClient rateLimitedClient =
+        new RateLimitedDirectionsClient(directionsClient, governor, USER_A);
+    rateLimitedClient.getDirections("A", "B", Collections.emptyList());
+
+    try {
+      rateLimitedClient.getDirections("A", "B", Collections.emptyList());
+    } finally {
+      Mockito.verify(directionsClient, Mockito.times(1))
+          .getDirections(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+  }
+
+  private static Void acquireAndRecord(QpsGovernor governor, String user, List<String> grantOrder)
+      throws Exception {
+    governor.acquire(user);
+    grantOrder.add(user);
+    return null;
+  }
+
+  private static void awaitQueueDepth(QpsGovernor governor, int queueDepth) throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (governor.getQueueDepth() != queueDepth) {
+      Assert.assertTrue("Timed out waiting for queue depth", System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.common.base.Ticker;
+import com.google.sps.model.GmailClient;
+import com.google.sps.model.InstrumentedGmailClient;
+import com.google.sps.model.RequestTiming;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Test that RequestTiming measures stages and formats them for the Server-Timing header. */
+@RunWith(JUnit4.class)
+public class RequestTimingTest {
+
+  private AtomicLong nanos;
+  private RequestTiming timing;
+
+  @Before
+  public void setUp() {
+    nanos = new AtomicLong();
+    Ticker ticker =
+        new Ticker() {
+          @Override
+          public long read() {
+            return nanos.get();
+          }
+        };
+    timing = new RequestTiming(ticker);
+  }
+
+  private void elapse(long millis) {
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  @Test
+  public void repeatedStageAddsUp() {
+    try (RequestTiming.Stage stage = timing.start(RequestTiming.COOKIES)) {
+      elapse(2);
+    }
+    elapse(10);
+    try (RequestTiming.Stage stage = timing.start(RequestTiming.COOKIES)) {
+      elapse(3);
+    }
+
+    Assert.assertEquals(Duration.ofMillis(5), timing.getDuration(RequestTiming.COOKIES));
+  }
+
+  @Test
+  public void overlappingVisitsAreCountedOnce() {
+    // Two concurrent upstream calls, from 0ms to 30ms and from 10ms to 50ms
+    RequestTiming.Stage first = timing.start(RequestTiming.FETCH);
+    elapse(10);
+    RequestTiming.Stage second = timing.start(RequestTiming.FETCH);
+    elapse(20);
+    first.close();
+    elapse(20);
+    second.close();
+    // Closing a visit twice has no effect
+    first.close();
+
+    Assert.assertEquals(Duration.ofMillis(50), timing.getDuration(RequestTiming.FETCH));
+  }
+
+  @Test
+  public void instrumentedClientCallsAreFetches() throws Exception {
+    GmailClient gmailClient = Mockito.mock(GmailClient.class);
+    Mockito.when(gmailClient.getHistoryId())
+        .thenAnswer(
+            invocation -> {
+              elapse(40);
+              return BigInteger.ONE;
+            });
+
+    GmailClient timedClient =
+        timing.createClient(
+            () -> {
+              elapse(1);
+              return gmailClient;
+            },
+            InstrumentedGmailClient::new);
+
+    Assert.assertEquals(BigInteger.ONE, timedClient.getHistoryId());
+    Assert.assertEquals(Duration.ofMillis(1), timing.getDuration(RequestTiming.CLIENTS));
+    Assert.assertEquals(Duration.ofMillis(40), timing.getDuration(RequestTiming.FETCH));
+  }
+
+  @Test
+  public void headerListsStagesInOrder() {
+    try (RequestTiming.Stage stage = timing.start(RequestTiming.VERIFY)) {
+      elapse(35);
+    }
+    try (RequestTiming.Stage stage = timing.start(RequestTiming.FETCH)) {
+      nanos.addAndGet(TimeUnit.MICROSECONDS.toNanos(120_250));
+    }
+
+    Assert.assertEquals("verify;dur=35.0, fetch;dur=120.3", timing.getServerTimingHeader());
+  }
+}
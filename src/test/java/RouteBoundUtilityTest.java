@@ -0,0 +1,89 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+import com.google.common.collect.ImmutableList;
+import com.google.maps.model.LatLng;
+import com.google.sps.utility.RouteBoundUtility;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test that RouteBoundUtility computes great-circle distances and travel time lower bounds. */
+@RunWith(JUnit4.class)
+public class RouteBoundUtilityTest {
+
+  private static final LatLng GOOGLE_KITCHENER = new LatLng(43.4511, -80.4982);
+  private static final LatLng GOOGLE_MONTREAL = new LatLng(45.4960, -73.5701);
+  private static final LatLng GOOGLE_TORONTO = new LatLng(43.6510, -79.3614);
+
+  // Great-circle distance between Google Kitchener and Google Montreal is about 595 km
+  private static final double KITCHENER_TO_MONTREAL_METERS = 595_000;
+  private static final double DISTANCE_TOLERANCE_METERS = 5_000;
+
+  @Test
+  public void haversineDistanceSamePoint() {
+    Assert.assertEquals(
+        0, RouteBoundUtility.haversineDistance(GOOGLE_KITCHENER, GOOGLE_KITCHENER), 0);
+  }
+
+  @Test
+  public void haversineDistanceIsSymmetric() {
+    double distance = RouteBoundUtility.haversineDistance(GOOGLE_KITCHENER, GOOGLE_MONTREAL);
+    Assert.assertEquals(KITCHENER_TO_MONTREAL_METERS, distance, DISTANCE_TOLERANCE_METERS);
+    Assert.assertEquals(
+        distance, RouteBoundUtility.haversineDistance(GOOGLE_MONTREAL, GOOGLE_KITCHENER), 1e-6);
+  }
+
+  @Test
+  public void travelTimeLowerBoundNoWaypoints() {
+    // With no waypoints the bound is the direct distance travelled at the maximum speed
+    long expected =
+        (long)
+            (RouteBoundUtility.haversineDistance(GOOGLE_KITCHENER, GOOGLE_MONTREAL)
+                / RouteBoundUtility.MAX_TRAVEL_SPEED_METERS_PER_SECOND);
+    Assert.assertEquals(
+        expected,
+        RouteBoundUtility.travelTimeLowerBound(
+            GOOGLE_KITCHENER, GOOGLE_MONTREAL, ImmutableList.of()));
+  }
+
+  @Test
+  public void travelTimeLowerBoundGrowsWithDetour() {
+    // A detour through Toronto on the way back to Kitchener can only make the route longer
+    long directLowerBound =
+        RouteBoundUtility.travelTimeLowerBound(
+            GOOGLE_KITCHENER, GOOGLE_KITCHENER, ImmutableList.of());
+    long detourLowerBound =
+        RouteBoundUtility.travelTimeLowerBound(
+            GOOGLE_KITCHENER, GOOGLE_KITCHENER, ImmutableList.of(GOOGLE_TORONTO));
+    Assert.assertEquals(0, directLowerBound);
+    Assert.assertTrue(detourLowerBound > directLowerBound);
+  }
+
+  @Test
+  public void travelTimeLowerBoundUsesFarthestWaypoint() {
+    long torontoLowerBound =
+        RouteBoundUtility.travelTimeLowerBound(GOOGLE_KITCHENER, GOOGLE_KITCHENER, GOOGLE_TORONTO);
+    long montrealLowerBound =
+        RouteBoundUtility.travelTimeLowerBound(
+            GOOGLE_KITCHENER, GOOGLE_KITCHENER, GOOGLE_MONTREAL);
+    Assert.assertEquals(
+        Math.max(torontoLowerBound, montrealLowerBound),
+        RouteBoundUtility.travelTimeLowerBound(
+            GOOGLE_KITCHENER,
+            GOOGLE_KITCHENER,
+            ImmutableList.of(GOOGLE_TORONTO, GOOGLE_MONTREAL)));
+  }
+}
@@ -15,7 +15,9 @@
 import com.google.common.collect.ImmutableList;
 import com.google.sps.exceptions.CookieParseException;
 import com.google.sps.utility.ServletUtility;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import org.junit.Assert;
@@ -163,6 +165,38 @@ public final class ServletUtilityTest {
     Assert.assertTrue(ServletUtility.hasCookie(request, "idToken"));
   }
 
+  @Test
+  public void cookiesParsedOncePerRequest() throws CookieParseException {
+    // Every lookup after the first one is served from the index stored on the request
+    Map<String, Object> attributes = new HashMap<>();
+    Mockito.doAnswer(
+            invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+        .when(request)
+        .setAttribute(Mockito.anyString(), Mockito.any());
+    Mockito.when(request.getAttribute(Mockito.anyString()))
+        .thenAnswer(invocation -> attributes.get(invocation.getArgument(0)));
+    Mockito.when(request.getCookies()).thenReturn(duplicateCookies);
+
+    Assert.assertTrue(ServletUtility.hasCookie(request, "idToken"));
+    Assert.assertTrue(ServletUtility.hasCookie(request, "accessToken"));
+    Assert.assertEquals("junk_value", ServletUtility.getCookie(request, "junk").getValue());
+    try {
+      ServletUtility.getCookie(request, "idToken");
+      Assert.fail("Duplicate cookies should not be parsed");
+    } catch (CookieParseException e) {
+      // Duplicates are still detected from the index
+    }
+    Mockito.verify(request, Mockito.times(1)).getCookies();
+  }
+
+  @Test
+  public void hasCookieWithoutCookies() {
+    // Requests without a Cookie header have no cookie array
+    Mockito.when(request.getCookies()).thenReturn(null);
+
+    Assert.assertFalse(ServletUtility.hasCookie(request, "idToken"));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void listFromRequestNullParameter() {
     ServletUtility.getListFromQueryString(request, LIST_PARAMETER);
@@ -380,4 +380,35 @@ public final class TasksServletTest extends AuthenticatedServletTestBase {
     TasksResponse actual = gson.fromJson(stringWriter.toString(), TasksResponse.class);
     Assert.assertEquals(MULTIPLE_TASK_LISTS_RESPONSE, actual);
   }
+
+  @Test
+  public void unchangedTaskListsNotModified() throws Exception {
+    // A client holding the current response is answered without fetching any tasks
+    Mockito.when(tasksClient.listTaskLists()).thenReturn(ONE_TASK_LIST);
+    Mockito.when(tasksClient.listTasks(TASK_LIST_ONE)).thenReturn(TASKS_DUE_TODAY);
+    servlet.doGet(request, response);
+    String eTag = response.getHeader("ETag");
+
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn(eTag);
+    servlet.doGet(request, response);
+
+    Assert.assertEquals(304, response.getStatus());
+    Mockito.verify(tasksClient, Mockito.times(1)).listTasks(TASK_LIST_ONE);
+  }
+
+  @Test
+  public void updatedTaskListModified() throws Exception {
+    TaskList updatedTaskList = TASK_LIST_ONE.clone().setUpdated("2020-07-01T12:00:00.000Z");
+    Mockito.when(tasksClient.listTaskLists()).thenReturn(ONE_TASK_LIST);
+    Mockito.when(tasksClient.listTasks(Mockito.any())).thenReturn(TASKS_DUE_TODAY);
+    servlet.doGet(request, response);
+    String eTag = response.getHeader("ETag");
+    Mockito.when(request.getHeader("If-None-Match")).thenReturn(eTag);
+
+    Mockito.when(tasksClient.listTaskLists()).thenReturn(ImmutableList.of(updatedTaskList));
+    servlet.doGet(request, response);
+
+    Assert.assertEquals(200, response.getStatus());
+    Assert.assertNotEquals(eTag, response.getHeader("ETag"));
+  }
 }
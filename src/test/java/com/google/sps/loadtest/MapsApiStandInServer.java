@@ -0,0 +1,479 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.maps.model.LatLng;
+import com.google.sps.utility.RouteBoundUtility;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * In-process stand-in for the Directions, Places nearby search and Geocoding web services. Serves
+ * canned geodata over HTTP on a local port, so GeoApiContext based clients can be pointed at it
+ * (see GeoApiContextUtility) to measure /go end to end without calling Google. Every endpoint can
+ * be given a fixed latency and an error rate. Errors are injected on a fixed schedule rather than
+ * at random, so repeated runs see the same responses.
+ */
+public class MapsApiStandInServer implements AutoCloseable {
+
+  public static final String DIRECTIONS_PATH = "/maps/api/directions/json";
+  public static final String PLACES_NEARBY_PATH = "/maps/api/place/nearbysearch/json";
+  public static final String GEOCODING_PATH = "/maps/api/geocode/json";
+
+  // Routes are driven at a constant speed along a path somewhat longer than the great circle
+  private static final double DRIVING_SPEED_METERS_PER_SECOND = 50_000.0 / 3600.0;
+  private static final double ROAD_DETOUR_FACTOR = 1.3;
+  private static final String PLACE_ID_PREFIX = "place_id:";
+  private static final String OPTIMIZE_PREFIX = "optimize:true|";
+
+  private final Map<String, Address> addresses = new HashMap<>();
+  private final Map<String, Place> places = new LinkedHashMap<>();
+  private final Map<String, Duration> latencies = new ConcurrentHashMap<>();
+  private final Map<String, ErrorInjection> errorInjections = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Create a stand-in server on an ephemeral local port with no canned data. Call start() once the
+   * data is added.
+   *
+   * @throws IOException if the port cannot be bound
+   */
+  public MapsApiStandInServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    for (String path : Arrays.asList(DIRECTIONS_PATH, PLACES_NEARBY_PATH, GEOCODING_PATH)) {
+      requestCounts.put(path, new AtomicLong());
+      server.createContext(path, this::handle);
+    }
+  }
+
+  /**
+   * Create a stand-in server with canned geodata around Kitchener-Waterloo: three street addresses
+   * and two restaurants, supermarkets and banks.
+   *
+   * @throws IOException if the port cannot be bound
+   */
+  public static MapsApiStandInServer withCannedGeodata() throws IOException {
+    return new MapsApiStandInServer()
+        .addStreetAddress("Google Kitchener", 43.4511, -80.4982)
+        .addStreetAddress("University of Waterloo", 43.4723, -80.5449)
+        .addStreetAddress("Kitchener Market", 43.4486, -80.4870)
+        .addPlace("restaurant_uptown", "restaurant", 43.4643, -80.5204)
+        .addPlace("restaurant_downtown", "restaurant", 43.4507, -80.4925)
+        .addPlace("supermarket_north", "supermarket", 43.4901, -80.5280)
+        .addPlace("supermarket_south", "supermarket", 43.4280, -80.4710)
+        .addPlace("bank_king", "bank", 43.4530, -80.4950)
+        .addPlace("bank_university", "bank", 43.4740, -80.5390);
+  }
+
+  /**
+   * Add an address which geocodes to a street address at the given coordinates.
+   *
+   * @param address The address exactly as it will be requested.
+   */
+  public MapsApiStandInServer addStreetAddress(String address, double lat, double lng) {
+    addresses.put(address, new Address(address, new LatLng(lat, lng)));
+    return this;
+  }
+
+  /**
+   * Add a place which nearby searches for its type can find.
+   *
+   * @param placeId The Place ID of the place, also accepted as a place_id: waypoint.
+   * @param type The place type in the form used by the Places API (e.g. restaurant).
+   */
+  public MapsApiStandInServer addPlace(String placeId, String type, double lat, double lng) {
+    places.put(placeId, new Place(placeId, type, new LatLng(lat, lng)));
+    return this;
+  }
+
+  /**
+   * Delay every response of an endpoint.
+   *
+   * @param path One of DIRECTIONS_PATH, PLACES_NEARBY_PATH or GEOCODING_PATH.
+   * @param latency Time to wait before responding.
+   */
+  public MapsApiStandInServer setLatency(String path, Duration latency) {
+    latencies.put(path, latency);
+    return this;
+  }
+
+  /**
+   * Fail a fraction of the requests to an endpoint. With a rate of 0.25, every fourth request
+   * fails.
+   *
+   * @param path One of DIRECTIONS_PATH, PLACES_NEARBY_PATH or GEOCODING_PATH.
+   * @param errorRate Fraction of requests to fail, between 0 and 1.
+   * @param status Status to fail with (e.g. INVALID_REQUEST or OVER_QUERY_LIMIT). Note that the
+   *     client library retries some statuses, such as OVER_QUERY_LIMIT, on its own.
+   */
+  public MapsApiStandInServer setErrorRate(String path, double errorRate, String status) {
+    errorInjections.put(path, new ErrorInjection(errorRate, status));
+    return this;
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  /** Gets the URL to pass to GeoApiContextUtility or the client factories. */
+  public String getBaseUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+  }
+
+  /** Gets the number of requests received by an endpoint so far. */
+  public long getRequestCount(String path) {
+    return requestCounts.get(path).get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String path = exchange.getHttpContext().getPath();
+    long requestNumber = requestCounts.get(path).incrementAndGet();
+    try {
+      Duration latency = latencies.get(path);
+      if (latency != null) {
+        Thread.sleep(latency.toMillis());
+      }
+      ErrorInjection errorInjection = errorInjections.get(path);
+      JsonObject body;
+      if (errorInjection != null && errorInjection.shouldFail(requestNumber)) {
+        body = status(errorInjection.status);
+      } else {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        switch (path) {
+          case DIRECTIONS_PATH:
+            body = directions(parameters);
+            break;
+          case PLACES_NEARBY_PATH:
+            body = nearbySearch(parameters);
+            break;
+          default:
+            body = geocode(parameters);
+        }
+      }
+      byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(bytes);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      exchange.sendResponseHeaders(503, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private JsonObject geocode(Map<String, String> parameters) {
+    String query = parameters.getOrDefault("address", "");
+    Address address = addresses.get(query);
+    // Like the real service, a bare place type such as "restaurant" geocodes to a place of that
+    // type rather than to a street address
+    String placeType = query.toLowerCase().replace(' ', '_');
+    Optional<Place> placeOfType =
+        places.values().stream().filter(place -> place.type.equals(placeType)).findFirst();
+    if (address == null && !placeOfType.isPresent()) {
+      return status("ZERO_RESULTS");
+    }
+    JsonObject result = new JsonObject();
+    JsonArray types = new JsonArray();
+    if (address != null) {
+      result.addProperty("formatted_address", address.name);
+      result.add("geometry", geometry(address.location));
+      types.add("street_address");
+    } else {
+      result.addProperty("formatted_address", placeOfType.get().placeId);
+      result.addProperty("place_id", placeOfType.get().placeId);
+      result.add("geometry", geometry(placeOfType.get().location));
+      types.add(placeType);
+    }
+    result.add("types", types);
+    JsonArray results = new JsonArray();
+    results.add(result);
+    JsonObject body = status("OK");
+    body.add("results", results);
+    return body;
+  }
+
+  private JsonObject nearbySearch(Map<String, String> parameters) {
+    Optional<LatLng> location = parseLatLng(parameters.get("location"));
+    String type = parameters.get("type");
+    if (!location.isPresent() || type == null) {
+      return status("INVALID_REQUEST");
+    }
+    List<Place> matches =
+        places.values().stream()
+            .filter(place -> place.type.equals(type))
+            .sorted(
+                Comparator.comparingDouble(
+                    place -> RouteBoundUtility.haversineDistance(location.get(), place.location)))
+            .collect(Collectors.toList());
+    if (matches.isEmpty()) {
+      return status("ZERO_RESULTS");
+    }
+    JsonArray results = new JsonArray();
+    for (Place place : matches) {
+      JsonObject result = new JsonObject();
+      result.addProperty("place_id", place.placeId);
+      result.addProperty("name", place.placeId);
+      result.add("geometry", geometry(place.location));
+      JsonArray types = new JsonArray();
+      types.add(place.type);
+      result.add("types", types);
+      results.add(result);
+    }
+    JsonObject body = status("OK");
+    body.add("results", results);
+    return body;
+  }
+
+  private JsonObject directions(Map<String, String> parameters) {
+    Optional<LatLng> origin = resolve(parameters.get("origin"));
+    Optional<LatLng> destination = resolve(parameters.get("destination"));
+    String waypointsParameter = parameters.getOrDefault("waypoints", "");
+    boolean optimize = waypointsParameter.startsWith(OPTIMIZE_PREFIX);
+    if (optimize) {
+      waypointsParameter = waypointsParameter.substring(OPTIMIZE_PREFIX.length());
+    }
+    List<String> waypointNames =
+        waypointsParameter.isEmpty()
+            ? new ArrayList<>()
+            : Arrays.asList(waypointsParameter.split("\\|"));
+    List<LatLng> waypoints = new ArrayList<>();
+    for (String waypointName : waypointNames) {
+      Optional<LatLng> waypoint = resolve(waypointName);
+      if (!waypoint.isPresent()) {
+        return status("NOT_FOUND");
+      }
+      waypoints.add(waypoint.get());
+    }
+    if (!origin.isPresent() || !destination.isPresent()) {
+      return status("NOT_FOUND");
+    }
+
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < waypoints.size(); i++) {
+      order.add(i);
+    }
+    if (optimize) {
+      order = nearestNeighbourOrder(origin.get(), waypoints);
+    }
+
+    List<String> stopNames = new ArrayList<>();
+    List<LatLng> stops = new ArrayList<>();
+    stopNames.add(parameters.get("origin"));
+    stops.add(origin.get());
+    for (int index : order) {
+      // Places are reported by name, as the real service reports their formatted address
+      stopNames.add(waypointNames.get(index).replace(PLACE_ID_PREFIX, ""));
+      stops.add(waypoints.get(index));
+    }
+    stopNames.add(parameters.get("destination"));
+    stops.add(destination.get());
+
+    JsonArray legs = new JsonArray();
+    for (int i = 0; i + 1 < stops.size(); i++) {
+      double meters =
+          RouteBoundUtility.haversineDistance(stops.get(i), stops.get(i + 1)) * ROAD_DETOUR_FACTOR;
+      long seconds = Math.round(meters / DRIVING_SPEED_METERS_PER_SECOND);
+      JsonObject leg = new JsonObject();
+      leg.add("duration", valueWithText(seconds, (seconds / 60) + " mins"));
+      leg.add("distance", valueWithText(Math.round(meters), Math.round(meters / 1000) + " km"));
+      leg.addProperty("start_address", stopNames.get(i));
+      leg.addProperty("end_address", stopNames.get(i + 1));
+      leg.add("start_location", latLng(stops.get(i)));
+      leg.add("end_location", latLng(stops.get(i + 1)));
+      legs.add(leg);
+    }
+    JsonArray waypointOrder = new JsonArray();
+    order.forEach(waypointOrder::add);
+    JsonObject route = new JsonObject();
+    route.addProperty("summary", "Stand-in route");
+    route.add("legs", legs);
+    route.add("waypoint_order", waypointOrder);
+    JsonArray routes = new JsonArray();
+    routes.add(route);
+    JsonObject body = status("OK");
+    body.add("routes", routes);
+    return body;
+  }
+
+  /** Orders waypoints by repeatedly driving to the closest one not yet visited. */
+  private static List<Integer> nearestNeighbourOrder(LatLng origin, List<LatLng> waypoints) {
+    List<Integer> remaining = new ArrayList<>();
+    for (int i = 0; i < waypoints.size(); i++) {
+      remaining.add(i);
+    }
+    List<Integer> order = new ArrayList<>();
+    LatLng current = origin;
+    while (!remaining.isEmpty()) {
+      LatLng from = current;
+      Integer closest =
+          remaining.stream()
+              .min(
+                  Comparator.comparingDouble(
+                      index -> RouteBoundUtility.haversineDistance(from, waypoints.get(index))))
+              .get();
+      remaining.remove(closest);
+      order.add(closest);
+      current = waypoints.get(closest);
+    }
+    return order;
+  }
+
+  private Optional<LatLng> resolve(String location) {
+    if (location == null) {
+      return Optional.empty();
+    }
+    if (location.startsWith(PLACE_ID_PREFIX)) {
+      Place place = places.get(location.substring(PLACE_ID_PREFIX.length()));
+      return place == null ? Optional.empty() : Optional.of(place.location);
+    }
+    Address address = addresses.get(location);
+    if (address != null) {
+      return Optional.of(address.location);
+    }
+    return parseLatLng(location);
+  }
+
+  private static Optional<LatLng> parseLatLng(String location) {
+    if (location == null) {
+      return Optional.empty();
+    }
+    String[] parts = location.split(",");
+    if (parts.length != 2) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(new LatLng(Double.parseDouble(parts[0]), Double.parseDouble(parts[1])));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery)
+      throws UnsupportedEncodingException {
+    Map<String, String> parameters = new HashMap<>();
+    if (rawQuery == null) {
+      return parameters;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int separator = pair.indexOf('=');
+      if (separator < 0) {
+        continue;
+      }
+      parameters.put(
+          URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+          URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+    }
+    return parameters;
+  }
+
+  private static JsonObject status(String status) {
+    JsonObject body = new JsonObject();
+    body.addProperty("status", status);
+    return body;
+  }
+
+  private static JsonObject latLng(LatLng location) {
+    JsonObject json = new JsonObject();
+    json.addProperty("lat", location.lat);
+    json.addProperty("lng", location.lng);
+    return json;
+  }
+
+  private static JsonObject geometry(LatLng location) {
+    JsonObject geometry = new JsonObject();
+    geometry.add("location", latLng(location));
+    return geometry;
+  }
+
+  private static JsonObject valueWithText(long value, String text) {
+    JsonObject json = new JsonObject();
+    json.addProperty("value", value);
+    json.addProperty("text", text);
+    return json;
+  }
+
+  private static class Address {
+    final String name;
+    final LatLng location;
+
+    Address(String name, LatLng location) {
+      this.name = name;
+      this.location = location;
+    }
+  }
+
+  private static class Place {
+    final String placeId;
+    final String type;
+    final LatLng location;
+
+    Place(String placeId, String type, LatLng location) {
+      this.placeId = placeId;
+      this.type = type;
+      this.location = location;
+    }
+  }
+
+  private static class ErrorInjection {
+    final double errorRate;
+    final String status;
+
+    ErrorInjection(double errorRate, String status) {
+      this.errorRate = errorRate;
+      this.status = status;
+    }
+
+    /** Fails request n whenever n * rate crosses a whole number. */
+    boolean shouldFail(long requestNumber) {
+      return Math.floor(requestNumber * errorRate) > Math.floor((requestNumber - 1) * errorRate);
+    }
+  }
+}